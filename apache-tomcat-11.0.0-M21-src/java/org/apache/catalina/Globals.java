@@ -72,6 +72,14 @@ public final class Globals {
     public static final String SENDFILE_SUPPORTED_ATTR = org.apache.coyote.Constants.SENDFILE_SUPPORTED_ATTR;
 
 
+    /**
+     * The request attribute that, when read, provides an {@code Iterator<Part>} over the parts of a
+     * <code>multipart/form-data</code> request as they are read from the request body. See
+     * {@link org.apache.catalina.connector.Request#getPartIterator()}.
+     */
+    public static final String PART_ITERATOR_ATTR = "org.apache.catalina.PART_ITERATOR";
+
+
     /**
      * The request attribute that is set to the value of {@code Boolean.TRUE} if
      * {@link org.apache.catalina.filters.RemoteIpFilter} determines that this request was submitted via a secure
@@ -210,6 +210,11 @@ public class Connector extends LifecycleMBeanBase {
      */
     protected int maxParameterCount = 1000;
 
+    /**
+     * Should request parameters only be converted to Strings when they are requested?
+     */
+    private boolean lazyParameterDecoding = false;
+
     /**
      * Maximum size of a POST which will be automatically parsed by the container. 2 MiB by default.
      */
@@ -473,6 +478,26 @@ public class Connector extends LifecycleMBeanBase {
     }
 
 
+    /**
+     * @return {@code true} if request parameters are validated and indexed when they are parsed but are only converted
+     *             to Strings when they are requested
+     */
+    public boolean getLazyParameterDecoding() {
+        return lazyParameterDecoding;
+    }
+
+
+    /**
+     * Configure whether request parameters are only converted to Strings when they are requested. This reduces the
+     * cost of processing large forms where only a few of the parameters are used.
+     *
+     * @param lazyParameterDecoding {@code true} to convert parameters to Strings when they are requested
+     */
+    public void setLazyParameterDecoding(boolean lazyParameterDecoding) {
+        this.lazyParameterDecoding = lazyParameterDecoding;
+    }
+
+
     /**
      * @return the maximum size of a POST which will be automatically parsed by the container.
      */
@@ -35,11 +35,13 @@ import org.apache.catalina.Host;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.authenticator.AuthenticatorBase;
 import org.apache.catalina.core.AsyncContextImpl;
+import org.apache.catalina.core.StandardWrapper;
 import org.apache.catalina.util.ServerInfo;
 import org.apache.catalina.util.SessionConfig;
 import org.apache.catalina.util.URLEncoder;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
@@ -291,6 +293,7 @@ public class CoyoteAdapter implements Adapter {
             // Recycle the wrapper request and response
             if (!success || !request.isAsync()) {
                 updateWrapperErrorCount(request, response);
+                updateRequestTimings(req, res, request);
                 request.recycle();
                 response.recycle();
             }
@@ -330,6 +333,7 @@ public class CoyoteAdapter implements Adapter {
         boolean postParseSuccess = false;
 
         req.setRequestThread();
+        req.recordTiming(RequestTimingPoint.ADAPTER);
 
         try {
             // Parse and set Catalina and configuration specific
@@ -339,6 +343,7 @@ public class CoyoteAdapter implements Adapter {
                 // check valves if we support async
                 request.setAsyncSupported(connector.getService().getContainer().getPipeline().isAsyncSupported());
                 // Calling the container
+                req.recordTiming(RequestTimingPoint.ENGINE);
                 connector.getService().getContainer().getPipeline().getFirst().invoke(request, response);
             }
             if (request.isAsync()) {
@@ -417,6 +422,7 @@ public class CoyoteAdapter implements Adapter {
             // Recycle the wrapper request and response
             if (!async) {
                 updateWrapperErrorCount(request, response);
+                updateRequestTimings(req, res, request);
                 request.recycle();
                 response.recycle();
             }
@@ -434,6 +440,16 @@ public class CoyoteAdapter implements Adapter {
     }
 
 
+    private void updateRequestTimings(org.apache.coyote.Request req, org.apache.coyote.Response res, Request request) {
+        if (req.isTimingsEnabled()) {
+            Wrapper wrapper = request.getWrapper();
+            if (wrapper instanceof StandardWrapper) {
+                ((StandardWrapper) wrapper).recordRequestTimings(req, res, System.nanoTime());
+            }
+        }
+    }
+
+
     @Override
     public boolean prepare(org.apache.coyote.Request req, org.apache.coyote.Response res)
             throws IOException, ServletException {
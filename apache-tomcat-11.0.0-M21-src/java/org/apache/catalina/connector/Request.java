@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -32,6 +33,7 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -78,6 +80,7 @@ import org.apache.catalina.Wrapper;
 import org.apache.catalina.core.ApplicationFilterChain;
 import org.apache.catalina.core.ApplicationMapping;
 import org.apache.catalina.core.ApplicationPart;
+import org.apache.catalina.core.ApplicationPartIterator;
 import org.apache.catalina.core.ApplicationSessionCookieConfig;
 import org.apache.catalina.core.AsyncContextImpl;
 import org.apache.catalina.mapper.MappingData;
@@ -320,6 +323,12 @@ public class Request implements HttpServletRequest {
     protected Exception partsParseException = null;
 
 
+    /**
+     * Have the parts been provided via {@link #getPartIterator()}?
+     */
+    private boolean partsStreamed = false;
+
+
     /**
      * The currently active session for this request.
      */
@@ -453,6 +462,7 @@ public class Request implements HttpServletRequest {
         }
         parametersParseException = null;
         partsParseException = null;
+        partsStreamed = false;
         locales.clear();
         localesParsed = false;
         secure = false;
@@ -2415,17 +2425,15 @@ public class Request implements HttpServletRequest {
             return;
         }
 
-        Context context = getContext();
-        MultipartConfigElement mce = getWrapper().getMultipartConfigElement();
+        if (partsStreamed) {
+            partsParseException = new IllegalStateException(sm.getString("coyoteRequest.partsStreamed"));
+            return;
+        }
 
+        MultipartConfigElement mce = getMultipartConfigElement();
         if (mce == null) {
-            if (context.getAllowCasualMultipartParsing()) {
-                mce = new MultipartConfigElement(null, connector.getMaxPostSize(), connector.getMaxPostSize(),
-                        connector.getMaxPostSize());
-            } else {
-                partsParseException = new IllegalStateException(sm.getString("coyoteRequest.noMultipartConfig"));
-                return;
-            }
+            partsParseException = new IllegalStateException(sm.getString("coyoteRequest.noMultipartConfig"));
+            return;
         }
 
         int maxParameterCount = getConnector().getMaxParameterCount();
@@ -2433,29 +2441,10 @@ public class Request implements HttpServletRequest {
         parameters.setLimit(maxParameterCount);
 
         File location;
-        String locationStr = mce.getLocation();
-        if (locationStr == null || locationStr.length() == 0) {
-            location = ((File) context.getServletContext().getAttribute(ServletContext.TEMPDIR));
-        } else {
-            // If relative, it is relative to TEMPDIR
-            location = new File(locationStr);
-            if (!location.isAbsolute()) {
-                location =
-                        new File((File) context.getServletContext().getAttribute(ServletContext.TEMPDIR), locationStr)
-                                .getAbsoluteFile();
-            }
-        }
-
-        if (!location.exists() && context.getCreateUploadTargets()) {
-            log.warn(sm.getString("coyoteRequest.uploadCreate", location.getAbsolutePath(),
-                    getMappingData().wrapper.getName()));
-            if (!location.mkdirs()) {
-                log.warn(sm.getString("coyoteRequest.uploadCreateFail", location.getAbsolutePath()));
-            }
-        }
-
-        if (!location.isDirectory()) {
-            partsParseException = new IOException(sm.getString("coyoteRequest.uploadLocationInvalid", location));
+        try {
+            location = getUploadLocation(mce);
+        } catch (IOException ioe) {
+            partsParseException = ioe;
             return;
         }
 
@@ -2533,6 +2522,91 @@ public class Request implements HttpServletRequest {
     }
 
 
+    /**
+     * Provides the parts of a <code>multipart/form-data</code> request as they are read from the request body rather
+     * than reading the whole request body and storing every part in memory or in a temporary file first. The content
+     * of each part is only available until the next part is requested and writing a part writes it directly from the
+     * request body to the target file. The same limits are applied as for {@link #getParts()} but form fields are not
+     * added to the request parameters. This is an alternative to {@link #getParts()}, {@link #getInputStream()} and
+     * {@link #getReader()} and may not be combined with them.
+     * <p>
+     * Applications may obtain the same iterator via the request attribute {@link Globals#PART_ITERATOR_ATTR}.
+     *
+     * @return an iterator over the parts of the request. {@link java.io.UncheckedIOException} is thrown by the
+     *             iterator if an error occurs reading the request body, including if a configured limit is exceeded.
+     *
+     * @throws IllegalStateException if the parts or the request body have already been read or if no multi-part
+     *                                   configuration has been provided
+     * @throws IOException           if the request is not a <code>multipart/form-data</code> request, if the upload
+     *                                   location is not valid or if an error occurs reading the request body
+     */
+    public Iterator<Part> getPartIterator() throws IOException {
+        if (partsStreamed || parts != null || partsParseException != null || usingInputStream || usingReader) {
+            throw new IllegalStateException(sm.getString("coyoteRequest.partIterator.ise"));
+        }
+
+        MultipartConfigElement mce = getMultipartConfigElement();
+        if (mce == null) {
+            throw new IllegalStateException(sm.getString("coyoteRequest.noMultipartConfig"));
+        }
+        File location = getUploadLocation(mce);
+
+        FileUpload upload = new FileUpload();
+        upload.setFileSizeMax(mce.getMaxFileSize());
+        upload.setSizeMax(mce.getMaxRequestSize());
+        long fileCountMax = -1;
+        int maxParameterCount = getConnector().getMaxParameterCount();
+        if (maxParameterCount > -1) {
+            fileCountMax = maxParameterCount - coyoteRequest.getParameters().size();
+        }
+
+        partsStreamed = true;
+        return new ApplicationPartIterator(upload.getItemIterator(new ServletRequestContext(this)), location,
+                fileCountMax);
+    }
+
+
+    private MultipartConfigElement getMultipartConfigElement() {
+        MultipartConfigElement mce = getWrapper().getMultipartConfigElement();
+        if (mce == null && getContext().getAllowCasualMultipartParsing()) {
+            mce = new MultipartConfigElement(null, connector.getMaxPostSize(), connector.getMaxPostSize(),
+                    connector.getMaxPostSize());
+        }
+        return mce;
+    }
+
+
+    private File getUploadLocation(MultipartConfigElement mce) throws IOException {
+        Context context = getContext();
+        File location;
+        String locationStr = mce.getLocation();
+        if (locationStr == null || locationStr.length() == 0) {
+            location = ((File) context.getServletContext().getAttribute(ServletContext.TEMPDIR));
+        } else {
+            // If relative, it is relative to TEMPDIR
+            location = new File(locationStr);
+            if (!location.isAbsolute()) {
+                location =
+                        new File((File) context.getServletContext().getAttribute(ServletContext.TEMPDIR), locationStr)
+                                .getAbsoluteFile();
+            }
+        }
+
+        if (!location.exists() && context.getCreateUploadTargets()) {
+            log.warn(sm.getString("coyoteRequest.uploadCreate", location.getAbsolutePath(),
+                    getMappingData().wrapper.getName()));
+            if (!location.mkdirs()) {
+                log.warn(sm.getString("coyoteRequest.uploadCreateFail", location.getAbsolutePath()));
+            }
+        }
+
+        if (!location.isDirectory()) {
+            throw new IOException(sm.getString("coyoteRequest.uploadLocationInvalid", location));
+        }
+        return location;
+    }
+
+
     @Override
     public Part getPart(String name) throws IOException, IllegalStateException, ServletException {
         for (Part part : getParts()) {
@@ -2773,6 +2847,7 @@ public class Request implements HttpServletRequest {
             maxParameterCount -= parts.size();
         }
         parameters.setLimit(maxParameterCount);
+        parameters.setLazyDecoding(getConnector().getLazyParameterDecoding());
 
         // getCharacterEncoding() may have been overridden to search for
         // hidden form field containing request encoding
@@ -3085,6 +3160,21 @@ public class Request implements HttpServletRequest {
                 // NO-OP
             }
         });
+        specialAttributes.put(Globals.PART_ITERATOR_ATTR, new SpecialAttributeAdapter() {
+            @Override
+            public Object get(Request request, String name) {
+                try {
+                    return request.getPartIterator();
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            }
+
+            @Override
+            public void set(Request request, String name, Object value) {
+                // NO-OP
+            }
+        });
         specialAttributes.put(Globals.REMOTE_IP_FILTER_SECURE, new SpecialAttributeAdapter() {
             @Override
             public Object get(Request request, String name) {
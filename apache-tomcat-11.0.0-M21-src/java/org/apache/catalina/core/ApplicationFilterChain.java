@@ -28,6 +28,7 @@ import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
 
 import org.apache.catalina.Globals;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.res.StringManager;
 
@@ -87,6 +88,12 @@ public final class ApplicationFilterChain implements FilterChain {
      */
     private boolean dispatcherWrapsSameObject = false;
 
+    /**
+     * The coyote request used to record when the servlet is called. Only set for the filter chain created for the
+     * request passed to the container.
+     */
+    private org.apache.coyote.Request coyoteRequest = null;
+
     /**
      * The string manager for our package.
      */
@@ -126,6 +133,9 @@ public final class ApplicationFilterChain implements FilterChain {
             if (request.isAsyncSupported() && !servletSupportsAsync) {
                 request.setAttribute(Globals.ASYNC_SUPPORTED_ATTR, Boolean.FALSE);
             }
+            if (coyoteRequest != null) {
+                coyoteRequest.recordTiming(RequestTimingPoint.SERVLET);
+            }
             // Use potentially wrapped request from this point
             servlet.service(request, response);
         } catch (IOException | ServletException | RuntimeException e) {
@@ -198,6 +208,7 @@ public final class ApplicationFilterChain implements FilterChain {
         servlet = null;
         servletSupportsAsync = false;
         dispatcherWrapsSameObject = false;
+        coyoteRequest = null;
     }
 
 
@@ -229,6 +240,11 @@ public final class ApplicationFilterChain implements FilterChain {
     }
 
 
+    void setCoyoteRequest(org.apache.coyote.Request coyoteRequest) {
+        this.coyoteRequest = coyoteRequest;
+    }
+
+
     /**
      * Identifies the Filters, if any, in this FilterChain that do not support async.
      *
@@ -69,6 +69,9 @@ public final class ApplicationFilterFactory {
                 filterChain = new ApplicationFilterChain();
                 req.setFilterChain(filterChain);
             }
+            if (req.getCoyoteRequest().isTimingsEnabled()) {
+                filterChain.setCoyoteRequest(req.getCoyoteRequest());
+            }
         } else {
             // Request dispatcher in use
             filterChain = new ApplicationFilterChain();
@@ -124,13 +124,16 @@ public class ApplicationPart implements Part {
         return fileItem.getString(encoding);
     }
 
+    @Override
+    public String getSubmittedFileName() {
+        return getSubmittedFileName(getHeader("Content-Disposition"));
+    }
+
     /*
      * Adapted from FileUploadBase.getFileName()
      */
-    @Override
-    public String getSubmittedFileName() {
+    static String getSubmittedFileName(String cd) {
         String fileName = null;
-        String cd = getHeader("Content-Disposition");
         if (cd != null) {
             String cdl = cd.toLowerCase(Locale.ENGLISH);
             if (cdl.startsWith("form-data") || cdl.startsWith("attachment")) {
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import jakarta.servlet.http.Part;
+
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileUploadBase;
+import org.apache.tomcat.util.http.fileupload.impl.FileCountLimitExceededException;
+
+/**
+ * Provides the parts of a multi-part request as they are read from the request body. Requesting the next part skips
+ * any unread content of the current part. Any {@link IOException}, including those triggered by exceeding the
+ * configured limits, is thrown wrapped in an {@link UncheckedIOException}.
+ */
+public class ApplicationPartIterator implements Iterator<Part> {
+
+    private final FileItemIterator iterator;
+    private final File location;
+    private final long fileCountMax;
+    private long count = 0;
+
+    public ApplicationPartIterator(FileItemIterator iterator, File location, long fileCountMax) {
+        this.iterator = iterator;
+        this.location = location;
+        this.fileCountMax = fileCountMax;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return iterator.hasNext();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override
+    public Part next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (fileCountMax > -1 && count == fileCountMax) {
+            throw new UncheckedIOException(new FileCountLimitExceededException(FileUploadBase.ATTACHMENT, fileCountMax));
+        }
+        count++;
+        try {
+            return new StreamingApplicationPart(iterator.next(), location);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+}
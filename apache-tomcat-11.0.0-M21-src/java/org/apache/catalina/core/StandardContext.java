@@ -105,6 +105,7 @@ import org.apache.catalina.session.StandardManager;
 import org.apache.catalina.util.CharsetMapper;
 import org.apache.catalina.util.ContextName;
 import org.apache.catalina.util.ErrorPageSupport;
+import org.apache.catalina.util.RequestTimingStatistics;
 import org.apache.catalina.util.URLEncoder;
 import org.apache.catalina.webresources.StandardRoot;
 import org.apache.juli.logging.Log;
@@ -3657,6 +3658,30 @@ public class StandardContext extends ContainerBase implements Context, Notificat
     }
 
 
+    /**
+     * Gets a summary of the latency of each stage of request processing for all servlets in this StandardContext.
+     * Timings are only recorded when enabled on the connector.
+     *
+     * @return one entry per stage for which timings have been recorded
+     */
+    public String[] getRequestTimings() {
+
+        RequestTimingStatistics result = new RequestTimingStatistics();
+
+        Container[] children = findChildren();
+        if (children != null) {
+            for (Container child : children) {
+                RequestTimingStatistics requestTimings = ((StandardWrapper) child).getRequestTimingStatistics();
+                if (requestTimings != null) {
+                    result.add(requestTimings);
+                }
+            }
+        }
+
+        return result.getSummary();
+    }
+
+
     @Override
     public String getRealPath(String path) {
         // The WebResources API expects all paths to start with /. This is a
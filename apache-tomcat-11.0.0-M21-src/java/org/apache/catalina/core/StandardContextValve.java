@@ -27,6 +27,7 @@ import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
 import org.apache.coyote.ContinueResponseTiming;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.res.StringManager;
 
@@ -87,6 +88,7 @@ final class StandardContextValve extends ValveBase {
         if (request.isAsyncSupported()) {
             request.setAsyncSupported(wrapper.getPipeline().isAsyncSupported());
         }
+        request.getCoyoteRequest().recordTiming(RequestTimingPoint.WRAPPER);
         wrapper.getPipeline().getFirst().invoke(request, response);
     }
 }
@@ -24,6 +24,7 @@ import org.apache.catalina.Host;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
+import org.apache.coyote.RequestTimingPoint;
 
 /**
  * Valve that implements the default basic behavior for the <code>StandardEngine</code> container implementation.
@@ -71,6 +72,7 @@ final class StandardEngineValve extends ValveBase {
         }
 
         // Ask this Host to process this request
+        request.getCoyoteRequest().recordTiming(RequestTimingPoint.HOST);
         host.getPipeline().getFirst().invoke(request, response);
     }
 }
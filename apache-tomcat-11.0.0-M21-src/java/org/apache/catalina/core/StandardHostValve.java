@@ -33,6 +33,7 @@ import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
 import org.apache.coyote.ActionCode;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
@@ -112,6 +113,7 @@ final class StandardHostValve extends ValveBase {
             // application for processing.
             try {
                 if (!response.isErrorReportRequired()) {
+                    request.getCoyoteRequest().recordTiming(RequestTimingPoint.CONTEXT);
                     context.getPipeline().getFirst().invoke(request, response);
                 }
             } catch (Throwable t) {
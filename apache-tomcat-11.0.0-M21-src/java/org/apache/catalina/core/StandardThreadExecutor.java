@@ -91,6 +91,24 @@ public class StandardThreadExecutor extends LifecycleMBeanBase implements Execut
      */
     protected long threadRenewalDelay = org.apache.tomcat.util.threads.Constants.DEFAULT_THREAD_RENEWAL_DELAY;
 
+    /**
+     * The maximum time in milliseconds a connection may wait in the queue before it is closed rather than processed. A
+     * negative value disables dropping.
+     */
+    protected long maxQueueTime = -1;
+
+    /**
+     * The time in milliseconds a connection may wait in the queue before it is closed when the queue has not been
+     * empty for at least {@link #targetQueueInterval}.
+     */
+    protected long targetQueueTime = 5;
+
+    /**
+     * The time in milliseconds the queue must have been continuously non-empty before {@link #targetQueueTime} is
+     * used.
+     */
+    protected long targetQueueInterval = 100;
+
     private TaskQueue taskqueue = null;
 
     // ---------------------------------------------- Constructors
@@ -112,6 +130,9 @@ public class StandardThreadExecutor extends LifecycleMBeanBase implements Execut
     protected void startInternal() throws LifecycleException {
 
         taskqueue = new TaskQueue(maxQueueSize);
+        taskqueue.setMaxQueueTime(maxQueueTime);
+        taskqueue.setTargetQueueTime(targetQueueTime);
+        taskqueue.setTargetQueueInterval(targetQueueInterval);
         TaskThreadFactory tf = new TaskThreadFactory(namePrefix, daemon, getThreadPriority());
         executor = new ThreadPoolExecutor(getMinSpareThreads(), getMaxThreads(), maxIdleTime, TimeUnit.MILLISECONDS,
                 taskqueue, tf);
@@ -244,6 +265,39 @@ public class StandardThreadExecutor extends LifecycleMBeanBase implements Execut
         }
     }
 
+    public long getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    public void setMaxQueueTime(long maxQueueTime) {
+        this.maxQueueTime = maxQueueTime;
+        if (taskqueue != null) {
+            taskqueue.setMaxQueueTime(maxQueueTime);
+        }
+    }
+
+    public long getTargetQueueTime() {
+        return targetQueueTime;
+    }
+
+    public void setTargetQueueTime(long targetQueueTime) {
+        this.targetQueueTime = targetQueueTime;
+        if (taskqueue != null) {
+            taskqueue.setTargetQueueTime(targetQueueTime);
+        }
+    }
+
+    public long getTargetQueueInterval() {
+        return targetQueueInterval;
+    }
+
+    public void setTargetQueueInterval(long targetQueueInterval) {
+        this.targetQueueInterval = targetQueueInterval;
+        if (taskqueue != null) {
+            taskqueue.setTargetQueueInterval(targetQueueInterval);
+        }
+    }
+
     // Statistics from the thread pool
     @Override
     public int getActiveCount() {
@@ -271,6 +325,30 @@ public class StandardThreadExecutor extends LifecycleMBeanBase implements Execut
         return (executor != null) ? executor.getQueue().size() : -1;
     }
 
+    public long getDroppedTaskCount() {
+        TaskQueue taskqueue = this.taskqueue;
+        return (taskqueue != null) ? taskqueue.getDroppedCount() : 0;
+    }
+
+    /**
+     * @return the number of connections that waited in the queue for each range of times, one entry per range. Only
+     *             recorded when {@link #getMaxQueueTime()} is set.
+     */
+    public String[] getQueueTimeHistogram() {
+        TaskQueue taskqueue = this.taskqueue;
+        if (taskqueue == null) {
+            return new String[0];
+        }
+        long[] buckets = taskqueue.getQueueTimeBuckets();
+        long[] counts = taskqueue.getQueueTimeHistogram();
+        String[] result = new String[counts.length];
+        for (int i = 0; i < buckets.length; i++) {
+            result[i] = "<= " + buckets[i] + " ms: " + counts[i];
+        }
+        result[buckets.length] = "> " + buckets[buckets.length - 1] + " ms: " + counts[buckets.length];
+        return result;
+    }
+
 
     @Override
     public boolean resizePool(int corePoolSize, int maximumPoolSize) {
@@ -29,19 +29,27 @@ import org.apache.catalina.Executor;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.util.LifecycleMBeanBase;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.ResizableExecutor;
 import org.apache.tomcat.util.threads.VirtualThreadExecutor;
 
 /**
  * An executor that uses a new virtual thread for each task.
  */
-public class StandardVirtualThreadExecutor extends LifecycleMBeanBase implements Executor {
+public class StandardVirtualThreadExecutor extends LifecycleMBeanBase implements Executor, ResizableExecutor {
 
+    private static final Log log = LogFactory.getLog(StandardVirtualThreadExecutor.class);
     private static final StringManager sm = StringManager.getManager(StandardVirtualThreadExecutor.class);
 
     private String name;
-    private java.util.concurrent.ExecutorService executor;
+    private VirtualThreadExecutor executor;
     private String namePrefix = "tomcat-virt-";
+    private int maxThreads = -1;
+    private long pinnedThreshold = -1;
+    private VirtualThreadPinningRecorder pinningRecorder;
 
     public void setName(String name) {
         this.name = name;
@@ -60,6 +68,46 @@ public class StandardVirtualThreadExecutor extends LifecycleMBeanBase implements
         this.namePrefix = namePrefix;
     }
 
+    /**
+     * @return the maximum number of tasks that may run concurrently or -1 if there is no limit
+     */
+    @Override
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Set the maximum number of tasks that may run concurrently. Tasks submitted when the limit has been reached wait
+     * until a running task completes.
+     *
+     * @param maxThreads The maximum number of concurrent tasks. Zero or less means no limit.
+     */
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads > 0 ? maxThreads : -1;
+        VirtualThreadExecutor executor = this.executor;
+        if (executor != null) {
+            executor.setMaxThreads(maxThreads);
+        }
+    }
+
+    /**
+     * @return the minimum time in milliseconds a virtual thread must be pinned to its carrier thread for the event to
+     *             be recorded or -1 if pinning is not recorded
+     */
+    public long getPinnedThreshold() {
+        return pinnedThreshold;
+    }
+
+    /**
+     * Record, using JFR, the code locations where virtual threads are pinned to their carrier thread for at least the
+     * given time. Changes take effect when the executor is next started.
+     *
+     * @param pinnedThreshold The time in milliseconds. A negative value disables recording.
+     */
+    public void setPinnedThreshold(long pinnedThreshold) {
+        this.pinnedThreshold = pinnedThreshold;
+    }
+
     @Override
     public void execute(Runnable command) {
         if (executor == null) {
@@ -72,16 +120,95 @@ public class StandardVirtualThreadExecutor extends LifecycleMBeanBase implements
 
     @Override
     protected void startInternal() throws LifecycleException {
-        executor = new VirtualThreadExecutor(getNamePrefix());
+        executor = new VirtualThreadExecutor(getNamePrefix(), getMaxThreads());
+        pinningRecorder = null;
+        if (pinnedThreshold >= 0) {
+            VirtualThreadPinningRecorder pinningRecorder = new VirtualThreadPinningRecorder();
+            try {
+                pinningRecorder.start(pinnedThreshold);
+                this.pinningRecorder = pinningRecorder;
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                log.warn(sm.getString("standardVirtualThreadExecutor.pinningRecorderFail", getName()), t);
+            }
+        }
         setState(LifecycleState.STARTING);
     }
 
     @Override
     protected void stopInternal() throws LifecycleException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
         executor = null;
+        if (pinningRecorder != null) {
+            pinningRecorder.stop();
+        }
         setState(LifecycleState.STOPPING);
     }
 
+    // Statistics from the executor
+    @Override
+    public int getActiveCount() {
+        VirtualThreadExecutor executor = this.executor;
+        return (executor != null) ? executor.getActiveCount() : 0;
+    }
+
+    public long getCompletedTaskCount() {
+        VirtualThreadExecutor executor = this.executor;
+        return (executor != null) ? executor.getCompletedTaskCount() : 0;
+    }
+
+    public int getLargestPoolSize() {
+        VirtualThreadExecutor executor = this.executor;
+        return (executor != null) ? executor.getLargestPoolSize() : 0;
+    }
+
+    @Override
+    public int getPoolSize() {
+        VirtualThreadExecutor executor = this.executor;
+        return (executor != null) ? executor.getPoolSize() : 0;
+    }
+
+    public int getQueueSize() {
+        VirtualThreadExecutor executor = this.executor;
+        return (executor != null) ? executor.getQueueSize() : -1;
+    }
+
+    public long getPinnedEventCount() {
+        VirtualThreadPinningRecorder pinningRecorder = this.pinningRecorder;
+        return (pinningRecorder != null) ? pinningRecorder.getEventCount() : 0;
+    }
+
+    /**
+     * @return the code locations where virtual threads have been pinned, most frequent first
+     */
+    public String[] getPinnedLocations() {
+        VirtualThreadPinningRecorder pinningRecorder = this.pinningRecorder;
+        return (pinningRecorder != null) ? pinningRecorder.getLocations() : new String[0];
+    }
+
+    public void resetPinnedStatistics() {
+        VirtualThreadPinningRecorder pinningRecorder = this.pinningRecorder;
+        if (pinningRecorder != null) {
+            pinningRecorder.reset();
+        }
+    }
+
+    @Override
+    public boolean resizePool(int corePoolSize, int maximumPoolSize) {
+        if (executor == null) {
+            return false;
+        }
+        setMaxThreads(maximumPoolSize);
+        return true;
+    }
+
+    @Override
+    public boolean resizeQueue(int capacity) {
+        return false;
+    }
+
     @Override
     protected String getDomainInternal() {
         // No way to navigate to Engine. Needs to have domain set.
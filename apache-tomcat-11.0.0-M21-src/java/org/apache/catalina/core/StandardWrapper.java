@@ -50,6 +50,7 @@ import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.Wrapper;
+import org.apache.catalina.util.RequestTimingStatistics;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.InstanceManager;
@@ -1042,6 +1043,37 @@ public class StandardWrapper extends ContainerBase implements ServletConfig, Wra
         return swValve.getErrorCount();
     }
 
+    /**
+     * Returns the request timings recorded for the wrapper. Timings are only recorded when enabled on the connector.
+     *
+     * @return the request timings or {@code null} if none have been recorded
+     */
+    public RequestTimingStatistics getRequestTimingStatistics() {
+        return swValve.getRequestTimings();
+    }
+
+    /**
+     * Returns a summary of the latency of each stage of request processing for the wrapper.
+     *
+     * @return one entry per stage for which timings have been recorded
+     */
+    public String[] getRequestTimings() {
+        RequestTimingStatistics requestTimings = swValve.getRequestTimings();
+        return requestTimings == null ? new String[0] : requestTimings.getSummary();
+    }
+
+    /**
+     * Record the latency of each stage of a completed request.
+     *
+     * @param request  The completed request
+     * @param response The response to the request
+     * @param endNanos The value of {@link System#nanoTime()} at the end of the request
+     */
+    public void recordRequestTimings(org.apache.coyote.Request request, org.apache.coyote.Response response,
+            long endNanos) {
+        swValve.recordRequestTimings(request, response, endNanos);
+    }
+
     /**
      * Increment the error count used for monitoring.
      */
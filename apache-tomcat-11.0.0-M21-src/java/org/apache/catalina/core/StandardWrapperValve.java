@@ -33,9 +33,11 @@ import org.apache.catalina.Globals;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
+import org.apache.catalina.util.RequestTimingStatistics;
 import org.apache.catalina.valves.ValveBase;
 import org.apache.coyote.BadRequestException;
 import org.apache.coyote.CloseNowException;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.InvalidParameterException;
@@ -69,6 +71,8 @@ final class StandardWrapperValve extends ValveBase {
     private volatile long minTime = Long.MAX_VALUE;
     private final LongAdder requestCount = new LongAdder();
     private final LongAdder errorCount = new LongAdder();
+    // Only created if request timings are recorded
+    private volatile RequestTimingStatistics requestTimings;
 
 
     // --------------------------------------------------------- Public Methods
@@ -145,6 +149,7 @@ final class StandardWrapperValve extends ValveBase {
         Container container = this.container;
         try {
             if ((servlet != null) && (filterChain != null)) {
+                request.getCoyoteRequest().recordTiming(RequestTimingPoint.FILTER_CHAIN);
                 // Swallow output if needed
                 if (context.getSwallowOutput()) {
                     try {
@@ -333,6 +338,28 @@ final class StandardWrapperValve extends ValveBase {
         errorCount.increment();
     }
 
+    /**
+     * @return the request timings recorded for the associated wrapper or {@code null} if none have been recorded
+     */
+    public RequestTimingStatistics getRequestTimings() {
+        return requestTimings;
+    }
+
+    public void recordRequestTimings(org.apache.coyote.Request request, org.apache.coyote.Response response,
+            long endNanos) {
+        RequestTimingStatistics requestTimings = this.requestTimings;
+        if (requestTimings == null) {
+            synchronized (this) {
+                requestTimings = this.requestTimings;
+                if (requestTimings == null) {
+                    requestTimings = new RequestTimingStatistics();
+                    this.requestTimings = requestTimings;
+                }
+            }
+        }
+        requestTimings.record(request, response, endNanos);
+    }
+
     @Override
     protected void initInternal() throws LifecycleException {
         // NOOP - Don't register this Valve in JMX
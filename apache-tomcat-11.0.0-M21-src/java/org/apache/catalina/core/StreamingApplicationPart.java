@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+import jakarta.servlet.http.Part;
+
+import org.apache.tomcat.util.http.fileupload.FileItemHeaders;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+
+/**
+ * A {@link Part} that is read directly from the request body as the request is processed rather than being stored in
+ * memory or in a temporary file first. The content of the part may only be read once, either via
+ * {@link #getInputStream()} or via {@link #write(String)}, and is only available until the next part is requested.
+ */
+public class StreamingApplicationPart implements Part {
+
+    private final FileItemStream itemStream;
+    private final File location;
+    private volatile long size = -1;
+
+    public StreamingApplicationPart(FileItemStream itemStream, File location) {
+        this.itemStream = itemStream;
+        this.location = location;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * There is no stored data to delete so this is a NO-OP.
+     */
+    @Override
+    public void delete() throws IOException {
+        // NO-OP
+    }
+
+    @Override
+    public String getContentType() {
+        return itemStream.getContentType();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        FileItemHeaders headers = itemStream.getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        return headers.getHeader(name);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        LinkedHashSet<String> headerNames = new LinkedHashSet<>();
+        FileItemHeaders headers = itemStream.getHeaders();
+        if (headers != null) {
+            Iterator<String> iter = headers.getHeaderNames();
+            while (iter.hasNext()) {
+                headerNames.add(iter.next());
+            }
+        }
+        return headerNames;
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        FileItemHeaders headers = itemStream.getHeaders();
+        if (headers != null) {
+            Iterator<String> iter = headers.getHeaders(name);
+            while (iter.hasNext()) {
+                result.add(iter.next());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The stream reads directly from the request body and may only be obtained once.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return itemStream.openStream();
+    }
+
+    @Override
+    public String getName() {
+        return itemStream.getFieldName();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The size is not known until the part has been written so this returns -1 until {@link #write(String)} has
+     * completed.
+     */
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The content is written directly from the request body to the file without using a temporary file.
+     */
+    @Override
+    public void write(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.isAbsolute()) {
+            file = new File(location, fileName);
+        }
+        try (InputStream is = itemStream.openStream()) {
+            size = Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public String getSubmittedFileName() {
+        return ApplicationPart.getSubmittedFileName(getHeader("Content-Disposition"));
+    }
+}
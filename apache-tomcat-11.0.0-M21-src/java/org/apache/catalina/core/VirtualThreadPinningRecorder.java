@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Uses JFR to record the locations in the code where virtual threads were pinned to their carrier thread while
+ * blocked.
+ * <p>
+ * JFR events are delivered asynchronously, typically once a second, by which time the virtual thread may have
+ * completed. Events are therefore grouped by the first frame in the stack trace of the pinned thread that is not part
+ * of the JRE, which is usually the application code that blocked while holding a monitor.
+ */
+class VirtualThreadPinningRecorder {
+
+    static final String EVENT_NAME = "jdk.VirtualThreadPinned";
+
+    /*
+     * Limits the memory used if a very large number of distinct locations is seen.
+     */
+    static final int MAX_LOCATIONS = 1000;
+    static final String OTHER_LOCATION = "other";
+
+    private final Map<String,Location> locations = new ConcurrentHashMap<>();
+    private final LongAdder eventCount = new LongAdder();
+    private RecordingStream recordingStream;
+
+
+    void start(long thresholdMillis) {
+        RecordingStream recordingStream = new RecordingStream();
+        recordingStream.enable(EVENT_NAME).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+        recordingStream.onEvent(EVENT_NAME, this::record);
+        recordingStream.startAsync();
+        this.recordingStream = recordingStream;
+    }
+
+
+    void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+            recordingStream = null;
+        }
+    }
+
+
+    void record(RecordedEvent event) {
+        record(getLocation(event.getStackTrace()), event.getDuration().toNanos());
+    }
+
+
+    void record(String location, long durationNanos) {
+        Location l = locations.get(location);
+        if (l == null) {
+            if (locations.size() >= MAX_LOCATIONS) {
+                location = OTHER_LOCATION;
+            }
+            l = locations.computeIfAbsent(location, k -> new Location());
+        }
+        l.count.increment();
+        l.nanos.add(durationNanos);
+        eventCount.increment();
+    }
+
+
+    long getEventCount() {
+        return eventCount.sum();
+    }
+
+
+    /**
+     * @return one entry per location, most frequent first, in the form
+     *             <code>&lt;count&gt; events, &lt;total duration&gt; ms: &lt;location&gt;</code>
+     */
+    String[] getLocations() {
+        // Take a snapshot as the counts may change while sorting
+        List<long[]> counts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String,Location> entry : locations.entrySet()) {
+            counts.add(new long[] { entry.getValue().count.sum(), entry.getValue().nanos.sum(), names.size() });
+            names.add(entry.getKey());
+        }
+        counts.sort((a, b) -> Long.compare(b[0], a[0]));
+        String[] result = new String[counts.size()];
+        for (int i = 0; i < result.length; i++) {
+            long[] count = counts.get(i);
+            result[i] = count[0] + " events, " + count[1] / 1_000_000 + " ms: " + names.get((int) count[2]);
+        }
+        return result;
+    }
+
+
+    void reset() {
+        locations.clear();
+        eventCount.reset();
+    }
+
+
+    private static String getLocation(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return OTHER_LOCATION;
+        }
+        RecordedFrame first = null;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (!frame.isJavaFrame()) {
+                continue;
+            }
+            if (first == null) {
+                first = frame;
+            }
+            String className = frame.getMethod().getType().getName();
+            if (!className.startsWith("java.") && !className.startsWith("jdk.") && !className.startsWith("sun.")) {
+                return toString(frame);
+            }
+        }
+        return first == null ? OTHER_LOCATION : toString(first);
+    }
+
+
+    private static String toString(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" +
+                frame.getLineNumber();
+    }
+
+
+    private static class Location {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -28,9 +28,11 @@ import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.apache.catalina.util.RateLimitCounter;
 import org.apache.catalina.util.TimeBucketCounter;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.res.StringManager;
 import org.apache.tomcat.util.threads.ScheduledThreadPoolExecutor;
 
@@ -53,6 +55,12 @@ import org.apache.tomcat.util.threads.ScheduledThreadPoolExecutor;
  * values of 109 Requests per 65 seconds.
  * </p>
  * <p>
+ * The requests are counted by a {@link RateLimitCounter}. The default, {@link TimeBucketCounter}, counts exactly but
+ * uses memory in proportion to the number of distinct IP addresses seen in a time bucket.
+ * {@link org.apache.catalina.util.SlidingWindowCounter} uses a fixed amount of memory at the cost of occasionally
+ * overestimating the count.
+ * </p>
+ * <p>
  * It is common to set up different restrictions for different URIs. For example, a login page or authentication script
  * is typically expected to get far less requests than the rest of the application, so you can add a filter definition
  * that would allow only 5 requests per 15 seconds and map those URIs to it.
@@ -130,7 +138,12 @@ public class RateLimitFilter extends GenericFilter {
      */
     public static final String PARAM_STATUS_MESSAGE = "statusMessage";
 
-    transient TimeBucketCounter bucketCounter;
+    /**
+     * init-param to set the class name of the {@link RateLimitCounter} implementation
+     */
+    public static final String PARAM_COUNTER_CLASS_NAME = "counterClassName";
+
+    transient RateLimitCounter bucketCounter;
 
     private int actualRequests;
 
@@ -144,6 +157,8 @@ public class RateLimitFilter extends GenericFilter {
 
     private String statusMessage = DEFAULT_STATUS_MESSAGE;
 
+    private String counterClassName = TimeBucketCounter.class.getName();
+
     private transient Log log = LogFactory.getLog(RateLimitFilter.class);
 
     private static final StringManager sm = StringManager.getManager(RateLimitFilter.class);
@@ -193,12 +208,27 @@ public class RateLimitFilter extends GenericFilter {
             statusMessage = param;
         }
 
+        param = config.getInitParameter(PARAM_COUNTER_CLASS_NAME);
+        if (param != null) {
+            counterClassName = param;
+        }
+
         ScheduledExecutorService executorService = (ScheduledExecutorService) getServletContext()
                 .getAttribute(ScheduledThreadPoolExecutor.class.getName());
         if (executorService == null) {
             executorService = new java.util.concurrent.ScheduledThreadPoolExecutor(1);
         }
-        bucketCounter = new TimeBucketCounter(bucketDuration, executorService);
+        if (TimeBucketCounter.class.getName().equals(counterClassName)) {
+            bucketCounter = new TimeBucketCounter();
+        } else {
+            try {
+                bucketCounter = (RateLimitCounter) Class.forName(counterClassName).getConstructor().newInstance();
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                throw new ServletException(sm.getString("rateLimitFilter.counterCreateFail", counterClassName), t);
+            }
+        }
+        bucketCounter.init(bucketDuration, executorService);
 
         actualRequests = (int) Math.round(bucketCounter.getRatio() * bucketRequests);
 
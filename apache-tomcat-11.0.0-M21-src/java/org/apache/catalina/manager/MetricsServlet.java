@@ -0,0 +1,522 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.manager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import javax.management.ObjectName;
+import javax.naming.NamingException;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.ContainerServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.Engine;
+import org.apache.catalina.Executor;
+import org.apache.catalina.Manager;
+import org.apache.catalina.Server;
+import org.apache.catalina.Service;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardThreadExecutor;
+import org.apache.catalina.webresources.Cache;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.RequestGroupInfo;
+import org.apache.tomcat.dbcp.dbcp2.DataSourceMXBean;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+import org.apache.tomcat.util.threads.ResizableExecutor;
+import org.apache.tomcat.util.threads.TaskQueue;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+
+/**
+ * This servlet renders connector, thread pool, session manager, resource cache and JDBC connection pool metrics in the
+ * OpenMetrics text format so that they may be scraped by Prometheus and compatible tools.
+ * <p>
+ * Unlike the JMX Proxy Servlet, the metrics are read directly from the components rather than via JMX. The metric
+ * families are defined once and no reflection is used, so a scrape of a large instance is fast and creates little
+ * garbage. Only JDBC connection pools that are singleton <code>javax.sql.DataSource</code> resources provided by the
+ * Tomcat DBCP implementation are included.
+ */
+public class MetricsServlet extends HttpServlet implements ContainerServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The content type of the response.
+     */
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String DATA_SOURCE_TYPE = "javax.sql.DataSource";
+
+
+    private static final Metric<ConnectorSource> CONNECTOR_REQUESTS = new Metric<>("tomcat_connector_requests",
+            Type.COUNTER, null, "Number of requests processed", s -> s.global.getRequestCount());
+    private static final Metric<ConnectorSource> CONNECTOR_ERRORS = new Metric<>("tomcat_connector_errors",
+            Type.COUNTER, null, "Number of requests that resulted in an error", s -> s.global.getErrorCount());
+    private static final Metric<ConnectorSource> CONNECTOR_PROCESSING = new Metric<>(
+            "tomcat_connector_processing_seconds", Type.COUNTER, "seconds", "Total time spent processing requests",
+            s -> s.global.getProcessingTime() / 1000.0);
+    private static final Metric<ConnectorSource> CONNECTOR_MAX_PROCESSING = new Metric<>(
+            "tomcat_connector_max_processing_seconds", Type.GAUGE, "seconds",
+            "Longest time spent processing a single request", s -> s.global.getMaxTime() / 1000.0);
+    private static final Metric<ConnectorSource> CONNECTOR_RECEIVED = new Metric<>("tomcat_connector_received_bytes",
+            Type.COUNTER, "bytes", "Request body bytes received", s -> s.global.getBytesReceived());
+    private static final Metric<ConnectorSource> CONNECTOR_SENT = new Metric<>("tomcat_connector_sent_bytes",
+            Type.COUNTER, "bytes", "Response body bytes sent", s -> s.global.getBytesSent());
+    private static final Metric<ConnectorSource> CONNECTOR_CONNECTIONS = new Metric<>("tomcat_connector_connections",
+            Type.GAUGE, null, "Current number of connections", s -> s.protocol.getConnectionCount());
+    private static final Metric<ConnectorSource> CONNECTOR_MAX_CONNECTIONS = new Metric<>(
+            "tomcat_connector_max_connections", Type.GAUGE, null, "Maximum number of connections",
+            s -> s.protocol.getMaxConnections());
+
+    @SuppressWarnings("unchecked")
+    private static final Metric<ConnectorSource>[] CONNECTOR_METRICS = new Metric[] { CONNECTOR_REQUESTS,
+            CONNECTOR_ERRORS, CONNECTOR_PROCESSING, CONNECTOR_MAX_PROCESSING, CONNECTOR_RECEIVED, CONNECTOR_SENT,
+            CONNECTOR_CONNECTIONS, CONNECTOR_MAX_CONNECTIONS };
+
+
+    private static final Metric<ThreadPoolSource> POOL_THREADS = new Metric<>("tomcat_threadpool_threads", Type.GAUGE,
+            null, "Current number of threads", ThreadPoolSource::getPoolSize);
+    private static final Metric<ThreadPoolSource> POOL_BUSY_THREADS = new Metric<>("tomcat_threadpool_busy_threads",
+            Type.GAUGE, null, "Current number of threads processing a task", ThreadPoolSource::getActiveCount);
+    private static final Metric<ThreadPoolSource> POOL_MAX_THREADS = new Metric<>("tomcat_threadpool_max_threads",
+            Type.GAUGE, null, "Maximum number of threads", ThreadPoolSource::getMaxThreads);
+    private static final Metric<ThreadPoolSource> POOL_QUEUE_SIZE = new Metric<>("tomcat_threadpool_queue_size",
+            Type.GAUGE, null, "Current number of tasks waiting for a thread", ThreadPoolSource::getQueueSize);
+    private static final Metric<ThreadPoolSource> POOL_COMPLETED = new Metric<>("tomcat_threadpool_completed_tasks",
+            Type.COUNTER, null, "Number of tasks completed", ThreadPoolSource::getCompletedTaskCount);
+    private static final Metric<ThreadPoolSource> POOL_DROPPED = new Metric<>("tomcat_threadpool_dropped_tasks",
+            Type.COUNTER, null, "Number of tasks dropped after waiting too long for a thread",
+            ThreadPoolSource::getDroppedTaskCount);
+
+    @SuppressWarnings("unchecked")
+    private static final Metric<ThreadPoolSource>[] THREAD_POOL_METRICS = new Metric[] { POOL_THREADS,
+            POOL_BUSY_THREADS, POOL_MAX_THREADS, POOL_QUEUE_SIZE, POOL_COMPLETED, POOL_DROPPED };
+
+
+    private static final Metric<ContextSource> SESSIONS_ACTIVE = new Metric<>("tomcat_session_active_sessions",
+            Type.GAUGE, null, "Current number of active sessions", s -> s.manager.getActiveSessions());
+    private static final Metric<ContextSource> SESSIONS_MAX_ACTIVE = new Metric<>(
+            "tomcat_session_max_active_sessions", Type.GAUGE, null, "Maximum number of active sessions at any one time",
+            s -> s.manager.getMaxActive());
+    private static final Metric<ContextSource> SESSIONS_CREATED = new Metric<>("tomcat_session_created_sessions",
+            Type.COUNTER, null, "Number of sessions created", s -> s.manager.getSessionCounter());
+    private static final Metric<ContextSource> SESSIONS_EXPIRED = new Metric<>("tomcat_session_expired_sessions",
+            Type.COUNTER, null, "Number of sessions that expired", s -> s.manager.getExpiredSessions());
+    private static final Metric<ContextSource> SESSIONS_REJECTED = new Metric<>("tomcat_session_rejected_sessions",
+            Type.COUNTER, null, "Number of sessions not created because maxActiveSessions was reached",
+            s -> s.manager.getRejectedSessions());
+
+    @SuppressWarnings("unchecked")
+    private static final Metric<ContextSource>[] SESSION_METRICS = new Metric[] { SESSIONS_ACTIVE, SESSIONS_MAX_ACTIVE,
+            SESSIONS_CREATED, SESSIONS_EXPIRED, SESSIONS_REJECTED };
+
+
+    private static final Metric<ContextSource> CACHE_LOOKUPS = new Metric<>("tomcat_cache_lookups", Type.COUNTER, null,
+            "Number of static resource cache lookups", s -> s.cache.getLookupCount());
+    private static final Metric<ContextSource> CACHE_HITS = new Metric<>("tomcat_cache_hits", Type.COUNTER, null,
+            "Number of static resource cache lookups that found the resource in the cache",
+            s -> s.cache.getHitCount());
+    private static final Metric<ContextSource> CACHE_SIZE = new Metric<>("tomcat_cache_size_bytes", Type.GAUGE,
+            "bytes", "Current size of the static resource cache", s -> s.cache.getSize() * 1024.0);
+    private static final Metric<ContextSource> CACHE_MAX_SIZE = new Metric<>("tomcat_cache_max_size_bytes",
+            Type.GAUGE, "bytes", "Maximum size of the static resource cache", s -> s.cache.getMaxSize() * 1024.0);
+
+    @SuppressWarnings("unchecked")
+    private static final Metric<ContextSource>[] CACHE_METRICS = new Metric[] { CACHE_LOOKUPS, CACHE_HITS, CACHE_SIZE,
+            CACHE_MAX_SIZE };
+
+
+    private static final Metric<DataSourceSource> JDBC_ACTIVE = new Metric<>("tomcat_jdbc_active_connections",
+            Type.GAUGE, null, "Current number of connections in use", s -> s.dataSource.getNumActive());
+    private static final Metric<DataSourceSource> JDBC_IDLE = new Metric<>("tomcat_jdbc_idle_connections",
+            Type.GAUGE, null, "Current number of idle connections", s -> s.dataSource.getNumIdle());
+    private static final Metric<DataSourceSource> JDBC_MAX = new Metric<>("tomcat_jdbc_max_connections", Type.GAUGE,
+            null, "Maximum number of connections", s -> s.dataSource.getMaxTotal());
+
+    @SuppressWarnings("unchecked")
+    private static final Metric<DataSourceSource>[] JDBC_METRICS = new Metric[] { JDBC_ACTIVE, JDBC_IDLE, JDBC_MAX };
+
+
+    // ----------------------------------------------------- Instance Variables
+
+    /**
+     * The associated wrapper.
+     */
+    protected transient Wrapper wrapper = null;
+
+    /**
+     * The Server that contains this web application.
+     */
+    protected transient Server server = null;
+
+
+    // ----------------------------------------------- ContainerServlet Methods
+
+    @Override
+    public Wrapper getWrapper() {
+        return wrapper;
+    }
+
+
+    @Override
+    public void setWrapper(Wrapper wrapper) {
+        this.wrapper = wrapper;
+        if (wrapper == null) {
+            server = null;
+        } else {
+            Engine engine = (Engine) wrapper.getParent().getParent().getParent();
+            server = engine.getService().getServer();
+        }
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+        if (server == null) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+
+        List<ConnectorSource> connectors = new ArrayList<>();
+        List<ThreadPoolSource> threadPools = new ArrayList<>();
+        List<ContextSource> sessions = new ArrayList<>();
+        List<ContextSource> caches = new ArrayList<>();
+        List<DataSourceSource> dataSources = new ArrayList<>();
+        collect(connectors, threadPools, sessions, caches, dataSources);
+
+        StringBuilder sb = new StringBuilder(8192);
+        write(sb, CONNECTOR_METRICS, connectors);
+        write(sb, THREAD_POOL_METRICS, threadPools);
+        write(sb, SESSION_METRICS, sessions);
+        write(sb, CACHE_METRICS, caches);
+        write(sb, JDBC_METRICS, dataSources);
+        sb.append("# EOF\n");
+
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.getWriter().append(sb);
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+    private void collect(List<ConnectorSource> connectors, List<ThreadPoolSource> threadPools,
+            List<ContextSource> sessions, List<ContextSource> caches, List<DataSourceSource> dataSources) {
+
+        for (Service service : server.findServices()) {
+            String serviceLabel = label(null, "service", service.getName());
+
+            for (Executor executor : service.findExecutors()) {
+                threadPools.add(new ThreadPoolSource(label(serviceLabel, "pool", executor.getName()), executor));
+            }
+
+            for (Connector connector : service.findConnectors()) {
+                ProtocolHandler protocolHandler = connector.getProtocolHandler();
+                if (!(protocolHandler instanceof AbstractProtocol)) {
+                    continue;
+                }
+                AbstractProtocol<?> protocol = (AbstractProtocol<?>) protocolHandler;
+                if (protocol.getHandler() == null) {
+                    continue;
+                }
+                String name = ObjectName.unquote(protocol.getName());
+                connectors.add(new ConnectorSource(label(serviceLabel, "connector", name), protocol,
+                        (RequestGroupInfo) protocol.getHandler().getGlobal()));
+                // Executors shared via the Service have already been added
+                java.util.concurrent.Executor executor = protocol.getExecutor();
+                if (executor != null && !(executor instanceof Executor)) {
+                    threadPools.add(new ThreadPoolSource(label(serviceLabel, "pool", name), executor));
+                }
+            }
+
+            Engine engine = service.getContainer();
+            if (engine == null) {
+                continue;
+            }
+            for (Container host : engine.findChildren()) {
+                String hostLabel = label(serviceLabel, "host", host.getName());
+                for (Container child : host.findChildren()) {
+                    Context context = (Context) child;
+                    if (!context.getState().isAvailable()) {
+                        continue;
+                    }
+                    String path = context.getPath();
+                    String contextLabel = label(hostLabel, "context", path.isEmpty() ? "/" : path);
+                    Manager manager = context.getManager();
+                    if (manager != null) {
+                        sessions.add(new ContextSource(contextLabel, manager, null));
+                    }
+                    if (context.getResources() instanceof StandardRoot) {
+                        caches.add(new ContextSource(contextLabel, null,
+                                ((StandardRoot) context.getResources()).getCache()));
+                    }
+                    if (context instanceof StandardContext &&
+                            ((StandardContext) context).getNamingContextListener() != null) {
+                        collectDataSources(dataSources, contextLabel, context.getNamingResources().findResources(),
+                                ((StandardContext) context).getNamingContextListener().getEnvContext());
+                    }
+                }
+            }
+        }
+
+        if (server.getGlobalNamingResources() != null && server.getGlobalNamingContext() != null) {
+            collectDataSources(dataSources, label(null, "scope", "global"),
+                    server.getGlobalNamingResources().findResources(), server.getGlobalNamingContext());
+        }
+    }
+
+
+    private static void collectDataSources(List<DataSourceSource> dataSources, String parentLabel,
+            ContextResource[] resources, javax.naming.Context namingContext) {
+        for (ContextResource resource : resources) {
+            /*
+             * Only singletons are looked up as other resources would create a new instance for each lookup. Singleton
+             * DataSources will already have been looked up when the naming context was created so that they could be
+             * registered with JMX.
+             */
+            if (!DATA_SOURCE_TYPE.equals(resource.getType()) || !resource.getSingleton()) {
+                continue;
+            }
+            Object dataSource;
+            try {
+                dataSource = namingContext.lookup(resource.getName());
+            } catch (NamingException e) {
+                continue;
+            }
+            if (dataSource instanceof DataSourceMXBean) {
+                dataSources.add(new DataSourceSource(label(parentLabel, "name", resource.getName()),
+                        (DataSourceMXBean) dataSource));
+            }
+        }
+    }
+
+
+    private static <T extends Source> void write(StringBuilder sb, Metric<T>[] metrics, List<T> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+        for (Metric<T> metric : metrics) {
+            sb.append(metric.header);
+            for (T source : sources) {
+                double value = metric.value.applyAsDouble(source);
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                sb.append(metric.sampleName).append('{').append(source.labels).append("} ");
+                if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                    sb.append((long) value);
+                } else {
+                    sb.append(value);
+                }
+                sb.append('\n');
+            }
+        }
+    }
+
+
+    /*
+     * Appends a label to a set of labels, escaping the value as required by the OpenMetrics text format.
+     */
+    static String label(String labels, String name, String value) {
+        StringBuilder sb = new StringBuilder();
+        if (labels != null) {
+            sb.append(labels).append(',');
+        }
+        sb.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+
+    // ---------------------------------------------------------- Inner classes
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge");
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+    }
+
+
+    /*
+     * A metric family. The metadata is rendered once when the family is created.
+     */
+    private static final class Metric<T> {
+
+        private final String header;
+        private final String sampleName;
+        private final ToDoubleFunction<T> value;
+
+        Metric(String name, Type type, String unit, String help, ToDoubleFunction<T> value) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("# TYPE ").append(name).append(' ').append(type.name).append('\n');
+            if (unit != null) {
+                sb.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+            }
+            sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            header = sb.toString();
+            sampleName = type == Type.COUNTER ? name + "_total" : name;
+            this.value = value;
+        }
+    }
+
+
+    private abstract static class Source {
+
+        final String labels;
+
+        Source(String labels) {
+            this.labels = labels;
+        }
+    }
+
+
+    private static final class ConnectorSource extends Source {
+
+        private final AbstractProtocol<?> protocol;
+        private final RequestGroupInfo global;
+
+        ConnectorSource(String labels, AbstractProtocol<?> protocol, RequestGroupInfo global) {
+            super(labels);
+            this.protocol = protocol;
+            this.global = global;
+        }
+    }
+
+
+    private static final class ThreadPoolSource extends Source {
+
+        private final java.util.concurrent.Executor executor;
+
+        ThreadPoolSource(String labels, java.util.concurrent.Executor executor) {
+            super(labels);
+            this.executor = executor;
+        }
+
+        double getPoolSize() {
+            if (executor instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executor).getPoolSize();
+            } else if (executor instanceof ResizableExecutor) {
+                return ((ResizableExecutor) executor).getPoolSize();
+            }
+            return Double.NaN;
+        }
+
+        double getActiveCount() {
+            if (executor instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executor).getActiveCount();
+            } else if (executor instanceof ResizableExecutor) {
+                return ((ResizableExecutor) executor).getActiveCount();
+            }
+            return Double.NaN;
+        }
+
+        double getMaxThreads() {
+            if (executor instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+            } else if (executor instanceof ResizableExecutor) {
+                return ((ResizableExecutor) executor).getMaxThreads();
+            }
+            return Double.NaN;
+        }
+
+        double getQueueSize() {
+            if (executor instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executor).getQueue().size();
+            } else if (executor instanceof StandardThreadExecutor) {
+                return ((StandardThreadExecutor) executor).getQueueSize();
+            }
+            return Double.NaN;
+        }
+
+        double getCompletedTaskCount() {
+            if (executor instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executor).getCompletedTaskCount();
+            } else if (executor instanceof StandardThreadExecutor) {
+                return ((StandardThreadExecutor) executor).getCompletedTaskCount();
+            }
+            return Double.NaN;
+        }
+
+        double getDroppedTaskCount() {
+            if (executor instanceof ThreadPoolExecutor &&
+                    ((ThreadPoolExecutor) executor).getQueue() instanceof TaskQueue) {
+                return ((TaskQueue) ((ThreadPoolExecutor) executor).getQueue()).getDroppedCount();
+            } else if (executor instanceof StandardThreadExecutor) {
+                return ((StandardThreadExecutor) executor).getDroppedTaskCount();
+            }
+            return Double.NaN;
+        }
+    }
+
+
+    private static final class ContextSource extends Source {
+
+        private final Manager manager;
+        private final Cache cache;
+
+        ContextSource(String labels, Manager manager, Cache cache) {
+            super(labels);
+            this.manager = manager;
+            this.cache = cache;
+        }
+    }
+
+
+    private static final class DataSourceSource extends Source {
+
+        private final DataSourceMXBean dataSource;
+
+        DataSourceSource(String labels, DataSourceMXBean dataSource) {
+            super(labels);
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -41,6 +41,10 @@ import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import javax.xml.transform.Source;
@@ -72,6 +76,7 @@ import org.apache.catalina.util.IOTools;
 import org.apache.catalina.util.ServerInfo;
 import org.apache.catalina.util.URLEncoder;
 import org.apache.catalina.webresources.CachedResource;
+import org.apache.coyote.CompressionConfig;
 import org.apache.tomcat.util.buf.B2CConverter;
 import org.apache.tomcat.util.http.ResponseUtil;
 import org.apache.tomcat.util.http.parser.ContentRange;
@@ -79,6 +84,7 @@ import org.apache.tomcat.util.http.parser.EntityTag;
 import org.apache.tomcat.util.http.parser.Ranges;
 import org.apache.tomcat.util.res.StringManager;
 import org.apache.tomcat.util.security.Escape;
+import org.apache.tomcat.util.threads.TaskThreadFactory;
 
 
 /**
@@ -259,12 +265,28 @@ public class DefaultServlet extends HttpServlet {
      */
     private boolean allowPartialPut = true;
 
+    /**
+     * Generates compressed variants of resources that do not have a precompressed version. {@code null} if compressed
+     * variants are not generated.
+     */
+    private transient PrecompressedResourceGenerator precompressedResourceGenerator = null;
+
+    /**
+     * Executor created by this servlet to generate compressed variants. Compression is CPU intensive so it uses a
+     * single thread and a bounded queue rather than the shared utility executor.
+     */
+    private transient ExecutorService precompressedExecutor = null;
+
 
     // --------------------------------------------------------- Public Methods
 
     @Override
     public void destroy() {
-        // NOOP
+        if (precompressedExecutor != null) {
+            precompressedExecutor.shutdownNow();
+            precompressedExecutor = null;
+        }
+        precompressedResourceGenerator = null;
     }
 
 
@@ -393,6 +415,57 @@ public class DefaultServlet extends HttpServlet {
         if (getServletConfig().getInitParameter("allowPartialPut") != null) {
             allowPartialPut = Boolean.parseBoolean(getServletConfig().getInitParameter("allowPartialPut"));
         }
+
+        if (compressionFormats.length > 0 &&
+                Boolean.parseBoolean(getServletConfig().getInitParameter("generatePrecompressed"))) {
+            initPrecompressedResourceGenerator();
+        }
+    }
+
+    private void initPrecompressedResourceGenerator() {
+        File tempDir = (File) getServletContext().getAttribute(ServletContext.TEMPDIR);
+        if (tempDir == null) {
+            log(sm.getString("defaultServlet.generatePrecompressedNoTempDir"));
+            return;
+        }
+
+        int minSize = 2048;
+        if (getServletConfig().getInitParameter("generatePrecompressedMinSize") != null) {
+            minSize = Integer.parseInt(getServletConfig().getInitParameter("generatePrecompressedMinSize"));
+        }
+
+        String mimeTypes = getServletConfig().getInitParameter("generatePrecompressedMimeTypes");
+        if (mimeTypes == null) {
+            // Same default as the connector
+            mimeTypes = new CompressionConfig().getCompressibleMimeType();
+        }
+        List<String> mimeTypeList = new ArrayList<>();
+        for (String mimeType : mimeTypes.split(",")) {
+            mimeType = mimeType.trim();
+            if (mimeType.length() > 0) {
+                mimeTypeList.add(mimeType);
+            }
+        }
+
+        int maxQueueSize = 100;
+        if (getServletConfig().getInitParameter("generatePrecompressedMaxQueueSize") != null) {
+            maxQueueSize = Integer.parseInt(getServletConfig().getInitParameter("generatePrecompressedMaxQueueSize"));
+        }
+
+        // Requests for variants that do not fit in the queue are rejected and retried by later requests
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(maxQueueSize),
+                new TaskThreadFactory(getServletName() + "-precompressed-", true, Thread.NORM_PRIORITY));
+
+        PrecompressedResourceGenerator generator = new PrecompressedResourceGenerator(resources,
+                new File(tempDir, "precompressed"), executor, compressionFormats, minSize,
+                mimeTypeList.toArray(new String[0]));
+        if (generator.isEnabled()) {
+            precompressedResourceGenerator = generator;
+            precompressedExecutor = executor;
+        } else {
+            executor.shutdown();
+        }
     }
 
     private CompressionFormat[] parseCompressionFormats(String precompressed, String gzip) {
@@ -850,7 +923,7 @@ public class DefaultServlet extends HttpServlet {
         // Serve a precompressed version of the file if present
         boolean usingPrecompressedVersion = false;
         if (compressionFormats.length > 0 && !included && resource.isFile() && !pathEndsWithCompressedExtension(path)) {
-            List<PrecompressedResource> precompressedResources = getAvailablePrecompressedResources(path);
+            List<PrecompressedResource> precompressedResources = getAvailablePrecompressedResources(path, resource);
             if (!precompressedResources.isEmpty()) {
                 ResponseUtil.addVaryFieldName(response, "accept-encoding");
                 PrecompressedResource bestResource = getBestPrecompressedResource(request, precompressedResources);
@@ -1269,12 +1342,18 @@ public class DefaultServlet extends HttpServlet {
         return false;
     }
 
-    private List<PrecompressedResource> getAvailablePrecompressedResources(String path) {
+    private List<PrecompressedResource> getAvailablePrecompressedResources(String path, WebResource resource) {
         List<PrecompressedResource> ret = new ArrayList<>(compressionFormats.length);
         for (CompressionFormat format : compressionFormats) {
             WebResource precompressedResource = resources.getResource(path + format.extension);
             if (precompressedResource.exists() && precompressedResource.isFile()) {
                 ret.add(new PrecompressedResource(precompressedResource, format));
+            } else if (precompressedResourceGenerator != null) {
+                // Use a generated variant instead if one is available
+                precompressedResource = precompressedResourceGenerator.getVariant(resource, format);
+                if (precompressedResource != null) {
+                    ret.add(new PrecompressedResource(precompressedResource, format));
+                }
             }
         }
         return ret;
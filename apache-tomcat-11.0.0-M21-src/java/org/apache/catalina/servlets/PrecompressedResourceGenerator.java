@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.servlets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.servlets.DefaultServlet.CompressionFormat;
+import org.apache.catalina.webresources.FileResource;
+import org.apache.coyote.CompressionConfig;
+import org.apache.coyote.CompressionEncoder;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Generates compressed variants of static resources in a work directory so that they can be served by the
+ * {@link DefaultServlet} in the same way as precompressed resources that are provided by the web application.
+ * <p>
+ * A variant is generated in the background the first time it is requested and the resource is served uncompressed
+ * until the variant is available. The last modified time of a generated variant is set to the last modified time of
+ * the resource it was generated from. If the two differ, the variant is stale, it is ignored and a new variant is
+ * generated. If the compressed data is not smaller than the resource, an empty variant is stored so that the resource
+ * is not compressed again until it is modified.
+ */
+class PrecompressedResourceGenerator {
+
+    private static final Log log = LogFactory.getLog(PrecompressedResourceGenerator.class);
+    private static final StringManager sm = StringManager.getManager(PrecompressedResourceGenerator.class);
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final WebResourceRoot resources;
+    private final File workDir;
+    private final Executor executor;
+    private final int minSize;
+    private final String[] mimeTypes;
+    private final Map<String,CompressionEncoder> encoders = new ConcurrentHashMap<>();
+
+    // Variants that are currently being generated
+    private final Map<String,Boolean> pending = new ConcurrentHashMap<>();
+
+
+    PrecompressedResourceGenerator(WebResourceRoot resources, File workDir, Executor executor,
+            CompressionFormat[] formats, int minSize, String[] mimeTypes) {
+        this.resources = resources;
+        this.workDir = workDir;
+        this.executor = executor;
+        this.minSize = minSize;
+        this.mimeTypes = mimeTypes;
+        for (CompressionFormat format : formats) {
+            CompressionEncoder encoder = CompressionConfig.getTomcatEncoder(format.encoding);
+            if (encoder != null) {
+                encoders.put(format.encoding, encoder);
+            }
+        }
+    }
+
+
+    boolean isEnabled() {
+        return !encoders.isEmpty();
+    }
+
+
+    /**
+     * Obtain the generated variant of the given resource for the given compression format. If a current variant is
+     * not available and one could be generated, generation is started in the background.
+     *
+     * @param resource The resource to compress
+     * @param format   The compression format
+     *
+     * @return The generated variant or {@code null} if no current variant is available
+     */
+    WebResource getVariant(WebResource resource, CompressionFormat format) {
+        CompressionEncoder encoder = encoders.get(format.encoding);
+        if (encoder == null || resource.getContentLength() < minSize || !isCompressible(resource.getMimeType())) {
+            return null;
+        }
+
+        String path = resource.getWebappPath() + format.extension;
+        long lastModified = resource.getLastModified();
+        File variant = new File(workDir, path);
+        if (variant.isFile() && variant.lastModified() == lastModified) {
+            if (variant.length() == 0) {
+                // Compression does not make this resource smaller
+                return null;
+            }
+            return new FileResource(resources, path, variant, true, null);
+        }
+
+        if (pending.putIfAbsent(path, Boolean.TRUE) == null) {
+            try {
+                executor.execute(() -> generate(resource, encoder, path, variant, lastModified));
+            } catch (RejectedExecutionException e) {
+                pending.remove(path);
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("precompressedResourceGenerator.rejected", path), e);
+                }
+            }
+        }
+        return null;
+    }
+
+
+    private boolean isCompressible(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        for (String compressible : mimeTypes) {
+            if (mimeType.startsWith(compressible)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private void generate(WebResource resource, CompressionEncoder encoder, String path, File variant,
+            long lastModified) {
+        Path tmp = null;
+        try {
+            File dir = variant.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException(sm.getString("precompressedResourceGenerator.mkdirFail", dir));
+            }
+            tmp = Files.createTempFile(dir.toPath(), variant.getName(), ".tmp");
+
+            long length = 0;
+            try (InputStream is = resource.getInputStream()) {
+                if (is == null) {
+                    return;
+                }
+                try (OutputStream os = encoder.createOutputStream(Files.newOutputStream(tmp))) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int n;
+                    while ((n = is.read(buffer)) > 0) {
+                        os.write(buffer, 0, n);
+                        length += n;
+                    }
+                }
+            }
+
+            if (Files.size(tmp) >= length) {
+                // Serving this variant would make the response larger
+                Files.write(tmp, new byte[0]);
+            }
+
+            if (!tmp.toFile().setLastModified(lastModified)) {
+                throw new IOException(sm.getString("precompressedResourceGenerator.lastModifiedFail", tmp));
+            }
+            Files.move(tmp, variant.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            if (log.isDebugEnabled()) {
+                if (variant.length() == 0) {
+                    log.debug(sm.getString("precompressedResourceGenerator.notSmaller", path, Long.valueOf(length)));
+                } else {
+                    log.debug(sm.getString("precompressedResourceGenerator.generated", path, Long.valueOf(length),
+                            Long.valueOf(variant.length())));
+                }
+            }
+        } catch (IOException e) {
+            log.warn(sm.getString("precompressedResourceGenerator.generateFail", path), e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+            pending.remove(path);
+        }
+    }
+}
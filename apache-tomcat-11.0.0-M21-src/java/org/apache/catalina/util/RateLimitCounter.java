@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Counts the requests made by a client, typically identified by IP address, within a time window. Used by
+ * {@link org.apache.catalina.filters.RateLimitFilter}.
+ * <p>
+ * Implementations must be thread safe and must have a public no argument constructor.
+ */
+public interface RateLimitCounter {
+
+    /**
+     * Initialise the counter. This is called once, before any other method.
+     *
+     * @param bucketDuration  duration in seconds of the time window, e.g. for 1 minute pass 60
+     * @param executorService the executor service which may be used to run any periodic maintenance
+     */
+    void init(int bucketDuration, ScheduledExecutorService executorService);
+
+    /**
+     * Increments the counter for the passed identifier in the current time window and returns the new value.
+     *
+     * @param identifier an identifier for which we want to maintain count, e.g. IP Address
+     *
+     * @return the count within the current time window
+     */
+    int increment(String identifier);
+
+    /**
+     * The actual duration may differ from the configured duration to allow a more efficient implementation.
+     *
+     * @return the actual duration of the time window in milliseconds
+     */
+    int getActualDuration();
+
+    /**
+     * @return the ratio between the actual duration and the configured duration. The configured number of requests
+     *             should be multiplied by the same ratio in order to compensate for any added time.
+     */
+    double getRatio();
+
+    /**
+     * When we want to test a full time window we need to sleep until the next window starts.
+     *
+     * @return the number of milliseconds until the next time window
+     */
+    long getMillisUntilNextBucket();
+
+    /**
+     * Release any resources, such as periodic maintenance tasks, used by the counter.
+     */
+    void destroy();
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.coyote.Request;
+import org.apache.coyote.RequestTimingPoint;
+import org.apache.coyote.Response;
+
+/**
+ * Latency histograms, in microseconds, for each stage of the processing of a request. The stages are derived from the
+ * times recorded by {@link Request#recordTiming(RequestTimingPoint)} when request timings are enabled on the
+ * connector.
+ */
+public class RequestTimingStatistics {
+
+    /**
+     * The stages of request processing for which latencies are recorded. Each stage is the time between two points in
+     * the processing of a request.
+     */
+    public enum Stage {
+
+        /**
+         * Reading and parsing the request line and headers.
+         */
+        PARSE("parse", Stage.START, RequestTimingPoint.PARSED.ordinal()),
+
+        /**
+         * From the end of parsing to the request being passed to the container. Includes time waiting for a thread
+         * and, for HTTP/2, time waiting for the stream to be processed.
+         */
+        DISPATCH("dispatch", RequestTimingPoint.PARSED.ordinal(), RequestTimingPoint.ADAPTER.ordinal()),
+
+        /**
+         * Mapping the request to a Host, Context and Wrapper.
+         */
+        MAPPING("mapping", RequestTimingPoint.ADAPTER.ordinal(), RequestTimingPoint.ENGINE.ordinal()),
+
+        /**
+         * The Valves configured on the Engine.
+         */
+        ENGINE("engine", RequestTimingPoint.ENGINE.ordinal(), RequestTimingPoint.HOST.ordinal()),
+
+        /**
+         * The Valves configured on the Host.
+         */
+        HOST("host", RequestTimingPoint.HOST.ordinal(), RequestTimingPoint.CONTEXT.ordinal()),
+
+        /**
+         * The Valves configured on the Context, including any authenticator.
+         */
+        CONTEXT("context", RequestTimingPoint.CONTEXT.ordinal(), RequestTimingPoint.WRAPPER.ordinal()),
+
+        /**
+         * The Valves configured on the Wrapper and the allocation of the Servlet instance.
+         */
+        WRAPPER("wrapper", RequestTimingPoint.WRAPPER.ordinal(), RequestTimingPoint.FILTER_CHAIN.ordinal()),
+
+        /**
+         * The Filters before the Servlet is called.
+         */
+        FILTERS("filters", RequestTimingPoint.FILTER_CHAIN.ordinal(), RequestTimingPoint.SERVLET.ordinal()),
+
+        /**
+         * From the Servlet being called to the response being committed, i.e. the first byte of the response being
+         * written.
+         */
+        FIRST_BYTE("firstByte", RequestTimingPoint.SERVLET.ordinal(), Stage.COMMIT),
+
+        /**
+         * From the Servlet being called to the end of the request.
+         */
+        SERVICE("service", RequestTimingPoint.SERVLET.ordinal(), Stage.END),
+
+        /**
+         * From the start of the request to the end of the request.
+         */
+        TOTAL("total", Stage.START, Stage.END);
+
+        private static final int START = -1;
+        private static final int COMMIT = -2;
+        private static final int END = -3;
+
+        private final String name;
+        private final int from;
+        private final int to;
+
+        Stage(String name, int from, int to) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Obtain the duration of this stage for a request.
+         *
+         * @param request  The request
+         * @param response The response
+         * @param endNanos The value of {@link System#nanoTime()} at the end of the request
+         *
+         * @return the duration in nanoseconds or -1 if the stage was not completed or timings are not enabled
+         */
+        public long getDurationNanos(Request request, Response response, long endNanos) {
+            if (!request.isTimingsEnabled()) {
+                return -1;
+            }
+            long start = getTime(from, request, response, endNanos);
+            long end = getTime(to, request, response, endNanos);
+            if (start == -1 || end == -1 || end < start) {
+                return -1;
+            }
+            return end - start;
+        }
+
+        private static long getTime(int point, Request request, Response response, long endNanos) {
+            switch (point) {
+                case START:
+                    return request.getStartTimeNanos();
+                case COMMIT:
+                    return response.getCommitTimeNanos();
+                case END:
+                    return endNanos;
+                default:
+                    return request.getTimingNanos(RequestTimingPoint.values()[point]);
+            }
+        }
+
+        /**
+         * @param name The name of the stage
+         *
+         * @return the stage with the given name or {@code null} if there is no such stage
+         */
+        public static Stage fromName(String name) {
+            for (Stage stage : values()) {
+                if (stage.name.equals(name)) {
+                    return stage;
+                }
+            }
+            return null;
+        }
+    }
+
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+
+    public RequestTimingStatistics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+
+    /**
+     * Record the duration of each stage of a completed request.
+     *
+     * @param request  The request
+     * @param response The response
+     * @param endNanos The value of {@link System#nanoTime()} at the end of the request
+     */
+    public void record(Request request, Response response, long endNanos) {
+        for (Stage stage : STAGES) {
+            long duration = stage.getDurationNanos(request, response, endNanos);
+            if (duration != -1) {
+                histograms[stage.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(duration));
+            }
+        }
+    }
+
+
+    /**
+     * Add the durations recorded by another instance to this instance.
+     *
+     * @param other The statistics to add
+     */
+    public void add(RequestTimingStatistics other) {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].add(other.histograms[i]);
+        }
+    }
+
+
+    /**
+     * @param stage The stage of interest
+     *
+     * @return the histogram of durations, in microseconds, for the stage
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+
+    /**
+     * @return a summary for each stage with at least one recorded duration in the form
+     *             <code>stage: count=n, mean=n us, p50=n us, p90=n us, p99=n us, p99.9=n us, max=n us</code>
+     */
+    public String[] getSummary() {
+        int size = 0;
+        String[] result = new String[STAGES.length];
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            result[size++] = stage.getName() + ": count=" + histogram.getCount() + ", mean=" + histogram.getMean() +
+                    " us, p50=" + histogram.getValueAtPercentile(50) + " us, p90=" +
+                    histogram.getValueAtPercentile(90) + " us, p99=" + histogram.getValueAtPercentile(99) +
+                    " us, p99.9=" + histogram.getValueAtPercentile(99.9) + " us, max=" + histogram.getMax() + " us";
+        }
+        String[] trimmed = new String[size];
+        System.arraycopy(result, 0, trimmed, 0, size);
+        return trimmed;
+    }
+}
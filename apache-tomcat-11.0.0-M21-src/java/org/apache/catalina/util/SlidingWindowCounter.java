@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A {@link RateLimitCounter} that uses a fixed amount of memory regardless of the number of distinct identifiers.
+ * <p>
+ * The counts for each time window are held in a count-min sketch with {@link #getDepth()} rows of {@link #getWidth()}
+ * counters. Incrementing an identifier increments one counter in each row and the count is the smallest of those
+ * counters. Counts are never underestimated. With probability of at least <code>1 - e<sup>-depth</sup></code> a count
+ * is overestimated by no more than <code>e / width</code> of the total number of requests in the time window.
+ * <p>
+ * The count returned is a sliding window estimate. It is the count for the current time window plus the count for the
+ * previous time window weighted by how much of the previous time window overlaps a window of the actual duration that
+ * ends now. This avoids a client being able to make twice the allowed number of requests either side of a window
+ * boundary.
+ * <p>
+ * Incrementing a count does not allocate, does not take a lock and does not require a maintenance task. A lock is held
+ * briefly once per time window to clear the counters for the new window.
+ */
+public class SlidingWindowCounter implements RateLimitCounter {
+
+    public static final int DEFAULT_WIDTH = 32 * 1024;
+    public static final int DEFAULT_DEPTH = 4;
+
+    private final int width;
+    private final int depth;
+    private final long seed = ThreadLocalRandom.current().nextLong();
+
+    /*
+     * The counters for even and odd time windows. The counters for a time window are cleared when that window starts.
+     */
+    private final AtomicIntegerArray[] windows = new AtomicIntegerArray[2];
+    private volatile long currentWindow;
+
+    /**
+     * Milliseconds window size as a Power of 2 for bit shift math
+     */
+    private int numBits;
+
+    /**
+     * Ratio of actual duration to config duration
+     */
+    private double ratio;
+
+
+    /**
+     * Creates a new SlidingWindowCounter with the default width and depth.
+     */
+    public SlidingWindowCounter() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+
+    /**
+     * Creates a new SlidingWindowCounter.
+     *
+     * @param width The number of counters in each row of the sketch. Rounded up to the next power of 2.
+     * @param depth The number of rows in the sketch
+     */
+    public SlidingWindowCounter(int width, int depth) {
+        this.width = TimeBucketCounter.nextPowerOf2(Math.max(1, width));
+        this.depth = Math.max(1, depth);
+        windows[0] = new AtomicIntegerArray(this.width * this.depth);
+        windows[1] = new AtomicIntegerArray(this.width * this.depth);
+    }
+
+
+    @Override
+    public void init(int bucketDuration, ScheduledExecutorService executorService) {
+        int durationMillis = bucketDuration * 1000;
+        numBits = Integer.numberOfTrailingZeros(TimeBucketCounter.nextPowerOf2(durationMillis));
+        ratio = TimeBucketCounter.ratioToPowerOf2(durationMillis);
+        currentWindow = System.currentTimeMillis() >> numBits;
+    }
+
+
+    public int getWidth() {
+        return width;
+    }
+
+
+    public int getDepth() {
+        return depth;
+    }
+
+
+    @Override
+    public int increment(String identifier) {
+        long now = System.currentTimeMillis();
+        long window = now >> numBits;
+        if (window > currentWindow) {
+            startWindow(window);
+        }
+        AtomicIntegerArray current = windows[(int) (window & 1)];
+        AtomicIntegerArray previous = windows[(int) ((window + 1) & 1)];
+
+        long hash = hash(identifier);
+        int h1 = (int) hash;
+        // Must be odd so each row uses a different index
+        int h2 = (int) (hash >>> 32) | 1;
+        int mask = width - 1;
+
+        int currentCount = Integer.MAX_VALUE;
+        int previousCount = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + ((h1 + row * h2) & mask);
+            currentCount = Math.min(currentCount, current.incrementAndGet(index));
+            previousCount = Math.min(previousCount, previous.get(index));
+        }
+
+        // Weight the previous window by the part of it that overlaps the sliding window
+        long elapsed = now & ((1L << numBits) - 1);
+        long overlap = (1L << numBits) - elapsed;
+        return currentCount + (int) ((previousCount * overlap) >> numBits);
+    }
+
+
+    private synchronized void startWindow(long window) {
+        long current = currentWindow;
+        if (window <= current) {
+            // Another thread has already started this window
+            return;
+        }
+        clear(windows[(int) (window & 1)]);
+        if (window != current + 1) {
+            // No requests in the previous window
+            clear(windows[(int) ((window + 1) & 1)]);
+        }
+        currentWindow = window;
+    }
+
+
+    private static void clear(AtomicIntegerArray counters) {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+
+    /*
+     * Seeded FNV-1a followed by the MurmurHash3 finalizer. The seed makes it impractical for clients to choose
+     * identifiers that share counters with another client.
+     */
+    private long hash(String identifier) {
+        long h = seed;
+        for (int i = 0; i < identifier.length(); i++) {
+            h = (h ^ identifier.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    @Override
+    public int getActualDuration() {
+        return 1 << numBits;
+    }
+
+
+    @Override
+    public double getRatio() {
+        return ratio;
+    }
+
+
+    @Override
+    public long getMillisUntilNextBucket() {
+        long millis = System.currentTimeMillis();
+        long nextWindowMillis = ((millis >> numBits) + 1) << numBits;
+        return nextWindowMillis - millis;
+    }
+
+
+    @Override
+    public void destroy() {
+        // NO-OP
+    }
+}
@@ -32,8 +32,11 @@ import org.apache.tomcat.util.res.StringManager;
  * This class maintains a thread safe hash map that has timestamp-based buckets followed by a string for a key, and a
  * counter for a value. each time the increment() method is called it adds the key if it does not exist, increments its
  * value and returns it. a maintenance thread cleans up keys that are prefixed by previous timestamp buckets.
+ * <p>
+ * The count is exact but the memory used grows with the number of distinct identifiers seen between maintenance runs.
+ * {@link SlidingWindowCounter} uses a fixed amount of memory.
  */
-public class TimeBucketCounter {
+public class TimeBucketCounter implements RateLimitCounter {
 
     private static final Log log = LogFactory.getLog(TimeBucketCounter.class);
     private static final StringManager sm = StringManager.getManager(TimeBucketCounter.class);
@@ -46,20 +49,27 @@ public class TimeBucketCounter {
     /**
      * Milliseconds bucket size as a Power of 2 for bit shift math, e.g. 16 for 65_536ms which is about 1:05 minute
      */
-    private final int numBits;
+    private int numBits;
 
     /**
      * Ratio of actual duration to config duration
      */
-    private final double ratio;
+    private double ratio;
 
     /**
      * The future allowing control of the background processor.
      */
     private ScheduledFuture<?> maintenanceFuture;
     private ScheduledFuture<?> monitorFuture;
-    private final ScheduledExecutorService executorService;
-    private final long sleeptime;
+    private ScheduledExecutorService executorService;
+    private long sleeptime;
+
+    /**
+     * Creates a new TimeBucketCounter. {@link #init(int, ScheduledExecutorService)} must be called before the counter
+     * is used.
+     */
+    public TimeBucketCounter() {
+    }
 
     /**
      * Creates a new TimeBucketCounter with the specified lifetime.
@@ -68,6 +78,11 @@ public class TimeBucketCounter {
      * @param executorService the executor service which will be used to run the maintenance
      */
     public TimeBucketCounter(int bucketDuration, ScheduledExecutorService executorService) {
+        init(bucketDuration, executorService);
+    }
+
+    @Override
+    public void init(int bucketDuration, ScheduledExecutorService executorService) {
 
         this.executorService = executorService;
 
@@ -100,6 +115,7 @@ public class TimeBucketCounter {
      *
      * @return the count within the current time bucket
      */
+    @Override
     public final int increment(String identifier) {
         String key = getCurrentBucketPrefix() + "-" + identifier;
         AtomicInteger ai = map.computeIfAbsent(key, v -> new AtomicInteger());
@@ -126,6 +142,7 @@ public class TimeBucketCounter {
      *
      * @return the actual bucket duration in milliseconds
      */
+    @Override
     public int getActualDuration() {
         return (int) Math.pow(2, getNumBits());
     }
@@ -137,6 +154,7 @@ public class TimeBucketCounter {
      *
      * @return the ratio, e.g. 1.092 if the actual duration is 65_536 for the configured duration of 60_000
      */
+    @Override
     public double getRatio() {
         return ratio;
     }
@@ -166,6 +184,7 @@ public class TimeBucketCounter {
      *
      * @return the number of milliseconds until the next bucket
      */
+    @Override
     public long getMillisUntilNextBucket() {
         long millis = System.currentTimeMillis();
         long nextTimeBucketMillis = ((millis + (long) Math.pow(2, numBits)) >> numBits) << numBits;
@@ -176,6 +195,7 @@ public class TimeBucketCounter {
     /**
      * Sets isRunning to false to terminate the maintenance thread.
      */
+    @Override
     public void destroy() {
         // Stop our thread
         if (monitorFuture != null) {
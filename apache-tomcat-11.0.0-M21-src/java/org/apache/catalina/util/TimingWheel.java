@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel. Items are scheduled to expire after a delay and are passed to an action by
+ * {@link #expire(long, Consumer)} once that delay has passed, unless the {@link Timeout} has been cancelled first.
+ * <p>
+ * Time is divided into ticks of a fixed duration and each tick maps to one of a fixed number of buckets. Scheduling
+ * and cancelling a timeout are constant time operations that only lock the bucket concerned. Expiring timeouts only
+ * examines the buckets for the ticks that have passed since the last call. Timeouts expire no earlier than requested
+ * and, provided {@link #expire(long, Consumer)} is called at least once per tick, no more than one tick later.
+ *
+ * @param <T> The type of the items being scheduled
+ */
+public class TimingWheel<T> {
+
+    /*
+     * Caps the delay so that deadline calculations can't overflow.
+     */
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE / 4;
+
+    private final long tickNanos;
+    private final long origin;
+    private final Bucket<T>[] buckets;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /*
+     * The most recent tick for which timeouts have been expired. Only changed by expire() while holding the lock for
+     * the bucket of the new tick so schedule() can check, under the same lock, that it is not adding a timeout to a
+     * tick that has already been expired.
+     */
+    private volatile long expiredTick = 0;
+
+
+    /**
+     * Creates a new timing wheel.
+     *
+     * @param tickDuration  The duration of a tick. This is the resolution of the timeouts.
+     * @param unit          The unit of the tick duration
+     * @param ticksPerWheel The number of buckets. Rounded up to the next power of 2. Timeouts further in the future
+     *                          than one revolution of the wheel share buckets with nearer timeouts so the number of
+     *                          buckets should be large enough for a typical delay to fit in one revolution.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        int size = TimeBucketCounter.nextPowerOf2(Math.max(1, ticksPerWheel));
+        buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket<>();
+        }
+        mask = size - 1;
+        origin = System.nanoTime();
+    }
+
+
+    /**
+     * Schedule an item to expire after the given delay.
+     *
+     * @param item  The item
+     * @param delay The delay
+     * @param unit  The unit of the delay
+     *
+     * @return the timeout which may be used to cancel the expiry of the item
+     */
+    public Timeout<T> schedule(T item, long delay, TimeUnit unit) {
+        long delayNanos = Math.min(Math.max(0, unit.toNanos(delay)), MAX_DELAY_NANOS);
+        return scheduleAt(item, System.nanoTime() + delayNanos);
+    }
+
+
+    /**
+     * Schedule an item to expire at the given time.
+     *
+     * @param item     The item
+     * @param deadline The time, as returned by {@link System#nanoTime()}, at which the item expires
+     *
+     * @return the timeout which may be used to cancel the expiry of the item
+     */
+    public Timeout<T> scheduleAt(T item, long deadline) {
+        long elapsed = deadline - origin;
+        // Round up so the item never expires early
+        long tick = elapsed <= 0 ? 0 : (elapsed - 1) / tickNanos + 1;
+
+        Timeout<T> timeout = new Timeout<>(this, item);
+        size.incrementAndGet();
+        while (true) {
+            long target = Math.max(tick, expiredTick + 1);
+            Bucket<T> bucket = buckets[(int) (target & mask)];
+            synchronized (bucket) {
+                if (target > expiredTick) {
+                    timeout.tick = target;
+                    bucket.add(timeout);
+                    timeout.bucket = bucket;
+                    return timeout;
+                }
+            }
+            // The tick was expired concurrently. Try again with a later tick.
+        }
+    }
+
+
+    /**
+     * Remove the items that have expired at the given time and pass each of them to the given action. Only one thread
+     * at a time may expire items. The action is called without any locks held so may schedule new items. The action
+     * should not throw an exception as the remaining expired items would not be passed to it.
+     *
+     * @param now    The current time, as returned by {@link System#nanoTime()}
+     * @param action The action to perform for each expired item
+     *
+     * @return the number of items that expired
+     */
+    public synchronized int expire(long now, Consumer<? super T> action) {
+        long elapsed = now - origin;
+        if (elapsed < 0) {
+            return 0;
+        }
+        long targetTick = elapsed / tickNanos;
+        // If more than one revolution has passed each bucket only needs to be examined once
+        long tick = Math.max(expiredTick + 1, targetTick - mask);
+
+        int count = 0;
+        for (; tick <= targetTick; tick++) {
+            Bucket<T> bucket = buckets[(int) (tick & mask)];
+            Timeout<T> expired;
+            synchronized (bucket) {
+                expiredTick = tick;
+                expired = bucket.removeExpired(tick);
+            }
+            while (expired != null) {
+                Timeout<T> next = expired.next;
+                expired.next = null;
+                size.decrementAndGet();
+                count++;
+                action.accept(expired.item);
+                expired = next;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * @return the number of items that are scheduled and have neither expired nor been cancelled
+     */
+    public int size() {
+        return size.get();
+    }
+
+
+    /**
+     * @return the duration of a tick in nanoseconds
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+
+    /**
+     * A scheduled item.
+     *
+     * @param <T> The type of the item
+     */
+    public static final class Timeout<T> {
+
+        private final TimingWheel<T> wheel;
+        private final T item;
+
+        // Set while the timeout is in a bucket. Other fields are guarded by the lock for that bucket.
+        private volatile Bucket<T> bucket;
+        private long tick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(TimingWheel<T> wheel, T item) {
+            this.wheel = wheel;
+            this.item = item;
+        }
+
+        /**
+         * @return the scheduled item
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Cancel the timeout so that the item will not expire.
+         *
+         * @return {@code true} if the timeout was cancelled or {@code false} if it has already expired or been
+         *             cancelled
+         */
+        public boolean cancel() {
+            Bucket<T> bucket = this.bucket;
+            if (bucket == null) {
+                return false;
+            }
+            synchronized (bucket) {
+                if (this.bucket != bucket) {
+                    return false;
+                }
+                bucket.remove(this);
+            }
+            wheel.size.decrementAndGet();
+            return true;
+        }
+    }
+
+
+    /*
+     * A doubly linked list of the timeouts for the ticks that map to a bucket. All access is with the bucket locked.
+     */
+    private static final class Bucket<T> {
+
+        private Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /*
+         * Removes the timeouts due at or before the given tick and returns them as a list linked by their next field.
+         */
+        Timeout<T> removeExpired(long tick) {
+            Timeout<T> expired = null;
+            Timeout<T> timeout = head;
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.tick <= tick) {
+                    remove(timeout);
+                    timeout.next = expired;
+                    expired = timeout;
+                }
+                timeout = next;
+            }
+            return expired;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.apache.catalina.Session;
 import org.apache.catalina.connector.ClientAbortException;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
+import org.apache.catalina.util.RequestTimingStatistics;
 import org.apache.catalina.util.TLSUtil;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.RequestInfo;
@@ -117,6 +118,9 @@ import org.apache.tomcat.util.net.IPv6Utils;
  * details on supported time patterns)
  * <li><code>%{xxx}T</code> xxx is the unit for the time taken to process the request (see Configuration Reference
  * document for details on supported units)
+ * <li><code>%{xxx}L</code> xxx is a stage of request processing for which the time taken, in microseconds, is written
+ * if request timings are enabled on the connector (see Configuration Reference document for details on supported
+ * stages)
  * </ul>
  * <p>
  * Conditional logging is also supported. This can be done with the <code>conditionUnless</code> and
@@ -1387,6 +1391,29 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
         }
     }
 
+    /**
+     * write time taken by a stage of request processing in micros - %{xxx}L
+     */
+    protected static class RequestTimingElement implements AccessLogElement {
+        private final RequestTimingStatistics.Stage stage;
+
+        public RequestTimingElement(RequestTimingStatistics.Stage stage) {
+            this.stage = stage;
+        }
+
+        @Override
+        public void addElement(CharArrayWriter buf, Date date, Request request, Response response, long time) {
+            org.apache.coyote.Request coyoteRequest = request.getCoyoteRequest();
+            long duration = stage.getDurationNanos(coyoteRequest, response.getCoyoteResponse(),
+                    coyoteRequest.getStartTimeNanos() + time);
+            if (duration == -1) {
+                buf.append('-');
+            } else {
+                buf.append(Long.toString(TimeUnit.NANOSECONDS.toMicros(duration)));
+            }
+        }
+    }
+
     /**
      * write Query string (prepended with a '?' if it exists) - %q
      */
@@ -1779,6 +1806,12 @@ public abstract class AbstractAccessLogValve extends ValveBase implements Access
                 } else {
                     return new ElapsedTimeElement(false, false);
                 }
+            case 'L':
+                RequestTimingStatistics.Stage stage = RequestTimingStatistics.Stage.fromName(name);
+                if (stage == null) {
+                    return new StringElement("???");
+                }
+                return new RequestTimingElement(stage);
             default:
                 return new StringElement("???");
         }
@@ -22,6 +22,7 @@ import java.io.CharArrayWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
@@ -31,6 +32,10 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.catalina.LifecycleException;
 import org.apache.juli.logging.Log;
@@ -45,6 +50,7 @@ import org.apache.tomcat.util.buf.B2CConverter;
  * <ul>
  * <li>Automatic date-based rollover of log files</li>
  * <li>Optional log file rotation</li>
+ * <li>Optional asynchronous writing of log entries by a background thread</li>
  * </ul>
  * <p>
  * For UNIX users, another field called <code>checkExists</code> is also available. If set to true, the log file's
@@ -153,6 +159,29 @@ public class AccessLogValve extends AbstractAccessLogValve {
     private int maxDays = -1;
     private volatile boolean checkForOldLogs = false;
 
+    /**
+     * Should log entries be written to the log file by a background thread rather than by the thread processing the
+     * request?
+     */
+    private boolean asyncLogging = false;
+
+    /**
+     * The maximum number of log entries waiting to be written when writing asynchronously.
+     */
+    private int asyncLogQueueSize = 8192;
+
+    /**
+     * The action taken when a log entry is logged and the queue is full.
+     */
+    private OverflowPolicy asyncLogOverflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * The background writer used when writing asynchronously. Only non-null while the valve is started.
+     */
+    private volatile AsyncLogWriter asyncLogWriter = null;
+
+    private final AtomicLong asyncLogDroppedCount = new AtomicLong();
+
     // ------------------------------------------------------------- Properties
 
 
@@ -352,6 +381,86 @@ public class AccessLogValve extends AbstractAccessLogValve {
         }
     }
 
+    /**
+     * @return <code>true</code> if log entries are written by a background thread
+     */
+    public boolean isAsyncLogging() {
+        return asyncLogging;
+    }
+
+    /**
+     * Configure whether log entries are written to the log file by a background thread. When enabled, the thread
+     * processing the request copies the formatted entry into a fixed size queue and the background thread writes the
+     * queued entries in batches. Changes take effect when the valve is next started.
+     *
+     * @param asyncLogging <code>true</code> to write log entries using a background thread
+     */
+    public void setAsyncLogging(boolean asyncLogging) {
+        this.asyncLogging = asyncLogging;
+    }
+
+    /**
+     * @return the maximum number of log entries waiting to be written when writing asynchronously
+     */
+    public int getAsyncLogQueueSize() {
+        return asyncLogQueueSize;
+    }
+
+    /**
+     * Set the maximum number of log entries waiting to be written when writing asynchronously. Changes take effect
+     * when the valve is next started.
+     *
+     * @param asyncLogQueueSize The maximum number of queued log entries
+     */
+    public void setAsyncLogQueueSize(int asyncLogQueueSize) {
+        this.asyncLogQueueSize = asyncLogQueueSize;
+    }
+
+    /**
+     * @return the name of the action taken when a log entry is logged and the queue is full
+     */
+    public String getAsyncLogOverflowPolicy() {
+        return asyncLogOverflowPolicy.name().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Set the action taken when writing asynchronously, a log entry is logged and the queue is full. One of:
+     * <ul>
+     * <li><code>block</code> - the request thread waits until there is space in the queue</li>
+     * <li><code>drop</code> - the log entry is discarded, counted and a warning is logged the first time entries are
+     * discarded after the queue has been emptied</li>
+     * <li><code>count</code> - the log entry is discarded and counted</li>
+     * </ul>
+     *
+     * @param asyncLogOverflowPolicy The name of the overflow policy
+     */
+    public void setAsyncLogOverflowPolicy(String asyncLogOverflowPolicy) {
+        try {
+            this.asyncLogOverflowPolicy = OverflowPolicy.valueOf(asyncLogOverflowPolicy.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    sm.getString("accessLogValve.invalidOverflowPolicy", asyncLogOverflowPolicy), e);
+        }
+    }
+
+    /**
+     * @return the number of log entries waiting to be written by the background thread
+     */
+    public int getAsyncLogQueueDepth() {
+        AsyncLogWriter asyncLogWriter = this.asyncLogWriter;
+        if (asyncLogWriter == null) {
+            return 0;
+        }
+        return asyncLogWriter.getQueueDepth();
+    }
+
+    /**
+     * @return the number of log entries that have been discarded because the queue was full
+     */
+    public long getAsyncLogDroppedCount() {
+        return asyncLogDroppedCount.get();
+    }
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -561,6 +670,36 @@ public class AccessLogValve extends AbstractAccessLogValve {
     @Override
     public void log(CharArrayWriter message) {
 
+        AsyncLogWriter asyncLogWriter = this.asyncLogWriter;
+        if (asyncLogWriter != null) {
+            asyncLogWriter.add(message);
+            return;
+        }
+
+        checkLogFile();
+
+        // Log this message
+        try {
+            message.write(System.lineSeparator());
+            synchronized (this) {
+                if (writer != null) {
+                    message.writeTo(writer);
+                    if (!buffered) {
+                        writer.flush();
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            log.warn(sm.getString("accessLogValve.writeFail", message.toString()), ioe);
+        }
+    }
+
+
+    /**
+     * Rotate the log file if required and re-open it if something external has removed it.
+     */
+    protected void checkLogFile() {
+
         rotate();
 
         /* In case something external rotated the file instead */
@@ -581,20 +720,33 @@ public class AccessLogValve extends AbstractAccessLogValve {
                 }
             }
         }
+    }
 
-        // Log this message
-        try {
-            message.write(System.lineSeparator());
-            synchronized (this) {
-                if (writer != null) {
+
+    /*
+     * Write a batch of queued log entries. Called by the background writer.
+     */
+    private void write(CharArrayWriter[] messages, int start, int count) {
+
+        checkLogFile();
+
+        String lineSeparator = System.lineSeparator();
+        synchronized (this) {
+            if (writer == null) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                CharArrayWriter message = messages[(start + i) % messages.length];
+                try {
                     message.writeTo(writer);
-                    if (!buffered) {
-                        writer.flush();
-                    }
+                } catch (IOException ioe) {
+                    log.warn(sm.getString("accessLogValve.writeFail", message.toString()), ioe);
                 }
+                writer.write(lineSeparator);
+            }
+            if (!buffered) {
+                writer.flush();
             }
-        } catch (IOException ioe) {
-            log.warn(sm.getString("accessLogValve.writeFail", message.toString()), ioe);
         }
     }
 
@@ -620,9 +772,7 @@ public class AccessLogValve extends AbstractAccessLogValve {
         }
 
         try {
-            writer = new PrintWriter(
-                    new BufferedWriter(new OutputStreamWriter(new FileOutputStream(pathname, true), charset), 128000),
-                    false);
+            writer = createWriter(new FileOutputStream(pathname, true), charset);
 
             currentLogFile = pathname;
         } catch (IOException e) {
@@ -636,6 +786,20 @@ public class AccessLogValve extends AbstractAccessLogValve {
         checkForOldLogs = true;
     }
 
+    /**
+     * Create the writer used to write to a newly opened log file. Called with the valve locked each time a log file
+     * is opened.
+     *
+     * @param os      The stream for the log file
+     * @param charset The character set to use
+     *
+     * @return the writer for the log file
+     */
+    protected PrintWriter createWriter(OutputStream os, Charset charset) {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(os, charset), 128000), false);
+    }
+
+
     /**
      * Start this component and implement the requirements of
      * {@link org.apache.catalina.util.LifecycleBase#startInternal()}.
@@ -656,6 +820,11 @@ public class AccessLogValve extends AbstractAccessLogValve {
         }
         open();
 
+        if (asyncLogging) {
+            asyncLogWriter = new AsyncLogWriter(Math.max(1, asyncLogQueueSize), asyncLogOverflowPolicy);
+            asyncLogWriter.start();
+        }
+
         super.startInternal();
     }
 
@@ -671,6 +840,193 @@ public class AccessLogValve extends AbstractAccessLogValve {
     protected void stopInternal() throws LifecycleException {
 
         super.stopInternal();
+
+        AsyncLogWriter asyncLogWriter = this.asyncLogWriter;
+        if (asyncLogWriter != null) {
+            // Write any queued entries before the log file is closed
+            asyncLogWriter.stop();
+            this.asyncLogWriter = null;
+        }
+
         close(false);
     }
+
+
+    private enum OverflowPolicy {
+        BLOCK,
+        DROP,
+        COUNT
+    }
+
+
+    /**
+     * Writes log entries using a background thread. Entries are copied into a ring of pre-allocated buffers by the
+     * request processing threads and the background thread writes all the entries available in a single batch before
+     * releasing the buffers for reuse.
+     */
+    private class AsyncLogWriter implements Runnable {
+
+        private final CharArrayWriter[] buffers;
+        private final OverflowPolicy overflowPolicy;
+        private final Thread thread;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+
+        // Guarded by lock
+        private int head = 0;
+        private int count = 0;
+        private boolean running = true;
+        private boolean warned = false;
+
+        // Guarded by the valve
+        private boolean finished = false;
+
+        AsyncLogWriter(int size, OverflowPolicy overflowPolicy) {
+            buffers = new CharArrayWriter[size];
+            for (int i = 0; i < size; i++) {
+                buffers[i] = new CharArrayWriter(128);
+            }
+            this.overflowPolicy = overflowPolicy;
+            thread = new Thread(this, "AccessLogWriter[" + getContainer().getName() + "]");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() {
+            lock.lock();
+            try {
+                running = false;
+                notEmpty.signal();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            /*
+             * Called from stopInternal() with the valve locked. The background thread needs that lock to write the
+             * remaining entries so wait on the valve, which releases the lock, rather than joining the thread.
+             */
+            synchronized (AccessLogValve.this) {
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                long remaining;
+                while (!finished && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        AccessLogValve.this.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        int getQueueDepth() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void add(CharArrayWriter message) {
+            lock.lock();
+            try {
+                if (!running) {
+                    // Entries can't be queued once the background thread has been told to stop
+                    asyncLogDroppedCount.incrementAndGet();
+                    return;
+                }
+                while (count == buffers.length) {
+                    if (overflowPolicy != OverflowPolicy.BLOCK || !running) {
+                        asyncLogDroppedCount.incrementAndGet();
+                        if (overflowPolicy == OverflowPolicy.DROP && !warned) {
+                            warned = true;
+                            log.warn(sm.getString("accessLogValve.asyncOverflow", Integer.valueOf(buffers.length)));
+                        }
+                        return;
+                    }
+                    notFull.awaitUninterruptibly();
+                }
+                CharArrayWriter buffer = buffers[(head + count) % buffers.length];
+                try {
+                    message.writeTo(buffer);
+                } catch (IOException ioe) {
+                    // Not possible when writing to a CharArrayWriter
+                }
+                count++;
+                if (count == 1) {
+                    notEmpty.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                writeEntries();
+            } finally {
+                synchronized (AccessLogValve.this) {
+                    finished = true;
+                    AccessLogValve.this.notifyAll();
+                }
+            }
+        }
+
+        private void writeEntries() {
+            int maxBufferSize = getMaxLogMessageBufferSize();
+            while (true) {
+                int start;
+                int size;
+                lock.lock();
+                try {
+                    while (count == 0 && running) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (count == 0) {
+                        // Stopped and all entries have been written
+                        return;
+                    }
+                    start = head;
+                    size = count;
+                } finally {
+                    lock.unlock();
+                }
+
+                // The buffers being written are not modified by other threads until they are released below
+                try {
+                    write(buffers, start, size);
+                } catch (Throwable t) {
+                    ExceptionUtils.handleThrowable(t);
+                    log.warn(sm.getString("accessLogValve.asyncWriteFail"), t);
+                }
+                for (int i = 0; i < size; i++) {
+                    int index = (start + i) % buffers.length;
+                    if (buffers[index].size() > maxBufferSize) {
+                        buffers[index] = new CharArrayWriter(128);
+                    } else {
+                        buffers[index].reset();
+                    }
+                }
+
+                lock.lock();
+                try {
+                    head = (head + size) % buffers.length;
+                    count -= size;
+                    if (count == 0) {
+                        warned = false;
+                    }
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
 }
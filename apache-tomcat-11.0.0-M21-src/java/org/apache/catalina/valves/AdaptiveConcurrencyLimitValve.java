@@ -0,0 +1,531 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+
+/**
+ * <p>
+ * Implementation of a Valve that limits concurrency to a limit that adapts to the latency of the requests being
+ * processed.
+ * </p>
+ * <p>
+ * A separate limit is maintained for each Context and is removed when the Context stops. The limit is adjusted using
+ * additive increase, multiplicative decrease (AIMD) at the end of each window of {@link #getWindowSize()} requests.
+ * Requests that fail with a 5xx status code are treated as infinitely slow. If the 90th percentile latency of the
+ * window is more than {@link #getLatencyTolerance()} times the long term latency, the limit is multiplied by
+ * {@link #getBackoffRatio()}. Otherwise the limit increases by approximately one for every limit's worth of requests
+ * that completed while the limit was in use. The long term latency is a moving average of the 90th percentile latency
+ * of each window. As the limit is reduced at most once per window and only if more than a tenth of the requests in the
+ * window were slow, occasional slow requests do not reduce the limit.
+ * </p>
+ * <p>
+ * Requests that arrive when the limit has been reached are queued, if the queue for the Context is not full, until
+ * either the concurrency drops below the limit or {@link #getMaxQueueTime()} passes. Requests that are not processed
+ * receive a 503 response with a <code>Retry-After</code> header.
+ * </p>
+ * <p>
+ * As with {@link SemaphoreValve}, only the time spent in the synchronous processing of a request is controlled and
+ * measured. Some async requests may require multiple serial requests to complete what - to the user - appears as a
+ * single request.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimitValve extends ValveBase {
+
+    private final Map<String,Limiter> limiters = new ConcurrentHashMap<>();
+
+
+    // ------------------------------------------------------ Constructor
+
+    public AdaptiveConcurrencyLimitValve() {
+        super(true);
+    }
+
+
+    // ------------------------------------------------------------- Properties
+
+    private int initialLimit = 20;
+
+    /**
+     * @return the limit each Context starts with
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+
+    private int minLimit = 1;
+
+    /**
+     * @return the lowest limit that will be used for a Context
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+
+    private int maxLimit = 200;
+
+    /**
+     * @return the highest limit that will be used for a Context
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+
+    private double latencyTolerance = 2.0;
+
+    /**
+     * @return the multiple of the long term latency above which the 90th percentile latency of a window is treated as a
+     *             sign of overload
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+
+    private double backoffRatio = 0.9;
+
+    /**
+     * @return the ratio by which the limit is multiplied when overload is detected
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+
+    private int windowSize = 50;
+
+    /**
+     * @return the number of requests in each window at the end of which the limit is adjusted
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+
+    private int maxQueueDepth = 0;
+
+    /**
+     * @return the maximum number of requests for a Context that may wait for the concurrency to drop below the limit
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public void setMaxQueueDepth(int maxQueueDepth) {
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+
+    private int maxQueueTime = 1000;
+
+    /**
+     * @return the maximum time in milliseconds that a request will wait in the queue
+     */
+    public int getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    public void setMaxQueueTime(int maxQueueTime) {
+        this.maxQueueTime = maxQueueTime;
+    }
+
+
+    private int retryAfter = 1;
+
+    /**
+     * @return the value in seconds of the <code>Retry-After</code> header sent with rejected requests. If not
+     *             positive, no header will be sent.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+
+    // -------------------------------------------------------------- Statistics
+
+    /**
+     * @return the current limit for each Context in the form <code>[name] limit</code>
+     */
+    public String[] getLimits() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String,Limiter> entry : limiters.entrySet()) {
+            result.add("[" + entry.getKey() + "] " + entry.getValue().getLimit());
+        }
+        return result.toArray(new String[0]);
+    }
+
+
+    /**
+     * @param contextName The name of the Context
+     *
+     * @return the current limit for the given Context or -1 if the Context has not processed any requests
+     */
+    public int getLimit(String contextName) {
+        Limiter limiter = limiters.get(contextName);
+        if (limiter == null) {
+            return -1;
+        }
+        return limiter.getLimit();
+    }
+
+
+    /**
+     * @return the number of requests currently being processed across all Contexts
+     */
+    public int getInFlight() {
+        int result = 0;
+        for (Limiter limiter : limiters.values()) {
+            result += limiter.getInFlight();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return the number of requests currently waiting in a queue across all Contexts
+     */
+    public int getQueueDepth() {
+        int result = 0;
+        for (Limiter limiter : limiters.values()) {
+            result += limiter.getQueueDepth();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return the number of requests received by this valve across all Contexts
+     */
+    public long getRequestCount() {
+        long result = 0;
+        for (Limiter limiter : limiters.values()) {
+            result += limiter.getRequestCount();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return the number of requests rejected by this valve across all Contexts
+     */
+    public long getRejectedCount() {
+        long result = 0;
+        for (Limiter limiter : limiters.values()) {
+            result += limiter.getRejectedCount();
+        }
+        return result;
+    }
+
+
+    /**
+     * @return the fraction of the requests received by this valve that were rejected
+     */
+    public double getRejectionRate() {
+        long requestCount = getRequestCount();
+        if (requestCount == 0) {
+            return 0;
+        }
+        return (double) getRejectedCount() / requestCount;
+    }
+
+
+    // ------------------------------------------------------ Lifecycle Methods
+
+    @Override
+    protected void stopInternal() throws LifecycleException {
+        super.stopInternal();
+        limiters.clear();
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        Context context = request.getContext();
+        if (context == null) {
+            getNext().invoke(request, response);
+            return;
+        }
+
+        String contextName = context.getName();
+        Limiter limiter = limiters.get(contextName);
+        if (limiter == null) {
+            limiter = new Limiter(initialLimit, minLimit, maxLimit, latencyTolerance, backoffRatio, windowSize);
+            Limiter existing = limiters.putIfAbsent(contextName, limiter);
+            if (existing == null) {
+                context.addLifecycleListener(new LimiterRemover(contextName, limiter));
+            } else {
+                limiter = existing;
+            }
+        }
+
+        if (!limiter.acquire(maxQueueDepth, TimeUnit.MILLISECONDS.toNanos(maxQueueTime))) {
+            if (containerLog.isDebugEnabled()) {
+                containerLog.debug(sm.getString("adaptiveConcurrencyLimitValve.rejected", context.getName(),
+                        Integer.toString(limiter.getLimit())));
+            }
+            if (retryAfter > 0) {
+                response.setHeader("Retry-After", Integer.toString(retryAfter));
+            }
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        boolean failed = true;
+        long start = System.nanoTime();
+        try {
+            getNext().invoke(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+
+    /**
+     * Removes the limiter for a Context when the Context stops so the limiters of undeployed Contexts are not retained.
+     */
+    private class LimiterRemover implements LifecycleListener {
+
+        private final String contextName;
+        private final Limiter limiter;
+
+        LimiterRemover(String contextName, Limiter limiter) {
+            this.contextName = contextName;
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void lifecycleEvent(LifecycleEvent event) {
+            if (Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+                limiters.remove(contextName, limiter);
+                event.getLifecycle().removeLifecycleListener(this);
+            }
+        }
+    }
+
+
+    /**
+     * The concurrency limit for a single Context.
+     */
+    static class Limiter {
+
+        // Percentile of the request latencies in a window that is compared with the long term latency
+        private static final double PERCENTILE = 0.9;
+
+        // Weight of each window in the long term latency
+        private static final double SMOOTHING = 0.1;
+
+        private final int minLimit;
+        private final int maxLimit;
+        private final double latencyTolerance;
+        private final double backoffRatio;
+        private final long[] window;
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition belowLimit = lock.newCondition();
+
+        // Fields are only written while holding the lock
+        private double estimatedLimit;
+        private volatile int limit;
+        private volatile int inFlight = 0;
+        private volatile int queueDepth = 0;
+        private volatile long requestCount = 0;
+        private volatile long rejectedCount = 0;
+        private double longTermLatency = -1;
+        private int windowCount = 0;
+        private int windowInUseCount = 0;
+
+        Limiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio,
+                int windowSize) {
+            this.minLimit = Math.max(1, minLimit);
+            this.maxLimit = Math.max(this.minLimit, maxLimit);
+            this.latencyTolerance = latencyTolerance;
+            this.backoffRatio = backoffRatio;
+            window = new long[Math.max(1, windowSize)];
+            estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+            limit = (int) estimatedLimit;
+        }
+
+        int getLimit() {
+            return limit;
+        }
+
+        int getInFlight() {
+            return inFlight;
+        }
+
+        int getQueueDepth() {
+            return queueDepth;
+        }
+
+        long getRequestCount() {
+            return requestCount;
+        }
+
+        long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * Obtain permission to process a request, waiting in the queue if necessary.
+         *
+         * @param maxQueueDepth The maximum number of requests that may wait
+         * @param maxQueueTime  The maximum time to wait in nanoseconds
+         *
+         * @return {@code true} if the request may be processed, in which case {@link #release(long, boolean)} must be
+         *             called when processing completes, otherwise {@code false}
+         */
+        boolean acquire(int maxQueueDepth, long maxQueueTime) {
+            lock.lock();
+            try {
+                requestCount++;
+                if (inFlight < limit) {
+                    inFlight++;
+                    return true;
+                }
+                if (queueDepth >= maxQueueDepth) {
+                    rejectedCount++;
+                    return false;
+                }
+                queueDepth++;
+                try {
+                    long remaining = maxQueueTime;
+                    while (inFlight >= limit) {
+                        if (remaining <= 0) {
+                            rejectedCount++;
+                            return false;
+                        }
+                        remaining = belowLimit.awaitNanos(remaining);
+                    }
+                    inFlight++;
+                    return true;
+                } catch (InterruptedException e) {
+                    rejectedCount++;
+                    return false;
+                } finally {
+                    queueDepth--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Record the completion of a request and, at the end of a window, adjust the limit.
+         *
+         * @param latency The time taken to process the request in nanoseconds
+         * @param failed  {@code true} if the request failed
+         */
+        void release(long latency, boolean failed) {
+            lock.lock();
+            try {
+                inFlight--;
+                window[windowCount++] = failed ? Long.MAX_VALUE : latency;
+                if (inFlight + 1 >= limit / 2) {
+                    windowInUseCount++;
+                }
+                if (windowCount == window.length) {
+                    endWindow();
+                }
+                if (queueDepth > 0) {
+                    belowLimit.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /*
+         * Must be called while holding the lock.
+         */
+        private void endWindow() {
+            Arrays.sort(window);
+            long percentileLatency = window[(int) Math.ceil(PERCENTILE * window.length) - 1];
+            if (percentileLatency == Long.MAX_VALUE ||
+                    longTermLatency >= 0 && percentileLatency > longTermLatency * latencyTolerance) {
+                // Multiplicative decrease
+                estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+            } else {
+                // Additive increase for the requests that completed while the limit was being used
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + (double) windowInUseCount / limit);
+            }
+            if (percentileLatency != Long.MAX_VALUE) {
+                if (longTermLatency < 0) {
+                    longTermLatency = percentileLatency;
+                } else {
+                    longTermLatency += (percentileLatency - longTermLatency) * SMOOTHING;
+                }
+            }
+            limit = (int) estimatedLimit;
+            windowCount = 0;
+            windowInUseCount = 0;
+        }
+    }
+}
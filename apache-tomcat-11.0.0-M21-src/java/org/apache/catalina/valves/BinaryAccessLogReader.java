@@ -0,0 +1,378 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.BufferedInputStream;
+import java.io.CharArrayWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Reads the access log files written by {@link BinaryAccessLogValve}. When run from the command line, converts the
+ * files named on the command line, or standard input if none are named, to the combined log format and writes the
+ * result to standard output.
+ */
+public class BinaryAccessLogReader implements Closeable {
+
+    private static final StringManager sm = StringManager.getManager(BinaryAccessLogReader.class);
+
+    private final DataInputStream in;
+
+    @SuppressWarnings("unchecked")
+    private final List<String>[] dictionaries = new List[BinaryAccessLogValve.FIELD_COUNT];
+    private long lastTime;
+    private byte[] buffer = new byte[256];
+
+
+    public BinaryAccessLogReader(InputStream is) {
+        in = new DataInputStream(new BufferedInputStream(is));
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = new ArrayList<>();
+        }
+    }
+
+
+    /**
+     * Read the next access log entry.
+     *
+     * @return the next entry or <code>null</code> if the end of the log has been reached
+     *
+     * @throws IOException If an I/O error occurs or the log is not valid
+     */
+    public Entry read() throws IOException {
+        while (true) {
+            int type = in.read();
+            if (type == -1) {
+                return null;
+            }
+            int length = (int) readVarLong(in);
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            in.readFully(buffer, 0, length);
+            Record record = new Record(buffer, length);
+
+            switch (type) {
+                case BinaryAccessLogValve.RECORD_HEADER:
+                    if (length < BinaryAccessLogValve.MAGIC.length + 1 || !Arrays.equals(buffer, 0,
+                            BinaryAccessLogValve.MAGIC.length, BinaryAccessLogValve.MAGIC, 0,
+                            BinaryAccessLogValve.MAGIC.length)) {
+                        throw new IOException(sm.getString("binaryAccessLogReader.invalidHeader"));
+                    }
+                    int version = buffer[BinaryAccessLogValve.MAGIC.length];
+                    if (version != BinaryAccessLogValve.VERSION) {
+                        throw new IOException(
+                                sm.getString("binaryAccessLogReader.invalidVersion", Integer.valueOf(version)));
+                    }
+                    for (List<String> dictionary : dictionaries) {
+                        dictionary.clear();
+                    }
+                    lastTime = 0;
+                    break;
+                case BinaryAccessLogValve.RECORD_DICTIONARY:
+                    int field = record.readByte();
+                    int index = (int) record.readVarLong();
+                    List<String> dictionary = dictionaries[field];
+                    if (index != dictionary.size()) {
+                        throw new IOException(sm.getString("binaryAccessLogReader.invalidDictionary",
+                                Integer.valueOf(field), Integer.valueOf(index)));
+                    }
+                    dictionary.add(record.readString());
+                    break;
+                case BinaryAccessLogValve.RECORD_ENTRY:
+                    return readEntry(record);
+                default:
+                    // Skip unknown record types
+            }
+        }
+    }
+
+
+    private Entry readEntry(Record record) throws IOException {
+        Entry entry = new Entry();
+        lastTime += record.readSignedVarLong();
+        entry.time = lastTime;
+        entry.processingTime = record.readVarLong();
+        entry.remoteHost = readString(record, BinaryAccessLogValve.FIELD_REMOTE_HOST);
+        entry.user = readString(record, BinaryAccessLogValve.FIELD_USER);
+        entry.method = readString(record, BinaryAccessLogValve.FIELD_METHOD);
+        entry.uri = readString(record, BinaryAccessLogValve.FIELD_URI);
+        entry.query = readString(record, BinaryAccessLogValve.FIELD_QUERY);
+        entry.protocol = readString(record, BinaryAccessLogValve.FIELD_PROTOCOL);
+        entry.status = Integer.parseInt(readString(record, BinaryAccessLogValve.FIELD_STATUS));
+        entry.bytesSent = record.readVarLong();
+        entry.referer = readString(record, BinaryAccessLogValve.FIELD_REFERER);
+        entry.userAgent = readString(record, BinaryAccessLogValve.FIELD_USER_AGENT);
+        return entry;
+    }
+
+
+    private String readString(Record record, int field) throws IOException {
+        long code = record.readVarLong();
+        if (code == BinaryAccessLogValve.STRING_NULL) {
+            return null;
+        } else if (code == BinaryAccessLogValve.STRING_INLINE) {
+            return record.readString();
+        }
+        List<String> dictionary = dictionaries[field];
+        long index = code - BinaryAccessLogValve.STRING_DICTIONARY;
+        if (index >= dictionary.size()) {
+            throw new IOException(sm.getString("binaryAccessLogReader.invalidDictionary", Integer.valueOf(field),
+                    Long.valueOf(index)));
+        }
+        return dictionary.get((int) index);
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    private static long readVarLong(InputStream is) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = is.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(sm.getString("binaryAccessLogReader.invalidVarLong"));
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        if (args.length == 0) {
+            convert(System.in, out);
+        } else {
+            for (String arg : args) {
+                try (InputStream is = new FileInputStream(arg)) {
+                    convert(is, out);
+                }
+            }
+        }
+        out.flush();
+    }
+
+
+    private static void convert(InputStream is, PrintStream out) throws IOException {
+        BinaryAccessLogReader reader = new BinaryAccessLogReader(is);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("[dd/MMM/yyyy:HH:mm:ss Z]", Locale.US);
+        Entry entry;
+        while ((entry = reader.read()) != null) {
+            out.println(entry.toCombinedFormat(dateFormat));
+        }
+    }
+
+
+    /*
+     * The data of a single record.
+     */
+    private static class Record {
+
+        private final byte[] data;
+        private final int length;
+        private int pos = 0;
+
+        Record(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        int readByte() throws IOException {
+            if (pos >= length) {
+                throw new EOFException();
+            }
+            return data[pos++] & 0xFF;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException(sm.getString("binaryAccessLogReader.invalidVarLong"));
+        }
+
+        long readSignedVarLong() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() throws IOException {
+            int len = (int) readVarLong();
+            if (len < 0 || pos + len > length) {
+                throw new EOFException();
+            }
+            String result = new String(data, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return result;
+        }
+    }
+
+
+    /**
+     * A single access log entry.
+     */
+    public static class Entry {
+
+        private long time;
+        private long processingTime;
+        private String remoteHost;
+        private String user;
+        private String method;
+        private String uri;
+        private String query;
+        private String protocol;
+        private int status;
+        private long bytesSent;
+        private String referer;
+        private String userAgent;
+
+        /**
+         * @return the time the request started in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return the time taken to process the request in microseconds
+         */
+        public long getProcessingTime() {
+            return processingTime;
+        }
+
+        public String getRemoteHost() {
+            return remoteHost;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public String getReferer() {
+            return referer;
+        }
+
+        public String getUserAgent() {
+            return userAgent;
+        }
+
+        /**
+         * Format this entry in the combined log format, the equivalent of the <code>combined</code> pattern of
+         * {@link AccessLogValve}.
+         *
+         * @param dateFormat The format to use for the request time. Must not be used concurrently by other threads.
+         *
+         * @return the formatted entry
+         */
+        public String toCombinedFormat(SimpleDateFormat dateFormat) {
+            CharArrayWriter buf = new CharArrayWriter(256);
+            buf.append(remoteHost == null || remoteHost.isEmpty() ? "-" : remoteHost);
+            buf.append(" - ");
+            if (user == null) {
+                buf.append('-');
+            } else {
+                AbstractAccessLogValve.escapeAndAppend(user, buf);
+            }
+            buf.append(' ');
+            // Like the %t pattern, the time the response completed
+            buf.append(dateFormat.format(new Date(time + processingTime / 1000)));
+            buf.append(" \"");
+            if (method == null) {
+                buf.append('-');
+            } else {
+                buf.append(method);
+                buf.append(' ');
+                buf.append(uri);
+                if (query != null) {
+                    buf.append('?');
+                    buf.append(query);
+                }
+                buf.append(' ');
+                buf.append(protocol);
+            }
+            buf.append("\" ");
+            buf.append(Integer.toString(status));
+            buf.append(' ');
+            buf.append(bytesSent <= 0 ? "-" : Long.toString(bytesSent));
+            buf.append(" \"");
+            appendHeader(referer, buf);
+            buf.append("\" \"");
+            appendHeader(userAgent, buf);
+            buf.append('"');
+            return buf.toString();
+        }
+
+        private static void appendHeader(String value, CharArrayWriter buf) {
+            if (value == null) {
+                buf.append('-');
+            } else {
+                AbstractAccessLogValve.escapeAndAppend(value, buf);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.net.IPv6Utils;
+
+/**
+ * An {@link AccessLogValve} that writes a compact binary log rather than formatted text. The binary log is cheaper to
+ * write than a text log since no formatting is required and is typically much smaller. The log may be converted to
+ * the combined log format with {@link BinaryAccessLogReader}.
+ * <p>
+ * The log file is a sequence of records. Each record is a one byte record type, the length of the record data as an
+ * unsigned variable length integer and then the record data. Readers skip records of unknown types. The record types
+ * are:
+ * <ul>
+ * <li>Header - written each time the log file is opened. The data is the four bytes <code>TCAL</code> followed by a
+ * one byte format version. A header resets all the dictionaries.</li>
+ * <li>Dictionary - a one byte field identifier, the index of the new dictionary entry as a variable length integer and
+ * the value as a string.</li>
+ * <li>Entry - one access log entry. See below.</li>
+ * </ul>
+ * The fields of an entry, in order, are: the request start time in milliseconds as a signed variable length integer
+ * delta from the start time of the previous entry, the processing time in microseconds, the remote host, the remote
+ * user, the request method, the request URI, the query string, the protocol, the status code, the number of bytes
+ * sent, the <code>Referer</code> header and the <code>User-Agent</code> header. Numeric fields are unsigned variable
+ * length integers. String fields start with an unsigned variable length integer that is <code>0</code> for a null
+ * value, <code>1</code> for a string that follows in-line or the dictionary index plus <code>2</code>. Strings are
+ * the length of the UTF-8 encoding as a variable length integer followed by the UTF-8 encoded bytes.
+ * <p>
+ * Each field that is dictionary encoded has its own dictionary of at most {@link #getMaxDictionarySize()} entries.
+ * Values that are seen for the first time are added to the dictionary, using a dictionary record, before the entry
+ * that references them. Once the dictionary is full, new values are written in-line.
+ * <p>
+ * The configured pattern is ignored. Rotation and the other file handling behave exactly as for
+ * {@link AccessLogValve}. Asynchronous logging is not supported.
+ */
+public class BinaryAccessLogValve extends AccessLogValve {
+
+    private static final Log log = LogFactory.getLog(BinaryAccessLogValve.class);
+
+    static final byte[] MAGIC = new byte[] { 'T', 'C', 'A', 'L' };
+    static final int VERSION = 1;
+
+    static final int RECORD_HEADER = 0;
+    static final int RECORD_DICTIONARY = 1;
+    static final int RECORD_ENTRY = 2;
+
+    static final int FIELD_REMOTE_HOST = 0;
+    static final int FIELD_USER = 1;
+    static final int FIELD_METHOD = 2;
+    static final int FIELD_URI = 3;
+    static final int FIELD_QUERY = 4;
+    static final int FIELD_PROTOCOL = 5;
+    static final int FIELD_STATUS = 6;
+    static final int FIELD_REFERER = 7;
+    static final int FIELD_USER_AGENT = 8;
+    static final int FIELD_COUNT = 9;
+
+    static final int STRING_NULL = 0;
+    static final int STRING_INLINE = 1;
+    static final int STRING_DICTIONARY = 2;
+
+    private static final int MAX_STATUS = 1000;
+
+
+    public BinaryAccessLogValve() {
+        super();
+        setSuffix(".bin");
+    }
+
+
+    private int maxDictionarySize = 16384;
+
+    /*
+     * The following are guarded by the valve's lock. The dictionaries are reset each time a log file is opened.
+     */
+    private OutputStream out = null;
+    @SuppressWarnings("unchecked")
+    private final Map<String,Integer>[] dictionaries = new Map[FIELD_COUNT];
+    private final int[] statusDictionary = new int[MAX_STATUS];
+    private int statusDictionarySize;
+    private long lastTime;
+    private final RecordBuffer entry = new RecordBuffer();
+    private final RecordBuffer dictionaryEntry = new RecordBuffer();
+
+
+    /**
+     * @return the maximum number of entries in the dictionary for each dictionary encoded field
+     */
+    public int getMaxDictionarySize() {
+        return maxDictionarySize;
+    }
+
+
+    /**
+     * Set the maximum number of entries in the dictionary for each dictionary encoded field. Values seen once the
+     * dictionary is full are written in-line. Each dictionary is cleared when a new log file is opened.
+     *
+     * @param maxDictionarySize The maximum number of dictionary entries
+     */
+    public void setMaxDictionarySize(int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+
+    @Override
+    protected PrintWriter createWriter(OutputStream os, Charset charset) {
+        out = new BufferedOutputStream(os, 128000);
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            dictionaries[i] = new HashMap<>();
+        }
+        statusDictionarySize = 0;
+        for (int i = 0; i < MAX_STATUS; i++) {
+            statusDictionary[i] = -1;
+        }
+        lastTime = 0;
+
+        entry.reset();
+        entry.write(MAGIC, 0, MAGIC.length);
+        entry.write(VERSION);
+        try {
+            writeRecord(RECORD_HEADER, entry);
+        } catch (IOException ioe) {
+            log.warn(sm.getString("accessLogValve.writeFail", "header"), ioe);
+        }
+
+        // The writer is only used to flush and close the stream
+        return new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), false);
+    }
+
+
+    @Override
+    public void log(Request request, Response response, long time) {
+        if (!getState().isAvailable() || !getEnabled() ||
+                condition != null && null != request.getRequest().getAttribute(condition) ||
+                conditionIf != null && null == request.getRequest().getAttribute(conditionIf)) {
+            return;
+        }
+
+        checkLogFile();
+
+        synchronized (this) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writeEntry(request, response, time);
+                if (!isBuffered()) {
+                    out.flush();
+                }
+            } catch (IOException ioe) {
+                log.warn(sm.getString("accessLogValve.writeFail", request.getRequestURI()), ioe);
+            }
+        }
+    }
+
+
+    private void writeEntry(Request request, Response response, long time) throws IOException {
+        entry.reset();
+
+        long startTime = request.getCoyoteRequest().getStartTime();
+        entry.writeSignedVarLong(startTime - lastTime);
+        lastTime = startTime;
+        entry.writeVarLong(TimeUnit.NANOSECONDS.toMicros(time));
+
+        writeString(FIELD_REMOTE_HOST, getRemoteHost(request));
+        writeString(FIELD_USER, request.getRemoteUser());
+        writeString(FIELD_METHOD, request.getMethod());
+        writeString(FIELD_URI, request.getRequestURI());
+        writeString(FIELD_QUERY, request.getQueryString());
+        writeString(FIELD_PROTOCOL, request.getProtocol());
+        writeStatus(response.getStatus());
+        entry.writeVarLong(response.getBytesWritten(false));
+        writeString(FIELD_REFERER, request.getHeader("Referer"));
+        writeString(FIELD_USER_AGENT, request.getHeader("User-Agent"));
+
+        writeRecord(RECORD_ENTRY, entry);
+    }
+
+
+    private String getRemoteHost(Request request) {
+        String value = null;
+        if (requestAttributesEnabled) {
+            Object host = request.getAttribute(REMOTE_HOST_ATTRIBUTE);
+            if (host != null) {
+                value = host.toString();
+            }
+        }
+        if (value == null || value.length() == 0) {
+            value = request.getRemoteHost();
+        }
+        if (value != null && getIpv6Canonical()) {
+            value = IPv6Utils.canonize(value);
+        }
+        return value;
+    }
+
+
+    private void writeString(int field, String value) throws IOException {
+        if (value == null) {
+            entry.writeVarLong(STRING_NULL);
+            return;
+        }
+        if (field != FIELD_QUERY) {
+            Map<String,Integer> dictionary = dictionaries[field];
+            Integer index = dictionary.get(value);
+            if (index == null && dictionary.size() < maxDictionarySize) {
+                index = Integer.valueOf(dictionary.size());
+                // Only add the value once the dictionary record has been written
+                writeDictionaryEntry(field, index.intValue(), value);
+                dictionary.put(value, index);
+            }
+            if (index != null) {
+                entry.writeVarLong(STRING_DICTIONARY + index.intValue());
+                return;
+            }
+        }
+        entry.writeVarLong(STRING_INLINE);
+        entry.writeString(value);
+    }
+
+
+    private void writeStatus(int status) throws IOException {
+        if (status < 0 || status >= MAX_STATUS) {
+            entry.writeVarLong(STRING_INLINE);
+            entry.writeString(Integer.toString(status));
+            return;
+        }
+        int index = statusDictionary[status];
+        if (index == -1) {
+            index = statusDictionarySize;
+            writeDictionaryEntry(FIELD_STATUS, index, Integer.toString(status));
+            statusDictionarySize++;
+            statusDictionary[status] = index;
+        }
+        entry.writeVarLong(STRING_DICTIONARY + index);
+    }
+
+
+    private void writeDictionaryEntry(int field, int index, String value) throws IOException {
+        dictionaryEntry.reset();
+        dictionaryEntry.write(field);
+        dictionaryEntry.writeVarLong(index);
+        dictionaryEntry.writeString(value);
+        writeRecord(RECORD_DICTIONARY, dictionaryEntry);
+    }
+
+
+    private void writeRecord(int type, RecordBuffer record) throws IOException {
+        out.write(type);
+        int length = record.size();
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        record.writeTo(out);
+    }
+
+
+    /*
+     * A re-usable buffer for the data of a single record.
+     */
+    private static class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer() {
+            super(256);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeSignedVarLong(long value) {
+            // Zig-zag encoding so small negative values are also small
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.util.TimingWheel;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * This valve detects requests that take a long time to complete, which might indicate that the thread processing the
+ * request is stuck or that an asynchronous request is never going to be completed.
+ * <p>
+ * Rather than examining every request in progress each time the background process of its container runs, as
+ * {@link StuckThreadDetectionValve} does, this valve schedules a timeout for each request on a {@link TimingWheel}.
+ * Starting and ending the monitoring of a request are constant time operations and a stuck request is detected within
+ * {@link #getTickInterval()} milliseconds of its threshold being reached. Asynchronous requests are monitored until
+ * the asynchronous processing completes.
+ * <p>
+ * The threshold may be configured per URL pattern. Optionally, the stack of the thread processing a stuck request may
+ * be sampled several times to provide a profile of where that thread is spending its time.
+ */
+public class StuckRequestDetectionValve extends ValveBase {
+
+    private static final Log log = LogFactory.getLog(StuckRequestDetectionValve.class);
+
+    private static final StringManager sm = StringManager.getManager(Constants.Package);
+
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private static final AtomicInteger instanceCount = new AtomicInteger();
+
+    /**
+     * The name of the request note used to find the monitoring state of a request when it is dispatched again after
+     * asynchronous processing. Unique per valve instance as the valve may be configured at more than one level.
+     */
+    private final String noteName = StuckRequestDetectionValve.class.getName() + "." + instanceCount.incrementAndGet();
+
+    private final AtomicInteger stuckCount = new AtomicInteger();
+
+    private final Set<MonitoredRequest> stuckRequests = ConcurrentHashMap.newKeySet();
+
+    private volatile TimingWheel<MonitoredRequest> wheel;
+
+    private ScheduledFuture<?> tickFuture;
+
+    /**
+     * In milliseconds. Default 600000 (10 minutes).
+     */
+    private int threshold = 600000;
+
+    private String thresholds = null;
+
+    private volatile ThresholdPattern[] thresholdPatterns = new ThresholdPattern[0];
+
+    /**
+     * In milliseconds. Default 100.
+     */
+    private int tickInterval = 100;
+
+    private int stackSampleCount = 0;
+
+    /**
+     * In milliseconds. Default 100.
+     */
+    private int stackSampleInterval = 100;
+
+
+    /**
+     * Required to enable async support.
+     */
+    public StuckRequestDetectionValve() {
+        super(true);
+    }
+
+
+    /**
+     * @return the threshold in milliseconds used for requests that do not match any of the patterns configured with
+     *             {@link #setThresholds(String)}
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+
+    /**
+     * Specifies the threshold (in milliseconds) after which a request is considered stuck. If &lt;=0, requests are not
+     * monitored unless they match one of the patterns configured with {@link #setThresholds(String)}. The default is
+     * 600000 milliseconds.
+     *
+     * @param threshold The new threshold in milliseconds
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+
+    public String getThresholds() {
+        return thresholds;
+    }
+
+
+    /**
+     * Specifies thresholds for requests that match URL patterns as a comma separated list of
+     * <code>pattern=milliseconds</code> entries, for example <code>/api/*=30000,*.jsp=5000,/events=0</code>. The
+     * patterns take the same forms as servlet mappings (exact, path prefix or extension) and are matched against the
+     * request URI, including any context path. The first matching pattern is used. A threshold &lt;=0 disables
+     * monitoring of the matching requests.
+     *
+     * @param thresholds The thresholds for URL patterns
+     *
+     * @throws IllegalArgumentException if an entry is not valid
+     */
+    public void setThresholds(String thresholds) {
+        List<ThresholdPattern> patterns = new ArrayList<>();
+        if (thresholds != null) {
+            for (String entry : thresholds.split(",")) {
+                entry = entry.trim();
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                patterns.add(ThresholdPattern.parse(entry));
+            }
+        }
+        this.thresholdPatterns = patterns.toArray(new ThresholdPattern[0]);
+        this.thresholds = thresholds;
+    }
+
+
+    public int getTickInterval() {
+        return tickInterval;
+    }
+
+
+    /**
+     * Specifies how often, in milliseconds, the valve checks for requests that have exceeded their threshold. This is
+     * the resolution of the thresholds. The default is 100 milliseconds. Changes take effect when the valve is next
+     * started.
+     *
+     * @param tickInterval The new interval in milliseconds
+     */
+    public void setTickInterval(int tickInterval) {
+        this.tickInterval = tickInterval;
+    }
+
+
+    public int getStackSampleCount() {
+        return stackSampleCount;
+    }
+
+
+    /**
+     * Specifies how many times the stack of the thread processing a stuck request is sampled after the request has
+     * been reported as stuck. The samples are logged as a profile, grouped by stack, once they have all been taken or
+     * when the request completes. If &lt;=0, the default, stacks are not sampled.
+     *
+     * @param stackSampleCount The new number of samples
+     */
+    public void setStackSampleCount(int stackSampleCount) {
+        this.stackSampleCount = stackSampleCount;
+    }
+
+
+    public int getStackSampleInterval() {
+        return stackSampleInterval;
+    }
+
+
+    /**
+     * Specifies the interval, in milliseconds, between samples of the stack of the thread processing a stuck request.
+     * The default is 100 milliseconds.
+     *
+     * @param stackSampleInterval The new interval in milliseconds
+     */
+    public void setStackSampleInterval(int stackSampleInterval) {
+        this.stackSampleInterval = stackSampleInterval;
+    }
+
+
+    /**
+     * @return the number of requests currently considered stuck
+     */
+    public int getStuckRequestCount() {
+        return stuckCount.get();
+    }
+
+
+    /**
+     * @return the URIs, including any query string, of the requests currently considered stuck
+     */
+    public String[] getStuckRequestUris() {
+        List<String> uris = new ArrayList<>();
+        for (MonitoredRequest monitoredRequest : stuckRequests) {
+            uris.add(monitoredRequest.getRequestUri());
+        }
+        return uris.toArray(new String[0]);
+    }
+
+
+    /**
+     * @return the names of the threads currently processing a request that is considered stuck. Asynchronous requests
+     *             that are not currently being processed by a thread are not included.
+     */
+    public String[] getStuckThreadNames() {
+        List<String> names = new ArrayList<>();
+        for (MonitoredRequest monitoredRequest : stuckRequests) {
+            Thread thread = monitoredRequest.thread;
+            if (thread != null) {
+                names.add(thread.getName());
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+
+    @Override
+    protected void startInternal() throws LifecycleException {
+        int tickInterval = Math.max(1, this.tickInterval);
+        wheel = new TimingWheel<>(tickInterval, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+        tickFuture = Container.getService(getContainer()).getServer().getUtilityExecutor()
+                .scheduleWithFixedDelay(this::tick, tickInterval, tickInterval, TimeUnit.MILLISECONDS);
+
+        super.startInternal();
+    }
+
+
+    @Override
+    protected void stopInternal() throws LifecycleException {
+        super.stopInternal();
+
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+            tickFuture = null;
+        }
+    }
+
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+
+        MonitoredRequest monitoredRequest = (MonitoredRequest) request.getNote(noteName);
+        if (monitoredRequest == null) {
+            // First time this valve has seen the request
+            TimingWheel<MonitoredRequest> wheel = this.wheel;
+            int threshold = getThreshold(request.getDecodedRequestURI());
+            if (threshold <= 0 || wheel == null) {
+                // short-circuit if not monitoring this request
+                getNext().invoke(request, response);
+                return;
+            }
+            monitoredRequest = new MonitoredRequest(request.getRequestURI(), request.getQueryString(), threshold);
+            monitoredRequest.timeout = wheel.schedule(monitoredRequest, threshold, TimeUnit.MILLISECONDS);
+            request.setNote(noteName, monitoredRequest);
+        }
+
+        monitoredRequest.thread = Thread.currentThread();
+        try {
+            getNext().invoke(request, response);
+        } finally {
+            monitoredRequest.thread = null;
+            if (!request.isAsync()) {
+                monitoredRequest.done();
+            } else if (!monitoredRequest.listening) {
+                // The request will be completed later, possibly after being dispatched back to this valve
+                try {
+                    request.getAsyncContextInternal().addListener(monitoredRequest);
+                    monitoredRequest.listening = true;
+                } catch (IllegalStateException ise) {
+                    // The request has already completed
+                    monitoredRequest.done();
+                }
+            }
+        }
+    }
+
+
+    private int getThreshold(String uri) {
+        if (uri != null) {
+            for (ThresholdPattern thresholdPattern : thresholdPatterns) {
+                if (thresholdPattern.matches(uri)) {
+                    return thresholdPattern.threshold;
+                }
+            }
+        }
+        return threshold;
+    }
+
+
+    private void tick() {
+        TimingWheel<MonitoredRequest> wheel = this.wheel;
+        if (wheel != null) {
+            wheel.expire(System.nanoTime(), this::expired);
+        }
+    }
+
+
+    /*
+     * Called by the tick task when the threshold for a request has been reached and then once per sample interval if
+     * the stack of the thread processing the request is being sampled.
+     */
+    private void expired(MonitoredRequest monitoredRequest) {
+        try {
+            synchronized (monitoredRequest) {
+                if (monitoredRequest.markAsStuckIfStillRunning()) {
+                    stuckRequests.add(monitoredRequest);
+                    int numStuckRequests = stuckCount.incrementAndGet();
+                    notifyStuckRequestDetected(monitoredRequest, numStuckRequests);
+                    int stackSampleCount = this.stackSampleCount;
+                    if (stackSampleCount > 0) {
+                        monitoredRequest.samplesRemaining = stackSampleCount;
+                        monitoredRequest.sampleInterval = Math.max(1, stackSampleInterval);
+                        sample(monitoredRequest);
+                    }
+                } else if (monitoredRequest.isMarkedAsStuck() && monitoredRequest.samplesRemaining > 0) {
+                    sample(monitoredRequest);
+                }
+            }
+        } catch (Throwable t) {
+            ExceptionUtils.handleThrowable(t);
+            log.warn(sm.getString("stuckRequestDetectionValve.checkFail", monitoredRequest.getRequestUri()), t);
+        }
+    }
+
+
+    /*
+     * Called with the monitored request locked.
+     */
+    private void sample(MonitoredRequest monitoredRequest) {
+        monitoredRequest.sample();
+        if (monitoredRequest.samplesRemaining > 0) {
+            monitoredRequest.timeout =
+                    wheel.schedule(monitoredRequest, monitoredRequest.sampleInterval, TimeUnit.MILLISECONDS);
+        } else {
+            notifyStackProfile(monitoredRequest);
+        }
+    }
+
+
+    private void completed(MonitoredRequest monitoredRequest) {
+        synchronized (monitoredRequest) {
+            stuckRequests.remove(monitoredRequest);
+            int numStuckRequests = stuckCount.decrementAndGet();
+            if (monitoredRequest.samplesRemaining > 0) {
+                // Log the samples taken before the request completed
+                monitoredRequest.samplesRemaining = 0;
+                notifyStackProfile(monitoredRequest);
+            }
+            if (log.isWarnEnabled()) {
+                log.warn(sm.getString("stuckRequestDetectionValve.notifyStuckRequestCompleted",
+                        monitoredRequest.getRequestUri(), Long.valueOf(monitoredRequest.getActiveTimeInMillis()),
+                        Integer.valueOf(numStuckRequests)));
+            }
+        }
+    }
+
+
+    private void notifyStuckRequestDetected(MonitoredRequest monitoredRequest, int numStuckRequests) {
+        if (log.isWarnEnabled()) {
+            Thread thread = monitoredRequest.thread;
+            if (thread == null) {
+                log.warn(sm.getString("stuckRequestDetectionValve.notifyStuckAsyncRequestDetected",
+                        monitoredRequest.getRequestUri(), Long.valueOf(monitoredRequest.getActiveTimeInMillis()),
+                        monitoredRequest.getStartTime(), Integer.valueOf(monitoredRequest.threshold),
+                        Integer.valueOf(numStuckRequests)));
+            } else {
+                String msg = sm.getString("stuckRequestDetectionValve.notifyStuckRequestDetected",
+                        monitoredRequest.getRequestUri(), Long.valueOf(monitoredRequest.getActiveTimeInMillis()),
+                        monitoredRequest.getStartTime(), Integer.valueOf(monitoredRequest.threshold),
+                        Integer.valueOf(numStuckRequests), thread.getName());
+                Throwable th = new Throwable();
+                th.setStackTrace(thread.getStackTrace());
+                log.warn(msg, th);
+            }
+        }
+    }
+
+
+    /*
+     * Called with the monitored request locked.
+     */
+    private void notifyStackProfile(MonitoredRequest monitoredRequest) {
+        if (monitoredRequest.samples.isEmpty()) {
+            return;
+        }
+        if (log.isWarnEnabled()) {
+            List<Map.Entry<String,int[]>> stacks = new ArrayList<>(monitoredRequest.samples.entrySet());
+            stacks.sort((e1, e2) -> Integer.compare(e2.getValue()[0], e1.getValue()[0]));
+            StringBuilder profile = new StringBuilder();
+            for (Map.Entry<String,int[]> stack : stacks) {
+                profile.append(System.lineSeparator());
+                profile.append(sm.getString("stuckRequestDetectionValve.stackSamples",
+                        Integer.valueOf(stack.getValue()[0])));
+                profile.append(stack.getKey());
+            }
+            log.warn(sm.getString("stuckRequestDetectionValve.stackProfile", monitoredRequest.getRequestUri(),
+                    Integer.valueOf(monitoredRequest.sampleCount), Integer.valueOf(monitoredRequest.sampleInterval),
+                    profile));
+        }
+        monitoredRequest.samples.clear();
+    }
+
+
+    private static final class ThresholdPattern {
+
+        private final String exact;
+        private final String prefix;
+        private final String extension;
+        private final int threshold;
+
+        private ThresholdPattern(String exact, String prefix, String extension, int threshold) {
+            this.exact = exact;
+            this.prefix = prefix;
+            this.extension = extension;
+            this.threshold = threshold;
+        }
+
+        static ThresholdPattern parse(String entry) {
+            int equals = entry.lastIndexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException(sm.getString("stuckRequestDetectionValve.invalidThreshold", entry));
+            }
+            String pattern = entry.substring(0, equals).trim();
+            int threshold;
+            try {
+                threshold = Integer.parseInt(entry.substring(equals + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(sm.getString("stuckRequestDetectionValve.invalidThreshold", entry),
+                        e);
+            }
+            if (pattern.startsWith("*.") && pattern.length() > 2) {
+                return new ThresholdPattern(null, null, pattern.substring(1), threshold);
+            } else if (pattern.endsWith("/*") && pattern.startsWith("/")) {
+                return new ThresholdPattern(pattern.substring(0, pattern.length() - 2), pattern.substring(0,
+                        pattern.length() - 1), null, threshold);
+            } else if (pattern.startsWith("/") && pattern.indexOf('*') == -1) {
+                return new ThresholdPattern(pattern, null, null, threshold);
+            }
+            throw new IllegalArgumentException(sm.getString("stuckRequestDetectionValve.invalidThreshold", entry));
+        }
+
+        boolean matches(String uri) {
+            if (extension != null) {
+                return uri.endsWith(extension) && uri.lastIndexOf('/') < uri.length() - extension.length();
+            }
+            if (uri.equals(exact)) {
+                return true;
+            }
+            return prefix != null && uri.startsWith(prefix);
+        }
+    }
+
+
+    private final class MonitoredRequest implements AsyncListener {
+
+        private final String requestUri;
+        private final String queryString;
+        private final int threshold;
+        private final long start;
+        private final AtomicInteger state = new AtomicInteger(MonitoredRequestState.RUNNING.ordinal());
+
+        /**
+         * The thread currently processing the request, if any. Cleared when the processing of an asynchronous request
+         * moves off the container thread so that threads are not retained.
+         */
+        private volatile Thread thread;
+
+        private volatile TimingWheel.Timeout<MonitoredRequest> timeout;
+
+        /**
+         * Only accessed by container threads processing the request.
+         */
+        private boolean listening = false;
+
+        // Guarded by this
+        private final Map<String,int[]> samples = new LinkedHashMap<>();
+        private int samplesRemaining;
+        private int sampleCount;
+        private int sampleInterval;
+
+        MonitoredRequest(String requestUri, String queryString, int threshold) {
+            this.requestUri = requestUri;
+            this.queryString = queryString;
+            this.threshold = threshold;
+            this.start = System.currentTimeMillis();
+        }
+
+        String getRequestUri() {
+            if (queryString == null) {
+                return requestUri;
+            }
+            return requestUri + "?" + queryString;
+        }
+
+        long getActiveTimeInMillis() {
+            return System.currentTimeMillis() - start;
+        }
+
+        Date getStartTime() {
+            return new Date(start);
+        }
+
+        boolean markAsStuckIfStillRunning() {
+            return state.compareAndSet(MonitoredRequestState.RUNNING.ordinal(), MonitoredRequestState.STUCK.ordinal());
+        }
+
+        boolean isMarkedAsStuck() {
+            return state.get() == MonitoredRequestState.STUCK.ordinal();
+        }
+
+        void done() {
+            int previous = state.getAndSet(MonitoredRequestState.DONE.ordinal());
+            if (previous == MonitoredRequestState.DONE.ordinal()) {
+                return;
+            }
+            TimingWheel.Timeout<MonitoredRequest> timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            if (previous == MonitoredRequestState.STUCK.ordinal()) {
+                completed(this);
+            }
+        }
+
+        /*
+         * Called with this request locked.
+         */
+        void sample() {
+            samplesRemaining--;
+            Thread thread = this.thread;
+            if (thread == null) {
+                // Asynchronous request not currently being processed by a thread
+                return;
+            }
+            StackTraceElement[] stack = thread.getStackTrace();
+            StringBuilder key = new StringBuilder();
+            for (StackTraceElement element : stack) {
+                key.append(System.lineSeparator());
+                key.append("\tat ");
+                key.append(element);
+            }
+            samples.computeIfAbsent(key.toString(), k -> new int[1])[0]++;
+            sampleCount++;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            done();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            // NO-OP. onComplete() will be called.
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            // NO-OP. onComplete() will be called.
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // Listeners are removed when asynchronous processing is restarted
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+
+    private enum MonitoredRequestState {
+        RUNNING,
+        STUCK,
+        DONE
+    }
+}
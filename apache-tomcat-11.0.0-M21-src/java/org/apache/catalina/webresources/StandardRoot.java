@@ -481,6 +481,14 @@ public class StandardRoot extends LifecycleMBeanBase implements WebResourceRoot
     }
 
 
+    /**
+     * @return the cache used by this resource root
+     */
+    public Cache getCache() {
+        return cache;
+    }
+
+
     @Override
     public CacheStrategy getCacheStrategy() {
         return cache.getCacheStrategy();
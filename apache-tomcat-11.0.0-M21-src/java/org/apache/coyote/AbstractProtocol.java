@@ -204,6 +204,21 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler, MBeanRegis
     }
 
 
+    /**
+     * Should the time each {@link RequestTimingPoint} is reached be recorded for each request? The timings are
+     * aggregated per Wrapper and may be written to the access log.
+     */
+    private boolean recordRequestTimings = false;
+
+    public boolean getRecordRequestTimings() {
+        return recordRequestTimings;
+    }
+
+    public void setRecordRequestTimings(boolean recordRequestTimings) {
+        this.recordRequestTimings = recordRequestTimings;
+    }
+
+
     @Override
     public boolean isSendfileSupported() {
         return endpoint.getUseSendfile();
@@ -376,6 +391,80 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler, MBeanRegis
         return endpoint.getConnectionCount();
     }
 
+
+    /**
+     * The poller loop lag above which the endpoint is considered to be overloaded.
+     *
+     * @return The lag in milliseconds or -1 if the poller lag is not checked
+     */
+    public long getOverloadPollerLag() {
+        return endpoint.getOverloadPollerLag();
+    }
+
+    public void setOverloadPollerLag(long overloadPollerLag) {
+        endpoint.setOverloadPollerLag(overloadPollerLag);
+    }
+
+
+    /**
+     * The time tasks wait in the executor queue above which the endpoint is considered to be overloaded.
+     *
+     * @return The delay in milliseconds or -1 if the queue delay is not checked
+     */
+    public long getOverloadQueueDelay() {
+        return endpoint.getOverloadQueueDelay();
+    }
+
+    public void setOverloadQueueDelay(long overloadQueueDelay) {
+        endpoint.setOverloadQueueDelay(overloadQueueDelay);
+    }
+
+
+    /**
+     * What the endpoint does while it is overloaded: <code>reject</code> new requests with a 503 response or
+     * <code>pause</code> accepting new connections.
+     *
+     * @return The action taken when overloaded
+     */
+    public String getOverloadAction() {
+        return endpoint.getOverloadAction();
+    }
+
+    public void setOverloadAction(String overloadAction) {
+        endpoint.setOverloadAction(overloadAction);
+    }
+
+
+    public long getPollerLag() {
+        return endpoint.getPollerLag();
+    }
+
+
+    public long getQueueDelay() {
+        return endpoint.getQueueDelay();
+    }
+
+
+    public long getOverloadRejectedCount() {
+        return endpoint.getOverloadRejectedCount();
+    }
+
+
+    public long getOverloadPausedCount() {
+        return endpoint.getOverloadPausedCount();
+    }
+
+
+    /**
+     * Called by processors for each new request to determine if it should be rejected because the endpoint is
+     * overloaded.
+     *
+     * @return {@code true} if the request should be rejected
+     */
+    public boolean rejectIfOverloaded() {
+        return endpoint.rejectIfOverloaded();
+    }
+
     public void setAcceptorThreadPriority(int threadPriority) {
         endpoint.setAcceptorThreadPriority(threadPriority);
     }
@@ -384,6 +473,14 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler, MBeanRegis
         return endpoint.getAcceptorThreadPriority();
     }
 
+    public void setAcceptorCount(int acceptorCount) {
+        endpoint.setAcceptorCount(acceptorCount);
+    }
+
+    public int getAcceptorCount() {
+        return endpoint.getAcceptorCount();
+    }
+
 
     // ---------------------------------------------------------- Public methods
 
@@ -975,6 +1072,7 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler, MBeanRegis
                     // processor. Continue to poll for the next request.
                     release(processor);
                     processor = null;
+                    wrapper.releaseIdleBuffers();
                     wrapper.registerReadInterest();
                 } else if (state == SocketState.SENDFILE) {
                     // Sendfile in progress. If it fails, the socket will be
@@ -0,0 +1,240 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of compressed response bodies. Entries are keyed by the content coding and a hash of the uncompressed response
+ * body. The total size of the cached compressed bodies is bounded and the least recently used entries are evicted
+ * first.
+ */
+public class CompressionCache {
+
+    /*
+     * Approximate per entry overhead (map entry, cache entry, key and array headers) used when calculating the size of
+     * the cache.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    // Access ordered to provide LRU eviction
+    private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private volatile long maxSize = 0;
+    private volatile int maxEntrySize = 64 * 1024;
+    private volatile boolean cacheWithoutETag = false;
+    private long size = 0;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+
+    /**
+     * Set the maximum size of the cache. A value of zero or less disables the cache.
+     *
+     * @param maxSize The maximum total size, in bytes, of the cached entries
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        synchronized (entries) {
+            evict();
+        }
+    }
+
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+
+    /**
+     * Set the maximum size of a response body that will be cached.
+     *
+     * @param maxEntrySize The maximum size, in bytes, of the uncompressed response body of a cached entry
+     */
+    public void setMaxEntrySize(int maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+
+    public boolean getCacheWithoutETag() {
+        return cacheWithoutETag;
+    }
+
+
+    /**
+     * Set whether responses that do not have an ETag are cached. Cached responses are buffered, up to the maximum
+     * entry size, until they are complete so that the hash of the response body can be calculated.
+     *
+     * @param cacheWithoutETag {@code true} to cache responses without an ETag
+     */
+    public void setCacheWithoutETag(boolean cacheWithoutETag) {
+        this.cacheWithoutETag = cacheWithoutETag;
+    }
+
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+
+    /**
+     * Look up the compressed response body for the given key. This updates the hit and miss statistics.
+     *
+     * @param key The cache key
+     *
+     * @return The compressed response body or {@code null} if no entry exists for the key
+     */
+    public byte[] get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        bytesSaved.add(entry.uncompressedLength);
+        return entry.compressed;
+    }
+
+
+    /**
+     * Add an entry to the cache, evicting the least recently used entries if necessary.
+     *
+     * @param key                The cache key
+     * @param compressed         The compressed response body. The cache takes ownership of the array.
+     * @param uncompressedLength The length of the uncompressed response body
+     */
+    public void put(String key, byte[] compressed, long uncompressedLength) {
+        long entrySize = entrySize(key, compressed);
+        if (entrySize > maxSize) {
+            return;
+        }
+        Entry entry = new Entry(compressed, uncompressedLength);
+        synchronized (entries) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                size -= entrySize(key, old.compressed);
+            }
+            size += entrySize;
+            evict();
+        }
+    }
+
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+
+    /*
+     * Must be called while holding the lock on entries.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String,Entry>> iter = entries.entrySet().iterator();
+        while (size > maxSize && iter.hasNext()) {
+            Map.Entry<String,Entry> eldest = iter.next();
+            size -= entrySize(eldest.getKey(), eldest.getValue().compressed);
+            iter.remove();
+        }
+    }
+
+
+    private static long entrySize(String key, byte[] compressed) {
+        return compressed.length + 2L * key.length() + ENTRY_OVERHEAD;
+    }
+
+
+    // ----------------------------------------------------------- Statistics
+
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+
+    public int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+
+    public long getHitCount() {
+        return hitCount.longValue();
+    }
+
+
+    public long getMissCount() {
+        return missCount.longValue();
+    }
+
+
+    public double getHitRatio() {
+        long hits = hitCount.longValue();
+        long lookups = hits + missCount.longValue();
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hits / lookups;
+    }
+
+
+    /**
+     * Obtain the number of uncompressed response body bytes that did not have to be compressed because the compressed
+     * response body was served from the cache.
+     *
+     * @return The number of bytes
+     */
+    public long getBytesSaved() {
+        return bytesSaved.longValue();
+    }
+
+
+    public void resetCounters() {
+        hitCount.reset();
+        missCount.reset();
+        bytesSaved.reset();
+    }
+
+
+    private static class Entry {
+
+        private final byte[] compressed;
+        private final long uncompressedLength;
+
+        Entry(byte[] compressed, long uncompressedLength) {
+            this.compressed = compressed;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+}
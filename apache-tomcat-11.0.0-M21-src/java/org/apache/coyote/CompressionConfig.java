@@ -28,6 +28,7 @@ import java.util.regex.Pattern;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.MimeHeaders;
 import org.apache.tomcat.util.http.ResponseUtil;
@@ -46,6 +47,18 @@ public class CompressionConfig {
             "text/javascript,application/javascript,application/json,application/xml";
     private String[] compressibleMimeTypes = null;
     private int compressionMinSize = 2048;
+    private String compressionEncodings = GZIP_ENCODING;
+    private CompressionEncoder[] compressionEncoders = null;
+    private final CompressionCache compressionCache = new CompressionCache();
+
+    private static final String GZIP_ENCODING = "gzip";
+    /*
+     * The encoders provided by Tomcat are loaded by name as they are part of the HTTP/1.1 implementation and the
+     * native encoders are compiled separately as they require a newer Java version.
+     */
+    private static final String GZIP_ENCODER = "org.apache.coyote.http11.filters.GzipCompressionEncoder";
+    private static final String BROTLI_ENCODER = "org.apache.coyote.http11.filters.panama.BrotliCompressionEncoder";
+    private static final String ZSTD_ENCODER = "org.apache.coyote.http11.filters.panama.ZstdCompressionEncoder";
 
 
     /**
@@ -177,6 +190,211 @@ public class CompressionConfig {
     }
 
 
+    public String getCompressionEncodings() {
+        return compressionEncodings;
+    }
+
+
+    /**
+     * Set the content codings that may be used to compress responses in server preference order. Each entry is one of
+     * <code>gzip</code>, <code>br</code>, <code>zstd</code> or the fully qualified class name of a
+     * {@link CompressionEncoder} implementation. Entries that are not available are ignored. If no entries are
+     * available, <code>gzip</code> is used.
+     *
+     * @param compressionEncodings The comma separated list of content codings
+     */
+    public void setCompressionEncodings(String compressionEncodings) {
+        this.compressionEncodings = compressionEncodings;
+        compressionEncoders = null;
+    }
+
+
+    public long getCompressionCacheSize() {
+        return compressionCache.getMaxSize();
+    }
+
+
+    /**
+     * Set the maximum size of the cache of compressed response bodies. A value of zero or less disables the cache.
+     *
+     * @param compressionCacheSize The maximum total size, in bytes, of the cached compressed response bodies
+     */
+    public void setCompressionCacheSize(long compressionCacheSize) {
+        compressionCache.setMaxSize(compressionCacheSize);
+    }
+
+
+    public int getCompressionCacheMaxEntrySize() {
+        return compressionCache.getMaxEntrySize();
+    }
+
+
+    /**
+     * Set the maximum size of a response body that will be added to the cache of compressed response bodies.
+     *
+     * @param compressionCacheMaxEntrySize The maximum size, in bytes, of the uncompressed response body
+     */
+    public void setCompressionCacheMaxEntrySize(int compressionCacheMaxEntrySize) {
+        compressionCache.setMaxEntrySize(compressionCacheMaxEntrySize);
+    }
+
+
+    public boolean getCompressionCacheWithoutETag() {
+        return compressionCache.getCacheWithoutETag();
+    }
+
+
+    /**
+     * Set whether responses that do not have an ETag are added to the cache of compressed response bodies.
+     *
+     * @param compressionCacheWithoutETag {@code true} to buffer and cache responses without an ETag
+     */
+    public void setCompressionCacheWithoutETag(boolean compressionCacheWithoutETag) {
+        compressionCache.setCacheWithoutETag(compressionCacheWithoutETag);
+    }
+
+
+    /**
+     * Obtain the cache of compressed response bodies.
+     *
+     * @return The cache or {@code null} if the cache is not enabled
+     */
+    public CompressionCache getCompressionCache() {
+        if (compressionCache.isEnabled()) {
+            return compressionCache;
+        }
+        return null;
+    }
+
+
+    /**
+     * Obtain the available encoders in server preference order.
+     *
+     * @return The encoders, always including at least one entry
+     */
+    public CompressionEncoder[] getCompressionEncoders() {
+        CompressionEncoder[] result = compressionEncoders;
+        if (result != null) {
+            return result;
+        }
+        List<CompressionEncoder> values = new ArrayList<>();
+        StringTokenizer tokens = new StringTokenizer(compressionEncodings, ",");
+        while (tokens.hasMoreTokens()) {
+            String token = tokens.nextToken().trim();
+            if (token.length() > 0) {
+                CompressionEncoder encoder = createEncoder(token);
+                if (encoder != null) {
+                    values.add(encoder);
+                }
+            }
+        }
+        if (values.isEmpty()) {
+            values.add(getTomcatEncoder(GZIP_ENCODING));
+        }
+        result = values.toArray(new CompressionEncoder[0]);
+        compressionEncoders = result;
+        return result;
+    }
+
+
+    /**
+     * Create the encoder for the given content coding or encoder class name.
+     *
+     * @param name The name of a content coding supported by Tomcat (gzip, br or zstd) or the fully qualified name of a
+     *                 class that implements {@link CompressionEncoder}
+     *
+     * @return The encoder or {@code null} if the encoder could not be created or is not available
+     */
+    public static CompressionEncoder createEncoder(String name) {
+        String className;
+        if (GZIP_ENCODING.equalsIgnoreCase(name)) {
+            className = GZIP_ENCODER;
+        } else if ("br".equalsIgnoreCase(name)) {
+            className = BROTLI_ENCODER;
+        } else if ("zstd".equalsIgnoreCase(name)) {
+            className = ZSTD_ENCODER;
+        } else if (isClassName(name)) {
+            className = name;
+        } else {
+            log.warn(sm.getString("compressionConfig.unknownEncoding", name));
+            return null;
+        }
+        return createEncoder(name, className, true);
+    }
+
+
+    /**
+     * Create the encoder provided by Tomcat for the given content coding. Unlike {@link #createEncoder(String)}, the
+     * name is never treated as a class name and nothing is logged if Tomcat does not provide an encoder for the
+     * content coding or if the encoder is not available.
+     *
+     * @param encoding The name of the content coding
+     *
+     * @return The encoder or {@code null} if Tomcat does not provide an available encoder for the content coding
+     */
+    public static CompressionEncoder getTomcatEncoder(String encoding) {
+        String className;
+        if (GZIP_ENCODING.equalsIgnoreCase(encoding)) {
+            className = GZIP_ENCODER;
+        } else if ("br".equalsIgnoreCase(encoding)) {
+            className = BROTLI_ENCODER;
+        } else if ("zstd".equalsIgnoreCase(encoding)) {
+            className = ZSTD_ENCODER;
+        } else {
+            return null;
+        }
+        return createEncoder(encoding, className, false);
+    }
+
+
+    private static CompressionEncoder createEncoder(String name, String className, boolean warnUnavailable) {
+        try {
+            CompressionEncoder encoder =
+                    (CompressionEncoder) Class.forName(className).getConstructor().newInstance();
+            if (encoder.isAvailable()) {
+                return encoder;
+            }
+            if (warnUnavailable) {
+                log.warn(sm.getString("compressionConfig.encoderUnavailable", name));
+            } else if (log.isDebugEnabled()) {
+                log.debug(sm.getString("compressionConfig.encoderUnavailable", name));
+            }
+        } catch (Throwable t) {
+            ExceptionUtils.handleThrowable(t);
+            // Typically an optional encoder on a JRE that does not support it
+            if (warnUnavailable) {
+                log.warn(sm.getString("compressionConfig.encoderUnavailable", name));
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("compressionConfig.encoderCreateFail", className), t);
+            }
+        }
+        return null;
+    }
+
+
+    /*
+     * Only names that look like fully qualified class names are loaded so that a content coding that Tomcat does not
+     * support is not loaded as a class.
+     */
+    private static boolean isClassName(String name) {
+        if (name.indexOf('.') == -1) {
+            return false;
+        }
+        for (String part : name.split("\\.", -1)) {
+            if (part.isEmpty() || !Character.isJavaIdentifierStart(part.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < part.length(); i++) {
+                if (!Character.isJavaIdentifierPart(part.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+
     /**
      * Determines if compression should be enabled for the given response and if it is, sets any necessary headers to
      * mark it as such.
@@ -185,13 +403,35 @@ public class CompressionConfig {
      * @param response The response to consider compressing
      *
      * @return {@code true} if compression was enabled for the given response, otherwise {@code false}
+     *
+     * @deprecated Replaced by {@link #getCompressionEncoder(Request, Response)}. This method will be removed in Tomcat
+     *                 12.
      */
+    @Deprecated
     public boolean useCompression(Request request, Response response) {
+        return getCompressionEncoder(request, response) != null;
+    }
+
+
+    /**
+     * Determines if compression should be enabled for the given response and if it is, selects the content coding to
+     * use and sets any necessary headers to mark the response as compressed. The content coding is selected using the
+     * weights in the <code>Accept-Encoding</code> request headers with the server preference order being used to select
+     * between content codings with equal weights.
+     *
+     * @param request  The request that triggered the response
+     * @param response The response to consider compressing
+     *
+     * @return The encoder to use to compress the response or {@code null} if the response should not be compressed
+     */
+    public CompressionEncoder getCompressionEncoder(Request request, Response response) {
         // Check if compression is enabled
         if (compressionLevel == 0) {
-            return false;
+            return null;
         }
 
+        CompressionEncoder[] encoders = getCompressionEncoders();
+
         MimeHeaders responseHeaders = response.getMimeHeaders();
 
         // Check if content is not already compressed
@@ -206,10 +446,12 @@ public class CompressionConfig {
                 // Because we are using StringReader, any exception here is a
                 // Tomcat bug.
                 log.warn(sm.getString("compressionConfig.ContentEncodingParseFail"), e);
-                return false;
+                return null;
             }
-            if (tokens.contains("gzip") || tokens.contains("br")) {
-                return false;
+            for (CompressionEncoder encoder : encoders) {
+                if (tokens.contains(encoder.getEncoding())) {
+                    return null;
+                }
             }
         }
 
@@ -218,14 +460,14 @@ public class CompressionConfig {
             // Check if the response is of sufficient length to trigger the compression
             long contentLength = response.getContentLengthLong();
             if (contentLength != -1 && contentLength < compressionMinSize) {
-                return false;
+                return null;
             }
 
             // Check for compatible MIME-TYPE
             String[] compressibleMimeTypes = getCompressibleMimeTypes();
             if (compressibleMimeTypes != null &&
                     !startsWithStringArray(compressibleMimeTypes, response.getContentType())) {
-                return false;
+                return null;
             }
         }
 
@@ -234,37 +476,50 @@ public class CompressionConfig {
         if (eTag != null && !eTag.trim().startsWith("W/")) {
             // Has an ETag that doesn't start with "W/..." so it must be a
             // strong ETag
-            return false;
+            return null;
         }
 
         // If processing reaches this far, the response might be compressed.
         // Therefore, set the Vary header to keep proxies happy
         ResponseUtil.addVaryFieldName(responseHeaders, "accept-encoding");
 
-        // Check if user-agent supports gzip encoding
-        // Only interested in whether gzip encoding is supported. Other
-        // encodings and weights can be ignored.
+        // Select the encoding with the highest weight supported by both the
+        // user-agent and the server. Encodings with a weight of zero are
+        // excluded by the parser. Wildcards are ignored so only explicitly
+        // requested encodings are used.
+        double[] weights = new double[encoders.length];
         Enumeration<String> headerValues = request.getMimeHeaders().values("accept-encoding");
-        boolean foundGzip = false;
-        while (!foundGzip && headerValues.hasMoreElements()) {
+        while (headerValues.hasMoreElements()) {
             List<AcceptEncoding> acceptEncodings = null;
             try {
                 acceptEncodings = AcceptEncoding.parse(new StringReader(headerValues.nextElement()));
             } catch (IOException ioe) {
                 // If there is a problem reading the header, disable compression
-                return false;
+                return null;
             }
 
             for (AcceptEncoding acceptEncoding : acceptEncodings) {
-                if ("gzip".equalsIgnoreCase(acceptEncoding.getEncoding())) {
-                    foundGzip = true;
-                    break;
+                for (int i = 0; i < encoders.length; i++) {
+                    if (encoders[i].getEncoding().equalsIgnoreCase(acceptEncoding.getEncoding()) &&
+                            acceptEncoding.getQuality() > weights[i]) {
+                        weights[i] = acceptEncoding.getQuality();
+                    }
                 }
             }
         }
 
-        if (!foundGzip) {
-            return false;
+        // Ties are resolved using the server preference order
+        CompressionEncoder selected = null;
+        double selectedWeight = 0;
+        for (int i = 0; i < encoders.length; i++) {
+            if (weights[i] > selectedWeight) {
+                selected = encoders[i];
+                selectedWeight = weights[i];
+            }
+        }
+
+        if (selected == null) {
+            return null;
         }
 
         // If force mode, the browser checks are skipped
@@ -276,7 +531,7 @@ public class CompressionConfig {
                 if (userAgentValueMB != null) {
                     String userAgentValue = userAgentValueMB.toString();
                     if (noCompressionUserAgents.matcher(userAgentValue).matches()) {
-                        return false;
+                        return null;
                     }
                 }
             }
@@ -287,9 +542,9 @@ public class CompressionConfig {
         // Compressed content length is unknown so mark it as such.
         response.setContentLength(-1);
         // Configure the content encoding for compressed content
-        responseHeaders.setValue("Content-Encoding").setString("gzip");
+        responseHeaders.setValue("Content-Encoding").setString(selected.getEncoding());
 
-        return true;
+        return selected;
     }
 
 
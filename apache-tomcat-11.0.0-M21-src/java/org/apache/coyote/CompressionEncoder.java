@@ -0,0 +1,61 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses response bodies using a single content coding. Implementations are
+ * configured by name via the <code>compressionEncodings</code> attribute of the
+ * connector and must have a public, no argument constructor. The same encoders
+ * are used for HTTP/1.1 and HTTP/2 responses.
+ */
+public interface CompressionEncoder {
+
+    /**
+     * @return The content coding, as used in the <code>Accept-Encoding</code>
+     *             and <code>Content-Encoding</code> headers, produced by this
+     *             encoder
+     */
+    String getEncoding();
+
+
+    /**
+     * Is this encoder available for use? Encoders that depend on optional
+     * libraries should return {@code false} if those libraries are not
+     * present.
+     *
+     * @return {@code true} if {@link #createOutputStream(OutputStream)} may be
+     *             called
+     */
+    boolean isAvailable();
+
+
+    /**
+     * Create a new stream that compresses the data written to it. Closing the
+     * returned stream completes the compressed data and closes the given
+     * stream.
+     *
+     * @param out The stream to which the compressed data is written
+     *
+     * @return The new compressing stream
+     *
+     * @throws IOException If the stream cannot be created
+     */
+    OutputStream createOutputStream(OutputStream out) throws IOException;
+}
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -161,6 +162,8 @@ public final class Request {
     private long bytesRead = 0;
     // Time of the request - useful to avoid repeated calls to System.currentTime
     private long startTimeNanos = -1;
+    // Only allocated if request timings are enabled
+    private long[] timingNanos = null;
     private long threadId = 0;
     private int available = 0;
 
@@ -733,6 +736,49 @@ public final class Request {
         this.startTimeNanos = startTimeNanos;
     }
 
+    public boolean isTimingsEnabled() {
+        return timingNanos != null;
+    }
+
+    /**
+     * Configure whether timestamps are recorded by {@link #recordTiming(RequestTimingPoint)}. The setting is retained
+     * when the request is recycled.
+     *
+     * @param timingsEnabled {@code true} to record timestamps
+     */
+    public void setTimingsEnabled(boolean timingsEnabled) {
+        if (timingsEnabled && timingNanos == null) {
+            timingNanos = new long[RequestTimingPoint.values().length];
+            Arrays.fill(timingNanos, -1);
+        } else if (!timingsEnabled) {
+            timingNanos = null;
+        }
+    }
+
+    /**
+     * Record the current time for the given point if timings are enabled and a time has not already been recorded
+     * for the point. Only the first time is kept so, for example, the times for an asynchronous dispatch do not replace
+     * the times for the original request.
+     *
+     * @param point The point reached in the processing of this request
+     */
+    public void recordTiming(RequestTimingPoint point) {
+        long[] timingNanos = this.timingNanos;
+        if (timingNanos != null && timingNanos[point.ordinal()] == -1) {
+            timingNanos[point.ordinal()] = System.nanoTime();
+        }
+    }
+
+    /**
+     * @param point The point of interest
+     *
+     * @return the value of {@link System#nanoTime()} when the point was reached or -1 if no time was recorded
+     */
+    public long getTimingNanos(RequestTimingPoint point) {
+        long[] timingNanos = this.timingNanos;
+        return timingNanos == null ? -1 : timingNanos[point.ordinal()];
+    }
+
     public long getThreadId() {
         return threadId;
     }
@@ -841,6 +887,9 @@ public final class Request {
         allDataReadEventSent.set(false);
 
         startTimeNanos = -1;
+        if (timingNanos != null) {
+            Arrays.fill(timingNanos, -1);
+        }
         threadId = 0;
     }
 
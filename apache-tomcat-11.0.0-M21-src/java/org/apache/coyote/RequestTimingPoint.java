@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote;
+
+/**
+ * The points in the processing of a request at which a timestamp may be recorded when request timings are enabled.
+ * The points are listed in the order they are reached for a request that is dispatched to a Servlet. The start of the
+ * request and the commit of the response are recorded separately by {@link Request#getStartTimeNanos()} and
+ * {@link Response#getCommitTimeNanos()}.
+ */
+public enum RequestTimingPoint {
+
+    /**
+     * The request line and headers have been parsed.
+     */
+    PARSED,
+
+    /**
+     * The request has been passed to the {@link Adapter}.
+     */
+    ADAPTER,
+
+    /**
+     * The request has been mapped and is about to enter the pipeline of the Engine.
+     */
+    ENGINE,
+
+    /**
+     * The request is about to enter the pipeline of the Host.
+     */
+    HOST,
+
+    /**
+     * The request is about to enter the pipeline of the Context.
+     */
+    CONTEXT,
+
+    /**
+     * The request is about to enter the pipeline of the Wrapper.
+     */
+    WRAPPER,
+
+    /**
+     * The request is about to enter the filter chain.
+     */
+    FILTER_CHAIN,
+
+    /**
+     * The request is about to be passed to the Servlet.
+     */
+    SERVLET
+}
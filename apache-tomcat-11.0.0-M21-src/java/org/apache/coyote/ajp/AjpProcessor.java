@@ -46,6 +46,7 @@ import org.apache.coyote.ErrorState;
 import org.apache.coyote.InputBuffer;
 import org.apache.coyote.OutputBuffer;
 import org.apache.coyote.RequestInfo;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.ExceptionUtils;
@@ -405,6 +406,8 @@ public class AjpProcessor extends AbstractProcessor {
             }
 
             if (getErrorState().isIoAllowed()) {
+                request.setTimingsEnabled(protocol.getRecordRequestTimings());
+                request.recordTiming(RequestTimingPoint.PARSED);
                 // Setting up filters, and parse some request headers
                 rp.setStage(org.apache.coyote.Constants.STAGE_PREPARE);
                 try {
@@ -33,7 +33,9 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpUpgradeHandler;
 
 import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.CompressionCache;
 import org.apache.coyote.CompressionConfig;
+import org.apache.coyote.CompressionEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.Processor;
 import org.apache.coyote.Request;
@@ -59,6 +61,8 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
 
     private final CompressionConfig compressionConfig = new CompressionConfig();
 
+    private ObjectName compressionCacheOname = null;
+
 
     public AbstractHttp11Protocol(AbstractEndpoint<S,?> endpoint) {
         super(endpoint);
@@ -77,6 +81,14 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
 
         super.init();
 
+        CompressionCache compressionCache = getCompressionCache();
+        if (compressionCache != null && getDomain() != null) {
+            ObjectName compressionCacheOname =
+                    new ObjectName(getDomain() + ":type=CompressionCache,name=" + getName());
+            this.compressionCacheOname = compressionCacheOname;
+            Registry.getRegistry(null, null).registerComponent(compressionCache, compressionCacheOname, null);
+        }
+
         // Set the Http11Protocol (i.e. this) for any upgrade protocols once
         // this has completed initialisation as the upgrade protocols may expect this
         // to be initialised when the call is made
@@ -100,6 +112,11 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
             }
         }
 
+        if (compressionCacheOname != null) {
+            Registry.getRegistry(null, null).unregisterComponent(compressionCacheOname);
+            compressionCacheOname = null;
+        }
+
         super.destroy();
     }
 
@@ -329,8 +346,67 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    public String getCompressionEncodings() {
+        return compressionConfig.getCompressionEncodings();
+    }
+
+    public void setCompressionEncodings(String compressionEncodings) {
+        compressionConfig.setCompressionEncodings(compressionEncodings);
+    }
+
+    public CompressionEncoder[] getCompressionEncoders() {
+        return compressionConfig.getCompressionEncoders();
+    }
+
+
+    public long getCompressionCacheSize() {
+        return compressionConfig.getCompressionCacheSize();
+    }
+
+    public void setCompressionCacheSize(long compressionCacheSize) {
+        compressionConfig.setCompressionCacheSize(compressionCacheSize);
+    }
+
+
+    public int getCompressionCacheMaxEntrySize() {
+        return compressionConfig.getCompressionCacheMaxEntrySize();
+    }
+
+    public void setCompressionCacheMaxEntrySize(int compressionCacheMaxEntrySize) {
+        compressionConfig.setCompressionCacheMaxEntrySize(compressionCacheMaxEntrySize);
+    }
+
+
+    public boolean getCompressionCacheWithoutETag() {
+        return compressionConfig.getCompressionCacheWithoutETag();
+    }
+
+    public void setCompressionCacheWithoutETag(boolean compressionCacheWithoutETag) {
+        compressionConfig.setCompressionCacheWithoutETag(compressionCacheWithoutETag);
+    }
+
+    public CompressionCache getCompressionCache() {
+        return compressionConfig.getCompressionCache();
+    }
+
+
+    /**
+     * @param request  The request that triggered the response
+     * @param response The response to consider compressing
+     *
+     * @return {@code true} if compression was enabled for the given response, otherwise {@code false}
+     *
+     * @deprecated Replaced by {@link #getCompressionEncoder(Request, Response)}. This method will be removed in Tomcat
+     *                 12.
+     */
+    @Deprecated
     public boolean useCompression(Request request, Response response) {
-        return compressionConfig.useCompression(request, response);
+        return getCompressionEncoder(request, response) != null;
+    }
+
+
+    public CompressionEncoder getCompressionEncoder(Request request, Response response) {
+        return compressionConfig.getCompressionEncoder(request, response);
     }
 
 
@@ -445,6 +521,32 @@ public abstract class AbstractHttp11Protocol<S> extends AbstractProtocol<S> {
     }
 
 
+    /**
+     * Maximum time in milliseconds for which the flush of a response may be deferred so that it can be written
+     * together with the responses to pipelined requests that have already been received. Zero or less disables
+     * deferral.
+     */
+    private int maxPipelinedFlushDelay = 0;
+
+    public int getMaxPipelinedFlushDelay() {
+        return maxPipelinedFlushDelay;
+    }
+
+    public void setMaxPipelinedFlushDelay(int maxPipelinedFlushDelay) {
+        this.maxPipelinedFlushDelay = maxPipelinedFlushDelay;
+    }
+
+
+    /**
+     * The encoded form of common response header lines, shared by all the processors of this protocol handler.
+     */
+    private final EncodedHeaderCache encodedHeaderCache = new EncodedHeaderCache();
+
+    EncodedHeaderCache getEncodedHeaderCache() {
+        return encodedHeaderCache;
+    }
+
+
     /**
      * This field indicates if the protocol is treated as if it is secure. This normally means https is being used but
      * can be used to fake https e.g behind a reverse proxy.
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+/**
+ * Caches the encoded form of complete response header lines (name, colon, value and CRLF) for the headers that
+ * typically have the same value for many responses, such as <code>Server</code>, <code>Content-Type</code> and
+ * <code>Vary</code>, so they can be written to the header buffer with a single bulk copy rather than being encoded
+ * and filtered for every response. The <code>Date</code> header has its own entry which is replaced when the value
+ * changes, i.e. once a second.
+ * <p>
+ * One instance is shared by all the processors of a protocol handler. Entries are immutable and the cache is direct
+ * mapped so it uses a fixed amount of memory. Concurrent updates may overwrite each other in which case the
+ * overwritten entry will simply be re-created the next time it is required.
+ */
+final class EncodedHeaderCache {
+
+    private static final int SIZE = 256;
+
+    /*
+     * Headers that are not listed here are never cached as their values are usually unique to the response (e.g.
+     * Set-Cookie, ETag) and caching them would just churn the cache.
+     */
+    private static final String[] CACHEABLE_HEADERS = { "Server", "Content-Type", "Content-Language",
+            "Content-Encoding", "Vary", "Transfer-Encoding", "Connection", "Keep-Alive" };
+
+    private final Entry[] entries = new Entry[SIZE];
+    private volatile Entry date;
+
+
+    /**
+     * Obtain the encoded header line for the given header.
+     *
+     * @param name  The header name
+     * @param value The header value
+     *
+     * @return the encoded header line or {@code null} if it is not in the cache
+     */
+    byte[] get(String name, String value) {
+        Entry entry;
+        if (isDate(name)) {
+            entry = date;
+        } else {
+            entry = entries[index(name, value)];
+        }
+        if (entry != null && entry.value.equals(value) && entry.name.equals(name)) {
+            return entry.line;
+        }
+        return null;
+    }
+
+
+    /**
+     * Add the encoded header line for the given header to the cache if the header is one that may be cached.
+     *
+     * @param name   The header name
+     * @param value  The header value
+     * @param buf    The buffer containing the encoded header line
+     * @param offset The offset of the encoded header line in the buffer
+     * @param length The length of the encoded header line
+     */
+    void put(String name, String value, byte[] buf, int offset, int length) {
+        if (isDate(name)) {
+            date = new Entry(name, value, buf, offset, length);
+        } else if (isCacheable(name)) {
+            entries[index(name, value)] = new Entry(name, value, buf, offset, length);
+        }
+    }
+
+
+    private static int index(String name, String value) {
+        int h = name.hashCode() * 31 + value.hashCode();
+        return (h ^ (h >>> 16)) & (SIZE - 1);
+    }
+
+
+    private static boolean isDate(String name) {
+        return name.length() == 4 && name.equalsIgnoreCase("Date");
+    }
+
+
+    private static boolean isCacheable(String name) {
+        for (String cacheable : CACHEABLE_HEADERS) {
+            if (cacheable.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static final class Entry {
+
+        private final String name;
+        private final String value;
+        private final byte[] line;
+
+        Entry(String name, String value, byte[] buf, int offset, int length) {
+            this.name = name;
+            this.value = value;
+            line = new byte[length];
+            System.arraycopy(buf, offset, line, 0, length);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.tomcat.util.http.parser.HttpHeaderParser;
 import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderDataSource;
 import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderParseStatus;
 import org.apache.tomcat.util.http.parser.HttpParser;
+import org.apache.tomcat.util.http.parser.HttpScanner;
 import org.apache.tomcat.util.net.ApplicationBufferHandler;
 import org.apache.tomcat.util.net.SocketWrapperBase;
 import org.apache.tomcat.util.res.StringManager;
@@ -426,6 +427,15 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler,
             //
             boolean space = false;
             while (!space) {
+                if (chr != Constants.CR) {
+                    // Skip the common request target characters eight at a time
+                    int pos = byteBuffer.position();
+                    int skipped = HttpScanner.skipRequestTarget(byteBuffer.array(), pos, byteBuffer.limit());
+                    if (skipped > pos) {
+                        byteBuffer.position(skipped);
+                        chr = byteBuffer.get(skipped - 1);
+                    }
+                }
                 // Read new bytes if needed
                 if (byteBuffer.position() >= byteBuffer.limit()) {
                     if (!fill(false)) {
@@ -705,6 +715,15 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler,
         }
     }
 
+    /**
+     * Has the body of the current request been read and has data for a subsequent, pipelined request already been read
+     * into the input buffer?
+     * @return {@code true} if the next request may be processed without reading from the network
+     */
+    boolean hasPipelinedRequest() {
+        return isFinished() && byteBuffer.hasRemaining();
+    }
+
     ByteBuffer getLeftover() {
         int available = byteBuffer.remaining();
         if (available > 0) {
@@ -784,6 +803,11 @@ public class Http11InputBuffer implements InputBuffer, ApplicationBufferHandler,
             byteBuffer.limit(byteBuffer.capacity());
             SocketWrapperBase<?> socketWrapper = this.wrapper;
             if (socketWrapper != null) {
+                if (block && socketWrapper.isFlushDeferred()) {
+                    // Don't hold back the responses to earlier requests while
+                    // waiting for the client to send more data
+                    socketWrapper.flush(true);
+                }
                 nRead = socketWrapper.read(block, byteBuffer);
             } else {
                 throw new CloseNowException(sm.getString("iib.eof.error"));
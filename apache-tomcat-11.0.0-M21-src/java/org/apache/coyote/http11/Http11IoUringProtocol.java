@@ -0,0 +1,64 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.net.iouring.IoUringEndpoint;
+
+
+/**
+ * HTTP/1.1 protocol implementation using io_uring on Linux. The protocol is
+ * built on the NIO2 implementation and falls back to NIO2 if io_uring is not
+ * available.
+ */
+public class Http11IoUringProtocol extends Http11Nio2Protocol {
+
+    private static final Log log = LogFactory.getLog(Http11IoUringProtocol.class);
+
+
+    public Http11IoUringProtocol() {
+        super(new IoUringEndpoint());
+    }
+
+
+    @Override
+    protected Log getLog() {
+        return log;
+    }
+
+
+    // -------------------- io_uring setup --------------------
+
+    public void setIoUringEntries(int ioUringEntries) {
+        ((IoUringEndpoint) getEndpoint()).setIoUringEntries(ioUringEntries);
+    }
+
+    public int getIoUringEntries() {
+        return ((IoUringEndpoint) getEndpoint()).getIoUringEntries();
+    }
+
+
+    @Override
+    protected String getNamePrefix() {
+        if (isSSLEnabled()) {
+            return "https-" + getSslImplementationShortName() + "-iouring";
+        } else {
+            return "http-iouring";
+        }
+    }
+}
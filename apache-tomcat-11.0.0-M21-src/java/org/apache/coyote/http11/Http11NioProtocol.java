@@ -65,6 +65,14 @@ public class Http11NioProtocol extends AbstractHttp11Protocol<NioChannel> {
         return ((NioEndpoint) getEndpoint()).getPollerThreadPriority();
     }
 
+    public void setPollerCount(int pollerCount) {
+        ((NioEndpoint) getEndpoint()).setPollerCount(pollerCount);
+    }
+
+    public int getPollerCount() {
+        return ((NioEndpoint) getEndpoint()).getPollerCount();
+    }
+
 
     @Override
     protected Processor createProcessor() {
@@ -60,6 +60,13 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     protected boolean responseFinished;
 
 
+    /**
+     * The maximum time in milliseconds for which the flush when the current response is finished may be deferred or
+     * zero if it must not be deferred. See {@link SocketWrapperBase#deferFlush(long)}.
+     */
+    private int maxFlushDelay = 0;
+
+
     /**
      * The buffer used for header composition.
      */
@@ -102,9 +109,21 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     protected long byteCount = 0;
 
 
+    /**
+     * Cache of encoded header lines shared by the processors of the protocol handler. May be {@code null}.
+     */
+    private final EncodedHeaderCache headerCache;
+
+
     protected Http11OutputBuffer(Response response, int headerBufferSize) {
+        this(response, headerBufferSize, null);
+    }
+
+
+    Http11OutputBuffer(Response response, int headerBufferSize, EncodedHeaderCache headerCache) {
 
         this.response = response;
+        this.headerCache = headerCache;
 
         headerBuffer = ByteBuffer.allocate(headerBufferSize);
 
@@ -270,6 +289,7 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
         lastActiveFilter = -1;
         ackSent = false;
         responseFinished = false;
+        maxFlushDelay = 0;
         byteCount = 0;
     }
 
@@ -279,6 +299,11 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
     }
 
 
+    void setMaxFlushDelay(int maxFlushDelay) {
+        this.maxFlushDelay = maxFlushDelay;
+    }
+
+
     public void sendAck() throws IOException {
         // It possible that the protocol configuration is changed between the
         // request being received and the first read of the body. That could led
@@ -359,6 +384,24 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
      * @param value Header value
      */
     public void sendHeader(MessageBytes name, MessageBytes value) {
+        if (headerCache != null && name.getType() == MessageBytes.T_STR && value.getType() == MessageBytes.T_STR) {
+            String nameString = name.toString();
+            String valueString = value.toString();
+            byte[] line = headerCache.get(nameString, valueString);
+            if (line != null) {
+                write(line);
+            } else {
+                int start = headerBuffer.position();
+                writeHeader(name, value);
+                headerCache.put(nameString, valueString, headerBuffer.array(), start, headerBuffer.position() - start);
+            }
+        } else {
+            writeHeader(name, value);
+        }
+    }
+
+
+    private void writeHeader(MessageBytes name, MessageBytes value) {
         write(name);
         headerBuffer.put(Constants.COLON).put(Constants.SP);
         write(value);
@@ -551,7 +594,11 @@ public class Http11OutputBuffer implements HttpOutputBuffer {
 
         @Override
         public void end() throws IOException {
-            socketWrapper.flush(response.getWriteListener() == null);
+            if (maxFlushDelay > 0 && isBlocking()) {
+                socketWrapper.deferFlush(maxFlushDelay);
+            } else {
+                socketWrapper.flush(response.getWriteListener() == null);
+            }
         }
 
         @Override
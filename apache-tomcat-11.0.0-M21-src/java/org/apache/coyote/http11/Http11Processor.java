@@ -19,10 +19,14 @@ package org.apache.coyote.http11;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import jakarta.servlet.ServletConnection;
@@ -31,15 +35,21 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.CompressionEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
 import org.apache.coyote.RequestInfo;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.coyote.UpgradeProtocol;
 import org.apache.coyote.UpgradeToken;
 import org.apache.coyote.http11.filters.BufferedInputFilter;
 import org.apache.coyote.http11.filters.ChunkedInputFilter;
 import org.apache.coyote.http11.filters.ChunkedOutputFilter;
+import org.apache.coyote.http11.filters.CompressionCacheOutputFilter;
+import org.apache.coyote.http11.filters.CompressionOutputFilter;
+import org.apache.coyote.http11.filters.GzipCompressionEncoder;
 import org.apache.coyote.http11.filters.GzipOutputFilter;
 import org.apache.coyote.http11.filters.IdentityInputFilter;
 import org.apache.coyote.http11.filters.IdentityOutputFilter;
@@ -76,6 +86,12 @@ public class Http11Processor extends AbstractProcessor {
      */
     private static final StringManager sm = StringManager.getManager(Http11Processor.class);
 
+    /**
+     * The response sent when a request is rejected because the endpoint is overloaded.
+     */
+    private static final byte[] OVERLOADED_RESPONSE =
+            "HTTP/1.1 503 \r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
 
     private final AbstractHttp11Protocol<?> protocol;
 
@@ -102,6 +118,19 @@ public class Http11Processor extends AbstractProcessor {
     private int pluggableFilterIndex = Integer.MAX_VALUE;
 
 
+    /**
+     * Output filters for compression encodings other than the built-in gzip support, keyed by encoding. Created on
+     * first use and then re-used for subsequent responses.
+     */
+    private final Map<String,OutputFilter> compressionFilters = new HashMap<>();
+
+
+    /**
+     * Wraps the compression filter when the compression cache is enabled. Created on first use.
+     */
+    private CompressionCacheOutputFilter compressionCacheFilter = null;
+
+
     /**
      * Keep-alive.
      */
@@ -149,6 +178,14 @@ public class Http11Processor extends AbstractProcessor {
     private SendfileDataBase sendfileData = null;
 
 
+    /**
+     * Is the processor in the request processing loop of {@link #service(SocketWrapperBase)}? The flush of a
+     * response may only be deferred while it is since the loop ensures any deferred data is written before the socket
+     * is released.
+     */
+    private boolean inServiceLoop = false;
+
+
     public Http11Processor(AbstractHttp11Protocol<?> protocol, Adapter adapter) {
         super(adapter);
         this.protocol = protocol;
@@ -158,7 +195,8 @@ public class Http11Processor extends AbstractProcessor {
         inputBuffer = new Http11InputBuffer(request, protocol.getMaxHttpRequestHeaderSize(), httpParser);
         request.setInputBuffer(inputBuffer);
 
-        outputBuffer = new Http11OutputBuffer(response, protocol.getMaxHttpResponseHeaderSize());
+        outputBuffer = new Http11OutputBuffer(response, protocol.getMaxHttpResponseHeaderSize(),
+                protocol.getEncodedHeaderCache());
         response.setOutputBuffer(outputBuffer);
 
         // Create and add the identity filters.
@@ -251,6 +289,7 @@ public class Http11Processor extends AbstractProcessor {
         readComplete = true;
         boolean keptAlive = false;
         SendfileState sendfileState = SendfileState.DONE;
+        inServiceLoop = true;
 
         while (!getErrorState().isError() && keepAlive && !isAsync() && upgradeToken == null &&
                 sendfileState == SendfileState.DONE && !protocol.isPaused()) {
@@ -260,6 +299,7 @@ public class Http11Processor extends AbstractProcessor {
                 if (!inputBuffer.parseRequestLine(keptAlive, protocol.getConnectionTimeout(),
                         protocol.getKeepAliveTimeout())) {
                     if (inputBuffer.getParsingRequestLinePhase() == -1) {
+                        flushDeferred();
                         return SocketState.UPGRADING;
                     } else if (handleIncompleteRequestLineRead()) {
                         break;
@@ -275,6 +315,17 @@ public class Http11Processor extends AbstractProcessor {
                     // 503 - Service unavailable
                     response.setStatus(503);
                     setErrorState(ErrorState.CLOSE_CLEAN, null);
+                } else if (protocol.rejectIfOverloaded()) {
+                    // 503 - Service unavailable
+                    // Written directly, without parsing the headers or calling
+                    // the adapter, to minimise the work done while overloaded
+                    response.setStatus(503);
+                    if (!http09) {
+                        socketWrapper.write(true, OVERLOADED_RESPONSE, 0, OVERLOADED_RESPONSE.length);
+                        socketWrapper.flush(true);
+                    }
+                    setErrorState(ErrorState.CLOSE_CONNECTION_NOW, null);
+                    break;
                 } else {
                     keptAlive = true;
                     // Set this every time in case limit has been changed via JMX
@@ -358,6 +409,8 @@ public class Http11Processor extends AbstractProcessor {
             }
 
             if (getErrorState().isIoAllowed()) {
+                request.setTimingsEnabled(protocol.getRecordRequestTimings());
+                request.recordTiming(RequestTimingPoint.PARSED);
                 // Setting up filters, and parse some request headers
                 rp.setStage(org.apache.coyote.Constants.STAGE_PREPARE);
                 try {
@@ -380,6 +433,12 @@ public class Http11Processor extends AbstractProcessor {
                 keepAlive = false;
             }
 
+            // Don't hold back the responses to earlier requests for longer than
+            // the limit while this request is processed
+            if (isDeferredFlushExpired()) {
+                writeDeferred();
+            }
+
             // Process the request in the adapter
             if (getErrorState().isIoAllowed()) {
                 try {
@@ -456,6 +515,8 @@ public class Http11Processor extends AbstractProcessor {
             sendfileState = processSendfile(socketWrapper);
         }
 
+        flushDeferred();
+
         rp.setStage(org.apache.coyote.Constants.STAGE_ENDED);
 
         if (getErrorState().isError() || (protocol.isPaused() && !isAsync())) {
@@ -898,9 +959,9 @@ public class Http11Processor extends AbstractProcessor {
         }
 
         // Check for compression
-        boolean useCompression = false;
+        CompressionEncoder compressionEncoder = null;
         if (entityBody && sendfileData == null) {
-            useCompression = protocol.useCompression(request, response);
+            compressionEncoder = protocol.getCompressionEncoder(request, response);
         }
 
         MimeHeaders headers = response.getMimeHeaders();
@@ -939,8 +1000,27 @@ public class Http11Processor extends AbstractProcessor {
             }
         }
 
-        if (useCompression) {
-            outputBuffer.addActiveFilter(outputFilters[Constants.GZIP_FILTER]);
+        if (compressionEncoder != null) {
+            OutputFilter compressionFilter;
+            if (compressionEncoder instanceof GzipCompressionEncoder) {
+                compressionFilter = outputFilters[Constants.GZIP_FILTER];
+            } else {
+                compressionFilter = compressionFilters.get(compressionEncoder.getEncoding());
+                if (compressionFilter == null) {
+                    compressionFilter = CompressionOutputFilter.create(compressionEncoder);
+                    compressionFilters.put(compressionEncoder.getEncoding(), compressionFilter);
+                }
+            }
+            CompressionCache compressionCache = protocol.getCompressionCache();
+            if (compressionCache != null) {
+                if (compressionCacheFilter == null) {
+                    compressionCacheFilter = new CompressionCacheOutputFilter(compressionCache);
+                }
+                compressionCacheFilter.setCompressionFilter(compressionFilter, compressionEncoder.getEncoding());
+                compressionFilter = compressionCacheFilter;
+            }
+            // Active filters do not need to be in the filter library
+            outputBuffer.addActiveFilter(compressionFilter);
         }
 
         // Add date header unless application has already set one (e.g. in a
@@ -1199,6 +1279,7 @@ public class Http11Processor extends AbstractProcessor {
         if (getErrorState().isIoAllowed()) {
             try {
                 action(ActionCode.COMMIT, null);
+                outputBuffer.setMaxFlushDelay(isFlushDeferrable() ? protocol.getMaxPipelinedFlushDelay() : 0);
                 outputBuffer.end();
             } catch (IOException e) {
                 setErrorState(ErrorState.CLOSE_CONNECTION_NOW, e);
@@ -1213,10 +1294,56 @@ public class Http11Processor extends AbstractProcessor {
 
     @Override
     protected final void finishResponse() throws IOException {
+        outputBuffer.setMaxFlushDelay(isFlushDeferrable() ? protocol.getMaxPipelinedFlushDelay() : 0);
         outputBuffer.end();
     }
 
 
+    /*
+     * The flush of a completed response may be deferred if the next, pipelined request has already been received so
+     * that the responses can be written to the network together.
+     */
+    private boolean isFlushDeferrable() {
+        int maxPipelinedFlushDelay = protocol.getMaxPipelinedFlushDelay();
+        if (!inServiceLoop || maxPipelinedFlushDelay <= 0 || !keepAlive || isAsync() || upgradeToken != null ||
+                sendfileData != null || getErrorState().isError() || !inputBuffer.hasPipelinedRequest()) {
+            return false;
+        }
+        return !isDeferredFlushExpired();
+    }
+
+
+    /*
+     * Has the flush of the data in the socket write buffer been deferred for at least the maximum time?
+     */
+    private boolean isDeferredFlushExpired() {
+        long deferredTime = socketWrapper.getFlushDeferredTime();
+        return deferredTime != -1 && System.nanoTime() - deferredTime >=
+                TimeUnit.MILLISECONDS.toNanos(protocol.getMaxPipelinedFlushDelay());
+    }
+
+
+    /*
+     * Writes any responses for which the flush was deferred while processing pipelined requests. Called when leaving
+     * the request processing loop.
+     */
+    private void flushDeferred() {
+        inServiceLoop = false;
+        writeDeferred();
+    }
+
+
+    private void writeDeferred() {
+        if (socketWrapper.isFlushDeferred() && getErrorState().isIoAllowed()) {
+            try {
+                socketWrapper.flush(true);
+            } catch (IOException ioe) {
+                setErrorState(ErrorState.CLOSE_CONNECTION_NOW, ioe);
+            }
+        }
+    }
+
+
     @Override
     protected final void ack(ContinueResponseTiming continueResponseTiming) {
         // Only try and send the ACK for ALWAYS or if the timing of the request
@@ -1418,6 +1545,7 @@ public class Http11Processor extends AbstractProcessor {
         socketWrapper = null;
         sendfileData = null;
         sslSupport = null;
+        inServiceLoop = false;
     }
 
 
@@ -0,0 +1,276 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.Request;
+import org.apache.coyote.Response;
+import org.apache.coyote.http11.HttpOutputBuffer;
+import org.apache.coyote.http11.OutputFilter;
+
+/**
+ * Output filter that wraps a compression filter and uses a {@link CompressionCache} to avoid compressing the same
+ * response body more than once.
+ * <p>
+ * The uncompressed response body is buffered so that the cache key can be formed from a hash of the body and the
+ * content coding. If the cache contains an entry for that key, the cached compressed body is written. Otherwise the
+ * buffered body is compressed and the compressed body is added to the cache. Buffering stops, and the body is not
+ * cached, if the response body is larger than the maximum entry size of the cache or if the response is flushed.
+ * <p>
+ * Only responses with an ETag are cached unless the cache is configured to also cache responses without an ETag. The
+ * ETag itself is not part of the cache key. Responses with a strong ETag are never compressed and a weak ETag does not
+ * guarantee that the response bodies are identical.
+ */
+public class CompressionCacheOutputFilter implements OutputFilter {
+
+    private final CompressionCache cache;
+    private final CaptureOutputBuffer captureBuffer = new CaptureOutputBuffer();
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+    /**
+     * Next buffer in the pipeline.
+     */
+    protected HttpOutputBuffer buffer;
+
+    private OutputFilter compressionFilter;
+    private String encoding;
+
+    private byte[] cached;
+    private boolean capturing;
+    private boolean buffering;
+    private byte[] body = new byte[0];
+    private int bodyLength;
+    private long uncompressedLength;
+    private MessageDigest digest;
+    private boolean finished;
+
+
+    public CompressionCacheOutputFilter(CompressionCache cache) {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Configure the compression filter to use for the current response. This must be called before the filter is
+     * added to the filter chain.
+     *
+     * @param compressionFilter The filter that compresses the response body
+     * @param encoding          The content coding used by the compression filter
+     */
+    public void setCompressionFilter(OutputFilter compressionFilter, String encoding) {
+        this.compressionFilter = compressionFilter;
+        this.encoding = encoding;
+    }
+
+
+    // --------------------------------------------------- OutputBuffer Methods
+
+    @Override
+    public int doWrite(ByteBuffer chunk) throws IOException {
+        int len = chunk.remaining();
+        uncompressedLength += len;
+        if (buffering) {
+            if (bodyLength + len <= cache.getMaxEntrySize()) {
+                if (bodyLength + len > body.length) {
+                    body = Arrays.copyOf(body, Math.max(bodyLength + len, Math.min(body.length * 2,
+                            cache.getMaxEntrySize())));
+                }
+                chunk.get(body, bodyLength, len);
+                bodyLength += len;
+                return len;
+            }
+            stopBuffering();
+        }
+        return compressionFilter.doWrite(chunk);
+    }
+
+
+    @Override
+    public long getBytesWritten() {
+        return buffer.getBytesWritten();
+    }
+
+
+    // --------------------------------------------------- OutputFilter Methods
+
+    @Override
+    public void flush() throws IOException {
+        if (cached == null) {
+            if (buffering) {
+                // The hash of the response body can't be calculated before
+                // the response is complete
+                stopBuffering();
+            }
+            compressionFilter.flush();
+        } else {
+            buffer.flush();
+        }
+    }
+
+
+    @Override
+    public void setResponse(Response response) {
+        compressionFilter.setResponse(response);
+
+        Request request = response.getRequest();
+        if (request == null || response.getStatus() != 200 || request.method().equals("HEAD")) {
+            return;
+        }
+
+        if (cache.getCacheWithoutETag() || response.getMimeHeaders().getHeader("ETag") != null) {
+            buffering = true;
+            capturing = true;
+        }
+    }
+
+
+    @Override
+    public void setBuffer(HttpOutputBuffer buffer) {
+        this.buffer = buffer;
+        compressionFilter.setBuffer(captureBuffer);
+    }
+
+
+    @Override
+    public void end() throws IOException {
+        // end() may be called more than once for a response
+        if (finished) {
+            buffer.end();
+            return;
+        }
+        finished = true;
+
+        String key = null;
+        if (buffering) {
+            buffering = false;
+            key = encoding + ' ' + bodyLength + ' ' + hash(body, bodyLength);
+            cached = cache.get(key);
+            if (cached == null) {
+                compressionFilter.doWrite(ByteBuffer.wrap(body, 0, bodyLength));
+            }
+        }
+
+        if (cached == null) {
+            compressionFilter.end();
+            if (capturing) {
+                cache.put(key, captured.toByteArray(), uncompressedLength);
+            }
+        } else {
+            buffer.doWrite(ByteBuffer.wrap(cached));
+            buffer.end();
+        }
+    }
+
+
+    @Override
+    public void recycle() {
+        if (compressionFilter != null) {
+            compressionFilter.recycle();
+        }
+        compressionFilter = null;
+        encoding = null;
+        cached = null;
+        capturing = false;
+        buffering = false;
+        bodyLength = 0;
+        if (body.length > cache.getMaxEntrySize()) {
+            body = new byte[0];
+        }
+        uncompressedLength = 0;
+        captured.reset();
+        finished = false;
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+    private void stopBuffering() throws IOException {
+        buffering = false;
+        stopCapturing();
+        if (bodyLength > 0) {
+            compressionFilter.doWrite(ByteBuffer.wrap(body, 0, bodyLength));
+            bodyLength = 0;
+        }
+    }
+
+
+    private void stopCapturing() {
+        capturing = false;
+        captured.reset();
+    }
+
+
+    private String hash(byte[] bytes, int length) {
+        if (digest == null) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every JRE is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+        digest.update(bytes, 0, length);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+
+    // ----------------------------------------- CaptureOutputBuffer Inner Class
+
+    /**
+     * Sits between the compression filter and the next buffer in the pipeline and keeps a copy of the compressed
+     * response body so it can be added to the cache.
+     */
+    private class CaptureOutputBuffer implements HttpOutputBuffer {
+
+        @Override
+        public int doWrite(ByteBuffer chunk) throws IOException {
+            if (capturing) {
+                if (chunk.hasArray()) {
+                    captured.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+                } else {
+                    byte[] bytes = new byte[chunk.remaining()];
+                    chunk.duplicate().get(bytes);
+                    captured.write(bytes, 0, bytes.length);
+                }
+            }
+            return buffer.doWrite(chunk);
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return buffer.getBytesWritten();
+        }
+
+        @Override
+        public void end() throws IOException {
+            buffer.end();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flush();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.coyote.CompressionEncoder;
+import org.apache.coyote.Response;
+import org.apache.coyote.http11.HttpOutputBuffer;
+import org.apache.coyote.http11.OutputFilter;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Output filter that compresses using the stream provided by a
+ * {@link CompressionEncoder}.
+ */
+public class CompressionOutputFilter implements OutputFilter {
+
+    private static final Log log = LogFactory.getLog(CompressionOutputFilter.class);
+    private static final StringManager sm = StringManager.getManager(CompressionOutputFilter.class);
+
+
+    /**
+     * Create an output filter that compresses using the given encoder.
+     *
+     * @param encoder The encoder
+     *
+     * @return The filter provided by the encoder if it provides one, otherwise
+     *             a filter that uses the compressing stream of the encoder
+     */
+    public static OutputFilter create(CompressionEncoder encoder) {
+        if (encoder instanceof OutputFilterCompressionEncoder) {
+            return ((OutputFilterCompressionEncoder) encoder).createOutputFilter();
+        }
+        return new CompressionOutputFilter(encoder);
+    }
+
+
+    private final CompressionEncoder encoder;
+
+    /**
+     * Next buffer in the pipeline.
+     */
+    protected HttpOutputBuffer buffer;
+
+    private OutputStream compressionStream = null;
+    private boolean finished = false;
+
+    private final OutputStream bufferOutputStream = new BufferOutputStream();
+
+
+    public CompressionOutputFilter(CompressionEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+
+    // --------------------------------------------------- OutputBuffer Methods
+
+    @Override
+    public int doWrite(ByteBuffer chunk) throws IOException {
+        if (compressionStream == null) {
+            compressionStream = encoder.createOutputStream(bufferOutputStream);
+        }
+        int len = chunk.remaining();
+        if (chunk.hasArray()) {
+            compressionStream.write(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
+            chunk.position(chunk.position() + len);
+        } else {
+            byte[] bytes = new byte[len];
+            chunk.get(bytes);
+            compressionStream.write(bytes, 0, len);
+        }
+        return len;
+    }
+
+
+    @Override
+    public long getBytesWritten() {
+        return buffer.getBytesWritten();
+    }
+
+
+    // --------------------------------------------------- OutputFilter Methods
+
+    @Override
+    public void flush() throws IOException {
+        if (compressionStream != null) {
+            try {
+                compressionStream.flush();
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("compressionOutputFilter.flushFail"), e);
+                }
+            }
+        }
+        buffer.flush();
+    }
+
+
+    @Override
+    public void setResponse(Response response) {
+        // NOOP: No need for parameters from response in this filter
+    }
+
+
+    @Override
+    public void setBuffer(HttpOutputBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+
+    @Override
+    public void end() throws IOException {
+        // end() may be called more than once for a response
+        if (!finished) {
+            finished = true;
+            if (compressionStream == null) {
+                compressionStream = encoder.createOutputStream(bufferOutputStream);
+            }
+            compressionStream.close();
+        }
+        buffer.end();
+    }
+
+
+    @Override
+    public void recycle() {
+        compressionStream = null;
+        finished = false;
+    }
+
+
+    /*
+     * Writes the compressed data to the next buffer. Closing the compressing
+     * stream must not end the next buffer as that is done by end().
+     */
+    private class BufferOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            buffer.doWrite(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // NO-OP: flush() flushes the next buffer
+        }
+
+        @Override
+        public void close() throws IOException {
+            // NO-OP
+        }
+    }
+}
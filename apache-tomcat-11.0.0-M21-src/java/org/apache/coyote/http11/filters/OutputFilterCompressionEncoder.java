@@ -0,0 +1,135 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.coyote.CompressionEncoder;
+import org.apache.coyote.http11.HttpOutputBuffer;
+import org.apache.coyote.http11.OutputFilter;
+
+/**
+ * Base class for encoders that provide an output filter so that responses can
+ * be compressed without the overhead of an additional stream. The compressing
+ * stream writes to the same filter.
+ */
+public abstract class OutputFilterCompressionEncoder implements CompressionEncoder {
+
+    /**
+     * Create a new output filter that compresses the data written to it. The
+     * filter will be recycled and re-used for multiple responses.
+     *
+     * @return The new output filter
+     */
+    public abstract OutputFilter createOutputFilter();
+
+
+    @Override
+    public OutputStream createOutputStream(OutputStream out) throws IOException {
+        return new OutputFilterOutputStream(createOutputFilter(), out);
+    }
+
+
+    /**
+     * Writes the data written to the stream to an output filter and the output
+     * of the filter to the next stream.
+     */
+    private static class OutputFilterOutputStream extends OutputStream {
+
+        private final OutputFilter filter;
+        private final OutputStream out;
+        private boolean closed = false;
+
+        OutputFilterOutputStream(OutputFilter filter, OutputStream out) {
+            this.filter = filter;
+            this.out = out;
+            filter.setBuffer(new StreamOutputBuffer(out));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            filter.doWrite(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            filter.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                filter.end();
+            } finally {
+                filter.recycle();
+                out.close();
+            }
+        }
+    }
+
+
+    private static class StreamOutputBuffer implements HttpOutputBuffer {
+
+        private final OutputStream out;
+        private long bytesWritten;
+
+        StreamOutputBuffer(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public int doWrite(ByteBuffer chunk) throws IOException {
+            int len = chunk.remaining();
+            if (chunk.hasArray()) {
+                out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
+                chunk.position(chunk.position() + len);
+            } else {
+                byte[] bytes = new byte[len];
+                chunk.get(bytes);
+                out.write(bytes, 0, len);
+            }
+            bytesWritten += len;
+            return len;
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        @Override
+        public void end() throws IOException {
+            // NO-OP: The stream is closed by the compressing stream
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
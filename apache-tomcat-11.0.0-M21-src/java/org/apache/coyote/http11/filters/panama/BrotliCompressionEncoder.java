@@ -0,0 +1,88 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters.panama;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import org.apache.coyote.http11.OutputFilter;
+import org.apache.coyote.http11.filters.OutputFilterCompressionEncoder;
+
+/**
+ * Brotli compression using the native brotli encoder library (libbrotlienc).
+ * The encoder is only available if the library can be found.
+ */
+public class BrotliCompressionEncoder extends OutputFilterCompressionEncoder {
+
+    public static final String ENCODING = "br";
+
+    static final MethodHandle CREATE_INSTANCE;
+    static final MethodHandle DESTROY_INSTANCE;
+    static final MethodHandle SET_PARAMETER;
+    static final MethodHandle COMPRESS_STREAM;
+    static final MethodHandle HAS_MORE_OUTPUT;
+    static final MethodHandle IS_FINISHED;
+
+    static {
+        SymbolLookup lookup = NativeCompressionOutputFilter.lookupLibrary("brotlienc", "1");
+        if (lookup == null) {
+            CREATE_INSTANCE = null;
+            DESTROY_INSTANCE = null;
+            SET_PARAMETER = null;
+            COMPRESS_STREAM = null;
+            HAS_MORE_OUTPUT = null;
+            IS_FINISHED = null;
+        } else {
+            Linker linker = Linker.nativeLinker();
+            CREATE_INSTANCE = linker.downcallHandle(lookup.find("BrotliEncoderCreateInstance").orElseThrow(),
+                    FunctionDescriptor.of(ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+            DESTROY_INSTANCE = linker.downcallHandle(lookup.find("BrotliEncoderDestroyInstance").orElseThrow(),
+                    FunctionDescriptor.ofVoid(ADDRESS));
+            SET_PARAMETER = linker.downcallHandle(lookup.find("BrotliEncoderSetParameter").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT));
+            COMPRESS_STREAM = linker.downcallHandle(lookup.find("BrotliEncoderCompressStream").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+            HAS_MORE_OUTPUT = linker.downcallHandle(lookup.find("BrotliEncoderHasMoreOutput").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS));
+            IS_FINISHED = linker.downcallHandle(lookup.find("BrotliEncoderIsFinished").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        }
+    }
+
+
+    @Override
+    public String getEncoding() {
+        return ENCODING;
+    }
+
+
+    @Override
+    public boolean isAvailable() {
+        return CREATE_INSTANCE != null;
+    }
+
+
+    @Override
+    public OutputFilter createOutputFilter() {
+        return new BrotliOutputFilter();
+    }
+}
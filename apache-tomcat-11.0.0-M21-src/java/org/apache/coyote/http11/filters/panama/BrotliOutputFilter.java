@@ -0,0 +1,134 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters.panama;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Brotli output filter.
+ */
+public class BrotliOutputFilter extends NativeCompressionOutputFilter {
+
+    private static final StringManager sm = StringManager.getManager(BrotliOutputFilter.class);
+
+    /*
+     * BROTLI_PARAM_QUALITY
+     */
+    private static final int PARAMETER_QUALITY = 1;
+
+    /*
+     * The default quality of 11 is intended for static content. Lower values
+     * are much faster and still compress better than gzip.
+     */
+    private static final int QUALITY = 5;
+
+
+    @Override
+    protected Compressor createCompressor() throws IOException {
+        MemorySegment state;
+        try {
+            state = (MemorySegment) BrotliCompressionEncoder.CREATE_INSTANCE.invokeExact(MemorySegment.NULL,
+                    MemorySegment.NULL, MemorySegment.NULL);
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+        if (state.equals(MemorySegment.NULL)) {
+            throw new IOException(sm.getString("brotliOutputFilter.createFail"));
+        }
+        BrotliCompressor compressor = new BrotliCompressor(state);
+        int result;
+        try {
+            result = (int) BrotliCompressionEncoder.SET_PARAMETER.invokeExact(state, PARAMETER_QUALITY, QUALITY);
+        } catch (Throwable t) {
+            compressor.run();
+            throw new IOException(t);
+        }
+        if (result == 0) {
+            compressor.run();
+            throw new IOException(sm.getString("brotliOutputFilter.createFail"));
+        }
+        return compressor;
+    }
+
+
+    private static class BrotliCompressor extends Compressor {
+
+        private final MemorySegment state;
+        private final MemorySegment availableIn;
+        private final MemorySegment nextIn;
+        private final MemorySegment availableOut;
+        private final MemorySegment nextOut;
+
+        BrotliCompressor(MemorySegment state) {
+            this.state = state;
+            Arena arena = Arena.ofAuto();
+            availableIn = arena.allocate(JAVA_LONG);
+            nextIn = arena.allocate(ADDRESS);
+            availableOut = arena.allocate(JAVA_LONG);
+            nextOut = arena.allocate(ADDRESS);
+        }
+
+        @Override
+        boolean compress(int operation, MemorySegment input, MemorySegment output) throws IOException {
+            availableIn.set(JAVA_LONG, 0, inputLimit - inputPosition);
+            nextIn.set(ADDRESS, 0, input.asSlice(inputPosition));
+            availableOut.set(JAVA_LONG, 0, output.byteSize());
+            nextOut.set(ADDRESS, 0, output);
+            int result;
+            try {
+                result = (int) BrotliCompressionEncoder.COMPRESS_STREAM.invokeExact(state, operation, availableIn,
+                        nextIn, availableOut, nextOut, MemorySegment.NULL);
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+            if (result == 0) {
+                throw new IOException(sm.getString("brotliOutputFilter.error"));
+            }
+            inputPosition = inputLimit - availableIn.get(JAVA_LONG, 0);
+            outputPosition = output.byteSize() - availableOut.get(JAVA_LONG, 0);
+            try {
+                switch (operation) {
+                    case OPERATION_PROCESS:
+                        return inputPosition == inputLimit;
+                    case OPERATION_FLUSH:
+                        return inputPosition == inputLimit &&
+                                (int) BrotliCompressionEncoder.HAS_MORE_OUTPUT.invokeExact(state) == 0;
+                    default:
+                        return (int) BrotliCompressionEncoder.IS_FINISHED.invokeExact(state) != 0;
+                }
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                BrotliCompressionEncoder.DESTROY_INSTANCE.invokeExact(state);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters.panama;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
+
+import org.apache.coyote.Response;
+import org.apache.coyote.http11.HttpOutputBuffer;
+import org.apache.coyote.http11.OutputFilter;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Base class for output filters that compress using a native library. Data is
+ * copied into a native input buffer, compressed into a native output buffer
+ * and the compressed data copied to the next buffer in the pipeline. The
+ * native compression state is created on first use and released at the end of
+ * each response.
+ */
+public abstract class NativeCompressionOutputFilter implements OutputFilter {
+
+    private static final Log log = LogFactory.getLog(NativeCompressionOutputFilter.class);
+    private static final StringManager sm = StringManager.getManager(NativeCompressionOutputFilter.class);
+
+    private static final Cleaner cleaner = Cleaner.create();
+
+    /*
+     * The streaming operations. Both zstd and brotli use these values.
+     */
+    static final int OPERATION_PROCESS = 0;
+    static final int OPERATION_FLUSH = 1;
+    static final int OPERATION_FINISH = 2;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+
+    /**
+     * Next buffer in the pipeline.
+     */
+    protected HttpOutputBuffer buffer;
+
+    private final MemorySegment input;
+    private final MemorySegment output;
+    private final byte[] outputBytes = new byte[BUFFER_SIZE];
+
+    private Compressor compressor;
+    private Cleanable cleanable;
+    private boolean finished = false;
+
+
+    protected NativeCompressionOutputFilter() {
+        // Released once the filter is no longer referenced
+        Arena arena = Arena.ofAuto();
+        input = arena.allocate(BUFFER_SIZE);
+        output = arena.allocate(BUFFER_SIZE);
+    }
+
+
+    /**
+     * Create the native state for compressing a new response.
+     *
+     * @return The new compressor
+     *
+     * @throws IOException If the native state cannot be created
+     */
+    protected abstract Compressor createCompressor() throws IOException;
+
+
+    // --------------------------------------------------- OutputBuffer Methods
+
+    @Override
+    public int doWrite(ByteBuffer chunk) throws IOException {
+        int len = chunk.remaining();
+        while (chunk.hasRemaining()) {
+            int count = Math.min(chunk.remaining(), BUFFER_SIZE);
+            if (chunk.hasArray()) {
+                MemorySegment.copy(chunk.array(), chunk.arrayOffset() + chunk.position(), input, JAVA_BYTE, 0, count);
+            } else {
+                input.copyFrom(MemorySegment.ofBuffer(chunk).asSlice(0, count));
+            }
+            chunk.position(chunk.position() + count);
+            compress(OPERATION_PROCESS, count);
+        }
+        return len;
+    }
+
+
+    @Override
+    public long getBytesWritten() {
+        return buffer.getBytesWritten();
+    }
+
+
+    // --------------------------------------------------- OutputFilter Methods
+
+    @Override
+    public void flush() throws IOException {
+        if (compressor != null) {
+            try {
+                compress(OPERATION_FLUSH, 0);
+            } catch (IOException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("nativeCompressionOutputFilter.flushFail"), e);
+                }
+            }
+        }
+        buffer.flush();
+    }
+
+
+    @Override
+    public void setResponse(Response response) {
+        // NOOP: No need for parameters from response in this filter
+    }
+
+
+    @Override
+    public void setBuffer(HttpOutputBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+
+    @Override
+    public void end() throws IOException {
+        // end() may be called more than once for a response
+        if (!finished) {
+            finished = true;
+            try {
+                compress(OPERATION_FINISH, 0);
+            } finally {
+                release();
+            }
+        }
+        buffer.end();
+    }
+
+
+    @Override
+    public void recycle() {
+        release();
+        finished = false;
+    }
+
+
+    private void compress(int operation, int inputLength) throws IOException {
+        if (compressor == null) {
+            compressor = createCompressor();
+            cleanable = cleaner.register(this, compressor);
+        }
+        compressor.inputPosition = 0;
+        compressor.inputLimit = inputLength;
+        boolean done;
+        do {
+            compressor.outputPosition = 0;
+            done = compressor.compress(operation, input, output);
+            int count = (int) compressor.outputPosition;
+            if (count > 0) {
+                MemorySegment.copy(output, JAVA_BYTE, 0, outputBytes, 0, count);
+                buffer.doWrite(ByteBuffer.wrap(outputBytes, 0, count));
+            }
+        } while (!done);
+    }
+
+
+    private void release() {
+        if (cleanable != null) {
+            cleanable.clean();
+            cleanable = null;
+        }
+        compressor = null;
+    }
+
+
+    /**
+     * Look up the symbols in a native library.
+     *
+     * @param name    The platform independent name of the library
+     * @param version The major version of the library used as a fallback on
+     *                    platforms where only the versioned library name is
+     *                    installed
+     *
+     * @return The symbols or {@code null} if the library cannot be found
+     */
+    static SymbolLookup lookupLibrary(String name, String version) {
+        String libraryName = System.mapLibraryName(name);
+        try {
+            return SymbolLookup.libraryLookup(libraryName, Arena.global());
+        } catch (IllegalArgumentException e) {
+            // Not found. Try the versioned name.
+        }
+        if (libraryName.endsWith(".so")) {
+            try {
+                return SymbolLookup.libraryLookup(libraryName + "." + version, Arena.global());
+            } catch (IllegalArgumentException e) {
+                // Not found
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Convert a null terminated string returned by a native library.
+     *
+     * @param cString The address of the string
+     *
+     * @return The string
+     */
+    static String fromCString(MemorySegment cString) {
+        MemorySegment segment = cString.reinterpret(Integer.MAX_VALUE);
+        StringBuilder result = new StringBuilder();
+        long i = 0;
+        byte b;
+        while ((b = segment.get(JAVA_BYTE, i++)) != 0) {
+            result.append((char) b);
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * The native compression state for a single response. The compressor is
+     * also the action used to release the native state.
+     */
+    protected abstract static class Compressor implements Runnable {
+
+        /*
+         * The input to compress is between inputPosition and inputLimit. The
+         * compressed data is written from the start of the output and
+         * outputPosition is set to the number of bytes written.
+         */
+        long inputPosition;
+        long inputLimit;
+        long outputPosition;
+
+        /**
+         * Perform one step of the given operation.
+         *
+         * @param operation One of process, flush or finish
+         * @param input     The native input buffer
+         * @param output    The native output buffer
+         *
+         * @return {@code true} if the operation is complete or {@code false}
+         *             if it needs to be called again once the output has been
+         *             written
+         *
+         * @throws IOException If the native library reports an error
+         */
+        abstract boolean compress(int operation, MemorySegment input, MemorySegment output) throws IOException;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters.panama;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import org.apache.coyote.http11.OutputFilter;
+import org.apache.coyote.http11.filters.OutputFilterCompressionEncoder;
+
+/**
+ * Zstandard compression using the native zstd library (libzstd 1.4 or later).
+ * The encoder is only available if the library can be found.
+ */
+public class ZstdCompressionEncoder extends OutputFilterCompressionEncoder {
+
+    public static final String ENCODING = "zstd";
+
+    static final MethodHandle CREATE_CCTX;
+    static final MethodHandle FREE_CCTX;
+    static final MethodHandle CCTX_SET_PARAMETER;
+    static final MethodHandle COMPRESS_STREAM2;
+    static final MethodHandle IS_ERROR;
+    static final MethodHandle GET_ERROR_NAME;
+
+    static {
+        SymbolLookup lookup = NativeCompressionOutputFilter.lookupLibrary("zstd", "1");
+        if (lookup == null) {
+            CREATE_CCTX = null;
+            FREE_CCTX = null;
+            CCTX_SET_PARAMETER = null;
+            COMPRESS_STREAM2 = null;
+            IS_ERROR = null;
+            GET_ERROR_NAME = null;
+        } else {
+            Linker linker = Linker.nativeLinker();
+            CREATE_CCTX = linker.downcallHandle(lookup.find("ZSTD_createCCtx").orElseThrow(),
+                    FunctionDescriptor.of(ADDRESS));
+            FREE_CCTX = linker.downcallHandle(lookup.find("ZSTD_freeCCtx").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_LONG, ADDRESS));
+            CCTX_SET_PARAMETER = linker.downcallHandle(lookup.find("ZSTD_CCtx_setParameter").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_LONG, ADDRESS, JAVA_INT, JAVA_INT));
+            COMPRESS_STREAM2 = linker.downcallHandle(lookup.find("ZSTD_compressStream2").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_LONG, ADDRESS, ADDRESS, ADDRESS, JAVA_INT));
+            IS_ERROR = linker.downcallHandle(lookup.find("ZSTD_isError").orElseThrow(),
+                    FunctionDescriptor.of(JAVA_INT, JAVA_LONG));
+            GET_ERROR_NAME = linker.downcallHandle(lookup.find("ZSTD_getErrorName").orElseThrow(),
+                    FunctionDescriptor.of(ADDRESS, JAVA_LONG));
+        }
+    }
+
+
+    @Override
+    public String getEncoding() {
+        return ENCODING;
+    }
+
+
+    @Override
+    public boolean isAvailable() {
+        return CREATE_CCTX != null;
+    }
+
+
+    @Override
+    public OutputFilter createOutputFilter() {
+        return new ZstdOutputFilter();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link StreamScheduler} that uses deficit round robin so that no blocked stream is starved. On each turn a stream
+ * receives a quantum of {@link #QUANTUM} bytes for each urgency level it is above the least urgent level, plus one.
+ * Each turn a stream may be allocated up to its accumulated deficit. Streams are visited in RFC 9218 priority order.
+ * That is the most urgent first and, within an urgency level, non-incremental streams before incremental streams.
+ * <p>
+ * A small response that is blocked behind a large download at the same urgency is typically fully allocated on its
+ * first turn rather than waiting for the large download to complete. When the allocation runs out part way through a
+ * round, the next allocation continues the round from the same point.
+ */
+public class DeficitRoundRobinStreamScheduler implements StreamScheduler {
+
+    /**
+     * The quantum, in bytes, for the least urgent streams.
+     */
+    public static final int QUANTUM = 1024;
+
+    private static final int URGENCY_LEVELS = 8;
+
+    private final Map<Integer,Long> deficits = new HashMap<>();
+
+    /*
+     * The stream to visit first in the next allocation and whether it has already received the quantum for its current
+     * turn.
+     */
+    private int nextStreamId = -1;
+    private boolean nextInTurn = false;
+
+
+    @Override
+    public void allocate(Collection<? extends BlockedStream> streams, int available) {
+        List<BlockedStream> round = new ArrayList<>(streams);
+        round.sort(PriorityStreamScheduler.PRIORITY_ORDER);
+
+        // Forget the deficits of streams that are no longer blocked
+        Set<Integer> blocked = new HashSet<>();
+        int index = 0;
+        boolean inTurn = false;
+        for (int i = 0; i < round.size(); i++) {
+            int streamId = round.get(i).getStreamId();
+            blocked.add(Integer.valueOf(streamId));
+            if (streamId == nextStreamId) {
+                index = i;
+                inTurn = nextInTurn;
+            }
+        }
+        deficits.keySet().retainAll(blocked);
+        nextStreamId = -1;
+        nextInTurn = false;
+
+        int remaining = available;
+        while (remaining > 0 && !round.isEmpty()) {
+            if (index >= round.size()) {
+                index = 0;
+            }
+            BlockedStream s = round.get(index);
+            Integer key = Integer.valueOf(s.getStreamId());
+            long deficit = deficits.getOrDefault(key, Long.valueOf(0)).longValue();
+            if (inTurn) {
+                inTurn = false;
+            } else {
+                deficit += (long) QUANTUM * (URGENCY_LEVELS - Math.min(s.getUrgency(), URGENCY_LEVELS - 1));
+            }
+
+            int grant = (int) Math.min(deficit, remaining);
+            int allocated = grant - s.allocate(grant);
+            deficit -= allocated;
+            remaining -= allocated;
+
+            if (s.getAllocationRequested() == 0) {
+                // Fully allocated. Any unused deficit is discarded.
+                deficits.remove(key);
+                round.remove(index);
+                if (remaining < 1 && !round.isEmpty()) {
+                    nextStreamId = round.get(index % round.size()).getStreamId();
+                }
+                continue;
+            }
+
+            deficits.put(key, Long.valueOf(deficit));
+            if (remaining < 1) {
+                if (deficit > 0) {
+                    // Continue this turn next time
+                    nextStreamId = s.getStreamId();
+                    nextInTurn = true;
+                } else {
+                    nextStreamId = round.get((index + 1) % round.size()).getStreamId();
+                }
+            }
+            index++;
+        }
+    }
+}
@@ -29,18 +29,32 @@ public class HPackHuffman {
 
     private static final HuffmanCode[] HUFFMAN_CODES;
 
-    /**
-     * array based tree representation of a huffman code.
-     * <p/>
-     * the high two bytes corresponds to the tree node if the bit is set, and the low two bytes for if it is clear if
-     * the high bit is set it is a terminal node, otherwise it contains the next node position.
-     */
-    private static final int[] DECODING_TABLE;
-
     private static final int LOW_TERMINAL_BIT = (0b10000000) << 8;
     private static final int HIGH_TERMINAL_BIT = (0b10000000) << 24;
     private static final int LOW_MASK = 0b0111111111111111;
 
+    /**
+     * State machine, built from an array based tree representation of the huffman code, that decodes four bits at a
+     * time. Each state is a node of the tree with state 0 being the root. The transition for a state and the next four
+     * bits is held at index <code>state &lt;&lt; 4 | bits</code>. The low byte of a transition is the next state, the
+     * second byte is the decoded symbol if {@link #DECODING_SYMBOL} is set. No code is shorter than five bits so at
+     * most one symbol is decoded per transition.
+     */
+    private static final int[] DECODING_STATES;
+
+    private static final int DECODING_SYMBOL = 1 << 16;
+    private static final int DECODING_EOS = 1 << 17;
+
+    /**
+     * The result of ending a string literal in a given state. Padding must be the most significant bits of the EOS
+     * symbol, i.e. all ones, and no more than 7 bits long.
+     */
+    private static final byte[] DECODING_END;
+
+    private static final byte END_VALID = 0;
+    private static final byte END_TOO_MUCH_PADDING = 1;
+    private static final byte END_NOT_EOS = 2;
+
 
     static {
 
@@ -305,6 +319,9 @@ public class HPackHuffman {
         codes[256] = new HuffmanCode(0x3fffffff, 30);
         HUFFMAN_CODES = codes;
 
+        // array based tree representation of a huffman code.
+        // the high two bytes corresponds to the tree node if the bit is set, and the low two bytes for if it is clear
+        // if the high bit is set it is a terminal node, otherwise it contains the next node position.
         // lengths determined by experimentation, just set it to something large then see how large it actually ends up
         int[] codingTree = new int[256];
         // the current position in the tree
@@ -359,7 +376,64 @@ public class HPackHuffman {
             codingTree[pos] = newVal;
             pos++;
         }
-        DECODING_TABLE = codingTree;
+
+        // Child nodes are always allocated after their parent so a single pass sets the depth of every node and
+        // whether the path to it consists only of set bits
+        int[] depth = new int[pos];
+        boolean[] allOnes = new boolean[pos];
+        allOnes[0] = true;
+        for (int node = 0; node < pos; ++node) {
+            int val = codingTree[node];
+            if ((val & HIGH_TERMINAL_BIT) == 0) {
+                int child = (val >> 16) & LOW_MASK;
+                depth[child] = depth[node] + 1;
+                allOnes[child] = allOnes[node];
+            }
+            if ((val & LOW_TERMINAL_BIT) == 0) {
+                int child = val & LOW_MASK;
+                depth[child] = depth[node] + 1;
+            }
+        }
+
+        byte[] end = new byte[pos];
+        int[] states = new int[pos << 4];
+        for (int state = 0; state < pos; ++state) {
+            if (!allOnes[state]) {
+                end[state] = END_NOT_EOS;
+            } else if (depth[state] > 7) {
+                end[state] = END_TOO_MUCH_PADDING;
+            } else {
+                end[state] = END_VALID;
+            }
+            for (int bits = 0; bits < 16; ++bits) {
+                int node = state;
+                int transition = 0;
+                for (int bitPos = 3; bitPos >= 0; --bitPos) {
+                    int val = codingTree[node];
+                    boolean terminal;
+                    int next;
+                    if ((bits & (1 << bitPos)) != 0) {
+                        terminal = (val & HIGH_TERMINAL_BIT) != 0;
+                        next = (val >> 16) & LOW_MASK;
+                    } else {
+                        terminal = (val & LOW_TERMINAL_BIT) != 0;
+                        next = val & LOW_MASK;
+                    }
+                    if (!terminal) {
+                        node = next;
+                    } else if (next == 256) {
+                        transition |= DECODING_EOS;
+                        break;
+                    } else {
+                        transition |= DECODING_SYMBOL | next << 8;
+                        node = 0;
+                    }
+                }
+                states[state << 4 | bits] = transition | node;
+            }
+        }
+        DECODING_STATES = states;
+        DECODING_END = end;
     }
 
     /**
@@ -373,55 +447,71 @@ public class HPackHuffman {
      * @throws HpackException If the Huffman encoded value in HPACK headers did not end with EOS padding
      */
     public static void decode(ByteBuffer data, int length, StringBuilder target) throws HpackException {
+        byte[] decoded = new byte[getMaxDecodedLength(length)];
+        int decodedLength = decode(data, length, decoded, 0);
+        for (int i = 0; i < decodedLength; ++i) {
+            target.append((char) (decoded[i] & 0xFF));
+        }
+    }
+
+    /**
+     * Decodes a huffman encoded string into the target array. There must be enough space left in the buffer for this
+     * method to succeed and there must be space for at least {@link #getMaxDecodedLength(int)} bytes in the target
+     * array.
+     *
+     * @param data   The byte buffer
+     * @param length The length of data from the buffer to decode
+     * @param target The target for the decompressed data
+     * @param offset The position in the target array at which to start writing
+     *
+     * @return The number of bytes written to the target array
+     *
+     * @throws HpackException If the Huffman encoded value in HPACK headers did not end with EOS padding
+     */
+    public static int decode(ByteBuffer data, int length, byte[] target, int offset) throws HpackException {
         assert data.remaining() >= length;
-        int treePos = 0;
-        boolean eosBits = true;
-        int eosBitCount = 0;
+        int pos = offset;
+        int state = 0;
         for (int i = 0; i < length; ++i) {
-            byte b = data.get();
-            int bitPos = 7;
-            while (bitPos >= 0) {
-                int val = DECODING_TABLE[treePos];
-                if (((1 << bitPos) & b) == 0) {
-                    // bit not set, we want the lower part of the tree
-                    if ((val & LOW_TERMINAL_BIT) == 0) {
-                        treePos = val & LOW_MASK;
-                        eosBits = false;
-                        eosBitCount = 0;
-                    } else {
-                        target.append((char) (val & LOW_MASK));
-                        treePos = 0;
-                        eosBits = true;
-                    }
-                } else {
-                    if (eosBits) {
-                        eosBitCount++;
-                    }
-                    // bit not set, we want the lower part of the tree
-                    if ((val & HIGH_TERMINAL_BIT) == 0) {
-                        treePos = (val >> 16) & LOW_MASK;
-                    } else {
-                        if (eosBitCount != 0) {
-                            // This must be the EOS symbol which MUST be treated
-                            // as an error
-                            throw new HpackException(sm.getString("hpackhuffman.stringLiteralEOS"));
-                        }
-                        target.append((char) ((val >> 16) & LOW_MASK));
-                        treePos = 0;
-                        eosBits = true;
-                    }
-                }
-                bitPos--;
+            int b = data.get() & 0xFF;
+            int transition = DECODING_STATES[state << 4 | b >>> 4];
+            if ((transition & DECODING_EOS) != 0) {
+                // This must be treated as an error
+                throw new HpackException(sm.getString("hpackhuffman.stringLiteralEOS"));
             }
+            if ((transition & DECODING_SYMBOL) != 0) {
+                target[pos++] = (byte) (transition >> 8);
+            }
+            transition = DECODING_STATES[(transition & 0xFF) << 4 | b & 0x0F];
+            if ((transition & DECODING_EOS) != 0) {
+                throw new HpackException(sm.getString("hpackhuffman.stringLiteralEOS"));
+            }
+            if ((transition & DECODING_SYMBOL) != 0) {
+                target[pos++] = (byte) (transition >> 8);
+            }
+            state = transition & 0xFF;
         }
-        if (eosBitCount > 7) {
-            throw new HpackException(sm.getString("hpackhuffman.stringLiteralTooMuchPadding"));
-        }
-        if (!eosBits) {
-            throw new HpackException(sm.getString("hpackhuffman.huffmanEncodedHpackValueDidNotEndWithEOS"));
+        switch (DECODING_END[state]) {
+            case END_TOO_MUCH_PADDING:
+                throw new HpackException(sm.getString("hpackhuffman.stringLiteralTooMuchPadding"));
+            case END_NOT_EOS:
+                throw new HpackException(sm.getString("hpackhuffman.huffmanEncodedHpackValueDidNotEndWithEOS"));
+            default:
+                return pos - offset;
         }
     }
 
+    /**
+     * The maximum number of bytes that the given number of bytes of huffman encoded data may decode to. The shortest
+     * code is five bits.
+     *
+     * @param length The length of the huffman encoded data
+     *
+     * @return The maximum length of the decoded data
+     */
+    public static int getMaxDecodedLength(int length) {
+        return length * 8 / 5;
+    }
 
     /**
      * Encodes the given string into the buffer. If there is not enough space in the buffer, or the encoded version is
@@ -524,6 +614,59 @@ public class HPackHuffman {
         return true;
     }
 
+    /**
+     * Encodes the given bytes into the buffer. If there is not enough space in the buffer, or the encoded version is
+     * bigger than the original it will return false and not modify the buffers position.
+     *
+     * @param buffer   The buffer to encode into
+     * @param toEncode The bytes to encode
+     * @param length   The number of bytes, starting at the beginning of the array, to encode
+     *
+     * @return true if encoding succeeded
+     */
+    public static boolean encode(ByteBuffer buffer, byte[] toEncode, int length) {
+        if (buffer.remaining() <= length) {
+            return false;
+        }
+        long bitLength = 0;
+        for (int i = 0; i < length; ++i) {
+            bitLength += HUFFMAN_CODES[toEncode[i] & 0xFF].length;
+        }
+        int byteLength = (int) ((bitLength + 7) / 8);
+        int prefixLength = 1;
+        if (byteLength >= 127) {
+            for (int remaining = byteLength - 127; remaining >= 0x80; remaining >>>= 7) {
+                prefixLength++;
+            }
+            prefixLength++;
+        }
+        if (prefixLength + bitLength / 8 > length) {
+            // the encoded version is longer than the original
+            return false;
+        }
+
+        buffer.put((byte) (1 << 7));
+        Hpack.encodeInteger(buffer, byteLength, 7);
+
+        // Codes are at most 30 bits so fewer than 38 bits are ever held
+        long bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < length; ++i) {
+            HuffmanCode code = HUFFMAN_CODES[toEncode[i] & 0xFF];
+            bits = (bits << code.length) | code.value;
+            bitCount += code.length;
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                buffer.put((byte) (bits >>> bitCount));
+            }
+        }
+        if (bitCount > 0) {
+            // add the EOS bits to complete the final byte
+            buffer.put((byte) ((bits << (8 - bitCount)) | (0xFF >>> bitCount)));
+        }
+        return true;
+    }
+
     protected static class HuffmanCode {
         /**
          * The value of the least significant bits of the code
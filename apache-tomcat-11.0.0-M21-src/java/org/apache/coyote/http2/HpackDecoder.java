@@ -17,6 +17,7 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -74,6 +75,12 @@ public class HpackDecoder {
     private volatile boolean countedCookie;
     private volatile int headerSize = 0;
 
+    /**
+     * Reusable buffer that holds the most recently read string literal
+     */
+    private byte[] stringBuffer = new byte[128];
+    private int stringLength;
+
     HpackDecoder(int maxMemorySize) {
         this.maxMemorySizeHard = maxMemorySize;
         this.maxMemorySizeSoft = maxMemorySize;
@@ -128,12 +135,11 @@ public class HpackDecoder {
                     buffer.position(originalPos);
                     return;
                 }
-                String headerValue = readHpackString(buffer);
-                if (headerValue == null) {
+                if (!readHpackBytes(buffer)) {
                     buffer.position(originalPos);
                     return;
                 }
-                emitHeader(headerName, headerValue);
+                emitHeader(headerName, stringBuffer, stringLength);
             } else if ((b & 0b11110000) == 0b00010000) {
                 // Literal Header Field never indexed
                 String headerName = readHeaderName(buffer, 4);
@@ -141,12 +147,11 @@ public class HpackDecoder {
                     buffer.position(originalPos);
                     return;
                 }
-                String headerValue = readHpackString(buffer);
-                if (headerValue == null) {
+                if (!readHpackBytes(buffer)) {
                     buffer.position(originalPos);
                     return;
                 }
-                emitHeader(headerName, headerValue);
+                emitHeader(headerName, stringBuffer, stringLength);
             } else if ((b & 0b11100000) == 0b00100000) {
                 // context update max table size change
                 if (!handleMaxMemorySizeChange(buffer, originalPos)) {
@@ -207,30 +212,41 @@ public class HpackDecoder {
     }
 
     private String readHpackString(ByteBuffer buffer) throws HpackException {
-        if (!buffer.hasRemaining()) {
+        if (!readHpackBytes(buffer)) {
             return null;
         }
+        return new String(stringBuffer, 0, stringLength, StandardCharsets.ISO_8859_1);
+    }
+
+    /*
+     * Reads a string literal into stringBuffer. Returns false if the buffer does not contain the complete literal.
+     */
+    private boolean readHpackBytes(ByteBuffer buffer) throws HpackException {
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
         byte data = buffer.get(buffer.position());
 
         int length = Hpack.decodeInteger(buffer, 7);
         if (buffer.remaining() < length || length == -1) {
-            return null;
+            return false;
         }
         boolean huffman = (data & 0b10000000) != 0;
         if (huffman) {
-            return readHuffmanString(length, buffer);
-        }
-        StringBuilder stringBuilder = new StringBuilder(length);
-        for (int i = 0; i < length; ++i) {
-            stringBuilder.append((char) buffer.get());
+            ensureStringBufferCapacity(HPackHuffman.getMaxDecodedLength(length));
+            stringLength = HPackHuffman.decode(buffer, length, stringBuffer, 0);
+        } else {
+            ensureStringBufferCapacity(length);
+            buffer.get(stringBuffer, 0, length);
+            stringLength = length;
         }
-        return stringBuilder.toString();
+        return true;
     }
 
-    private String readHuffmanString(int length, ByteBuffer buffer) throws HpackException {
-        StringBuilder stringBuilder = new StringBuilder(length);
-        HPackHuffman.decode(buffer, length, stringBuilder);
-        return stringBuilder.toString();
+    private void ensureStringBufferCapacity(int capacity) {
+        if (capacity > stringBuffer.length) {
+            stringBuffer = new byte[Math.max(capacity, stringBuffer.length * 2)];
+        }
     }
 
     private String handleIndexedHeaderName(int index) throws HpackException {
@@ -369,6 +385,22 @@ public class HpackDecoder {
          */
         void emitHeader(String name, String value) throws HpackException;
 
+        /**
+         * Pass a single header to the recipient without first converting the value to a String. The value is only
+         * valid for the duration of the call so recipients that retain it must copy it. Values are decoded as
+         * ISO-8859-1.
+         *
+         * @param name   Header name
+         * @param value  Array that holds the header value
+         * @param offset The position of the start of the value in the array
+         * @param length The length of the value
+         *
+         * @throws HpackException If a header is received that is not compliant with the HTTP/2 specification
+         */
+        default void emitHeader(String name, byte[] value, int offset, int length) throws HpackException {
+            emitHeader(name, new String(value, offset, length, StandardCharsets.ISO_8859_1));
+        }
+
         /**
          * Inform the recipient of the headers that a stream error needs to be triggered using the given message when
          * {@link #validateHeaders()} is called. This is used when the Parser becomes aware of an error that is not
@@ -416,6 +448,30 @@ public class HpackDecoder {
 
 
     private void emitHeader(String name, String value) throws HpackException {
+        if (countHeader(name, value.length())) {
+            if (log.isTraceEnabled()) {
+                log.trace(sm.getString("hpackdecoder.emitHeader", name, value));
+            }
+            headerEmitter.emitHeader(name, value);
+        }
+    }
+
+
+    private void emitHeader(String name, byte[] value, int length) throws HpackException {
+        if (countHeader(name, length)) {
+            if (log.isTraceEnabled()) {
+                log.trace(sm.getString("hpackdecoder.emitHeader", name,
+                        new String(value, 0, length, StandardCharsets.ISO_8859_1)));
+            }
+            headerEmitter.emitHeader(name, value, 0, length);
+        }
+    }
+
+
+    /*
+     * Updates the header count and size and returns true if the header should be passed to the recipient.
+     */
+    private boolean countHeader(String name, int valueLength) {
         // Header names are forced to lower case
         if ("cookie".equals(name)) {
             // Only count the cookie header once since HTTP/2 splits it into
@@ -430,14 +486,9 @@ public class HpackDecoder {
         // Overhead will vary. The main concern is that lots of small headers
         // trigger the limiting mechanism correctly. Therefore, use an overhead
         // estimate of 3 which is the worst case for small headers.
-        int inc = 3 + name.length() + value.length();
+        int inc = 3 + name.length() + valueLength;
         headerSize += inc;
-        if (!isHeaderCountExceeded() && !isHeaderSizeExceeded(0)) {
-            if (log.isTraceEnabled()) {
-                log.trace(sm.getString("hpackdecoder.emitHeader", name, value));
-            }
-            headerEmitter.emitHeader(name, value);
-        }
+        return !isHeaderCountExceeded() && !isHeaderSizeExceeded(0);
     }
 
 
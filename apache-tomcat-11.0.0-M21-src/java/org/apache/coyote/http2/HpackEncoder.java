@@ -17,88 +17,93 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
+import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.MimeHeaders;
 import org.apache.tomcat.util.res.StringManager;
 
 /**
  * Encoder for HPACK frames.
+ * <p>
+ * Header names and values are copied from the {@link MimeHeaders} into reusable byte buffers and all table lookups and
+ * encoding operate on those bytes. The dynamic table is held in a ring buffer, in insertion order, with two open
+ * addressing (linear probing) hash indexes: one keyed on name and value and one keyed on name alone. Neither adding
+ * nor evicting an entry allocates once the table has grown to its working size.
  */
 class HpackEncoder {
 
     private static final Log log = LogFactory.getLog(HpackEncoder.class);
     private static final StringManager sm = StringManager.getManager(HpackEncoder.class);
 
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] DATE = "date".getBytes(StandardCharsets.ISO_8859_1);
+
     private static final HpackHeaderFunction DEFAULT_HEADER_FUNCTION = new HpackHeaderFunction() {
         @Override
-        public boolean shouldUseIndexing(String headerName, String value) {
+        public boolean shouldUseIndexing(FieldBuffer headerName, FieldBuffer value) {
             // content length and date change all the time
             // no need to index them, or they will churn the table
-            switch (headerName) {
-                case "content-length":
-                case "date":
-                    return false;
-                default:
-                    return true;
-            }
+            return !headerName.contentEquals(CONTENT_LENGTH) && !headerName.contentEquals(DATE);
         }
 
         @Override
-        public boolean shouldUseHuffman(String header, String value) {
-            return value.length() > 5; // TODO: figure out a good value for this
+        public boolean shouldUseHuffman(FieldBuffer header, FieldBuffer value) {
+            return value.length > 5; // TODO: figure out a good value for this
         }
 
         @Override
-        public boolean shouldUseHuffman(String header) {
-            return header.length() > 5; // TODO: figure out a good value for this
+        public boolean shouldUseHuffman(FieldBuffer header) {
+            return header.length > 5; // TODO: figure out a good value for this
         }
 
 
     };
 
-    private int headersIterator = -1;
-    private boolean firstPass = true;
-
-    private MimeHeaders currentHeaders;
-
-    private int entryPositionCounter;
-
-    private int newMaxHeaderSize = -1; // if the max header size has been changed
-    private int minNewMaxHeaderSize = -1; // records the smallest value of newMaxHeaderSize, as per section 4.1
-
-    private static final Map<String,TableEntry[]> ENCODING_STATIC_TABLE;
-
-    private final Deque<TableEntry> evictionQueue = new ArrayDeque<>();
-    private final Map<String,List<TableEntry>> dynamicTable = new HashMap<>(); // TODO: use a custom data structure to
-                                                                               // reduce allocations
+    /*
+     * The static table. Entries with the same name are adjacent so the name index holds the first entry for each
+     * name.
+     */
+    private static final byte[][] STATIC_NAMES = new byte[Hpack.STATIC_TABLE.length][];
+    private static final byte[][] STATIC_VALUES = new byte[Hpack.STATIC_TABLE.length][];
+    private static final int[] STATIC_NAME_HASHES = new int[Hpack.STATIC_TABLE.length];
+    private static final int[] STATIC_VALUE_HASHES = new int[Hpack.STATIC_TABLE.length];
+    private static final int[] STATIC_NAME_INDEX = new int[128];
 
     static {
-        Map<String,TableEntry[]> map = new HashMap<>();
+        int mask = STATIC_NAME_INDEX.length - 1;
         for (int i = 1; i < Hpack.STATIC_TABLE.length; ++i) {
             Hpack.HeaderField m = Hpack.STATIC_TABLE[i];
-            TableEntry[] existing = map.get(m.name);
-            if (existing == null) {
-                map.put(m.name, new TableEntry[] { new TableEntry(m.name, m.value, i) });
-            } else {
-                TableEntry[] newEntry = new TableEntry[existing.length + 1];
-                System.arraycopy(existing, 0, newEntry, 0, existing.length);
-                newEntry[existing.length] = new TableEntry(m.name, m.value, i);
-                map.put(m.name, newEntry);
+            STATIC_NAMES[i] = m.name.getBytes(StandardCharsets.ISO_8859_1);
+            if (m.value != null) {
+                STATIC_VALUES[i] = m.value.getBytes(StandardCharsets.ISO_8859_1);
+                STATIC_VALUE_HASHES[i] = hash(STATIC_VALUES[i], STATIC_VALUES[i].length);
+            }
+            STATIC_NAME_HASHES[i] = hash(STATIC_NAMES[i], STATIC_NAMES[i].length);
+            if (i > 1 && m.name.equals(Hpack.STATIC_TABLE[i - 1].name)) {
+                continue;
             }
+            int pos = spread(STATIC_NAME_HASHES[i]) & mask;
+            while (STATIC_NAME_INDEX[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            STATIC_NAME_INDEX[pos] = i;
         }
-        ENCODING_STATIC_TABLE = Collections.unmodifiableMap(map);
     }
 
+    private int headersIterator = -1;
+    private boolean firstPass = true;
+
+    private MimeHeaders currentHeaders;
+
+    private int newMaxHeaderSize = -1; // if the max header size has been changed
+    private int minNewMaxHeaderSize = -1; // records the smallest value of newMaxHeaderSize, as per section 4.1
+
     /**
      * The maximum table size
      */
@@ -111,8 +116,49 @@ class HpackEncoder {
 
     private final HpackHeaderFunction hpackHeaderFunction;
 
+    private final FieldBuffer name = new FieldBuffer();
+    private final FieldBuffer value = new FieldBuffer();
+
+    /*
+     * Dynamic table entries are identified by their insertion sequence number. The entry with sequence number n is
+     * held in slot (n & entryMask) of the entry arrays. The newest entry has sequence number (insertCount - 1) and the
+     * oldest has sequence number (insertCount - entryCount). Sequence numbers may overflow as only the difference
+     * between two of them is ever used.
+     */
+    private int insertCount;
+    private int entryCount;
+    private int entryMask;
+    private int[] entryOffset;
+    private int[] entryNameLength;
+    private int[] entryValueLength;
+    private int[] entryNameHash;
+    private int[] entryValueHash;
+
+    /*
+     * The names and values of the dynamic table entries, written one after the other in insertion order. Offsets are
+     * absolute and wrap around the array.
+     */
+    private byte[] data;
+    private int dataTail;
+
+    /*
+     * Open addressing hash indexes of entry slot + 1. Zero marks an empty position. The name index only refers to
+     * the newest entry for each name.
+     */
+    private int[] fieldIndex;
+    private int[] nameIndex;
+
+    /*
+     * The result of the most recent table lookup. The position is zero if nothing was found.
+     */
+    private int foundPosition;
+    private boolean foundValue;
+
+
     HpackEncoder() {
         this.hpackHeaderFunction = DEFAULT_HEADER_FUNCTION;
+        initEntries(16);
+        data = new byte[1024];
     }
 
     /**
@@ -137,65 +183,56 @@ class HpackEncoder {
         }
         while (it < currentHeaders.size()) {
             // FIXME: Review lowercase policy
-            String headerName = headers.getName(it).toString().toLowerCase(Locale.US);
-            boolean skip = false;
-            if (firstPass) {
-                if (headerName.charAt(0) != ':') {
-                    skip = true;
-                }
-            } else {
-                if (headerName.charAt(0) == ':') {
-                    skip = true;
-                }
-            }
-            if (!skip) {
-                String val = headers.getValue(it).toString();
+            name.set(headers.getName(it), true);
+            boolean pseudoHeader = name.length > 0 && name.bytes[0] == ':';
+            if (firstPass == pseudoHeader) {
+                value.set(headers.getValue(it), false);
 
                 if (log.isTraceEnabled()) {
-                    log.trace(sm.getString("hpackEncoder.encodeHeader", headerName, val));
+                    log.trace(sm.getString("hpackEncoder.encodeHeader", name, value));
                 }
-                TableEntry tableEntry = findInTable(headerName, val);
+                findInTable();
 
                 // We use 11 to make sure we have enough room for the
                 // variable length integers
-                int required = 11 + headerName.length() + 1 + val.length();
+                int required = 11 + name.length + 1 + value.length;
 
                 if (target.remaining() < required) {
                     this.headersIterator = it;
                     return State.UNDERFLOW;
                 }
                 // Only index if it will fit
-                boolean canIndex = hpackHeaderFunction.shouldUseIndexing(headerName, val) &&
-                        (headerName.length() + val.length() + 32) < maxTableSize;
-                if (tableEntry == null && canIndex) {
+                boolean canIndex = hpackHeaderFunction.shouldUseIndexing(name, value) &&
+                        (name.length + value.length + 32) < maxTableSize;
+                if (foundPosition == 0 && canIndex) {
                     // add the entry to the dynamic table
                     target.put((byte) (1 << 6));
-                    writeHuffmanEncodableName(target, headerName);
-                    writeHuffmanEncodableValue(target, headerName, val);
-                    addToDynamicTable(headerName, val);
-                } else if (tableEntry == null) {
+                    writeHuffmanEncodableName(target);
+                    writeHuffmanEncodableValue(target);
+                    addToDynamicTable();
+                } else if (foundPosition == 0) {
                     // literal never indexed
                     target.put((byte) (1 << 4));
-                    writeHuffmanEncodableName(target, headerName);
-                    writeHuffmanEncodableValue(target, headerName, val);
+                    writeHuffmanEncodableName(target);
+                    writeHuffmanEncodableValue(target);
                 } else {
                     // so we know something is already in the table
-                    if (val.equals(tableEntry.value)) {
+                    if (foundValue) {
                         // the whole thing is in the table
                         target.put((byte) (1 << 7));
-                        Hpack.encodeInteger(target, tableEntry.getPosition(), 7);
+                        Hpack.encodeInteger(target, foundPosition, 7);
                     } else {
                         if (canIndex) {
                             // add the entry to the dynamic table
                             target.put((byte) (1 << 6));
-                            Hpack.encodeInteger(target, tableEntry.getPosition(), 6);
-                            writeHuffmanEncodableValue(target, headerName, val);
-                            addToDynamicTable(headerName, val);
+                            Hpack.encodeInteger(target, foundPosition, 6);
+                            writeHuffmanEncodableValue(target);
+                            addToDynamicTable();
 
                         } else {
                             target.put((byte) (1 << 4));
-                            Hpack.encodeInteger(target, tableEntry.getPosition(), 4);
-                            writeHuffmanEncodableValue(target, headerName, val);
+                            Hpack.encodeInteger(target, foundPosition, 4);
+                            writeHuffmanEncodableValue(target);
                         }
                     }
                 }
@@ -211,101 +248,81 @@ class HpackEncoder {
         return State.COMPLETE;
     }
 
-    private void writeHuffmanEncodableName(ByteBuffer target, String headerName) {
-        if (hpackHeaderFunction.shouldUseHuffman(headerName)) {
-            if (HPackHuffman.encode(target, headerName, true)) {
+    private void writeHuffmanEncodableName(ByteBuffer target) {
+        if (hpackHeaderFunction.shouldUseHuffman(name)) {
+            name.checkHuffmanEncodable();
+            if (HPackHuffman.encode(target, name.bytes, name.length)) {
                 return;
             }
         }
-        target.put((byte) 0); // to use encodeInteger we need to place the first byte in the buffer.
-        Hpack.encodeInteger(target, headerName.length(), 7);
-        for (int j = 0; j < headerName.length(); ++j) {
-            target.put((byte) Hpack.toLower(headerName.charAt(j)));
-        }
-
+        writeString(target, name);
     }
 
-    private void writeHuffmanEncodableValue(ByteBuffer target, String headerName, String val) {
-        if (hpackHeaderFunction.shouldUseHuffman(headerName, val)) {
-            if (!HPackHuffman.encode(target, val, false)) {
-                writeValueString(target, val);
+    private void writeHuffmanEncodableValue(ByteBuffer target) {
+        if (hpackHeaderFunction.shouldUseHuffman(name, value)) {
+            value.checkHuffmanEncodable();
+            if (!HPackHuffman.encode(target, value.bytes, value.length)) {
+                writeString(target, value);
             }
         } else {
-            writeValueString(target, val);
+            writeString(target, value);
         }
     }
 
-    private void writeValueString(ByteBuffer target, String val) {
+    private static void writeString(ByteBuffer target, FieldBuffer field) {
         target.put((byte) 0); // to use encodeInteger we need to place the first byte in the buffer.
-        Hpack.encodeInteger(target, val.length(), 7);
-        for (int j = 0; j < val.length(); ++j) {
-            target.put((byte) val.charAt(j));
-        }
-    }
-
-    private void addToDynamicTable(String headerName, String val) {
-        int pos = entryPositionCounter++;
-        DynamicTableEntry d = new DynamicTableEntry(headerName, val, -pos);
-        dynamicTable.computeIfAbsent(headerName, k -> new ArrayList<>(1)).add(d);
-        evictionQueue.add(d);
-        currentTableSize += d.getSize();
-        runEvictionIfRequired();
-        if (entryPositionCounter == Integer.MAX_VALUE) {
-            // prevent rollover
-            preventPositionRollover();
-        }
-
+        Hpack.encodeInteger(target, field.length, 7);
+        target.put(field.bytes, 0, field.length);
     }
 
-
-    private void preventPositionRollover() {
-        // if the position counter is about to roll over we iterate all the table entries
-        // and set their position to their actual position
-        for (List<TableEntry> tableEntries : dynamicTable.values()) {
-            for (TableEntry t : tableEntries) {
-                t.position = t.getPosition();
+    /*
+     * Sets foundPosition and foundValue. A full match in the static table is preferred, then a full match in the
+     * dynamic table, then a name match in the static table and finally a name match in the dynamic table.
+     */
+    private void findInTable() {
+        foundPosition = 0;
+        foundValue = false;
+
+        int staticPosition = 0;
+        int mask = STATIC_NAME_INDEX.length - 1;
+        int pos = spread(name.hash) & mask;
+        int i;
+        while ((i = STATIC_NAME_INDEX[pos]) != 0) {
+            if (STATIC_NAME_HASHES[i] == name.hash && name.contentEquals(STATIC_NAMES[i])) {
+                staticPosition = i;
+                // Entries with the same name are adjacent
+                do {
+                    if (STATIC_VALUES[i] != null && STATIC_VALUE_HASHES[i] == value.hash &&
+                            value.contentEquals(STATIC_VALUES[i])) {
+                        foundPosition = i;
+                        foundValue = true;
+                        return;
+                    }
+                    i++;
+                } while (i < STATIC_NAMES.length && STATIC_NAME_HASHES[i] == name.hash &&
+                        name.contentEquals(STATIC_NAMES[i]));
+                break;
             }
+            pos = (pos + 1) & mask;
         }
-        entryPositionCounter = 0;
-    }
-
-    private void runEvictionIfRequired() {
 
-        while (currentTableSize > maxTableSize) {
-            TableEntry next = evictionQueue.poll();
-            if (next == null) {
+        if (entryCount > 0) {
+            int slot = findField();
+            if (slot >= 0) {
+                foundPosition = getPosition(slot);
+                foundValue = true;
                 return;
             }
-            currentTableSize -= next.size;
-            List<TableEntry> list = dynamicTable.get(next.name);
-            list.remove(next);
-            if (list.isEmpty()) {
-                dynamicTable.remove(next.name);
-            }
         }
-    }
 
-    private TableEntry findInTable(String headerName, String value) {
-        TableEntry[] staticTable = ENCODING_STATIC_TABLE.get(headerName);
-        if (staticTable != null) {
-            for (TableEntry st : staticTable) {
-                if (st.value != null && st.value.equals(value)) { // todo: some form of lookup?
-                    return st;
-                }
+        if (staticPosition > 0) {
+            foundPosition = staticPosition;
+        } else if (entryCount > 0) {
+            int slot = findName();
+            if (slot >= 0) {
+                foundPosition = getPosition(slot);
             }
         }
-        List<TableEntry> dynamic = dynamicTable.get(headerName);
-        if (dynamic != null) {
-            for (TableEntry st : dynamic) {
-                if (st.value.equals(value)) { // todo: some form of lookup?
-                    return st;
-                }
-            }
-        }
-        if (staticTable != null) {
-            return staticTable[0];
-        }
-        return null;
     }
 
     public void setMaxTableSize(int newSize) {
@@ -328,57 +345,391 @@ class HpackEncoder {
         target.put((byte) (1 << 5));
         Hpack.encodeInteger(target, newMaxHeaderSize, 5);
         maxTableSize = newMaxHeaderSize;
-        runEvictionIfRequired();
+        runEvictionIfRequired(0);
         newMaxHeaderSize = -1;
         minNewMaxHeaderSize = -1;
     }
 
+
+    // ---------------------------------------------------------- Dynamic table
+
+    private void initEntries(int entryCapacity) {
+        entryMask = entryCapacity - 1;
+        entryOffset = new int[entryCapacity];
+        entryNameLength = new int[entryCapacity];
+        entryValueLength = new int[entryCapacity];
+        entryNameHash = new int[entryCapacity];
+        entryValueHash = new int[entryCapacity];
+        // Keep the load factor of the indexes at or below 0.5
+        fieldIndex = new int[entryCapacity * 2];
+        nameIndex = new int[entryCapacity * 2];
+    }
+
+
+    /*
+     * The HPACK index of the entry in the given slot. The newest entry is immediately after the static table.
+     */
+    private int getPosition(int slot) {
+        return Hpack.STATIC_TABLE_LENGTH + ((insertCount - slot - 1) & entryMask) + 1;
+    }
+
+
+    private void addToDynamicTable() {
+        int size = 32 + name.length + value.length;
+        // Evict before adding so the new entry may reuse the space
+        runEvictionIfRequired(size);
+
+        if (entryCount == entryMask + 1) {
+            growEntries();
+        }
+        int used = entryCount == 0 ? 0 : dataTail - entryOffset[(insertCount - entryCount) & entryMask];
+        if (used + name.length + value.length > data.length) {
+            growData(used + name.length + value.length);
+        }
+
+        int slot = insertCount & entryMask;
+        entryOffset[slot] = dataTail;
+        entryNameLength[slot] = name.length;
+        entryValueLength[slot] = value.length;
+        entryNameHash[slot] = name.hash;
+        entryValueHash[slot] = value.hash;
+        dataTail = copyIn(name, dataTail);
+        dataTail = copyIn(value, dataTail);
+        insertCount++;
+        entryCount++;
+        currentTableSize += size;
+
+        addToIndex(fieldIndex, fieldHash(slot), slot);
+        // Replace any older entry with the same name
+        int pos = findNamePosition();
+        if (pos >= 0) {
+            nameIndex[pos] = slot + 1;
+        } else {
+            addToIndex(nameIndex, entryNameHash[slot], slot);
+        }
+    }
+
+
+    private void runEvictionIfRequired(int required) {
+        while (entryCount > 0 && currentTableSize + required > maxTableSize) {
+            int slot = (insertCount - entryCount) & entryMask;
+            removeFromIndex(fieldIndex, fieldHash(slot), slot);
+            // Only the newest entry for a name is indexed so the name index will only refer to this entry if it is
+            // the only entry with this name
+            removeFromIndex(nameIndex, entryNameHash[slot], slot);
+            currentTableSize -= 32 + entryNameLength[slot] + entryValueLength[slot];
+            entryCount--;
+        }
+    }
+
+
+    private int copyIn(FieldBuffer field, int offset) {
+        int mask = data.length - 1;
+        for (int i = 0; i < field.length; i++) {
+            data[(offset + i) & mask] = field.bytes[i];
+        }
+        return offset + field.length;
+    }
+
+
+    private boolean matches(FieldBuffer field, int offset) {
+        int mask = data.length - 1;
+        for (int i = 0; i < field.length; i++) {
+            if (data[(offset + i) & mask] != field.bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private int fieldHash(int slot) {
+        return entryNameHash[slot] * 31 + entryValueHash[slot];
+    }
+
+
+    /*
+     * Returns the slot of the entry that matches the current name and value or -1.
+     */
+    private int findField() {
+        int mask = fieldIndex.length - 1;
+        int hash = name.hash * 31 + value.hash;
+        int pos = spread(hash) & mask;
+        int entry;
+        while ((entry = fieldIndex[pos]) != 0) {
+            int slot = entry - 1;
+            if (entryNameHash[slot] == name.hash && entryValueHash[slot] == value.hash &&
+                    entryNameLength[slot] == name.length && entryValueLength[slot] == value.length &&
+                    matches(name, entryOffset[slot]) && matches(value, entryOffset[slot] + name.length)) {
+                return slot;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    /*
+     * Returns the slot of the newest entry that matches the current name or -1.
+     */
+    private int findName() {
+        int pos = findNamePosition();
+        if (pos < 0) {
+            return -1;
+        }
+        return nameIndex[pos] - 1;
+    }
+
+
+    private int findNamePosition() {
+        int mask = nameIndex.length - 1;
+        int pos = spread(name.hash) & mask;
+        int entry;
+        while ((entry = nameIndex[pos]) != 0) {
+            int slot = entry - 1;
+            if (entryNameHash[slot] == name.hash && entryNameLength[slot] == name.length &&
+                    matches(name, entryOffset[slot])) {
+                return pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    private static void addToIndex(int[] index, int hash, int slot) {
+        int mask = index.length - 1;
+        int pos = spread(hash) & mask;
+        while (index[pos] != 0) {
+            pos = (pos + 1) & mask;
+        }
+        index[pos] = slot + 1;
+    }
+
+
+    /*
+     * Removes the given slot from the index, if present, by shifting back any later entries in the same probe
+     * sequence so that no tombstones are required.
+     */
+    private void removeFromIndex(int[] index, int hash, int slot) {
+        boolean byField = index == fieldIndex;
+        int mask = index.length - 1;
+        int pos = spread(hash) & mask;
+        while (index[pos] != slot + 1) {
+            if (index[pos] == 0) {
+                return;
+            }
+            pos = (pos + 1) & mask;
+        }
+        int next = pos;
+        while (true) {
+            index[pos] = 0;
+            int home;
+            do {
+                next = (next + 1) & mask;
+                if (index[next] == 0) {
+                    return;
+                }
+                int other = index[next] - 1;
+                home = spread(byField ? fieldHash(other) : entryNameHash[other]) & mask;
+                // Move the entry back unless its home position lies cyclically in (pos, next]
+            } while (pos <= next ? (pos < home && home <= next) : (pos < home || home <= next));
+            index[pos] = index[next];
+            pos = next;
+        }
+    }
+
+
+    private void growEntries() {
+        int[] oldOffset = entryOffset;
+        int[] oldNameLength = entryNameLength;
+        int[] oldValueLength = entryValueLength;
+        int[] oldNameHash = entryNameHash;
+        int[] oldValueHash = entryValueHash;
+        int oldMask = entryMask;
+
+        initEntries((entryMask + 1) * 2);
+
+        for (int n = insertCount - entryCount; n != insertCount; n++) {
+            int oldSlot = n & oldMask;
+            int slot = n & entryMask;
+            entryOffset[slot] = oldOffset[oldSlot];
+            entryNameLength[slot] = oldNameLength[oldSlot];
+            entryValueLength[slot] = oldValueLength[oldSlot];
+            entryNameHash[slot] = oldNameHash[oldSlot];
+            entryValueHash[slot] = oldValueHash[oldSlot];
+            addToIndex(fieldIndex, fieldHash(slot), slot);
+            // Entries are processed oldest first so newer entries replace older entries
+            int pos = spread(entryNameHash[slot]) & (nameIndex.length - 1);
+            while (nameIndex[pos] != 0) {
+                int other = nameIndex[pos] - 1;
+                if (entryNameHash[other] == entryNameHash[slot] &&
+                        entryNameLength[other] == entryNameLength[slot] && sameName(other, slot)) {
+                    break;
+                }
+                pos = (pos + 1) & (nameIndex.length - 1);
+            }
+            nameIndex[pos] = slot + 1;
+        }
+    }
+
+
+    private boolean sameName(int slotA, int slotB) {
+        int mask = data.length - 1;
+        int offsetA = entryOffset[slotA];
+        int offsetB = entryOffset[slotB];
+        for (int i = 0; i < entryNameLength[slotA]; i++) {
+            if (data[(offsetA + i) & mask] != data[(offsetB + i) & mask]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void growData(int required) {
+        byte[] oldData = data;
+        int oldMask = oldData.length - 1;
+        int capacity = data.length * 2;
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        data = new byte[capacity];
+        int mask = capacity - 1;
+        if (entryCount > 0) {
+            for (int offset = entryOffset[(insertCount - entryCount) & entryMask]; offset != dataTail; offset++) {
+                data[offset & mask] = oldData[offset & oldMask];
+            }
+        }
+    }
+
+
+    private static int hash(byte[] bytes, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+
     enum State {
         COMPLETE,
         UNDERFLOW,
 
     }
 
-    private static class TableEntry {
-        private final String name;
-        private final String value;
-        private final int size;
-        private int position;
-
-        private TableEntry(String name, String value, int position) {
-            this.name = name;
-            this.value = value;
-            this.position = position;
-            if (value != null) {
-                this.size = 32 + name.length() + value.length();
-            } else {
-                this.size = -1;
+
+    /**
+     * Reusable buffer that holds the bytes of a header name or value that is being encoded.
+     */
+    static final class FieldBuffer {
+
+        private byte[] bytes = new byte[128];
+        private int length;
+        private int hash;
+        // The first character that can't be Huffman encoded, or -1
+        private int invalidChar;
+
+        void set(MessageBytes mb, boolean toLower) {
+            length = 0;
+            invalidChar = -1;
+            switch (mb.getType()) {
+                case MessageBytes.T_BYTES: {
+                    ByteChunk bc = mb.getByteChunk();
+                    ensureCapacity(bc.getLength());
+                    byte[] buf = bc.getBuffer();
+                    int start = bc.getStart();
+                    for (int i = 0; i < bc.getLength(); i++) {
+                        byte b = buf[start + i];
+                        if (toLower && b >= 'A' && b <= 'Z') {
+                            b = (byte) Hpack.toLower((char) b);
+                        }
+                        bytes[i] = b;
+                    }
+                    length = bc.getLength();
+                    break;
+                }
+                case MessageBytes.T_CHARS: {
+                    CharChunk cc = mb.getCharChunk();
+                    ensureCapacity(cc.getLength());
+                    char[] buf = cc.getBuffer();
+                    int start = cc.getStart();
+                    for (int i = 0; i < cc.getLength(); i++) {
+                        setChar(i, buf[start + i], toLower);
+                    }
+                    length = cc.getLength();
+                    break;
+                }
+                case MessageBytes.T_STR: {
+                    String s = mb.toString();
+                    ensureCapacity(s.length());
+                    for (int i = 0; i < s.length(); i++) {
+                        setChar(i, s.charAt(i), toLower);
+                    }
+                    length = s.length();
+                    break;
+                }
+                default:
+                    break;
             }
+            hash = hash(bytes, length);
         }
 
-        int getPosition() {
-            return position;
+        private void setChar(int i, char c, boolean toLower) {
+            if (c > 255 && invalidChar == -1) {
+                invalidChar = c;
+            }
+            if (toLower) {
+                c = Hpack.toLower(c);
+            }
+            bytes[i] = (byte) c;
         }
 
-        int getSize() {
-            return size;
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
         }
-    }
 
-    private class DynamicTableEntry extends TableEntry {
+        /*
+         * As with the original String based encoder, characters outside of the range 0 to 255 are rejected if the
+         * field is to be Huffman encoded.
+         */
+        void checkHuffmanEncodable() {
+            if (invalidChar != -1) {
+                throw new IllegalArgumentException(sm.getString("hpack.invalidCharacter",
+                        Character.toString((char) invalidChar), Integer.valueOf(invalidChar)));
+            }
+        }
 
-        private DynamicTableEntry(String name, String value, int position) {
-            super(name, value, position);
+        boolean contentEquals(byte[] other) {
+            if (other.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != other[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
 
         @Override
-        int getPosition() {
-            return super.getPosition() + entryPositionCounter + Hpack.STATIC_TABLE_LENGTH;
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
         }
     }
 
+
     private interface HpackHeaderFunction {
-        boolean shouldUseIndexing(String header, String value);
+        boolean shouldUseIndexing(FieldBuffer header, FieldBuffer value);
 
         /**
          * Returns true if huffman encoding should be used on the header value
@@ -388,7 +739,7 @@ class HpackEncoder {
          *
          * @return <code>true</code> if the value should be encoded
          */
-        boolean shouldUseHuffman(String header, String value);
+        boolean shouldUseHuffman(FieldBuffer header, FieldBuffer value);
 
         /**
          * Returns true if huffman encoding should be used on the header name
@@ -397,6 +748,6 @@ class HpackEncoder {
          *
          * @return <code>true</code> if the value should be encoded
          */
-        boolean shouldUseHuffman(String header);
+        boolean shouldUseHuffman(FieldBuffer header);
     }
 }
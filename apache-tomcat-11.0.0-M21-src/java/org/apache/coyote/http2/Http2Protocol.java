@@ -22,6 +22,8 @@ import java.util.Enumeration;
 import javax.management.ObjectName;
 
 import org.apache.coyote.Adapter;
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.CompressionEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.Processor;
 import org.apache.coyote.Request;
@@ -34,6 +36,7 @@ import org.apache.coyote.http11.upgrade.InternalHttpUpgradeHandler;
 import org.apache.coyote.http11.upgrade.UpgradeProcessorInternal;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
 import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.net.SocketWrapperBase;
 import org.apache.tomcat.util.res.StringManager;
@@ -94,6 +97,8 @@ public class Http2Protocol implements UpgradeProtocol {
 
     private boolean initiatePingDisabled = false;
     private boolean useSendfile = true;
+    private boolean useByteHeaderValues = false;
+    private String streamSchedulerClassName = PriorityStreamScheduler.class.getName();
     // Reference to HTTP/1.1 protocol that this instance is configured under
     private AbstractHttp11Protocol<?> http11Protocol = null;
 
@@ -248,6 +253,41 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    public boolean getUseByteHeaderValues() {
+        return useByteHeaderValues;
+    }
+
+
+    public void setUseByteHeaderValues(boolean useByteHeaderValues) {
+        this.useByteHeaderValues = useByteHeaderValues;
+    }
+
+
+    public String getStreamSchedulerClassName() {
+        return streamSchedulerClassName;
+    }
+
+
+    public void setStreamSchedulerClassName(String streamSchedulerClassName) {
+        this.streamSchedulerClassName = streamSchedulerClassName;
+    }
+
+
+    StreamScheduler createStreamScheduler() {
+        if (streamSchedulerClassName == null ||
+                PriorityStreamScheduler.class.getName().equals(streamSchedulerClassName)) {
+            return new PriorityStreamScheduler();
+        }
+        try {
+            return (StreamScheduler) Class.forName(streamSchedulerClassName).getConstructor().newInstance();
+        } catch (Throwable t) {
+            ExceptionUtils.handleThrowable(t);
+            log.warn(sm.getString("http2Protocol.streamSchedulerFail", streamSchedulerClassName), t);
+            return new PriorityStreamScheduler();
+        }
+    }
+
+
     boolean isTrailerHeaderAllowed(String headerName) {
         return http11Protocol.isTrailerHeaderAllowed(headerName);
     }
@@ -347,8 +387,28 @@ public class Http2Protocol implements UpgradeProtocol {
     }
 
 
+    /**
+     * @param request  The request that triggered the response
+     * @param response The response to consider compressing
+     *
+     * @return {@code true} if compression was enabled for the given response, otherwise {@code false}
+     *
+     * @deprecated Replaced by {@link #getCompressionEncoder(Request, Response)}. This method will be removed in Tomcat
+     *                 12.
+     */
+    @Deprecated
     public boolean useCompression(Request request, Response response) {
-        return http11Protocol.useCompression(request, response);
+        return getCompressionEncoder(request, response) != null;
+    }
+
+
+    public CompressionEncoder getCompressionEncoder(Request request, Response response) {
+        return http11Protocol.getCompressionEncoder(request, response);
+    }
+
+
+    public CompressionCache getCompressionCache() {
+        return http11Protocol.getCompressionCache();
     }
 
 
@@ -21,15 +21,13 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -125,6 +123,11 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     private volatile int newStreamsSinceLastPrune = 0;
     private final Set<Stream> backLogStreams = new HashSet<>();
     private long backLogSize = 0;
+    private final StreamScheduler streamScheduler;
+    // Backlog statistics. Only updated while holding windowAllocationLock.
+    private volatile long backLogWaitCount = 0;
+    private volatile long backLogWaitNanoTime = 0;
+    private volatile long backLogWaitMaxNanoTime = 0;
     // The time at which the connection will timeout unless data arrives before
     // then. -1 means no timeout.
     private volatile long connectionTimeout = -1;
@@ -164,6 +167,8 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
         remoteSettings = new ConnectionSettingsRemote(connectionId);
         localSettings = new ConnectionSettingsLocal(connectionId);
 
+        streamScheduler = protocol.createStreamScheduler();
+
         localSettings.set(Setting.MAX_CONCURRENT_STREAMS, protocol.getMaxConcurrentStreams());
         localSettings.set(Setting.INITIAL_WINDOW_SIZE, protocol.getInitialWindowSize());
 
@@ -525,7 +530,37 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
     @Override
     public void destroy() {
-        // NO-OP
+        if (log.isDebugEnabled() && backLogWaitCount > 0) {
+            log.debug(sm.getString("upgradeHandler.backLogStats", connectionId, Long.toString(backLogWaitCount),
+                    Long.toString(getBackLogWaitTime()), Long.toString(getBackLogWaitTimeMax())));
+        }
+    }
+
+
+    /**
+     * @return the number of allocations made to streams that were waiting in the backlog for the connection flow
+     *             control window
+     */
+    public long getBackLogWaitCount() {
+        return backLogWaitCount;
+    }
+
+
+    /**
+     * @return the total time in milliseconds that streams have waited in the backlog for the connection flow control
+     *             window
+     */
+    public long getBackLogWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(backLogWaitNanoTime);
+    }
+
+
+    /**
+     * @return the longest time in milliseconds that a stream has waited in the backlog for a single allocation from
+     *             the connection flow control window
+     */
+    public long getBackLogWaitTimeMax() {
+        return TimeUnit.NANOSECONDS.toMillis(backLogWaitMaxNanoTime);
     }
 
 
@@ -944,6 +979,7 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                     if (stream.getConnectionAllocationMade() == 0 && stream.getConnectionAllocationRequested() == 0) {
                         stream.setConnectionAllocationRequested(reservation);
                         backLogSize += reservation;
+                        stream.backLogStartNanoTime = System.nanoTime();
                         backLogStreams.add(stream);
                     }
                 } else if (windowSize < reservation) {
@@ -957,6 +993,7 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
                     int reservationRemaining = reservation - allocation;
                     stream.setConnectionAllocationRequested(reservationRemaining);
                     backLogSize += reservationRemaining;
+                    stream.backLogStartNanoTime = System.nanoTime();
                     backLogStreams.add(stream);
 
                 } else {
@@ -1087,86 +1124,32 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
 
                 backLogStreams.clear();
             } else {
-                // Can't clear the whole backlog.
-                // Need streams in priority order
-                Set<Stream> orderedStreams = new ConcurrentSkipListSet<>(Comparator.comparingInt(Stream::getUrgency)
-                        .thenComparing(Stream::getIncremental).thenComparing(Stream::getIdAsInt));
-                orderedStreams.addAll(backLogStreams);
-
-                // Iteration 1. Need to work out how much we can clear.
-                long urgencyWhereAllocationIsExhausted = 0;
-                long requestedAllocationForIncrementalStreams = 0;
-                int remaining = increment;
-                Iterator<Stream> orderedStreamsIterator = orderedStreams.iterator();
-                while (orderedStreamsIterator.hasNext()) {
-                    Stream s = orderedStreamsIterator.next();
-                    if (urgencyWhereAllocationIsExhausted < s.getUrgency()) {
-                        if (remaining < 1) {
-                            break;
-                        }
-                        requestedAllocationForIncrementalStreams = 0;
-                    }
-                    urgencyWhereAllocationIsExhausted = s.getUrgency();
-                    if (s.getIncremental()) {
-                        requestedAllocationForIncrementalStreams += s.getConnectionAllocationRequested();
-                        remaining -= s.getConnectionAllocationRequested();
-                    } else {
-                        remaining -= s.getConnectionAllocationRequested();
-                        if (remaining < 1) {
-                            break;
-                        }
-                    }
+                // Can't clear the whole backlog. The scheduler decides how the increment is shared.
+                // Streams may already have an allocation from an earlier pass that they have not used yet. Only
+                // streams that receive an allocation in this pass need to be notified.
+                Stream[] streams = backLogStreams.toArray(new Stream[0]);
+                int[] allocationsMade = new int[streams.length];
+                for (int i = 0; i < streams.length; i++) {
+                    allocationsMade[i] = streams[i].getConnectionAllocationMade();
                 }
-
-                // Iteration 2. Allocate.
-                // Reset for second iteration
-                remaining = increment;
-                orderedStreamsIterator = orderedStreams.iterator();
-                while (orderedStreamsIterator.hasNext()) {
-                    Stream s = orderedStreamsIterator.next();
-                    if (s.getUrgency() < urgencyWhereAllocationIsExhausted) {
-                        // Can fully allocate
-                        remaining = allocate(s, remaining);
+                streamScheduler.allocate(backLogStreams, increment);
+                for (int i = 0; i < streams.length; i++) {
+                    Stream s = streams[i];
+                    if (s.getConnectionAllocationMade() > allocationsMade[i]) {
                         result.add(s);
-                        orderedStreamsIterator.remove();
+                    }
+                    if (s.getConnectionAllocationRequested() == 0) {
+                        // Fully allocated
                         backLogStreams.remove(s);
-                    } else if (requestedAllocationForIncrementalStreams == 0) {
-                        // Allocation ran out in non-incremental streams so fully
-                        // allocate in iterator order until allocation is exhausted
-                        remaining = allocate(s, remaining);
-                        result.add(s);
-                        if (s.getConnectionAllocationRequested() == 0) {
-                            // Fully allocated
-                            orderedStreamsIterator.remove();
-                            backLogStreams.remove(s);
-                        }
-                        if (remaining < 1) {
-                            break;
-                        }
-                    } else {
-                        // Allocation ran out in incremental streams. Distribute
-                        // remaining allocation between the incremental streams at
-                        // this urgency level.
-                        if (s.getUrgency() != urgencyWhereAllocationIsExhausted) {
-                            break;
-                        }
-
-                        int share = (int) (s.getConnectionAllocationRequested() * remaining /
-                                requestedAllocationForIncrementalStreams);
-                        if (share == 0) {
-                            share = 1;
-                        }
-                        allocate(s, share);
-                        result.add(s);
-                        if (s.getConnectionAllocationRequested() == 0) {
-                            // Fully allocated (unlikely but possible due to
-                            // rounding if only a few bytes required).
-                            orderedStreamsIterator.remove();
-                            backLogStreams.remove(s);
-                        }
                     }
                 }
             }
+            if (!result.isEmpty()) {
+                long now = System.nanoTime();
+                for (AbstractStream stream : result) {
+                    recordBackLogWait((Stream) stream, now);
+                }
+            }
             return result;
         } finally {
             windowAllocationLock.unlock();
@@ -1174,7 +1157,22 @@ class Http2UpgradeHandler extends AbstractStream implements InternalHttpUpgradeH
     }
 
 
-    private int allocate(AbstractStream stream, int allocation) {
+    /*
+     * Record how long the stream waited in the backlog for this allocation. If the stream is still waiting for a
+     * further allocation, start timing the next wait.
+     */
+    private void recordBackLogWait(Stream stream, long now) {
+        long wait = now - stream.backLogStartNanoTime;
+        backLogWaitCount++;
+        backLogWaitNanoTime += wait;
+        if (wait > backLogWaitMaxNanoTime) {
+            backLogWaitMaxNanoTime = wait;
+        }
+        stream.backLogStartNanoTime = now;
+    }
+
+
+    int allocate(AbstractStream stream, int allocation) {
         windowAllocationLock.lock();
         try {
             if (log.isTraceEnabled()) {
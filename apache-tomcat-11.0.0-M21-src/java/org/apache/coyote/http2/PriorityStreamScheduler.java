@@ -0,0 +1,101 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The default {@link StreamScheduler}. Streams are allocated in strict RFC 9218 priority order. The most urgent
+ * streams are fully allocated first. Within an urgency level, non-incremental streams are fully allocated one at a time
+ * in stream identifier order and incremental streams share the allocation in proportion to the size of their
+ * requests.
+ */
+public class PriorityStreamScheduler implements StreamScheduler {
+
+    static final Comparator<StreamScheduler.BlockedStream> PRIORITY_ORDER =
+            Comparator.comparingInt(StreamScheduler.BlockedStream::getUrgency)
+                    .thenComparing(StreamScheduler.BlockedStream::getIncremental)
+                    .thenComparingInt(StreamScheduler.BlockedStream::getStreamId);
+
+
+    @Override
+    public void allocate(Collection<? extends BlockedStream> streams, int available) {
+        Set<BlockedStream> orderedStreams = new TreeSet<>(PRIORITY_ORDER);
+        orderedStreams.addAll(streams);
+
+        // Iteration 1. Need to work out how much we can clear.
+        long urgencyWhereAllocationIsExhausted = 0;
+        long requestedAllocationForIncrementalStreams = 0;
+        int remaining = available;
+        Iterator<BlockedStream> orderedStreamsIterator = orderedStreams.iterator();
+        while (orderedStreamsIterator.hasNext()) {
+            BlockedStream s = orderedStreamsIterator.next();
+            if (urgencyWhereAllocationIsExhausted < s.getUrgency()) {
+                if (remaining < 1) {
+                    break;
+                }
+                requestedAllocationForIncrementalStreams = 0;
+            }
+            urgencyWhereAllocationIsExhausted = s.getUrgency();
+            if (s.getIncremental()) {
+                requestedAllocationForIncrementalStreams += s.getAllocationRequested();
+                remaining -= s.getAllocationRequested();
+            } else {
+                remaining -= s.getAllocationRequested();
+                if (remaining < 1) {
+                    break;
+                }
+            }
+        }
+
+        // Iteration 2. Allocate.
+        // Reset for second iteration
+        remaining = available;
+        orderedStreamsIterator = orderedStreams.iterator();
+        while (orderedStreamsIterator.hasNext()) {
+            BlockedStream s = orderedStreamsIterator.next();
+            if (s.getUrgency() < urgencyWhereAllocationIsExhausted) {
+                // Can fully allocate
+                remaining = s.allocate(remaining);
+            } else if (requestedAllocationForIncrementalStreams == 0) {
+                // Allocation ran out in non-incremental streams so fully
+                // allocate in iterator order until allocation is exhausted
+                remaining = s.allocate(remaining);
+                if (remaining < 1) {
+                    break;
+                }
+            } else {
+                // Allocation ran out in incremental streams. Distribute
+                // remaining allocation between the incremental streams at
+                // this urgency level.
+                if (s.getUrgency() != urgencyWhereAllocationIsExhausted) {
+                    break;
+                }
+
+                int share = (int) (s.getAllocationRequested() * remaining / requestedAllocationForIncrementalStreams);
+                if (share == 0) {
+                    share = 1;
+                }
+                s.allocate(share);
+            }
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.apache.coyote.ActionCode;
 import org.apache.coyote.CloseNowException;
 import org.apache.coyote.InputBuffer;
 import org.apache.coyote.Request;
+import org.apache.coyote.RequestTimingPoint;
 import org.apache.coyote.Response;
 import org.apache.coyote.http11.HttpOutputBuffer;
 import org.apache.coyote.http11.OutputFilter;
@@ -51,7 +52,7 @@ import org.apache.tomcat.util.net.ApplicationBufferHandler;
 import org.apache.tomcat.util.net.WriteBuffer;
 import org.apache.tomcat.util.res.StringManager;
 
-class Stream extends AbstractNonZeroStream implements HeaderEmitter {
+class Stream extends AbstractNonZeroStream implements HeaderEmitter, StreamScheduler.BlockedStream {
 
     private static final Log log = LogFactory.getLog(Stream.class);
     private static final StringManager sm = StringManager.getManager(Stream.class);
@@ -66,6 +67,10 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
     private static final Integer HTTP_UPGRADE_STREAM = Integer.valueOf(1);
 
     private static final Set<String> HTTP_CONNECTION_SPECIFIC_HEADERS = new HashSet<>();
+    // Regular headers that are processed as Strings when they are received
+    private static final Set<String> STRING_VALUE_HEADERS = new HashSet<>();
+
+    private static final int HEADER_VALUE_BUFFER_SIZE = 1024;
 
     static {
         Response response = new Response();
@@ -78,6 +83,12 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         HTTP_CONNECTION_SPECIFIC_HEADERS.add("keep-alive");
         HTTP_CONNECTION_SPECIFIC_HEADERS.add("transfer-encoding");
         HTTP_CONNECTION_SPECIFIC_HEADERS.add("upgrade");
+
+        STRING_VALUE_HEADERS.add("cookie");
+        STRING_VALUE_HEADERS.add("expect");
+        STRING_VALUE_HEADERS.add("host");
+        STRING_VALUE_HEADERS.add("priority");
+        STRING_VALUE_HEADERS.add("te");
     }
 
     private volatile long contentLengthReceived = 0;
@@ -98,11 +109,18 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
     private volatile StringBuilder cookieHeader = null;
     private volatile boolean hostHeaderSeen = false;
 
+    // Holds the values of headers received as bytes. Replaced rather than reused when full as the values already added
+    // to the request refer to it.
+    private byte[] headerValueBuffer = null;
+    private int headerValueBufferPos = 0;
+
     private Object pendingWindowUpdateForStreamLock = new Object();
     private int pendingWindowUpdateForStream = 0;
 
     private volatile int urgency = Priority.DEFAULT_URGENCY;
     private volatile boolean incremental = Priority.DEFAULT_INCREMENTAL;
+    // Only accessed by the connection while holding its window allocation lock
+    long backLogStartNanoTime = 0;
 
 
     Stream(Integer identifier, Http2UpgradeHandler handler) {
@@ -310,15 +328,7 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
             log.trace(sm.getString("stream.header.debug", getConnectionId(), getIdAsString(), name, value));
         }
 
-        // Header names must be lower case
-        if (!name.toLowerCase(Locale.US).equals(name)) {
-            throw new HpackException(sm.getString("stream.header.case", getConnectionId(), getIdAsString(), name));
-        }
-
-        if (HTTP_CONNECTION_SPECIFIC_HEADERS.contains(name)) {
-            throw new HpackException(
-                    sm.getString("stream.header.connection", getConnectionId(), getIdAsString(), name));
-        }
+        validateHeaderName(name);
 
         if ("te".equals(name)) {
             if (!"trailers".equals(value)) {
@@ -467,6 +477,55 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
     }
 
 
+    @Override
+    public final void emitHeader(String name, byte[] value, int offset, int length) throws HpackException {
+        if (!handler.getProtocol().getUseByteHeaderValues() || headerState == HEADER_STATE_TRAILER ||
+                name.length() == 0 || name.charAt(0) == ':' || STRING_VALUE_HEADERS.contains(name)) {
+            emitHeader(name, new String(value, offset, length, StandardCharsets.ISO_8859_1));
+            return;
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace(sm.getString("stream.header.debug", getConnectionId(), getIdAsString(), name,
+                    new String(value, offset, length, StandardCharsets.ISO_8859_1)));
+        }
+
+        validateHeaderName(name);
+
+        if (headerException != null) {
+            // Don't bother processing the header since the stream is going to
+            // be reset anyway
+            return;
+        }
+
+        if (headerState == HEADER_STATE_PSEUDO) {
+            headerState = HEADER_STATE_REGULAR;
+        }
+
+        if (headerValueBuffer == null || headerValueBuffer.length - headerValueBufferPos < length) {
+            headerValueBuffer = new byte[Math.max(HEADER_VALUE_BUFFER_SIZE, length)];
+            headerValueBufferPos = 0;
+        }
+        System.arraycopy(value, offset, headerValueBuffer, headerValueBufferPos, length);
+        // HTTP/2 headers are already always lower case
+        coyoteRequest.getMimeHeaders().addValue(name).setBytes(headerValueBuffer, headerValueBufferPos, length);
+        headerValueBufferPos += length;
+    }
+
+
+    private void validateHeaderName(String name) throws HpackException {
+        // Header names must be lower case
+        if (!name.toLowerCase(Locale.US).equals(name)) {
+            throw new HpackException(sm.getString("stream.header.case", getConnectionId(), getIdAsString(), name));
+        }
+
+        if (HTTP_CONNECTION_SPECIFIC_HEADERS.contains(name)) {
+            throw new HpackException(
+                    sm.getString("stream.header.connection", getConnectionId(), getIdAsString(), name));
+        }
+    }
+
+
     void configureVoidOutputFilter() {
         addOutputFilter(new VoidOutputFilter());
         // Prevent further writes by the application
@@ -541,6 +600,8 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
         if (cookieHeader != null) {
             coyoteRequest.getMimeHeaders().addValue("cookie").setString(cookieHeader.toString());
         }
+        coyoteRequest.setTimingsEnabled(handler.getProtocol().getHttp11Protocol().getRecordRequestTimings());
+        coyoteRequest.recordTiming(RequestTimingPoint.PARSED);
         return headerState == HEADER_STATE_REGULAR || headerState == HEADER_STATE_PSEUDO;
     }
 
@@ -840,6 +901,24 @@ class Stream extends AbstractNonZeroStream implements HeaderEmitter {
     }
 
 
+    @Override
+    public int getStreamId() {
+        return getIdAsInt();
+    }
+
+
+    @Override
+    public int getAllocationRequested() {
+        return getConnectionAllocationRequested();
+    }
+
+
+    @Override
+    public int allocate(int allocation) {
+        return handler.allocate(this, allocation);
+    }
+
+
     int decrementAndGetActiveRemoteStreamCount() {
         /*
          * Protect against mis-counting of active streams. This method should only be called once per stream but since
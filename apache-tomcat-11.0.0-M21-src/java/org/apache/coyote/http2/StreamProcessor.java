@@ -33,12 +33,16 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.apache.coyote.AbstractProcessor;
 import org.apache.coyote.ActionCode;
 import org.apache.coyote.Adapter;
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.CompressionEncoder;
 import org.apache.coyote.ContinueResponseTiming;
 import org.apache.coyote.ErrorState;
 import org.apache.coyote.Request;
 import org.apache.coyote.RequestGroupInfo;
 import org.apache.coyote.Response;
-import org.apache.coyote.http11.filters.GzipOutputFilter;
+import org.apache.coyote.http11.OutputFilter;
+import org.apache.coyote.http11.filters.CompressionCacheOutputFilter;
+import org.apache.coyote.http11.filters.CompressionOutputFilter;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.buf.ByteChunk;
@@ -191,10 +195,22 @@ class StreamProcessor extends AbstractProcessor {
         // Compression can't be used with sendfile
         // Need to check for compression (and set headers appropriately) before
         // adding headers below
-        if (noSendfile && protocol != null && protocol.useCompression(coyoteRequest, coyoteResponse)) {
-            // Enable compression. Headers will have been set. Need to configure
-            // output filter at this point.
-            stream.addOutputFilter(new GzipOutputFilter());
+        if (noSendfile && protocol != null) {
+            CompressionEncoder compressionEncoder = protocol.getCompressionEncoder(coyoteRequest, coyoteResponse);
+            if (compressionEncoder != null) {
+                // Enable compression. Headers will have been set. Need to
+                // configure output filter at this point.
+                OutputFilter compressionFilter = CompressionOutputFilter.create(compressionEncoder);
+                CompressionCache compressionCache = protocol.getCompressionCache();
+                if (compressionCache != null) {
+                    CompressionCacheOutputFilter compressionCacheFilter =
+                            new CompressionCacheOutputFilter(compressionCache);
+                    compressionCacheFilter.setCompressionFilter(compressionFilter, compressionEncoder.getEncoding());
+                    compressionCacheFilter.setResponse(coyoteResponse);
+                    compressionFilter = compressionCacheFilter;
+                }
+                stream.addOutputFilter(compressionFilter);
+            }
         }
 
         // Check to see if a response body is present
@@ -0,0 +1,78 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.Collection;
+
+/**
+ * Decides how an increase in the connection flow control window is shared between the streams that are blocked
+ * waiting for it. A new instance is created for each connection so implementations may retain state between calls.
+ * <p>
+ * Implementations must have a public no argument constructor.
+ */
+public interface StreamScheduler {
+
+    /**
+     * Distribute an increase in the connection flow control window between the blocked streams. This is only called
+     * when the increase is not sufficient to fully allocate every blocked stream and implementations are expected to
+     * allocate all of it. Any part of the increase that is not allocated is lost.
+     * <p>
+     * This method is called while the connection holds the lock for its flow control window so implementations must
+     * not block.
+     *
+     * @param streams   The streams that are blocked waiting for an allocation from the connection flow control window
+     * @param available The number of bytes to allocate
+     */
+    void allocate(Collection<? extends BlockedStream> streams, int available);
+
+
+    /**
+     * A stream that is waiting for an allocation from the connection flow control window.
+     */
+    interface BlockedStream {
+
+        /**
+         * @return the stream identifier
+         */
+        int getStreamId();
+
+        /**
+         * @return the RFC 9218 urgency of the stream where lower values are more urgent
+         */
+        int getUrgency();
+
+        /**
+         * @return the RFC 9218 incremental flag of the stream
+         */
+        boolean getIncremental();
+
+        /**
+         * @return the number of bytes the stream is still waiting for
+         */
+        int getAllocationRequested();
+
+        /**
+         * Allocate part of the connection flow control window to this stream. The allocation is limited to the number
+         * of bytes the stream is still waiting for.
+         *
+         * @param allocation The maximum number of bytes to allocate
+         *
+         * @return the part of the given allocation that was not used
+         */
+        int allocate(int allocation);
+    }
+}
@@ -17,12 +17,18 @@
 package org.apache.tomcat.util.http;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -54,6 +60,26 @@ public final class Parameters {
     private int limit = -1;
     private int parameterCount = 0;
 
+    /*
+     * Lazy decoding. Parameters are validated and indexed as they are parsed but the Strings for the names and values
+     * are only created when they are requested. All lazily decoded parameters follow all the parameters in
+     * paramHashValues.
+     */
+    private boolean lazyDecoding = false;
+    private int lazyCount = 0;
+    private byte[][] lazyBytes = new byte[16][];
+    private Charset[] lazyCharsets = new Charset[16];
+    // Name start, name end, value start (-1 if there is no value) and value end for each parameter
+    private int[] lazyOffsets = new int[16 * 4];
+    // The hash code of the String for each name
+    private int[] lazyHashes = new int[16];
+    // Hash index of the names, built when a parameter is first requested. Each chain is in parameter order.
+    private int[] lazyBuckets = null;
+    private int[] lazyNext = null;
+    private final Map<String,ArrayList<String>> lazyLookups = new HashMap<>();
+    private CharsetDecoder lazyDecoder = null;
+    private CharBuffer lazyCharBuffer = null;
+
     public Parameters() {
         // NO-OP
     }
@@ -66,6 +92,23 @@ public final class Parameters {
         this.limit = limit;
     }
 
+    public boolean getLazyDecoding() {
+        return lazyDecoding;
+    }
+
+    /**
+     * Configure lazy decoding of parameters. When enabled, parameters are still validated (including the limit on the
+     * number of parameters and the character set of the names and values) when they are parsed but the names and
+     * values are only converted to Strings when they are requested. This significantly reduces the cost of large
+     * forms when only a small number of parameters are used. Requesting all of the parameter names will convert all of
+     * the parameters.
+     *
+     * @param lazyDecoding {@code true} to decode parameters when they are requested
+     */
+    public void setLazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+    }
+
     public Charset getCharset() {
         return charset;
     }
@@ -100,6 +143,7 @@ public final class Parameters {
     public void recycle() {
         parameterCount = 0;
         paramHashValues.clear();
+        clearLazy();
         didQueryParameters = false;
         charset = DEFAULT_BODY_CHARSET;
         decodedQuery.recycle();
@@ -113,7 +157,7 @@ public final class Parameters {
     public String[] getParameterValues(String name) {
         handleQueryParameters();
         // no "facade"
-        ArrayList<String> values = paramHashValues.get(name);
+        ArrayList<String> values = findValues(name);
         if (values == null) {
             return null;
         }
@@ -122,12 +166,13 @@ public final class Parameters {
 
     public Enumeration<String> getParameterNames() {
         handleQueryParameters();
+        decodeAll();
         return Collections.enumeration(paramHashValues.keySet());
     }
 
     public String getParameter(String name) {
         handleQueryParameters();
-        ArrayList<String> values = paramHashValues.get(name);
+        ArrayList<String> values = findValues(name);
         if (values != null) {
             if (values.size() == 0) {
                 return "";
@@ -173,6 +218,9 @@ public final class Parameters {
             return;
         }
 
+        // Maintain the parameter order
+        decodeAll();
+
         if (limit > -1 && parameterCount >= limit) {
             // Processing this parameter will push us over the limit.
             throw new InvalidParameterException(sm.getString("parameters.maxCountFail", Integer.valueOf(limit)));
@@ -320,26 +368,30 @@ public final class Parameters {
             }
 
             try {
-                String name;
-                String value;
+                if (lazyDecoding) {
+                    indexParameter(decodeName, valueStart >= 0, decodeValue, charset);
+                } else {
+                    String name;
+                    String value;
 
-                if (decodeName) {
-                    urlDecode(tmpName);
-                }
-                tmpName.setCharset(charset);
-                name = tmpName.toString(CodingErrorAction.REPORT, CodingErrorAction.REPORT);
+                    if (decodeName) {
+                        urlDecode(tmpName);
+                    }
+                    tmpName.setCharset(charset);
+                    name = tmpName.toString(CodingErrorAction.REPORT, CodingErrorAction.REPORT);
 
-                if (valueStart >= 0) {
-                    if (decodeValue) {
-                        urlDecode(tmpValue);
+                    if (valueStart >= 0) {
+                        if (decodeValue) {
+                            urlDecode(tmpValue);
+                        }
+                        tmpValue.setCharset(charset);
+                        value = tmpValue.toString(CodingErrorAction.REPORT, CodingErrorAction.REPORT);
+                    } else {
+                        value = "";
                     }
-                    tmpValue.setCharset(charset);
-                    value = tmpValue.toString(CodingErrorAction.REPORT, CodingErrorAction.REPORT);
-                } else {
-                    value = "";
-                }
 
-                addParameter(name, value);
+                    addParameter(name, value);
+                }
             } catch (IOException e) {
                 String message;
                 if (log.isDebugEnabled()) {
@@ -360,6 +412,212 @@ public final class Parameters {
         }
     }
 
+    /*
+     * Performs the same decoding and validation as processParameters() but, rather than creating the Strings for the
+     * name and value, records where the decoded name and value are in the buffer.
+     */
+    private void indexParameter(boolean decodeName, boolean hasValue, boolean decodeValue, Charset charset)
+            throws IOException {
+        if (decodeName) {
+            urlDecode(tmpName);
+        }
+        int hash = hash(tmpName, charset);
+
+        if (hasValue) {
+            if (decodeValue) {
+                urlDecode(tmpValue);
+            }
+            if (!DEFAULT_BODY_CHARSET.equals(charset)) {
+                // Validate the value. Every byte sequence is valid ISO-8859-1.
+                hash(tmpValue, charset);
+            }
+        }
+
+        if (limit > -1 && parameterCount >= limit) {
+            // Processing this parameter will push us over the limit.
+            throw new InvalidParameterException(sm.getString("parameters.maxCountFail", Integer.valueOf(limit)));
+        }
+        parameterCount++;
+
+        if (lazyCount == lazyHashes.length) {
+            int newSize = lazyCount * 2;
+            lazyBytes = Arrays.copyOf(lazyBytes, newSize);
+            lazyCharsets = Arrays.copyOf(lazyCharsets, newSize);
+            lazyOffsets = Arrays.copyOf(lazyOffsets, newSize * 4);
+            lazyHashes = Arrays.copyOf(lazyHashes, newSize);
+        }
+        lazyBytes[lazyCount] = tmpName.getBuffer();
+        lazyCharsets[lazyCount] = charset;
+        lazyOffsets[lazyCount * 4] = tmpName.getStart();
+        lazyOffsets[lazyCount * 4 + 1] = tmpName.getEnd();
+        if (hasValue) {
+            lazyOffsets[lazyCount * 4 + 2] = tmpValue.getStart();
+            lazyOffsets[lazyCount * 4 + 3] = tmpValue.getEnd();
+        } else {
+            lazyOffsets[lazyCount * 4 + 2] = -1;
+            lazyOffsets[lazyCount * 4 + 3] = -1;
+        }
+        lazyHashes[lazyCount] = hash;
+        lazyCount++;
+
+        // Any index and cached look-ups are no longer valid
+        lazyBuckets = null;
+        lazyLookups.clear();
+    }
+
+
+    /*
+     * Returns the hash code of the String the bytes represent in the given character set without creating the String.
+     * Throws CharacterCodingException if the bytes are not valid.
+     */
+    private int hash(ByteChunk bc, Charset charset) throws IOException {
+        byte[] buf = bc.getBuffer();
+        int end = bc.getEnd();
+        int hash = 0;
+        if (DEFAULT_BODY_CHARSET.equals(charset)) {
+            for (int i = bc.getStart(); i < end; i++) {
+                hash = 31 * hash + (buf[i] & 0xFF);
+            }
+            return hash;
+        }
+        if (StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)) {
+            // Fast path for the common case of ASCII which is always valid and maps one byte to one char
+            int i = bc.getStart();
+            while (i < end && buf[i] >= 0) {
+                hash = 31 * hash + buf[i];
+                i++;
+            }
+            if (i == end) {
+                return hash;
+            }
+            hash = 0;
+        }
+
+        if (lazyDecoder == null || !lazyDecoder.charset().equals(charset)) {
+            lazyDecoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            if (lazyCharBuffer == null) {
+                lazyCharBuffer = CharBuffer.allocate(1024);
+            }
+        } else {
+            lazyDecoder.reset();
+        }
+        ByteBuffer in = ByteBuffer.wrap(buf, bc.getStart(), bc.getLength());
+        boolean flushing = false;
+        while (true) {
+            CoderResult result;
+            if (flushing) {
+                result = lazyDecoder.flush(lazyCharBuffer);
+            } else {
+                result = lazyDecoder.decode(in, lazyCharBuffer, true);
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            lazyCharBuffer.flip();
+            while (lazyCharBuffer.hasRemaining()) {
+                hash = 31 * hash + lazyCharBuffer.get();
+            }
+            lazyCharBuffer.clear();
+            if (result.isUnderflow()) {
+                if (flushing) {
+                    return hash;
+                }
+                flushing = true;
+            }
+        }
+    }
+
+
+    private ArrayList<String> findValues(String name) {
+        if (lazyCount == 0) {
+            return paramHashValues.get(name);
+        }
+
+        ArrayList<String> values = lazyLookups.get(name);
+        if (values != null || lazyLookups.containsKey(name)) {
+            return values;
+        }
+
+        if (lazyBuckets == null) {
+            buildIndex();
+        }
+        values = paramHashValues.get(name);
+        boolean copied = false;
+        int hash = name.hashCode();
+        for (int i = lazyBuckets[spread(hash) & (lazyBuckets.length - 1)]; i >= 0; i = lazyNext[i]) {
+            if (lazyHashes[i] == hash && name.equals(lazyName(i))) {
+                if (!copied) {
+                    values = values == null ? new ArrayList<>(1) : new ArrayList<>(values);
+                    copied = true;
+                }
+                values.add(lazyValue(i));
+            }
+        }
+        lazyLookups.put(name, values);
+        return values;
+    }
+
+
+    private void buildIndex() {
+        int size = Integer.highestOneBit(lazyCount) << 2;
+        lazyBuckets = new int[size];
+        Arrays.fill(lazyBuckets, -1);
+        if (lazyNext == null || lazyNext.length < lazyCount) {
+            lazyNext = new int[lazyHashes.length];
+        }
+        // Add in reverse order so each chain is in parameter order
+        for (int i = lazyCount - 1; i >= 0; i--) {
+            int bucket = spread(lazyHashes[i]) & (size - 1);
+            lazyNext[i] = lazyBuckets[bucket];
+            lazyBuckets[bucket] = i;
+        }
+    }
+
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+
+    private String lazyName(int i) {
+        int start = lazyOffsets[i * 4];
+        return new String(lazyBytes[i], start, lazyOffsets[i * 4 + 1] - start, lazyCharsets[i]);
+    }
+
+
+    private String lazyValue(int i) {
+        int start = lazyOffsets[i * 4 + 2];
+        if (start < 0) {
+            return "";
+        }
+        return new String(lazyBytes[i], start, lazyOffsets[i * 4 + 3] - start, lazyCharsets[i]);
+    }
+
+
+    /*
+     * Converts any lazily decoded parameters to Strings.
+     */
+    private void decodeAll() {
+        for (int i = 0; i < lazyCount; i++) {
+            paramHashValues.computeIfAbsent(lazyName(i), k -> new ArrayList<>(1)).add(lazyValue(i));
+        }
+        clearLazy();
+    }
+
+
+    private void clearLazy() {
+        if (lazyCount > 0) {
+            // Don't retain references to the request data
+            Arrays.fill(lazyBytes, 0, lazyCount, null);
+            Arrays.fill(lazyCharsets, 0, lazyCount, null);
+            lazyCount = 0;
+        }
+        lazyBuckets = null;
+        lazyLookups.clear();
+    }
+
+
     private void urlDecode(ByteChunk bc) throws IOException {
         if (urlDec == null) {
             urlDec = new UDecoder();
@@ -384,6 +642,7 @@ public final class Parameters {
      */
     @Override
     public String toString() {
+        decodeAll();
         StringBuilder sb = new StringBuilder();
         for (Map.Entry<String,ArrayList<String>> e : paramHashValues.entrySet()) {
             sb.append(e.getKey()).append('=');
@@ -16,18 +16,17 @@
  */
 package org.apache.tomcat.util.http.fileupload.disk;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -398,16 +397,26 @@ public class DiskFileItem
                 throw new FileUploadException("Cannot write uploaded file to disk!");
             }
             if (!outputFile.renameTo(file)) {
-                BufferedInputStream in = null;
-                BufferedOutputStream out = null;
-                try {
-                    in = new BufferedInputStream(new FileInputStream(outputFile));
-                    out = new BufferedOutputStream(new FileOutputStream(file));
-                    IOUtils.copy(in, out);
-                    out.close();
-                } finally {
-                    IOUtils.closeQuietly(in);
-                    IOUtils.closeQuietly(out);
+                /*
+                 * The rename failed, typically because the destination is
+                 * on a different file system. Let the file system copy the
+                 * data rather than reading it into the heap and writing it
+                 * back out.
+                 */
+                try (FileChannel in = FileChannel.open(outputFile.toPath(), StandardOpenOption.READ);
+                        FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long position = 0;
+                    long remaining = in.size();
+                    while (remaining > 0) {
+                        long count = in.transferTo(position, remaining, out);
+                        if (count > 0) {
+                            position += count;
+                            remaining -= count;
+                        } else {
+                            throw new EOFException();
+                        }
+                    }
                 }
             }
         }
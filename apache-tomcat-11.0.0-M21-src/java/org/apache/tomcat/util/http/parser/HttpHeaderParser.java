@@ -41,6 +41,7 @@ public class HttpHeaderParser {
     private final HeaderDataSource source;
     private final MimeHeaders headers;
     private final boolean tolerantEol;
+    private final boolean bulkScan;
     private final HeaderParseData headerData = new HeaderParseData();
 
     private HeaderParsePosition headerParsePos = HeaderParsePosition.HEADER_START;
@@ -49,9 +50,18 @@ public class HttpHeaderParser {
 
 
     public HttpHeaderParser(HeaderDataSource source, MimeHeaders headers, boolean tolerantEol) {
+        this(source, headers, tolerantEol, true);
+    }
+
+
+    /*
+     * Allows the parser to be tested with and without the bulk scanning of header names and values.
+     */
+    HttpHeaderParser(HeaderDataSource source, MimeHeaders headers, boolean tolerantEol, boolean bulkScan) {
         this.source = source;
         this.headers = headers;
         this.tolerantEol = tolerantEol;
+        this.bulkScan = bulkScan;
     }
 
 
@@ -118,6 +128,13 @@ public class HttpHeaderParser {
 
         while (headerParsePos == HeaderParsePosition.HEADER_NAME) {
 
+            if (bulkScan) {
+                // Skip (and convert to lower case) the common header name characters eight at a time
+                ByteBuffer byteBuffer = source.getHeaderByteBuffer();
+                byteBuffer.position(
+                        HttpScanner.skipHeaderName(byteBuffer.array(), byteBuffer.position(), byteBuffer.limit()));
+            }
+
             // Read new bytes if needed
             if (source.getHeaderByteBuffer().position() >= source.getHeaderByteBuffer().limit()) {
                 if (!source.fillHeaderBuffer()) {
@@ -198,6 +215,10 @@ public class HttpHeaderParser {
                 boolean eol = false;
                 while (!eol) {
 
+                    if (bulkScan && chr != CR) {
+                        copyHeaderValue();
+                    }
+
                     // Read new bytes if needed
                     if (source.getHeaderByteBuffer().position() >= source.getHeaderByteBuffer().limit()) {
                         if (!source.fillHeaderBuffer()) {
@@ -267,6 +288,38 @@ public class HttpHeaderParser {
     }
 
 
+    /*
+     * Copies the bytes of the header value eight at a time until a group of eight bytes is found that contains a
+     * control character (which includes CR, LF and HT) or there are fewer than eight bytes left in the buffer. The
+     * remaining bytes are processed one at a time. Must not be called if the previous byte was CR.
+     */
+    private void copyHeaderValue() {
+        ByteBuffer byteBuffer = source.getHeaderByteBuffer();
+        byte[] buf = byteBuffer.array();
+        int pos = byteBuffer.position();
+        int limit = byteBuffer.limit();
+        int realPos = headerData.realPos;
+        while (limit - pos >= 8) {
+            long word = HttpScanner.getLong(buf, pos);
+            if (HttpScanner.hasControl(word)) {
+                break;
+            }
+            if (realPos != pos) {
+                HttpScanner.putLong(buf, realPos, word);
+            }
+            int lastNonSpace = HttpScanner.lastNonSpace(word);
+            if (lastNonSpace >= 0) {
+                headerData.lastSignificantChar = realPos + lastNonSpace + 1;
+            }
+            chr = buf[pos + 7];
+            pos += 8;
+            realPos += 8;
+        }
+        byteBuffer.position(pos);
+        headerData.realPos = realPos;
+    }
+
+
     private HeaderParseStatus skipLine() throws IOException {
         // Parse the rest of the invalid header so we can construct a useful
         // exception and/or debug message.
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Scans HTTP request bytes eight at a time by treating each group of eight bytes as a single <code>long</code> (SIMD
+ * within a register). Each method only consumes complete groups of eight bytes that contain nothing but the common,
+ * always valid characters for the construct being parsed. The caller is expected to process whatever follows, which
+ * will include any delimiters and any characters that need to be validated individually, one byte at a time so the
+ * results are identical to parsing the whole input one byte at a time.
+ * <p>
+ * All the tests are exact for each byte. The byte order of the <code>long</code> values is little endian so byte
+ * <code>i</code> of a group is held in bits <code>8i</code> to <code>8i + 7</code>.
+ */
+public final class HttpScanner {
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH = 0x8080808080808080L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+
+    private HttpScanner() {
+        // Utility class. Hide default constructor.
+    }
+
+
+    /**
+     * Skips the header name characters that are always valid, converting any upper case characters to lower case.
+     *
+     * @param buf   The buffer containing the header name
+     * @param pos   The position of the first byte to scan
+     * @param limit The position after the last byte that may be scanned
+     *
+     * @return The position of the first group of eight bytes that contains a character other than
+     *             <code>[A-Za-z0-9-_]</code>, or of the first byte of any incomplete group at the end of the buffer
+     */
+    public static int skipHeaderName(byte[] buf, int pos, int limit) {
+        while (limit - pos >= 8) {
+            long word = (long) LONG.get(buf, pos);
+            long upper = inRange(word, 'A', 'Z');
+            long valid = upper | inRange(word, 'a', 'z') | inRange(word, '0', '9') | equal(word, '-') |
+                    equal(word, '_');
+            if (valid != HIGH) {
+                break;
+            }
+            if (upper != 0) {
+                // 0x80 >>> 2 == 0x20 which is the difference between upper and lower case
+                LONG.set(buf, pos, word | (upper >>> 2));
+            }
+            pos += 8;
+        }
+        return pos;
+    }
+
+
+    /**
+     * Skips the request target characters that are always valid in both the path and the query string, regardless of
+     * any relaxed characters that have been configured.
+     *
+     * @param buf   The buffer containing the request target
+     * @param pos   The position of the first byte to scan
+     * @param limit The position after the last byte that may be scanned
+     *
+     * @return The position of the first group of eight bytes that contains a character other than
+     *             <code>[A-Za-z0-9-._~/%=&amp;]</code>, or of the first byte of any incomplete group at the end of the
+     *             buffer
+     */
+    public static int skipRequestTarget(byte[] buf, int pos, int limit) {
+        while (limit - pos >= 8) {
+            long word = (long) LONG.get(buf, pos);
+            long valid = inRange(word, 'a', 'z') | inRange(word, 'A', 'Z') | inRange(word, '0', '9') |
+                    equal(word, '/') | equal(word, '-') | equal(word, '.') | equal(word, '_') | equal(word, '~') |
+                    equal(word, '%') | equal(word, '=') | equal(word, '&');
+            if (valid != HIGH) {
+                break;
+            }
+            pos += 8;
+        }
+        return pos;
+    }
+
+
+    /**
+     * Reads eight bytes from the buffer.
+     *
+     * @param buf The buffer
+     * @param pos The position of the first byte to read
+     *
+     * @return The eight bytes starting at the given position
+     */
+    public static long getLong(byte[] buf, int pos) {
+        return (long) LONG.get(buf, pos);
+    }
+
+
+    /**
+     * Writes eight bytes to the buffer.
+     *
+     * @param buf  The buffer
+     * @param pos  The position of the first byte to write
+     * @param word The eight bytes to write
+     */
+    public static void putLong(byte[] buf, int pos, long word) {
+        LONG.set(buf, pos, word);
+    }
+
+
+    /**
+     * Does the group of eight bytes contain any control characters, as defined by {@link HttpParser#isControl(int)}?
+     * This includes CR, LF and HT.
+     *
+     * @param word The eight bytes to test
+     *
+     * @return {@code true} if any of the bytes is in the range 0 to 31 or is 127
+     */
+    public static boolean hasControl(long word) {
+        return (lessThanOrEqual(word, 0x1F) | equal(word, 0x7F)) != 0;
+    }
+
+
+    /**
+     * Finds the last byte in the group of eight bytes that is not a space.
+     *
+     * @param word The eight bytes to search
+     *
+     * @return The index, from 0 to 7, of the last byte that is not a space or -1 if all of the bytes are spaces
+     */
+    public static int lastNonSpace(long word) {
+        long nonSpace = ~equal(word, ' ') & HIGH;
+        if (nonSpace == 0) {
+            return -1;
+        }
+        return (63 - Long.numberOfLeadingZeros(nonSpace)) >>> 3;
+    }
+
+
+    /*
+     * Sets the high bit of each byte that is equal to c.
+     */
+    private static long equal(long word, int c) {
+        long x = word ^ (ONES * c);
+        return ~(((x & LOW7) + LOW7) | x) & HIGH;
+    }
+
+
+    /*
+     * Sets the high bit of each byte that is an ASCII character less than or equal to c. 0 <= c < 127
+     */
+    private static long lessThanOrEqual(long word, int c) {
+        // For each byte, the low seven bits plus (127 - c) overflows into the high bit if the byte is greater than c.
+        // The largest sum is 0xFE so nothing carries into the next byte.
+        return ~(((word & LOW7) + ONES * (0x7F - c)) | word) & HIGH;
+    }
+
+
+    /*
+     * Sets the high bit of each byte that is an ASCII character in the range lower to upper inclusive. 0 < lower <=
+     * upper < 127
+     */
+    private static long inRange(long word, int lower, int upper) {
+        return lessThanOrEqual(word, upper) & ~lessThanOrEqual(word, lower - 1);
+    }
+}
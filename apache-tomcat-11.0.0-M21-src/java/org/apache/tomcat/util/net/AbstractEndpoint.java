@@ -36,11 +36,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
@@ -57,6 +61,7 @@ import org.apache.tomcat.util.net.Acceptor.AcceptorState;
 import org.apache.tomcat.util.net.SSLHostConfigCertificate.StoreType;
 import org.apache.tomcat.util.net.openssl.ciphers.Cipher;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.DroppableTask;
 import org.apache.tomcat.util.threads.LimitLatch;
 import org.apache.tomcat.util.threads.ResizableExecutor;
 import org.apache.tomcat.util.threads.TaskQueue;
@@ -195,9 +200,20 @@ public abstract class AbstractEndpoint<S,U> {
         return socketProperties;
     }
 
+    /**
+     * Threads used to accept new connections and pass them to worker threads.
+     * There is one acceptor for each server socket.
+     */
+    protected final List<Acceptor<U>> acceptors = new CopyOnWriteArrayList<>();
+
     /**
      * Thread used to accept new connections and pass them to worker threads.
+     * When more than one acceptor is configured, this is the acceptor for the
+     * first server socket.
+     *
+     * @deprecated Replaced by {@link #acceptors}. This field will be removed in Tomcat 12.
      */
+    @Deprecated
     protected Acceptor<U> acceptor;
 
     /**
@@ -713,6 +729,73 @@ public abstract class AbstractEndpoint<S,U> {
     public int getAcceptorThreadPriority() { return acceptorThreadPriority; }
 
 
+    /**
+     * The number of server sockets, each with its own acceptor, to bind to the
+     * configured address and port. Values greater than one require support for
+     * SO_REUSEPORT (e.g. Linux) so that the operating system can distribute new
+     * connections across the server sockets. Endpoints that do not support
+     * multiple server sockets will use a single server socket.
+     */
+    private int acceptorCount = 1;
+    public void setAcceptorCount(int acceptorCount) {
+        if (acceptorCount < 1) {
+            throw new IllegalArgumentException(
+                    sm.getString("endpoint.invalidAcceptorCount", Integer.toString(acceptorCount)));
+        }
+        this.acceptorCount = acceptorCount;
+    }
+    public int getAcceptorCount() { return acceptorCount; }
+
+
+    /**
+     * The poller loop lag above which the endpoint is considered overloaded.
+     * Only endpoints with a poller measure the lag. Held in nanoseconds. A
+     * negative value disables the check.
+     */
+    private volatile long overloadPollerLag = -1;
+    public void setOverloadPollerLag(long overloadPollerLag) {
+        this.overloadPollerLag = overloadPollerLag < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(overloadPollerLag);
+    }
+    public long getOverloadPollerLag() {
+        return overloadPollerLag < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(overloadPollerLag);
+    }
+
+
+    /**
+     * The time tasks wait in the executor queue above which the endpoint is
+     * considered overloaded. Held in nanoseconds. A negative value disables
+     * the check.
+     */
+    private volatile long overloadQueueDelay = -1;
+    public void setOverloadQueueDelay(long overloadQueueDelay) {
+        this.overloadQueueDelay = overloadQueueDelay < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(overloadQueueDelay);
+    }
+    public long getOverloadQueueDelay() {
+        return overloadQueueDelay < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(overloadQueueDelay);
+    }
+
+
+    /**
+     * What the endpoint does while it is overloaded. <code>reject</code>
+     * answers new requests with a 503 response without passing them to the
+     * application. <code>pause</code> stops accepting new connections, which
+     * wait in the accept queue.
+     */
+    private volatile boolean overloadPauseAccept = false;
+    public void setOverloadAction(String overloadAction) {
+        if ("pause".equalsIgnoreCase(overloadAction)) {
+            overloadPauseAccept = true;
+        } else if ("reject".equalsIgnoreCase(overloadAction)) {
+            overloadPauseAccept = false;
+        } else {
+            throw new IllegalArgumentException(sm.getString("endpoint.invalidOverloadAction", overloadAction));
+        }
+    }
+    public String getOverloadAction() {
+        return overloadPauseAccept ? "pause" : "reject";
+    }
+
+
     private int maxConnections = 8*1024;
     public void setMaxConnections(int maxCon) {
         this.maxConnections = maxCon;
@@ -737,9 +820,9 @@ public abstract class AbstractEndpoint<S,U> {
      * property is added here so that this value can be inspected through JMX.
      * It is visible on "ThreadPool" MBean.
      *
-     * <p>The count is incremented by the Acceptor before it tries to accept a
+     * <p>The count is incremented by each Acceptor before it tries to accept a
      * new connection. Until the limit is reached and thus the count cannot be
-     * incremented,  this value is more by 1 (the count of acceptors) than the
+     * incremented,  this value is more by the count of acceptors than the
      * actual count of connections that are being served.
      *
      * @return The count
@@ -1280,8 +1363,9 @@ public abstract class AbstractEndpoint<S,U> {
      * Unlock the server socket acceptor threads using bogus connections.
      */
     protected void unlockAccept() {
-        // Only try to unlock the acceptor if it is necessary
-        if (acceptor == null || acceptor.getState() != AcceptorState.RUNNING) {
+        // Only try to unlock the acceptors if it is necessary
+        int runningAcceptors = getRunningAcceptorCount();
+        if (runningAcceptors == 0) {
             return;
         }
 
@@ -1300,32 +1384,44 @@ public abstract class AbstractEndpoint<S,U> {
         try {
             unlockAddress = getUnlockAddress(localAddress);
 
-            try (java.net.Socket s = new java.net.Socket()) {
-                // Never going to read from this socket so the timeout doesn't matter. Use the unlock timeout.
-                s.setSoTimeout(getSocketProperties().getUnlockTimeout());
-                // Newer MacOS versions (e.g. Ventura 13.2) appear to linger for ~1s on close when linger is disabled.
-                // That causes delays when running the unit tests. Explicitly enabling linger but with a timeout of
-                // zero seconds seems to fix the issue.
-                s.setSoLinger(true, 0);
-                if (getLog().isTraceEnabled()) {
-                    getLog().trace("About to unlock socket for:" + unlockAddress);
-                }
-                s.connect(unlockAddress, getSocketProperties().getUnlockTimeout());
-                if (getLog().isTraceEnabled()) {
-                    getLog().trace("Socket unlock completed for:" + unlockAddress);
-                }
-            }
-            // Wait for up to 1000ms for acceptor thread to unlock. Particularly
-            // for the unit tests, we want to exit this loop as quickly as
-            // possible. However, we also don't want to trigger excessive CPU
-            // usage if the unlock takes longer than expected. Therefore, we
-            // initially wait for the unlock in a tight loop but if that takes
-            // more than 1ms we start using short sleeps to reduce CPU usage.
+            // When there are multiple server sockets, the operating system
+            // selects the server socket that receives each unlock connection.
+            // Keep connecting until all the acceptors have unlocked but only
+            // wait a short time for each connection since it may have been
+            // queued for an acceptor that has already unlocked.
             long startTime = System.nanoTime();
-            while (startTime + 1_000_000_000 > System.nanoTime() && acceptor.getState() == AcceptorState.RUNNING) {
-                if (startTime + 1_000_000 < System.nanoTime()) {
-                    Thread.sleep(1);
+            long attemptWait = acceptors.size() > 1 ? 50_000_000 : 1_000_000_000;
+            while (runningAcceptors > 0 && startTime + 1_000_000_000 > System.nanoTime()) {
+                try (java.net.Socket s = new java.net.Socket()) {
+                    // Never going to read from this socket so the timeout doesn't matter. Use the unlock timeout.
+                    s.setSoTimeout(getSocketProperties().getUnlockTimeout());
+                    // Newer MacOS versions (e.g. Ventura 13.2) appear to linger for ~1s on close when linger is
+                    // disabled. That causes delays when running the unit tests. Explicitly enabling linger but with a
+                    // timeout of zero seconds seems to fix the issue.
+                    s.setSoLinger(true, 0);
+                    if (getLog().isTraceEnabled()) {
+                        getLog().trace("About to unlock socket for:" + unlockAddress);
+                    }
+                    s.connect(unlockAddress, getSocketProperties().getUnlockTimeout());
+                    if (getLog().isTraceEnabled()) {
+                        getLog().trace("Socket unlock completed for:" + unlockAddress);
+                    }
                 }
+                // Wait for up to 1000ms for an acceptor thread to unlock.
+                // Particularly for the unit tests, we want to exit this loop as
+                // quickly as possible. However, we also don't want to trigger
+                // excessive CPU usage if the unlock takes longer than expected.
+                // Therefore, we initially wait for the unlock in a tight loop
+                // but if that takes more than 1ms we start using short sleeps
+                // to reduce CPU usage.
+                long attemptStartTime = System.nanoTime();
+                long attemptEndTime = Math.min(attemptStartTime + attemptWait, startTime + 1_000_000_000);
+                while (attemptEndTime > System.nanoTime() && getRunningAcceptorCount() >= runningAcceptors) {
+                    if (attemptStartTime + 1_000_000 < System.nanoTime()) {
+                        Thread.sleep(1);
+                    }
+                }
+                runningAcceptors = getRunningAcceptorCount();
             }
         } catch(Throwable t) {
             ExceptionUtils.handleThrowable(t);
@@ -1337,6 +1433,39 @@ public abstract class AbstractEndpoint<S,U> {
     }
 
 
+    /**
+     * @return the number of acceptors that are currently in the
+     *         {@link AcceptorState#RUNNING} state
+     */
+    protected int getRunningAcceptorCount() {
+        int result = 0;
+        for (Acceptor<U> acceptor : acceptors) {
+            if (acceptor.getState() == AcceptorState.RUNNING) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Signal all the acceptors to stop and then wait for each of them to stop.
+     *
+     * @param waitMilliseconds The maximum time to wait for each acceptor to
+     *                             stop. If zero or less, don't wait.
+     */
+    protected void stopAcceptors(int waitMilliseconds) {
+        for (Acceptor<U> acceptor : acceptors) {
+            acceptor.stopMillis(-1);
+        }
+        if (waitMilliseconds > 0) {
+            for (Acceptor<U> acceptor : acceptors) {
+                acceptor.stopMillis(waitMilliseconds);
+            }
+        }
+    }
+
+
     private static InetSocketAddress getUnlockAddress(InetSocketAddress localAddress) throws SocketException {
         if (localAddress.getAddress().isAnyLocalAddress()) {
             // Need a local address of the same type (IPv4 or IPV6) as the
@@ -1415,6 +1544,9 @@ public abstract class AbstractEndpoint<S,U> {
             }
             Executor executor = getExecutor();
             if (dispatch && executor != null) {
+                if (isRecordQueueDelay()) {
+                    sc.setQueuedTime(System.nanoTime());
+                }
                 executor.execute(sc);
             } else {
                 sc.run();
@@ -1437,6 +1569,199 @@ public abstract class AbstractEndpoint<S,U> {
             SocketWrapperBase<S> socketWrapper, SocketEvent event);
 
 
+    // ---------------------------------------------------------- Load shedding
+
+    /*
+     * Queue delay samples older than this are ignored as nothing has waited in
+     * the queue recently.
+     */
+    private static final long QUEUE_DELAY_EXPIRY = TimeUnit.SECONDS.toNanos(1);
+
+    /*
+     * How long the result of an overload check is reused for so that checking
+     * for every new request or connection is cheap.
+     */
+    private static final long OVERLOAD_CHECK_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private volatile long queueDelay = 0;
+    private volatile long queueDelaySampleTime = 0;
+    private volatile boolean overloaded = false;
+    private volatile long overloadCheckTime = 0;
+    private final AtomicBoolean overloadAcceptPaused = new AtomicBoolean();
+    private final AtomicLong overloadPausedCount = new AtomicLong();
+    private final LongAdder overloadRejectedCount = new LongAdder();
+
+
+    /**
+     * Record how long a task waited in the executor queue. Called by the
+     * socket processor when it starts to run.
+     *
+     * @param delay The time, in nanoseconds, the task waited
+     */
+    protected void recordQueueDelay(long delay) {
+        if (overloadQueueDelay < 0) {
+            return;
+        }
+        // Smoothed so that a single slow task does not trigger load shedding.
+        // Concurrent updates may be lost which does not matter for an
+        // estimate.
+        long now = System.nanoTime();
+        long current = 0;
+        if (now - queueDelaySampleTime < QUEUE_DELAY_EXPIRY) {
+            current = queueDelay;
+        }
+        queueDelay = current + (delay - current) / 8;
+        queueDelaySampleTime = now;
+    }
+
+
+    /**
+     * @return {@code true} if the time a task waits in the executor queue
+     *         should be recorded via {@link #recordQueueDelay(long)}
+     */
+    protected boolean isRecordQueueDelay() {
+        return overloadQueueDelay >= 0;
+    }
+
+
+    private long getQueueDelayNanos(long now) {
+        long delay = 0;
+        if (now - queueDelaySampleTime < QUEUE_DELAY_EXPIRY) {
+            delay = queueDelay;
+        }
+        // Tasks stuck at the head of the queue are not sampled until a thread
+        // takes them so also look at how long the oldest task has waited
+        Executor executor = getExecutor();
+        if (executor instanceof ThreadPoolExecutor) {
+            Runnable head = ((ThreadPoolExecutor) executor).getQueue().peek();
+            if (head instanceof DroppableTask) {
+                long queuedTime = ((DroppableTask) head).getQueuedTime();
+                if (queuedTime != 0) {
+                    delay = Math.max(delay, now - queuedTime);
+                }
+            }
+        }
+        return delay;
+    }
+
+
+    /**
+     * @return the smoothed time, in milliseconds, that tasks have recently
+     *         waited in the executor queue. Only measured if an overload queue
+     *         delay has been configured.
+     */
+    public long getQueueDelay() {
+        if (overloadQueueDelay < 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(getQueueDelayNanos(System.nanoTime()));
+    }
+
+
+    /**
+     * Obtain the current lag of the poller, if any.
+     *
+     * @param now The current time as returned by {@link System#nanoTime()}
+     *
+     * @return the time, in nanoseconds, the poller has been busy for without
+     *         checking for new events
+     */
+    protected long getPollerLagNanos(long now) {
+        return 0;
+    }
+
+
+    /**
+     * @return the time, in milliseconds, the poller has been busy for without
+     *         checking for new events. Only measured if an overload poller lag
+     *         has been configured.
+     */
+    public long getPollerLag() {
+        if (overloadPollerLag < 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(getPollerLagNanos(System.nanoTime()));
+    }
+
+
+    /**
+     * Is the endpoint overloaded? The endpoint is overloaded if the poller lag
+     * or the executor queue delay is above the configured limit.
+     *
+     * @return {@code true} if the endpoint is overloaded
+     */
+    public boolean isOverloaded() {
+        long overloadPollerLag = this.overloadPollerLag;
+        long overloadQueueDelay = this.overloadQueueDelay;
+        if (overloadPollerLag < 0 && overloadQueueDelay < 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - overloadCheckTime < OVERLOAD_CHECK_INTERVAL) {
+            return overloaded;
+        }
+        boolean overloaded = overloadPollerLag >= 0 && getPollerLagNanos(now) > overloadPollerLag ||
+                overloadQueueDelay >= 0 && getQueueDelayNanos(now) > overloadQueueDelay;
+        this.overloaded = overloaded;
+        overloadCheckTime = now;
+        return overloaded;
+    }
+
+
+    /**
+     * Called for each new request to determine if it should be rejected
+     * because the endpoint is overloaded.
+     *
+     * @return {@code true} if the request should be rejected. The request is
+     *         counted as rejected.
+     */
+    public boolean rejectIfOverloaded() {
+        if (overloadPauseAccept || !isOverloaded()) {
+            return false;
+        }
+        overloadRejectedCount.increment();
+        return true;
+    }
+
+
+    /**
+     * Called by the acceptors before accepting a new connection to determine if
+     * accepting should be paused because the endpoint is overloaded.
+     *
+     * @return {@code true} if the acceptor should wait before accepting
+     */
+    protected boolean pauseAcceptIfOverloaded() {
+        if (!overloadPauseAccept || !isOverloaded()) {
+            if (overloadAcceptPaused.get()) {
+                overloadAcceptPaused.set(false);
+            }
+            return false;
+        }
+        if (overloadAcceptPaused.compareAndSet(false, true)) {
+            overloadPausedCount.incrementAndGet();
+        }
+        return true;
+    }
+
+
+    /**
+     * @return the number of requests that have been rejected because the
+     *         endpoint was overloaded
+     */
+    public long getOverloadRejectedCount() {
+        return overloadRejectedCount.sum();
+    }
+
+
+    /**
+     * @return the number of times accepting new connections has been paused
+     *         because the endpoint was overloaded
+     */
+    public long getOverloadPausedCount() {
+        return overloadPausedCount.get();
+    }
+
+
     // ------------------------------------------------------- Lifecycle methods
 
     /*
@@ -1561,13 +1886,36 @@ public abstract class AbstractEndpoint<S,U> {
 
 
     protected void startAcceptorThread() {
-        acceptor = new Acceptor<>(this);
-        String threadName = getName() + "-Acceptor";
-        acceptor.setThreadName(threadName);
-        Thread t = new Thread(acceptor, threadName);
-        t.setPriority(getAcceptorThreadPriority());
-        t.setDaemon(getDaemon());
-        t.start();
+        acceptors.clear();
+        int count = getServerSocketCount();
+        for (int i = 0; i < count; i++) {
+            Acceptor<U> acceptor = new Acceptor<>(this, i);
+            String threadName = getName() + "-Acceptor";
+            if (count > 1) {
+                threadName = threadName + "-" + i;
+            }
+            acceptor.setThreadName(threadName);
+            acceptors.add(acceptor);
+            if (i == 0) {
+                this.acceptor = acceptor;
+            }
+            Thread t = new Thread(acceptor, threadName);
+            t.setPriority(getAcceptorThreadPriority());
+            t.setDaemon(getDaemon());
+            t.start();
+        }
+    }
+
+
+    /**
+     * Obtain the number of server sockets that are currently bound. One
+     * acceptor is started for each server socket.
+     *
+     * @return The number of bound server sockets. The default implementation
+     *         always returns one.
+     */
+    protected int getServerSocketCount() {
+        return 1;
     }
 
 
@@ -1677,7 +2025,7 @@ public abstract class AbstractEndpoint<S,U> {
     public final void closeServerSocketGraceful() {
         if (bindState == BindState.BOUND_ON_START) {
             // Stop accepting new connections
-            acceptor.stopMillis(-1);
+            stopAcceptors(-1);
             // Release locks that may be preventing the acceptor from stopping
             releaseConnectionLatch();
             unlockAccept();
@@ -1729,6 +2077,22 @@ public abstract class AbstractEndpoint<S,U> {
 
     protected abstract U serverSocketAccept() throws Exception;
 
+    /**
+     * Accept a new connection from the server socket with the given index. The
+     * default implementation ignores the index and calls
+     * {@link #serverSocketAccept()}. Endpoints that support more than one
+     * server socket should override this method.
+     *
+     * @param index The index of the server socket to accept a connection from
+     *
+     * @return The newly accepted socket
+     *
+     * @throws Exception If an error occurs accepting the connection
+     */
+    protected U serverSocketAccept(int index) throws Exception {
+        return serverSocketAccept();
+    }
+
     protected abstract boolean setSocketOptions(U socket);
 
     /**
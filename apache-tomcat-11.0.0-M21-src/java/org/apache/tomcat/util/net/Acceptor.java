@@ -33,6 +33,7 @@ public class Acceptor<U> implements Runnable {
     private static final int MAX_ERROR_DELAY = 1600;
 
     private final AbstractEndpoint<?,U> endpoint;
+    private final int index;
     private String threadName;
     /*
      * Tracked separately rather than using endpoint.isRunning() as calls to
@@ -45,7 +46,29 @@ public class Acceptor<U> implements Runnable {
 
 
     public Acceptor(AbstractEndpoint<?,U> endpoint) {
+        this(endpoint, 0);
+    }
+
+
+    /**
+     * Create an acceptor for one of the server sockets of the endpoint.
+     *
+     * @param endpoint The endpoint that owns this acceptor
+     * @param index    The index of the server socket this acceptor will accept
+     *                     connections from
+     */
+    public Acceptor(AbstractEndpoint<?,U> endpoint, int index) {
         this.endpoint = endpoint;
+        this.index = index;
+    }
+
+
+    /**
+     * @return the index of the server socket this acceptor accepts connections
+     *         from
+     */
+    public final int getIndex() {
+        return index;
     }
 
 
@@ -111,6 +134,17 @@ public class Acceptor<U> implements Runnable {
                 }
                 state = AcceptorState.RUNNING;
 
+                // Stop accepting while the endpoint is overloaded. New
+                // connections wait in the accept queue.
+                if (endpoint.pauseAcceptIfOverloaded()) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                    continue;
+                }
+
                 try {
                     //if we have reached max connections, wait
                     endpoint.countUpOrAwaitConnection();
@@ -125,7 +159,7 @@ public class Acceptor<U> implements Runnable {
                     try {
                         // Accept the next incoming connection from the server
                         // socket
-                        socket = endpoint.serverSocketAccept();
+                        socket = endpoint.serverSocketAccept(index);
                     } catch (Exception ioe) {
                         // We didn't get a socket
                         endpoint.countDownConnection();
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousCloseException;
@@ -70,6 +71,13 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
      */
     private volatile AsynchronousServerSocketChannel serverSock = null;
 
+    /**
+     * Additional server sockets bound to the same address and port using
+     * SO_REUSEPORT when more than one acceptor is configured.
+     */
+    private volatile AsynchronousServerSocketChannel[] additionalServerSocks =
+            new AsynchronousServerSocketChannel[0];
+
     /**
      * Allows detecting if a completion handler completes inline.
      */
@@ -117,11 +125,7 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
         if (getExecutor() == null) {
             createExecutor();
         }
-        if (getExecutor() instanceof ExecutorService) {
-            threadGroup = AsynchronousChannelGroup.withThreadPool((ExecutorService) getExecutor());
-        } else {
-            log.info(sm.getString("endpoint.nio2.executorService"));
-        }
+        threadGroup = createChannelGroup();
         // AsynchronousChannelGroup needs exclusive access to its executor service
         if (!internalExecutor) {
             log.warn(sm.getString("endpoint.nio2.exclusiveExecutor"));
@@ -129,8 +133,36 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
 
         serverSock = AsynchronousServerSocketChannel.open(threadGroup);
         socketProperties.setProperties(serverSock);
+        int serverSocketCount = getAcceptorCount();
+        if (serverSocketCount > 1) {
+            if (serverSock.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                serverSock.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+            } else {
+                log.warn(sm.getString("endpoint.init.multipleServerSockets.noReusePort",
+                        Integer.toString(serverSocketCount)));
+                serverSocketCount = 1;
+            }
+        }
         InetSocketAddress addr = new InetSocketAddress(getAddress(), getPortWithOffset());
         serverSock.bind(addr, getAcceptCount());
+        if (serverSocketCount > 1) {
+            // Use the port the first server socket is bound to in case the
+            // configured port was zero
+            addr = new InetSocketAddress(getAddress(), ((InetSocketAddress) serverSock.getLocalAddress()).getPort());
+            AsynchronousServerSocketChannel[] additionalServerSocks =
+                    new AsynchronousServerSocketChannel[serverSocketCount - 1];
+            // Assign the array now so any sockets opened are closed if a later
+            // bind fails
+            this.additionalServerSocks = additionalServerSocks;
+            for (int i = 0; i < additionalServerSocks.length; i++) {
+                AsynchronousServerSocketChannel additionalServerSock =
+                        AsynchronousServerSocketChannel.open(threadGroup);
+                additionalServerSocks[i] = additionalServerSock;
+                socketProperties.setProperties(additionalServerSock);
+                additionalServerSock.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+                additionalServerSock.bind(addr, getAcceptCount());
+            }
+        }
 
         // Initialize SSL if needed
         initialiseSsl();
@@ -172,20 +204,36 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
     protected void startAcceptorThread() {
         // Instead of starting a real acceptor thread, this will instead call
         // an asynchronous accept operation
-        if (acceptor == null) {
-            acceptor = new Nio2Acceptor(this);
-            acceptor.setThreadName(getName() + "-Acceptor");
+        int count = getServerSocketCount();
+        if (acceptors.size() != count) {
+            acceptors.clear();
+            for (int i = 0; i < count; i++) {
+                Nio2Acceptor acceptor = new Nio2Acceptor(this, i);
+                String threadName = getName() + "-Acceptor";
+                if (count > 1) {
+                    threadName = threadName + "-" + i;
+                }
+                acceptor.setThreadName(threadName);
+                acceptors.add(acceptor);
+                if (i == 0) {
+                    this.acceptor = acceptor;
+                }
+            }
+        }
+        for (Acceptor<AsynchronousSocketChannel> acceptor : acceptors) {
+            acceptor.state = AcceptorState.RUNNING;
+            getExecutor().execute(acceptor);
         }
-        acceptor.state = AcceptorState.RUNNING;
-        getExecutor().execute(acceptor);
     }
 
     @Override
     public void resume() {
         super.resume();
         if (isRunning()) {
-            acceptor.state = AcceptorState.RUNNING;
-            getExecutor().execute(acceptor);
+            for (Acceptor<AsynchronousSocketChannel> acceptor : acceptors) {
+                acceptor.state = AcceptorState.RUNNING;
+                getExecutor().execute(acceptor);
+            }
         }
     }
 
@@ -199,7 +247,7 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
         }
         if (running) {
             running = false;
-            acceptor.stopMillis(10);
+            stopAcceptors(10);
             // Use the executor to avoid binding the main thread if something bad
             // occurs and unbind will also wait for a bit for it to complete
             getExecutor().execute(() -> {
@@ -248,8 +296,33 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
     }
 
 
+    /**
+     * Create the channel group used for the server sockets and the sockets
+     * they accept.
+     *
+     * @return The channel group or {@code null} to use the JVM's default group
+     *
+     * @throws IOException if the group cannot be created
+     */
+    protected AsynchronousChannelGroup createChannelGroup() throws IOException {
+        if (getExecutor() instanceof ExecutorService) {
+            return AsynchronousChannelGroup.withThreadPool((ExecutorService) getExecutor());
+        } else {
+            log.info(sm.getString("endpoint.nio2.executorService"));
+            return null;
+        }
+    }
+
+
     @Override
     protected void doCloseServerSocket() throws IOException {
+        AsynchronousServerSocketChannel[] additionalServerSocks = this.additionalServerSocks;
+        this.additionalServerSocks = new AsynchronousServerSocketChannel[0];
+        for (AsynchronousServerSocketChannel additionalServerSock : additionalServerSocks) {
+            if (additionalServerSock != null) {
+                additionalServerSock.close();
+            }
+        }
         // Close server socket
         if (serverSock != null) {
             serverSock.close();
@@ -360,9 +433,37 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
     }
 
 
+    /**
+     * Obtain the server socket with the given index.
+     *
+     * @param index The index of the server socket
+     *
+     * @return The server socket
+     */
+    protected AsynchronousServerSocketChannel getServerSocket(int index) {
+        if (index == 0) {
+            return serverSock;
+        } else {
+            return additionalServerSocks[index - 1];
+        }
+    }
+
+
+    @Override
+    protected int getServerSocketCount() {
+        return 1 + additionalServerSocks.length;
+    }
+
+
     @Override
     protected AsynchronousSocketChannel serverSocketAccept() throws Exception {
-        AsynchronousSocketChannel result = serverSock.accept().get();
+        return serverSocketAccept(0);
+    }
+
+
+    @Override
+    protected AsynchronousSocketChannel serverSocketAccept(int index) throws Exception {
+        AsynchronousSocketChannel result = getServerSocket(index).accept().get();
 
         // Bug does not affect Windows. Skip the check on that platform.
         if (!JrePlatform.IS_WINDOWS) {
@@ -415,6 +516,10 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
             super(endpoint);
         }
 
+        public Nio2Acceptor(AbstractEndpoint<?, AsynchronousSocketChannel> endpoint, int index) {
+            super(endpoint, index);
+        }
+
         @Override
         public void run() {
             // The initial accept will be called in a separate utility thread
@@ -428,7 +533,7 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
                 if (!isPaused()) {
                     // Note: as a special behavior, the completion handler for accept is
                     // always called in a separate thread.
-                    serverSock.accept(null, this);
+                    getServerSocket(getIndex()).accept(null, this);
                 } else {
                     state = AcceptorState.PAUSED;
                 }
@@ -445,7 +550,7 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
          */
         @Override
         public void stopMillis(int waitMilliseconds) {
-            acceptor.state = AcceptorState.ENDED;
+            state = AcceptorState.ENDED;
         }
 
         @Override
@@ -457,7 +562,7 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
             // Configure the socket
             if (isRunning() && !isPaused()) {
                 if (getMaxConnections() == -1) {
-                    serverSock.accept(null, this);
+                    getServerSocket(getIndex()).accept(null, this);
                 } else if (getConnectionCount() < getMaxConnections()) {
                     try {
                         // This will not block
@@ -465,7 +570,7 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
                     } catch (InterruptedException e) {
                         // Ignore
                     }
-                    serverSock.accept(null, this);
+                    getServerSocket(getIndex()).accept(null, this);
                 } else {
                     // Accept again on a new thread since countUpOrAwaitConnection may block
                     getExecutor().execute(this);
@@ -483,10 +588,12 @@ public class Nio2Endpoint extends AbstractNetworkChannelEndpoint<Nio2Channel,Asy
 
         @Override
         public void failed(Throwable t, Void attachment) {
-            if (isRunning()) {
+            // Once stopped, the server socket may be closed before the endpoint
+            // stops running so don't try to accept again
+            if (isRunning() && state != AcceptorState.ENDED) {
                 if (!isPaused()) {
                     if (getMaxConnections() == -1) {
-                        serverSock.accept(null, this);
+                        getServerSocket(getIndex()).accept(null, this);
                     } else {
                         // Accept again on a new thread since countUpOrAwaitConnection may block
                         getExecutor().execute(this);
@@ -25,6 +25,7 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
 import java.net.UnixDomainSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
@@ -50,6 +51,7 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.SSLEngine;
@@ -61,7 +63,6 @@ import org.apache.tomcat.util.collections.SynchronizedQueue;
 import org.apache.tomcat.util.collections.SynchronizedStack;
 import org.apache.tomcat.util.compat.JrePlatform;
 import org.apache.tomcat.util.net.AbstractEndpoint.Handler.SocketState;
-import org.apache.tomcat.util.net.Acceptor.AcceptorState;
 import org.apache.tomcat.util.net.jsse.JSSESupport;
 
 /**
@@ -90,20 +91,27 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     private volatile ServerSocketChannel serverSock = null;
 
     /**
-     * Stop latch used to wait for poller stop
+     * Additional server sockets bound to the same address and port using
+     * SO_REUSEPORT when more than one acceptor is configured.
      */
-    private volatile CountDownLatch stopLatch = null;
+    private volatile ServerSocketChannel[] additionalServerSocks = new ServerSocketChannel[0];
 
     /**
-     * Cache for poller events
+     * Stop latch used to wait for poller stop
      */
-    private SynchronizedStack<PollerEvent> eventCache;
+    private volatile CountDownLatch stopLatch = null;
 
     /**
      * Bytebuffer cache, each channel holds a set of buffers (two, except for SSL holds four)
      */
     private SynchronizedStack<NioChannel> nioChannels;
 
+    /**
+     * Arena from which connections borrow their read and write buffers, if
+     * configured.
+     */
+    private volatile SocketBufferArena bufferArena;
+
     private SocketAddress previousAcceptedSocketRemoteAddress = null;
     private long previousAcceptedSocketNanoTime = 0;
 
@@ -150,14 +158,72 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     public void setSelectorTimeout(long timeout) { this.selectorTimeout = timeout;}
     public long getSelectorTimeout() { return this.selectorTimeout; }
 
+
     /**
-     * The socket poller.
+     * Number of poller threads. Each poller has its own selector and new
+     * connections are assigned to the pollers on a round-robin basis.
      */
-    private Poller poller = null;
+    private int pollerCount = 1;
+    public void setPollerCount(int pollerCount) {
+        if (pollerCount < 1) {
+            throw new IllegalArgumentException(
+                    sm.getString("endpoint.nio.invalidPollerCount", Integer.toString(pollerCount)));
+        }
+        this.pollerCount = pollerCount;
+    }
+    public int getPollerCount() { return pollerCount; }
+
+
+    /**
+     * The socket pollers.
+     */
+    private volatile Poller[] pollers = null;
+    private final AtomicInteger pollerRotater = new AtomicInteger(0);
 
 
     // --------------------------------------------------------- Public Methods
 
+    /**
+     * @return The number of bytes allocated by the buffer arena or zero if no
+     *         arena is in use
+     */
+    public long getBufferArenaAllocated() {
+        SocketBufferArena bufferArena = this.bufferArena;
+        return bufferArena == null ? 0 : bufferArena.getAllocated();
+    }
+
+
+    /**
+     * @return The number of bytes currently borrowed from the buffer arena or
+     *         zero if no arena is in use
+     */
+    public long getBufferArenaBorrowed() {
+        SocketBufferArena bufferArena = this.bufferArena;
+        return bufferArena == null ? 0 : bufferArena.getBorrowed();
+    }
+
+
+    /**
+     * @return The largest number of bytes borrowed from the buffer arena at
+     *         any one time or zero if no arena is in use
+     */
+    public long getBufferArenaBorrowedHighWaterMark() {
+        SocketBufferArena bufferArena = this.bufferArena;
+        return bufferArena == null ? 0 : bufferArena.getBorrowedHighWaterMark();
+    }
+
+
+    /**
+     * @return The number of times buffers could not be borrowed from the
+     *         buffer arena and were allocated directly instead or zero if no
+     *         arena is in use
+     */
+    public long getBufferArenaBorrowFailures() {
+        SocketBufferArena bufferArena = this.bufferArena;
+        return bufferArena == null ? 0 : bufferArena.getBorrowFailures();
+    }
+
+
     /**
      * Number of keep-alive sockets.
      *
@@ -165,14 +231,32 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
      *         for the next request to be received on the socket
      */
     public int getKeepAliveCount() {
-        if (poller == null) {
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
             return 0;
         } else {
-            return poller.getKeyCount();
+            int sum = 0;
+            for (Poller poller : pollers) {
+                sum += poller.getKeyCount();
+            }
+            return sum;
         }
     }
 
 
+    @Override
+    protected long getPollerLagNanos(long now) {
+        Poller[] pollers = this.pollers;
+        long lag = 0;
+        if (pollers != null) {
+            for (Poller poller : pollers) {
+                lag = Math.max(lag, poller.getLag(now));
+            }
+        }
+        return lag;
+    }
+
+
     @Override
     public String getId() {
         if (getUseInheritedChannel()) {
@@ -194,7 +278,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     public void bind() throws Exception {
         initServerSocket();
 
-        setStopLatch(new CountDownLatch(1));
+        setStopLatch(new CountDownLatch(getPollerCount()));
 
         // Initialize SSL if needed
         initialiseSsl();
@@ -203,6 +287,10 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     // Separated out to make it easier for folks that extend NioEndpoint to
     // implement custom [server]sockets
     protected void initServerSocket() throws Exception {
+        if (getAcceptorCount() > 1 && (getUseInheritedChannel() || getUnixDomainSocketPath() != null)) {
+            log.warn(sm.getString("endpoint.init.multipleServerSockets.notTcp",
+                    Integer.toString(getAcceptorCount())));
+        }
         if (getUseInheritedChannel()) {
             // Retrieve the channel provided by the OS
             Channel ic = System.inheritedChannel();
@@ -236,8 +324,35 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
         } else {
             serverSock = ServerSocketChannel.open();
             socketProperties.setProperties(serverSock.socket());
+            int serverSocketCount = getAcceptorCount();
+            if (serverSocketCount > 1) {
+                if (serverSock.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                    serverSock.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+                } else {
+                    log.warn(sm.getString("endpoint.init.multipleServerSockets.noReusePort",
+                            Integer.toString(serverSocketCount)));
+                    serverSocketCount = 1;
+                }
+            }
             InetSocketAddress addr = new InetSocketAddress(getAddress(), getPortWithOffset());
             serverSock.bind(addr, getAcceptCount());
+            if (serverSocketCount > 1) {
+                // Use the port the first server socket is bound to in case the
+                // configured port was zero
+                addr = new InetSocketAddress(getAddress(), ((InetSocketAddress) serverSock.getLocalAddress()).getPort());
+                ServerSocketChannel[] additionalServerSocks = new ServerSocketChannel[serverSocketCount - 1];
+                // Assign the array now so any sockets opened are closed if a
+                // later bind fails
+                this.additionalServerSocks = additionalServerSocks;
+                for (int i = 0; i < additionalServerSocks.length; i++) {
+                    ServerSocketChannel additionalServerSock = ServerSocketChannel.open();
+                    additionalServerSocks[i] = additionalServerSock;
+                    socketProperties.setProperties(additionalServerSock.socket());
+                    additionalServerSock.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+                    additionalServerSock.bind(addr, getAcceptCount());
+                    additionalServerSock.configureBlocking(true);
+                }
+            }
         }
         serverSock.configureBlocking(true); //mimic APR behavior
     }
@@ -257,16 +372,16 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 processorCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
                         socketProperties.getProcessorCache());
             }
-            if (socketProperties.getEventCache() != 0) {
-                eventCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
-                        socketProperties.getEventCache());
-            }
             int actualBufferPool =
                     socketProperties.getActualBufferPool(isSSLEnabled() ? getSniParseLimit() * 2 : 0);
             if (actualBufferPool != 0) {
                 nioChannels = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
                         actualBufferPool);
             }
+            if (socketProperties.getBufferArenaSize() > 0) {
+                bufferArena = new SocketBufferArena(socketProperties.getDirectBuffer(),
+                        socketProperties.getBufferArenaSize());
+            }
 
             // Create worker collection
             if (getExecutor() == null) {
@@ -275,12 +390,22 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
             initializeConnectionLatch();
 
-            // Start poller thread
-            poller = new Poller();
-            Thread pollerThread = new Thread(poller, getName() + "-Poller");
-            pollerThread.setPriority(threadPriority);
-            pollerThread.setDaemon(true);
-            pollerThread.start();
+            // Start poller threads
+            Poller[] pollers = new Poller[getPollerCount()];
+            for (int i = 0; i < pollers.length; i++) {
+                pollers[i] = new Poller();
+            }
+            this.pollers = pollers;
+            for (int i = 0; i < pollers.length; i++) {
+                String pollerName = getName() + "-Poller";
+                if (pollers.length > 1) {
+                    pollerName = pollerName + "-" + i;
+                }
+                Thread pollerThread = new Thread(pollers[i], pollerName);
+                pollerThread.setPriority(threadPriority);
+                pollerThread.setDaemon(true);
+                pollerThread.start();
+            }
 
             startAcceptorThread();
         }
@@ -302,10 +427,13 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
              * plenty of time for the acceptor to unlock without being an excessively long wait if the unlock fails.
              */
             int acceptorWaitMilliSeconds = 100 + 2 * getSocketProperties().getUnlockTimeout();
-            acceptor.stopMillis(acceptorWaitMilliSeconds);
-            if (poller != null) {
-                poller.destroy();
-                poller = null;
+            stopAcceptors(acceptorWaitMilliSeconds);
+            Poller[] pollers = this.pollers;
+            if (pollers != null) {
+                for (Poller poller : pollers) {
+                    poller.destroy();
+                }
+                this.pollers = null;
             }
             try {
                 if (!getStopLatch().await(selectorTimeout + 100, TimeUnit.MILLISECONDS)) {
@@ -315,9 +443,10 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 log.warn(sm.getString("endpoint.nio.stopLatchAwaitInterrupted"), e);
             }
             shutdownExecutor();
-            if (eventCache != null) {
-                eventCache.clear();
-                eventCache = null;
+            if (pollers != null) {
+                for (Poller poller : pollers) {
+                    poller.clearEventCache();
+                }
             }
             if (nioChannels != null) {
                 NioChannel socket;
@@ -326,6 +455,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 }
                 nioChannels = null;
             }
+            bufferArena = null;
             if (processorCache != null) {
                 processorCache.clear();
                 processorCache = null;
@@ -366,6 +496,13 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     @Override
     protected void doCloseServerSocket() throws IOException {
         try {
+            ServerSocketChannel[] additionalServerSocks = this.additionalServerSocks;
+            this.additionalServerSocks = new ServerSocketChannel[0];
+            for (ServerSocketChannel additionalServerSock : additionalServerSocks) {
+                if (additionalServerSock != null) {
+                    additionalServerSock.close();
+                }
+            }
             if (!getUseInheritedChannel() && serverSock != null) {
                 // Close server socket
                 serverSock.close();
@@ -388,7 +525,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             super.unlockAccept();
         } else {
             // Only try to unlock the acceptor if it is necessary
-            if (acceptor == null || acceptor.getState() != AcceptorState.RUNNING) {
+            if (getRunningAcceptorCount() == 0) {
                 return;
             }
             try {
@@ -399,8 +536,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 }
                 // Wait for up to 1000ms acceptor threads to unlock
                 long waitLeft = 1000;
-                while (waitLeft > 0 &&
-                        acceptor.getState() == AcceptorState.RUNNING) {
+                while (waitLeft > 0 && getRunningAcceptorCount() > 0) {
                     Thread.sleep(5);
                     waitLeft -= 5;
                 }
@@ -420,8 +556,22 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     }
 
 
+    /**
+     * Obtain the poller a new connection should be registered with. When
+     * more than one poller is configured, pollers are selected on a
+     * round-robin basis.
+     *
+     * @return The poller or <code>null</code> if the endpoint is not running
+     */
     protected Poller getPoller() {
-        return poller;
+        Poller[] pollers = this.pollers;
+        if (pollers == null) {
+            return null;
+        }
+        if (pollers.length == 1) {
+            return pollers[0];
+        }
+        return pollers[Math.floorMod(pollerRotater.getAndIncrement(), pollers.length)];
     }
 
 
@@ -455,7 +605,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 SocketBufferHandler bufhandler = new SocketBufferHandler(
                         socketProperties.getAppReadBufSize(),
                         socketProperties.getAppWriteBufSize(),
-                        socketProperties.getDirectBuffer());
+                        socketProperties.getDirectBuffer(), bufferArena);
                 channel = createChannel(bufhandler);
             }
             NioSocketWrapper newWrapper = new NioSocketWrapper(channel, this);
@@ -473,7 +623,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             socketWrapper.setReadTimeout(getConnectionTimeout());
             socketWrapper.setWriteTimeout(getConnectionTimeout());
             socketWrapper.setKeepAliveLeft(NioEndpoint.this.getMaxKeepAliveRequests());
-            poller.register(socketWrapper);
+            socketWrapper.getPoller().register(socketWrapper);
             return true;
         } catch (Throwable t) {
             ExceptionUtils.handleThrowable(t);
@@ -510,9 +660,26 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
     }
 
 
+    @Override
+    protected int getServerSocketCount() {
+        return 1 + additionalServerSocks.length;
+    }
+
+
     @Override
     protected SocketChannel serverSocketAccept() throws Exception {
-        SocketChannel result = serverSock.accept();
+        return serverSocketAccept(0);
+    }
+
+
+    @Override
+    protected SocketChannel serverSocketAccept(int index) throws Exception {
+        SocketChannel result;
+        if (index == 0) {
+            result = serverSock.accept();
+        } else {
+            result = additionalServerSocks[index - 1].accept();
+        }
 
         // Bug does not affect Windows platform and Unix Domain Socket. Skip the check.
         if (!JrePlatform.IS_WINDOWS && getUnixDomainSocketPath() == null) {
@@ -602,6 +769,8 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
         private Selector selector;
         private final SynchronizedQueue<PollerEvent> events =
                 new SynchronizedQueue<>();
+        // Cache for poller events
+        private volatile SynchronizedStack<PollerEvent> eventCache;
 
         private volatile boolean close = false;
         // Optimize expiration handling
@@ -611,12 +780,40 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
         private volatile int keyCount = 0;
 
+        /*
+         * Used to measure the lag of the poller. The time the processing of
+         * the current set of selected keys started, or zero if the poller is
+         * not currently processing keys, and how long processing the previous
+         * set took. Only measured if an overload poller lag is configured.
+         */
+        private volatile long busySince = 0;
+        private volatile long lastBusyTime = 0;
+
         public Poller() throws IOException {
             this.selector = Selector.open();
+            if (socketProperties.getEventCache() != 0) {
+                eventCache = new SynchronizedStack<>(SynchronizedStack.DEFAULT_SIZE,
+                        socketProperties.getEventCache());
+            }
         }
 
         public int getKeyCount() { return keyCount; }
 
+        /**
+         * @param now The current time as returned by {@link System#nanoTime()}
+         *
+         * @return the time, in nanoseconds, spent processing the current set of
+         *         selected keys or the previous set if that took longer
+         */
+        long getLag(long now) {
+            long lag = lastBusyTime;
+            long busySince = this.busySince;
+            if (busySince != 0) {
+                lag = Math.max(lag, now - busySince);
+            }
+            return lag;
+        }
+
         public Selector getSelector() { return selector; }
 
         /**
@@ -630,6 +827,14 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
             selector.wakeup();
         }
 
+        protected void clearEventCache() {
+            SynchronizedStack<PollerEvent> eventCache = this.eventCache;
+            if (eventCache != null) {
+                eventCache.clear();
+                this.eventCache = null;
+            }
+        }
+
         private void addEvent(PollerEvent event) {
             events.offer(event);
             if (wakeupCounter.incrementAndGet() == 0) {
@@ -639,6 +844,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
 
         private PollerEvent createPollerEvent(NioSocketWrapper socketWrapper, int interestOps) {
             PollerEvent r = null;
+            SynchronizedStack<PollerEvent> eventCache = this.eventCache;
             if (eventCache != null) {
                 r = eventCache.pop();
             }
@@ -676,6 +882,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
          */
         public boolean events() {
             boolean result = false;
+            SynchronizedStack<PollerEvent> eventCache = this.eventCache;
 
             PollerEvent pe = null;
             for (int i = 0, size = events.size(); i < size && (pe = events.poll()) != null; i++ ) {
@@ -752,6 +959,11 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                 try {
                     if (!close) {
                         hasEvents = events();
+                        long busySince = this.busySince;
+                        if (busySince != 0) {
+                            lastBusyTime = System.nanoTime() - busySince;
+                            this.busySince = 0;
+                        }
                         if (wakeupCounter.getAndSet(-1) > 0) {
                             // If we are here, means we have other stuff to do
                             // Do a non blocking select
@@ -760,6 +972,14 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             keyCount = selector.select(selectorTimeout);
                         }
                         wakeupCounter.set(0);
+                        if (getOverloadPollerLag() >= 0) {
+                            if (keyCount == 0 && !hasEvents) {
+                                // Idle so not lagging
+                                lastBusyTime = 0;
+                            } else {
+                                this.busySince = System.nanoTime();
+                            }
+                        }
                     }
                     if (close) {
                         events();
@@ -937,6 +1157,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                             if (log.isTraceEnabled()) {
                                 log.trace("Connection is keep alive, registering back for OP_READ");
                             }
+                            socketWrapper.releaseIdleBuffers();
                             reg(sk, socketWrapper, SelectionKey.OP_READ);
                             break;
                         }
@@ -1217,6 +1438,8 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
                     getSocket().close(true);
                 }
                 if (getEndpoint().running) {
+                    // Cached channels must not hold on to arena buffers
+                    getSocket().getBufHandler().release();
                     if (nioChannels == null || !nioChannels.push(getSocket())) {
                         getSocket().free();
                     }
@@ -1699,8 +1922,7 @@ public class NioEndpoint extends AbstractNetworkChannelEndpoint<NioChannel,Socke
              * in turn can result in unintentionally closing currently active
              * connections.
              */
-            Poller poller = NioEndpoint.this.poller;
-            if (poller == null) {
+            if (NioEndpoint.this.pollers == null) {
                 socketWrapper.close();
                 return;
             }
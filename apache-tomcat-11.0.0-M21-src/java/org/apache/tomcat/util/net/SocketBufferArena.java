@@ -0,0 +1,202 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tomcat.util.collections.SynchronizedStack;
+
+/**
+ * Slab allocator for the socket read and write buffers used by
+ * {@link SocketBufferHandler}. Buffers are organised in power of two size
+ * classes between {@link #MIN_BUFFER_SIZE} and {@link #MAX_BUFFER_SIZE}. Each
+ * size class is populated by slicing a slab of {@link #SLAB_SIZE} bytes into
+ * buffers of that class. Returned buffers are held in a pool per size class
+ * that is shared by all threads. Buffers are not cached per thread since a
+ * buffer cached by a thread that terminates, such as an idle executor thread
+ * or a virtual thread, could never be borrowed again.
+ * <p>
+ * The total memory allocated for slabs is limited by the configured maximum
+ * size. Once that limit has been reached, and there is no free buffer of the
+ * requested size class, {@link #borrow(int)} returns {@code null} and the
+ * caller is expected to allocate an unpooled buffer.
+ * <p>
+ * Slabs are never returned to the operating system while the arena is in use.
+ * Each pool therefore holds at most the buffers sliced from the slabs of its
+ * size class.
+ */
+public class SocketBufferArena {
+
+    public static final int MIN_BUFFER_SIZE = 1 << 12;
+    public static final int MAX_BUFFER_SIZE = 1 << 20;
+    public static final int SLAB_SIZE = MAX_BUFFER_SIZE;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    private static final int SIZE_CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - MIN_SHIFT + 1;
+
+    private final boolean direct;
+    private final long maxSize;
+
+    private final SynchronizedStack<ByteBuffer>[] pools;
+
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong borrowedHighWaterMark = new AtomicLong();
+    private final AtomicLong borrowFailures = new AtomicLong();
+
+
+    /**
+     * Create a new arena.
+     *
+     * @param direct  Should the arena use direct buffers
+     * @param maxSize The maximum number of bytes the arena may allocate for
+     *                    slabs
+     */
+    @SuppressWarnings("unchecked")
+    public SocketBufferArena(boolean direct, long maxSize) {
+        this.direct = direct;
+        this.maxSize = maxSize;
+        pools = new SynchronizedStack[SIZE_CLASS_COUNT];
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            pools[i] = new SynchronizedStack<>();
+        }
+    }
+
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+
+    /**
+     * @return the number of bytes allocated for slabs
+     */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+
+    /**
+     * @return the number of bytes currently borrowed from the arena
+     */
+    public long getBorrowed() {
+        return borrowed.get();
+    }
+
+
+    /**
+     * @return the largest number of bytes borrowed from the arena at any one
+     *             time
+     */
+    public long getBorrowedHighWaterMark() {
+        return borrowedHighWaterMark.get();
+    }
+
+
+    /**
+     * @return the number of times a buffer could not be borrowed from the
+     *             arena because it was full or the requested size was too
+     *             large
+     */
+    public long getBorrowFailures() {
+        return borrowFailures.get();
+    }
+
+
+    /**
+     * Borrow a buffer with a capacity of at least the given size. The buffer
+     * will be cleared.
+     *
+     * @param size The minimum required capacity
+     *
+     * @return a buffer or {@code null} if the arena is unable to provide a
+     *             buffer of the requested size
+     */
+    public ByteBuffer borrow(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            borrowFailures.incrementAndGet();
+            return null;
+        }
+        ByteBuffer result = pools[sizeClass].pop();
+        if (result == null) {
+            result = allocate(sizeClass);
+        }
+        if (result == null) {
+            borrowFailures.incrementAndGet();
+            return null;
+        }
+        long current = borrowed.addAndGet(result.capacity());
+        borrowedHighWaterMark.accumulateAndGet(current, Math::max);
+        result.clear();
+        return result;
+    }
+
+
+    /**
+     * Return a buffer previously obtained from {@link #borrow(int)} to the
+     * arena. The caller must not use the buffer after calling this method.
+     *
+     * @param buffer The buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        int sizeClass = sizeClass(buffer.capacity());
+        borrowed.addAndGet(-buffer.capacity());
+        pools[sizeClass].push(buffer);
+    }
+
+
+    private ByteBuffer allocate(int sizeClass) {
+        long current;
+        do {
+            current = allocated.get();
+            if (current + SLAB_SIZE > maxSize) {
+                return null;
+            }
+        } while (!allocated.compareAndSet(current, current + SLAB_SIZE));
+
+        ByteBuffer slab;
+        if (direct) {
+            slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        } else {
+            slab = ByteBuffer.allocate(SLAB_SIZE);
+        }
+        int bufferSize = MIN_BUFFER_SIZE << sizeClass;
+        // Keep the first slice for the caller and pool the others
+        for (int offset = bufferSize; offset < SLAB_SIZE; offset += bufferSize) {
+            pools[sizeClass].push(slab.slice(offset, bufferSize));
+        }
+        return slab.slice(0, bufferSize);
+    }
+
+
+    private static int sizeClass(int size) {
+        if (size > MAX_BUFFER_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+}
@@ -42,21 +42,46 @@ public class SocketBufferHandler {
 
     private volatile boolean readBufferConfiguredForWrite = true;
     private volatile ByteBuffer readBuffer;
+    private boolean readBufferPooled = false;
+    private int readBufferSize;
 
     private volatile boolean writeBufferConfiguredForWrite = true;
     private volatile ByteBuffer writeBuffer;
+    private boolean writeBufferPooled = false;
+    private int writeBufferSize;
 
     private final boolean direct;
+    private final SocketBufferArena arena;
 
     public SocketBufferHandler(int readBufferSize, int writeBufferSize,
             boolean direct) {
+        this(readBufferSize, writeBufferSize, direct, null);
+    }
+
+
+    /**
+     * Create a buffer handler. If an arena is provided the buffers are not
+     * allocated until they are first used. They are then borrowed from the
+     * arena, if it is able to provide buffers of the required size, and may be
+     * returned to the arena with {@link #release()} or
+     * {@link #releaseIfEmpty()}.
+     *
+     * @param readBufferSize  The size of the read buffer
+     * @param writeBufferSize The size of the write buffer
+     * @param direct          Should direct buffers be used for any buffers
+     *                            not obtained from the arena
+     * @param arena           The arena to borrow buffers from or
+     *                            {@code null} to allocate the buffers now
+     */
+    public SocketBufferHandler(int readBufferSize, int writeBufferSize,
+            boolean direct, SocketBufferArena arena) {
         this.direct = direct;
-        if (direct) {
-            readBuffer = ByteBuffer.allocateDirect(readBufferSize);
-            writeBuffer = ByteBuffer.allocateDirect(writeBufferSize);
-        } else {
-            readBuffer = ByteBuffer.allocate(readBufferSize);
-            writeBuffer = ByteBuffer.allocate(writeBufferSize);
+        this.arena = arena;
+        this.readBufferSize = readBufferSize;
+        this.writeBufferSize = writeBufferSize;
+        if (arena == null) {
+            readBuffer = allocate(readBufferSize);
+            writeBuffer = allocate(writeBufferSize);
         }
     }
 
@@ -74,6 +99,7 @@ public class SocketBufferHandler {
     private void setReadBufferConfiguredForWrite(boolean readBufferConFiguredForWrite) {
         // NO-OP if buffer is already in correct state
         if (this.readBufferConfiguredForWrite != readBufferConFiguredForWrite) {
+            ByteBuffer readBuffer = getReadBuffer();
             if (readBufferConFiguredForWrite) {
                 // Switching to write
                 int remaining = readBuffer.remaining();
@@ -92,11 +118,25 @@ public class SocketBufferHandler {
 
 
     public ByteBuffer getReadBuffer() {
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBuffer == null) {
+            readBuffer = arena.borrow(readBufferSize);
+            if (readBuffer == null) {
+                readBuffer = allocate(readBufferSize);
+            } else {
+                readBufferPooled = true;
+            }
+            this.readBuffer = readBuffer;
+        }
         return readBuffer;
     }
 
 
     public boolean isReadBufferEmpty() {
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBuffer == null) {
+            return true;
+        }
         if (readBufferConfiguredForWrite) {
             return readBuffer.position() == 0;
         } else {
@@ -106,6 +146,7 @@ public class SocketBufferHandler {
 
 
     public void unReadReadBuffer(ByteBuffer returnedData) {
+        ByteBuffer readBuffer = getReadBuffer();
         if (isReadBufferEmpty()) {
             configureReadBufferForWrite();
             readBuffer.put(returnedData);
@@ -167,6 +208,7 @@ public class SocketBufferHandler {
     private void setWriteBufferConfiguredForWrite(boolean writeBufferConfiguredForWrite) {
         // NO-OP if buffer is already in correct state
         if (this.writeBufferConfiguredForWrite != writeBufferConfiguredForWrite) {
+            ByteBuffer writeBuffer = getWriteBuffer();
             if (writeBufferConfiguredForWrite) {
                 // Switching to write
                 int remaining = writeBuffer.remaining();
@@ -187,6 +229,10 @@ public class SocketBufferHandler {
 
 
     public boolean isWriteBufferWritable() {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer == null) {
+            return writeBufferSize > 0;
+        }
         if (writeBufferConfiguredForWrite) {
             return writeBuffer.hasRemaining();
         } else {
@@ -196,11 +242,25 @@ public class SocketBufferHandler {
 
 
     public ByteBuffer getWriteBuffer() {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer == null) {
+            writeBuffer = arena.borrow(writeBufferSize);
+            if (writeBuffer == null) {
+                writeBuffer = allocate(writeBufferSize);
+            } else {
+                writeBufferPooled = true;
+            }
+            this.writeBuffer = writeBuffer;
+        }
         return writeBuffer;
     }
 
 
     public boolean isWriteBufferEmpty() {
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer == null) {
+            return true;
+        }
         if (writeBufferConfiguredForWrite) {
             return writeBuffer.position() == 0;
         } else {
@@ -210,25 +270,116 @@ public class SocketBufferHandler {
 
 
     public void reset() {
-        readBuffer.clear();
+        if (readBuffer != null) {
+            readBuffer.clear();
+        }
         readBufferConfiguredForWrite = true;
-        writeBuffer.clear();
+        if (writeBuffer != null) {
+            writeBuffer.clear();
+        }
         writeBufferConfiguredForWrite = true;
     }
 
 
     public void expand(int newSize) {
-        configureReadBufferForWrite();
-        readBuffer = ByteBufferUtils.expand(readBuffer, newSize);
-        configureWriteBufferForWrite();
-        writeBuffer = ByteBufferUtils.expand(writeBuffer, newSize);
+        if (arena == null) {
+            configureReadBufferForWrite();
+            readBuffer = ByteBufferUtils.expand(readBuffer, newSize);
+            configureWriteBufferForWrite();
+            writeBuffer = ByteBufferUtils.expand(writeBuffer, newSize);
+            return;
+        }
+        // Buffers borrowed after a release need to use the new size
+        readBufferSize = Math.max(readBufferSize, newSize);
+        writeBufferSize = Math.max(writeBufferSize, newSize);
+        if (readBuffer != null && readBuffer.capacity() < newSize) {
+            configureReadBufferForWrite();
+            ByteBuffer oldReadBuffer = readBuffer;
+            boolean oldReadBufferPooled = readBufferPooled;
+            readBuffer = null;
+            readBufferPooled = false;
+            oldReadBuffer.flip();
+            getReadBuffer().put(oldReadBuffer);
+            free(oldReadBuffer, oldReadBufferPooled);
+        }
+        if (writeBuffer != null && writeBuffer.capacity() < newSize) {
+            configureWriteBufferForWrite();
+            ByteBuffer oldWriteBuffer = writeBuffer;
+            boolean oldWriteBufferPooled = writeBufferPooled;
+            writeBuffer = null;
+            writeBufferPooled = false;
+            oldWriteBuffer.flip();
+            getWriteBuffer().put(oldWriteBuffer);
+            free(oldWriteBuffer, oldWriteBufferPooled);
+        }
     }
 
     public void free() {
+        if (readBuffer != null) {
+            free(readBuffer, readBufferPooled);
+        }
+        if (writeBuffer != null) {
+            free(writeBuffer, writeBufferPooled);
+        }
+    }
+
+
+    /**
+     * Return the buffers to the arena, discarding any data they contain. The
+     * buffers will be borrowed again when they are next required. NO-OP if no
+     * arena is configured.
+     */
+    public void release() {
+        if (arena == null) {
+            return;
+        }
+        ByteBuffer readBuffer = this.readBuffer;
+        if (readBuffer != null) {
+            this.readBuffer = null;
+            free(readBuffer, readBufferPooled);
+            readBufferPooled = false;
+        }
+        readBufferConfiguredForWrite = true;
+        ByteBuffer writeBuffer = this.writeBuffer;
+        if (writeBuffer != null) {
+            this.writeBuffer = null;
+            free(writeBuffer, writeBufferPooled);
+            writeBufferPooled = false;
+        }
+        writeBufferConfiguredForWrite = true;
+    }
+
+
+    /**
+     * Return the buffers to the arena if neither buffer contains any data.
+     * NO-OP if no arena is configured.
+     *
+     * @return {@code true} if the buffers were released, otherwise
+     *             {@code false}
+     */
+    public boolean releaseIfEmpty() {
+        if (arena == null || !isReadBufferEmpty() || !isWriteBufferEmpty()) {
+            return false;
+        }
+        release();
+        return true;
+    }
+
+
+    private ByteBuffer allocate(int size) {
         if (direct) {
-            ByteBufferUtils.cleanDirectBuffer(readBuffer);
-            ByteBufferUtils.cleanDirectBuffer(writeBuffer);
+            return ByteBuffer.allocateDirect(size);
+        } else {
+            return ByteBuffer.allocate(size);
         }
     }
 
+
+    private void free(ByteBuffer buffer, boolean pooled) {
+        if (pooled) {
+            arena.release(buffer);
+        } else if (direct) {
+            ByteBufferUtils.cleanDirectBuffer(buffer);
+        }
+    }
 }
@@ -19,10 +19,13 @@ package org.apache.tomcat.util.net;
 import java.util.Objects;
 import java.util.concurrent.locks.Lock;
 
-public abstract class SocketProcessorBase<S> implements Runnable {
+import org.apache.tomcat.util.threads.DroppableTask;
+
+public abstract class SocketProcessorBase<S> implements DroppableTask {
 
     protected SocketWrapperBase<S> socketWrapper;
     protected SocketEvent event;
+    private long queuedTime;
 
     public SocketProcessorBase(SocketWrapperBase<S> socketWrapper, SocketEvent event) {
         reset(socketWrapper, event);
@@ -33,11 +36,17 @@ public abstract class SocketProcessorBase<S> implements Runnable {
         Objects.requireNonNull(event);
         this.socketWrapper = socketWrapper;
         this.event = event;
+        this.queuedTime = 0;
     }
 
 
     @Override
     public final void run() {
+        long queuedTime = this.queuedTime;
+        if (queuedTime != 0) {
+            this.queuedTime = 0;
+            socketWrapper.getEndpoint().recordQueueDelay(System.nanoTime() - queuedTime);
+        }
         Lock lock = socketWrapper.getLock();
         lock.lock();
         try {
@@ -56,5 +65,49 @@ public abstract class SocketProcessorBase<S> implements Runnable {
     }
 
 
+    @Override
+    public void setQueuedTime(long queuedTime) {
+        this.queuedTime = queuedTime;
+    }
+
+
+    @Override
+    public long getQueuedTime() {
+        return queuedTime;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only a read event for a connection that is not part way through a request, or an upgraded protocol, is dropped.
+     * The request has not been read at this point so no response is written and the connection is closed. The client
+     * will see the same behaviour as a keep-alive timeout. A dropped processor is returned to the processor cache.
+     */
+    @Override
+    public boolean drop() {
+        AbstractEndpoint<S,?> endpoint = socketWrapper.getEndpoint();
+        Lock lock = socketWrapper.getLock();
+        lock.lock();
+        try {
+            if (!socketWrapper.isClosed()) {
+                if (event != SocketEvent.OPEN_READ || socketWrapper.getCurrentProcessor() != null) {
+                    return false;
+                }
+                socketWrapper.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+        socketWrapper = null;
+        event = null;
+        //return to cache
+        if (endpoint.isRunning() && endpoint.processorCache != null) {
+            endpoint.processorCache.push(this);
+        }
+        return true;
+    }
+
+
     protected abstract void doRun();
 }
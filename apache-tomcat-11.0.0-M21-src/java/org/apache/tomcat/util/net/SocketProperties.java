@@ -113,6 +113,15 @@ public class SocketProperties {
      */
     protected int bufferPoolSize = -2;
 
+    /**
+     * Maximum number of bytes the endpoint may allocate for a buffer arena
+     * from which connections borrow their read and write buffers only while
+     * they have data in flight. 0 means no arena is used and each connection
+     * allocates its own buffers.
+     * Default value is 0
+     */
+    protected long bufferArenaSize = 0;
+
     /**
      * TCP_NO_DELAY option. JVM default used if not set.
      */
@@ -133,6 +142,12 @@ public class SocketProperties {
      */
     protected Boolean soReuseAddress = null;
 
+    /**
+     * SO_REUSEPORT option. Only applied to server sockets and only if supported
+     * by the operating system. JVM default used if not set.
+     */
+    protected Boolean soReusePort = null;
+
     /**
      * SO_LINGER option, paired with the <code>soLingerTime</code> value.
      * JVM defaults used unless both attributes are set.
@@ -227,7 +242,7 @@ public class SocketProperties {
         }
     }
 
-    public void setProperties(ServerSocket socket) throws SocketException{
+    public void setProperties(ServerSocket socket) throws SocketException {
         if (rxBufSize != null) {
             socket.setReceiveBufferSize(rxBufSize.intValue());
         }
@@ -241,6 +256,18 @@ public class SocketProperties {
         if (soReuseAddress != null) {
             socket.setReuseAddress(soReuseAddress.booleanValue());
         }
+        if (soReusePort != null && socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            try {
+                socket.setOption(StandardSocketOptions.SO_REUSEPORT, soReusePort);
+            } catch (SocketException e) {
+                throw e;
+            } catch (IOException e) {
+                // ServerSocket.setOption() is declared to throw IOException
+                SocketException se = new SocketException(e.getMessage());
+                se.initCause(e);
+                throw se;
+            }
+        }
         if (soTimeout != null && soTimeout.intValue() >= 0) {
             socket.setSoTimeout(soTimeout.intValue());
         }
@@ -274,6 +301,9 @@ public class SocketProperties {
         if (soReuseAddress != null) {
             socket.setOption(StandardSocketOptions.SO_REUSEADDR, soReuseAddress);
         }
+        if (soReusePort != null && socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            socket.setOption(StandardSocketOptions.SO_REUSEPORT, soReusePort);
+        }
     }
 
     public boolean getDirectBuffer() {
@@ -320,6 +350,10 @@ public class SocketProperties {
         return soReuseAddress.booleanValue();
     }
 
+    public boolean getSoReusePort() {
+        return soReusePort.booleanValue();
+    }
+
     public int getSoTimeout() {
         return soTimeout.intValue();
     }
@@ -340,6 +374,10 @@ public class SocketProperties {
         return bufferPoolSize;
     }
 
+    public long getBufferArenaSize() {
+        return bufferArenaSize;
+    }
+
     public int getEventCache() {
         return eventCache;
     }
@@ -385,6 +423,10 @@ public class SocketProperties {
         this.soReuseAddress = Boolean.valueOf(soReuseAddress);
     }
 
+    public void setSoReusePort(boolean soReusePort) {
+        this.soReusePort = Boolean.valueOf(soReusePort);
+    }
+
     public void setSoLingerTime(int soLingerTime) {
         this.soLingerTime = Integer.valueOf(soLingerTime);
     }
@@ -429,6 +471,10 @@ public class SocketProperties {
         this.bufferPoolSize = bufferPoolSize;
     }
 
+    public void setBufferArenaSize(long bufferArenaSize) {
+        this.bufferArenaSize = bufferArenaSize;
+    }
+
     public void setEventCache(int eventCache) {
         this.eventCache = eventCache;
     }
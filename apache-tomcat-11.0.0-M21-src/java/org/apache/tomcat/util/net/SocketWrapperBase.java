@@ -26,6 +26,8 @@ import java.nio.channels.ReadPendingException;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -116,6 +118,26 @@ public abstract class SocketWrapperBase<E> {
      */
     protected final WriteBuffer nonBlockingWriteBuffer = new WriteBuffer(bufferedWriteSize);
 
+    /*
+     * The time, as returned by System.nanoTime(), at which the flush of the
+     * data in the socket write buffer was first deferred or -1 if no flush has
+     * been deferred.
+     */
+    private volatile long flushDeferredTime = -1;
+
+    /*
+     * Flushes the deferred data once the maximum delay has passed.
+     */
+    private volatile ScheduledFuture<?> deferredFlushFuture = null;
+
+    /*
+     * While a flush is deferred, the socket write buffer may be flushed by the
+     * task that enforces the maximum delay as well as by the thread processing
+     * the socket. Writes and flushes are made holding this lock while a flush
+     * is deferred.
+     */
+    private final ReentrantLock deferredFlushLock = new ReentrantLock();
+
     /*
      * Asynchronous operations.
      */
@@ -300,6 +322,19 @@ public abstract class SocketWrapperBase<E> {
 
     public SocketBufferHandler getSocketBufferHandler() { return socketBufferHandler; }
 
+    /**
+     * Return the socket read and write buffers to the endpoint's buffer arena,
+     * if one is in use and neither buffer contains any data. This should only
+     * be called when the connection is idle and no other thread is using the
+     * buffers.
+     */
+    public void releaseIdleBuffers() {
+        SocketBufferHandler socketBufferHandler = this.socketBufferHandler;
+        if (socketBufferHandler != null) {
+            socketBufferHandler.releaseIfEmpty();
+        }
+    }
+
     public boolean hasDataToRead() {
         // Return true because it is always safe to make a read attempt
         return true;
@@ -309,6 +344,76 @@ public abstract class SocketWrapperBase<E> {
         return !socketBufferHandler.isWriteBufferEmpty() || !nonBlockingWriteBuffer.isEmpty();
     }
 
+    /**
+     * Records that the caller has chosen not to flush the data written so far
+     * so that it may be written to the network together with data that will
+     * be written shortly afterwards. The data remains in the socket write
+     * buffer (and is written if that buffer fills) until the next call to
+     * {@link #flush(boolean)} that empties the buffers or until the maximum
+     * delay since the flush was first deferred has passed, when the data is
+     * flushed by the utility executor. Only blocking writes may be used while
+     * a flush is deferred.
+     *
+     * @param maxDelay The maximum time in milliseconds for which the flush may
+     *                     be deferred
+     */
+    public void deferFlush(long maxDelay) {
+        if (flushDeferredTime == -1) {
+            long deferredTime = System.nanoTime();
+            flushDeferredTime = deferredTime;
+            ScheduledExecutorService utilityExecutor = getEndpoint().getUtilityExecutor();
+            deferredFlushFuture = utilityExecutor.schedule(() -> flushDeferred(deferredTime), maxDelay,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+     * Flushes the data for which the flush was deferred at the given time if
+     * it has not already been flushed.
+     */
+    private void flushDeferred(long deferredTime) {
+        deferredFlushLock.lock();
+        try {
+            if (flushDeferredTime == deferredTime && !isClosed()) {
+                flush(true);
+            }
+        } catch (IOException ioe) {
+            setError(ioe);
+        } finally {
+            deferredFlushLock.unlock();
+        }
+    }
+
+    /*
+     * Acquires the deferred flush lock if a flush is deferred. Only the thread
+     * processing the socket may defer a flush so, if no flush is deferred, no
+     * other thread will flush the buffer until this thread defers one.
+     */
+    private boolean lockIfFlushDeferred() {
+        if (flushDeferredTime == -1) {
+            return false;
+        }
+        deferredFlushLock.lock();
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if {@link #deferFlush(long)} has been called
+     *         since the buffers were last emptied by {@link #flush(boolean)}
+     */
+    public boolean isFlushDeferred() {
+        return flushDeferredTime != -1;
+    }
+
+    /**
+     * @return the time, as returned by {@link System#nanoTime()}, at which a
+     *         flush was first deferred since the buffers were last emptied or
+     *         -1 if no flush has been deferred
+     */
+    public long getFlushDeferredTime() {
+        return flushDeferredTime;
+    }
+
     /**
      * Checks to see if there are any writes pending and if there are calls
      * {@link #registerWriteInterest()} to trigger a callback once the pending
@@ -481,10 +586,17 @@ public abstract class SocketWrapperBase<E> {
          *   writes which do not require the additional checks related to the
          *   use of the non-blocking write buffer
          */
-        if (block) {
-            writeBlocking(buf, off, len);
-        } else {
-            writeNonBlocking(buf, off, len);
+        boolean locked = lockIfFlushDeferred();
+        try {
+            if (block) {
+                writeBlocking(buf, off, len);
+            } else {
+                writeNonBlocking(buf, off, len);
+            }
+        } finally {
+            if (locked) {
+                deferredFlushLock.unlock();
+            }
         }
     }
 
@@ -528,10 +640,17 @@ public abstract class SocketWrapperBase<E> {
          *   writes which do not require the additional checks related to the
          *   use of the non-blocking write buffer
          */
-        if (block) {
-            writeBlocking(from);
-        } else {
-            writeNonBlocking(from);
+        boolean locked = lockIfFlushDeferred();
+        try {
+            if (block) {
+                writeBlocking(from);
+            } else {
+                writeNonBlocking(from);
+            }
+        } finally {
+            if (locked) {
+                deferredFlushLock.unlock();
+            }
         }
     }
 
@@ -706,11 +825,27 @@ public abstract class SocketWrapperBase<E> {
      */
     public boolean flush(boolean block) throws IOException {
         boolean result = false;
-        if (block) {
-            // A blocking flush will always empty the buffer.
-            flushBlocking();
-        } else {
-            result = flushNonBlocking();
+        boolean locked = lockIfFlushDeferred();
+        try {
+            if (block) {
+                // A blocking flush will always empty the buffer.
+                flushBlocking();
+            } else {
+                result = flushNonBlocking();
+            }
+
+            if (!result && locked) {
+                flushDeferredTime = -1;
+                ScheduledFuture<?> deferredFlushFuture = this.deferredFlushFuture;
+                if (deferredFlushFuture != null) {
+                    deferredFlushFuture.cancel(false);
+                    this.deferredFlushFuture = null;
+                }
+            }
+        } finally {
+            if (locked) {
+                deferredFlushLock.unlock();
+            }
         }
 
         return result;
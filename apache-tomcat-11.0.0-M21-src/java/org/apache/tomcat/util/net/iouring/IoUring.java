@@ -0,0 +1,320 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.VarHandle;
+import java.util.Locale;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * A single io_uring instance. Apart from construction, instances are not
+ * thread safe and must only be used by the thread that owns the ring.
+ * <p>
+ * The ring is used without SQPOLL. Submission queue entries are added with
+ * {@link #getSqe()} and are passed to the kernel, in a single system call, by
+ * {@link #submit(int)} which optionally also waits for completions.
+ */
+final class IoUring {
+
+    private static final Log log = LogFactory.getLog(IoUring.class);
+    private static final StringManager sm = StringManager.getManager(IoUring.class);
+
+    // Opcodes
+    static final byte IORING_OP_READ = 22;
+    static final byte IORING_OP_ACCEPT = 13;
+    static final byte IORING_OP_ASYNC_CANCEL = 14;
+    static final byte IORING_OP_LINK_TIMEOUT = 15;
+    static final byte IORING_OP_SEND = 26;
+    static final byte IORING_OP_RECV = 27;
+
+    // SQE flags
+    static final byte IOSQE_IO_LINK = 1 << 2;
+
+    // io_uring_enter flags
+    private static final int IORING_ENTER_GETEVENTS = 1;
+
+    // Features
+    private static final int IORING_FEAT_SINGLE_MMAP = 1;
+    private static final int IORING_FEAT_NODROP = 1 << 1;
+    private static final int IORING_FEAT_FAST_POLL = 1 << 5;
+    private static final int REQUIRED_FEATURES = IORING_FEAT_SINGLE_MMAP | IORING_FEAT_NODROP | IORING_FEAT_FAST_POLL;
+
+    private static final long IORING_OFF_SQ_RING = 0L;
+    private static final long IORING_OFF_SQES = 0x10000000L;
+
+    private static final int PARAMS_SIZE = 120;
+    private static final int SQE_SIZE = 64;
+    private static final int CQE_SIZE = 16;
+
+    private static final String UNAVAILABLE_REASON;
+
+    static {
+        String reason = null;
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ENGLISH);
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ENGLISH);
+        if (!os.startsWith("linux")) {
+            reason = sm.getString("ioUring.unavailable.os", os);
+        } else if (!arch.equals("amd64") && !arch.equals("x86_64") && !arch.equals("aarch64")) {
+            reason = sm.getString("ioUring.unavailable.arch", arch);
+        } else {
+            try {
+                IoUring ring = new IoUring(2);
+                ring.close();
+            } catch (Throwable t) {
+                reason = t.getMessage();
+                if (log.isDebugEnabled()) {
+                    log.debug(sm.getString("ioUring.unavailable", reason), t);
+                }
+            }
+        }
+        UNAVAILABLE_REASON = reason;
+    }
+
+
+    /**
+     * @return {@code true} if io_uring is available and provides the features
+     *             required by this implementation
+     */
+    static boolean isAvailable() {
+        return UNAVAILABLE_REASON == null;
+    }
+
+
+    /**
+     * @return The reason io_uring is unavailable or {@code null} if it is
+     *             available
+     */
+    static String getUnavailableReason() {
+        return UNAVAILABLE_REASON;
+    }
+
+
+    private final int ringFd;
+    private final MemorySegment ringMemory;
+    private final MemorySegment sqes;
+    private final MemorySegment captureState;
+
+    private final long sqHeadOffset;
+    private final long sqTailOffset;
+    private final int sqMask;
+    private final int sqEntries;
+    private final long cqHeadOffset;
+    private final long cqTailOffset;
+    private final int cqMask;
+    private final long cqesOffset;
+
+    private int sqTail;
+    private int unsubmitted;
+    private boolean closed;
+
+
+    /**
+     * Create a new ring.
+     *
+     * @param entries The requested number of submission queue entries. The
+     *                    kernel will round this up to a power of two.
+     *
+     * @throws IOException if the ring could not be created or does not
+     *                         provide the required features
+     */
+    IoUring(int entries) throws IOException {
+        MemorySegment params = Arena.ofAuto().allocate(PARAMS_SIZE, 8);
+        ringFd = LinuxNative.ioUringSetup(entries, params);
+        try {
+            int features = params.get(JAVA_INT, 20);
+            if ((features & REQUIRED_FEATURES) != REQUIRED_FEATURES) {
+                throw new IOException(sm.getString("ioUring.missingFeatures", Integer.toHexString(features),
+                        Integer.toHexString(REQUIRED_FEATURES)));
+            }
+            sqEntries = params.get(JAVA_INT, 0);
+            int cqEntries = params.get(JAVA_INT, 4);
+            // struct io_sqring_offsets starts at 40
+            sqHeadOffset = params.get(JAVA_INT, 40);
+            sqTailOffset = params.get(JAVA_INT, 44);
+            long sqRingMaskOffset = params.get(JAVA_INT, 48);
+            long sqArrayOffset = params.get(JAVA_INT, 64);
+            // struct io_cqring_offsets starts at 80
+            cqHeadOffset = params.get(JAVA_INT, 80);
+            cqTailOffset = params.get(JAVA_INT, 84);
+            long cqRingMaskOffset = params.get(JAVA_INT, 88);
+            cqesOffset = params.get(JAVA_INT, 100);
+
+            long ringSize = Math.max(sqArrayOffset + sqEntries * 4L, cqesOffset + cqEntries * (long) CQE_SIZE);
+            ringMemory = LinuxNative.mmap(ringSize, ringFd, IORING_OFF_SQ_RING);
+            sqes = LinuxNative.mmap(sqEntries * (long) SQE_SIZE, ringFd, IORING_OFF_SQES);
+
+            sqMask = ringMemory.get(JAVA_INT, sqRingMaskOffset);
+            cqMask = ringMemory.get(JAVA_INT, cqRingMaskOffset);
+            // Use a fixed one-to-one mapping between the SQ array and SQEs
+            for (int i = 0; i < sqEntries; i++) {
+                ringMemory.set(JAVA_INT, sqArrayOffset + i * 4L, i);
+            }
+            sqTail = ringMemory.get(JAVA_INT, sqTailOffset);
+            captureState = LinuxNative.allocateCaptureState(Arena.ofAuto());
+        } catch (IOException | RuntimeException | Error e) {
+            LinuxNative.close(ringFd);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Obtain the next free submission queue entry. The entry is zeroed and
+     * will be submitted by the next call to {@link #submit(int)}.
+     *
+     * @return The entry or {@code null} if the submission queue is full
+     */
+    MemorySegment getSqe() {
+        int head = ringMemory.get(JAVA_INT, sqHeadOffset);
+        VarHandle.acquireFence();
+        if (sqTail - head >= sqEntries) {
+            return null;
+        }
+        MemorySegment sqe = sqes.asSlice((long) (sqTail & sqMask) * SQE_SIZE, SQE_SIZE);
+        sqe.fill((byte) 0);
+        sqTail++;
+        unsubmitted++;
+        return sqe;
+    }
+
+
+    /**
+     * @return The number of free submission queue entries
+     */
+    int getSqSpace() {
+        int head = ringMemory.get(JAVA_INT, sqHeadOffset);
+        VarHandle.acquireFence();
+        return sqEntries - (sqTail - head);
+    }
+
+
+    /**
+     * @return The number of entries obtained via {@link #getSqe()} that have
+     *             not yet been consumed by the kernel
+     */
+    int getUnsubmitted() {
+        return unsubmitted;
+    }
+
+
+    /**
+     * Submit any new submission queue entries to the kernel and, optionally,
+     * wait for at least one completion.
+     *
+     * @param minComplete The number of completions to wait for
+     *
+     * @return The number of entries submitted or minus errno if the system
+     *             call failed. {@code EINTR}, {@code EAGAIN} and {@code EBUSY}
+     *             indicate a transient condition and the call should be
+     *             repeated, after processing any completions in the case of
+     *             {@code EBUSY}.
+     */
+    int submit(int minComplete) {
+        VarHandle.releaseFence();
+        ringMemory.set(JAVA_INT, sqTailOffset, sqTail);
+        VarHandle.fullFence();
+        int flags = minComplete > 0 ? IORING_ENTER_GETEVENTS : 0;
+        int result = LinuxNative.ioUringEnter(ringFd, unsubmitted, minComplete, flags, captureState);
+        if (result > 0) {
+            unsubmitted -= result;
+        }
+        return result;
+    }
+
+
+    /**
+     * Process the available completion queue entries.
+     *
+     * @param handler The handler to pass the completions to
+     *
+     * @return The number of completions processed
+     */
+    int processCompletions(CompletionHandler handler) {
+        int head = ringMemory.get(JAVA_INT, cqHeadOffset);
+        int tail = ringMemory.get(JAVA_INT, cqTailOffset);
+        VarHandle.acquireFence();
+        int count = 0;
+        while (head != tail) {
+            long offset = cqesOffset + (long) (head & cqMask) * CQE_SIZE;
+            long userData = ringMemory.get(JAVA_LONG, offset);
+            int res = ringMemory.get(JAVA_INT, offset + 8);
+            head++;
+            count++;
+            // Release the entry before processing it
+            VarHandle.releaseFence();
+            ringMemory.set(JAVA_INT, cqHeadOffset, head);
+            handler.completed(userData, res);
+            if (head == tail) {
+                tail = ringMemory.get(JAVA_INT, cqTailOffset);
+                VarHandle.acquireFence();
+            }
+        }
+        return count;
+    }
+
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LinuxNative.munmap(sqes);
+        LinuxNative.munmap(ringMemory);
+        LinuxNative.close(ringFd);
+    }
+
+
+    // ----------------------------------------------------- SQE initialisation
+
+    static void prepare(MemorySegment sqe, byte opcode, int fd, long address, int length, long offset,
+            long userData) {
+        sqe.set(JAVA_BYTE, 0, opcode);
+        sqe.set(JAVA_INT, 4, fd);
+        sqe.set(JAVA_LONG, 8, offset);
+        sqe.set(JAVA_LONG, 16, address);
+        sqe.set(JAVA_INT, 24, length);
+        sqe.set(JAVA_LONG, 32, userData);
+    }
+
+
+    static void setOpFlags(MemorySegment sqe, int opFlags) {
+        sqe.set(JAVA_INT, 28, opFlags);
+    }
+
+
+    static void addFlags(MemorySegment sqe, byte flags) {
+        sqe.set(JAVA_BYTE, 1, (byte) (sqe.get(JAVA_BYTE, 1) | flags));
+    }
+
+
+    /**
+     * Callback for completion queue entries.
+     */
+    interface CompletionHandler {
+        void completed(long userData, int res);
+    }
+}
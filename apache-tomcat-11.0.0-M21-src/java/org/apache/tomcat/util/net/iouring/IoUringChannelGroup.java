@@ -0,0 +1,470 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.AsynchronousChannel;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ShutdownChannelGroupException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.ExceptionUtils;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Channel group that performs all I/O for its channels using a single
+ * io_uring instance.
+ * <p>
+ * A dedicated thread owns the ring. Operations initiated on any thread are
+ * queued and the ring thread adds them to the submission queue, submitting
+ * everything that has been queued since the last submission with a single
+ * io_uring_enter call that also waits for completions. Completion handlers are
+ * executed using the group's executor. The ring thread is woken when new
+ * operations are queued by an eventfd read that is always pending on the ring.
+ */
+final class IoUringChannelGroup extends AsynchronousChannelGroup implements Runnable {
+
+    private static final Log log = LogFactory.getLog(IoUringChannelGroup.class);
+    private static final StringManager sm = StringManager.getManager(IoUringChannelGroup.class);
+
+    /*
+     * User data for completions that require no processing: link timeouts and
+     * cancellations.
+     */
+    private static final long IGNORED_USER_DATA = 0;
+    private static final long WAKEUP_USER_DATA = 1;
+    private static final long FIRST_OPERATION_USER_DATA = 2;
+
+    private static final long SHUTDOWN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    /*
+     * Native memory of operations that did not complete before the ring was
+     * closed. The kernel may still access it so it must never be freed.
+     */
+    private static final List<Object> abandoned = new ArrayList<>();
+
+    private final Executor executor;
+    private final IoUring ring;
+    private final int eventFd;
+    private final MemorySegment eventFdBuffer;
+    private final MemorySegment timespecs;
+    private final int timespecCount;
+    private int timespecIndex = 0;
+
+    private final Queue<Object> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sleeping = new AtomicBoolean(false);
+    private final Set<AsynchronousChannel> channels = ConcurrentHashMap.newKeySet();
+    private final Thread thread;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown = false;
+
+    // Only accessed by the ring thread
+    private final Map<Long,IoUringOperation> inFlight = new HashMap<>();
+    private final List<CloseTask> pendingCloses = new ArrayList<>();
+    private long nextUserData = FIRST_OPERATION_USER_DATA;
+    private boolean wakeupArmed = false;
+    private long shutdownStartNanos = 0;
+
+
+    IoUringChannelGroup(IoUringChannelProvider provider, Executor executor, int entries, String name)
+            throws IOException {
+        super(provider);
+        this.executor = executor;
+        ring = new IoUring(entries);
+        try {
+            eventFd = LinuxNative.eventfd();
+        } catch (IOException e) {
+            ring.close();
+            throw e;
+        }
+        Arena arena = Arena.ofAuto();
+        eventFdBuffer = arena.allocate(JAVA_LONG);
+        // One timespec per submission queue entry is always sufficient as the
+        // kernel copies the timespec when the entry is submitted
+        timespecCount = ring.getSqSpace();
+        timespecs = arena.allocate(16L * timespecCount, 8);
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    // ------------------------------------------------ AsynchronousChannelGroup
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        wakeup();
+    }
+
+
+    @Override
+    public void shutdownNow() throws IOException {
+        shutdown = true;
+        for (AsynchronousChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug(sm.getString("channelGroup.closeFail"), e);
+            }
+        }
+        wakeup();
+    }
+
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+
+    // --------------------------------------------------------- Channel support
+
+    void register(AsynchronousChannel channel) {
+        if (shutdown) {
+            throw new ShutdownChannelGroupException();
+        }
+        channels.add(channel);
+    }
+
+
+    /**
+     * Queue an operation for submission to the ring.
+     *
+     * @param operation The operation
+     */
+    void submit(IoUringOperation operation) {
+        tasks.offer(operation);
+        if (isTerminated()) {
+            // If the ring thread has not already failed the operation, do so
+            if (tasks.remove(operation)) {
+                operation.fail(new ShutdownChannelGroupException());
+            }
+            return;
+        }
+        wakeup();
+    }
+
+
+    /**
+     * Close a channel's file descriptor once any of the given operations that
+     * are in progress have been cancelled. The file descriptor is closed by
+     * the ring thread to ensure that it is not closed, and possibly re-used,
+     * between an operation for the channel being added to the submission queue
+     * and that entry being submitted.
+     *
+     * @param channel    The channel being closed
+     * @param fd         The file descriptor to close
+     * @param operations The operations to cancel
+     *
+     * @return A latch that will be released once the file descriptor has been
+     *             closed
+     */
+    CountDownLatch close(AsynchronousChannel channel, int fd, IoUringOperation... operations) {
+        CloseTask closeTask = new CloseTask(fd, operations);
+        channels.remove(channel);
+        tasks.offer(closeTask);
+        if (isTerminated()) {
+            // If the ring thread has not already closed the file descriptor, do so
+            if (tasks.remove(closeTask)) {
+                LinuxNative.close(fd);
+                closeTask.done.countDown();
+            }
+        } else {
+            wakeup();
+        }
+        return closeTask.done;
+    }
+
+
+    boolean isRingThread() {
+        return Thread.currentThread() == thread;
+    }
+
+
+    /**
+     * Execute a completion handler using the group's executor.
+     *
+     * @param task The task that will call the completion handler
+     */
+    void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The executor has been shutdown
+            if (log.isDebugEnabled()) {
+                log.debug(sm.getString("channelGroup.rejected"), e);
+            }
+        }
+    }
+
+
+    private void wakeup() {
+        if (Thread.currentThread() != thread && sleeping.compareAndSet(true, false)) {
+            LinuxNative.eventfdSignal(eventFd);
+        }
+    }
+
+
+    // -------------------------------------------------------------- Ring thread
+
+    @Override
+    public void run() {
+        try {
+            armWakeup();
+            while (true) {
+                processTasks();
+                if (shutdown) {
+                    if (shutdownStartNanos == 0) {
+                        shutdownStartNanos = System.nanoTime();
+                    }
+                    if (channels.isEmpty() && inFlight.isEmpty() && pendingCloses.isEmpty() && tasks.isEmpty()) {
+                        break;
+                    }
+                    if (System.nanoTime() - shutdownStartNanos > SHUTDOWN_TIMEOUT_NANOS) {
+                        log.warn(sm.getString("channelGroup.shutdownTimeout", Integer.toString(inFlight.size())));
+                        synchronized (abandoned) {
+                            abandoned.addAll(inFlight.values());
+                        }
+                        break;
+                    }
+                }
+                // Don't block if file descriptors are waiting to be closed or
+                // during shutdown as the completions that are expected may
+                // never arrive
+                int minComplete = shutdown || !pendingCloses.isEmpty() ? 0 : 1;
+                if (minComplete > 0) {
+                    sleeping.set(true);
+                    if (!tasks.isEmpty()) {
+                        sleeping.set(false);
+                        minComplete = 0;
+                    }
+                }
+                int result = ring.submit(minComplete);
+                sleeping.set(false);
+                if (result < 0 && !isTransient(result)) {
+                    log.error(sm.getString("channelGroup.enterFail", Integer.toString(-result)));
+                    break;
+                }
+                closePendingFileDescriptors();
+                if (ring.processCompletions(this::completed) == 0 && shutdown) {
+                    Thread.sleep(1);
+                }
+            }
+        } catch (Throwable t) {
+            ExceptionUtils.handleThrowable(t);
+            log.error(sm.getString("channelGroup.error"), t);
+        } finally {
+            terminate();
+        }
+    }
+
+
+    private void processTasks() {
+        Object task;
+        while ((task = tasks.poll()) != null) {
+            if (task instanceof CloseTask) {
+                CloseTask closeTask = (CloseTask) task;
+                for (IoUringOperation operation : closeTask.operations) {
+                    if (operation != null && operation.userData != 0 &&
+                            inFlight.containsKey(Long.valueOf(operation.userData))) {
+                        MemorySegment sqe = nextSqe(1);
+                        IoUring.prepare(sqe, IoUring.IORING_OP_ASYNC_CANCEL, -1, operation.userData, 0, 0,
+                                IGNORED_USER_DATA);
+                    }
+                }
+                pendingCloses.add(closeTask);
+            } else {
+                IoUringOperation operation = (IoUringOperation) task;
+                if (!operation.isChannelOpen()) {
+                    operation.fail(new AsynchronousCloseException());
+                    continue;
+                }
+                long timeoutNanos = operation.getTimeoutNanos();
+                MemorySegment sqe = nextSqe(timeoutNanos > 0 ? 2 : 1);
+                long userData = nextUserData++;
+                operation.userData = userData;
+                operation.prepare(sqe, userData);
+                inFlight.put(Long.valueOf(userData), operation);
+                if (timeoutNanos > 0) {
+                    IoUring.addFlags(sqe, IoUring.IOSQE_IO_LINK);
+                    MemorySegment timespec = timespecs.asSlice(16L * timespecIndex, 16);
+                    timespecIndex = (timespecIndex + 1) % timespecCount;
+                    timespec.set(JAVA_LONG, 0, timeoutNanos / 1_000_000_000L);
+                    timespec.set(JAVA_LONG, 8, timeoutNanos % 1_000_000_000L);
+                    IoUring.prepare(ring.getSqe(), IoUring.IORING_OP_LINK_TIMEOUT, -1, timespec.address(), 1, 0,
+                            IGNORED_USER_DATA);
+                }
+            }
+        }
+    }
+
+
+    /*
+     * Obtain a submission queue entry ensuring that there are at least the
+     * given number of consecutive entries available.
+     */
+    private MemorySegment nextSqe(int required) {
+        while (ring.getSqSpace() < required) {
+            int result = ring.submit(0);
+            if (result == -LinuxNative.EBUSY) {
+                ring.processCompletions(this::completed);
+            } else if (result < 0 && !isTransient(result)) {
+                throw new IllegalStateException(sm.getString("channelGroup.enterFail", Integer.toString(-result)));
+            }
+        }
+        return ring.getSqe();
+    }
+
+
+    private void armWakeup() {
+        MemorySegment sqe = nextSqe(1);
+        IoUring.prepare(sqe, IoUring.IORING_OP_READ, eventFd, eventFdBuffer.address(), 8, 0, WAKEUP_USER_DATA);
+        wakeupArmed = true;
+    }
+
+
+    private void completed(long userData, int res) {
+        if (userData == IGNORED_USER_DATA) {
+            return;
+        }
+        if (userData == WAKEUP_USER_DATA) {
+            wakeupArmed = false;
+            if (!shutdown) {
+                armWakeup();
+            }
+            return;
+        }
+        IoUringOperation operation = inFlight.remove(Long.valueOf(userData));
+        if (operation != null) {
+            try {
+                operation.complete(res);
+            } catch (Throwable t) {
+                ExceptionUtils.handleThrowable(t);
+                log.error(sm.getString("channelGroup.completionError"), t);
+            }
+        }
+    }
+
+
+    private void closePendingFileDescriptors() {
+        if (pendingCloses.isEmpty() || ring.getUnsubmitted() > 0) {
+            return;
+        }
+        for (CloseTask closeTask : pendingCloses) {
+            LinuxNative.close(closeTask.fd);
+            closeTask.done.countDown();
+        }
+        pendingCloses.clear();
+    }
+
+
+    private void terminate() {
+        try {
+            if (wakeupArmed) {
+                MemorySegment sqe = ring.getSqe();
+                if (sqe != null) {
+                    IoUring.prepare(sqe, IoUring.IORING_OP_ASYNC_CANCEL, -1, WAKEUP_USER_DATA, 0, 0,
+                            IGNORED_USER_DATA);
+                }
+                long start = System.nanoTime();
+                while (wakeupArmed && System.nanoTime() - start < SHUTDOWN_TIMEOUT_NANOS) {
+                    ring.submit(0);
+                    if (ring.processCompletions(this::completed) == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+                if (wakeupArmed) {
+                    synchronized (abandoned) {
+                        abandoned.add(eventFdBuffer);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            ExceptionUtils.handleThrowable(t);
+        }
+        // Any channels still pending closure
+        for (CloseTask closeTask : pendingCloses) {
+            LinuxNative.close(closeTask.fd);
+            closeTask.done.countDown();
+        }
+        pendingCloses.clear();
+        ring.close();
+        LinuxNative.close(eventFd);
+        terminated.countDown();
+        // Tasks queued after the ring thread stopped processing them. Any task
+        // queued after this point will be handled by the thread that queued it.
+        Object task;
+        while ((task = tasks.poll()) != null) {
+            if (task instanceof CloseTask) {
+                CloseTask closeTask = (CloseTask) task;
+                LinuxNative.close(closeTask.fd);
+                closeTask.done.countDown();
+            } else {
+                ((IoUringOperation) task).fail(new ShutdownChannelGroupException());
+            }
+        }
+    }
+
+
+    private static boolean isTransient(int result) {
+        return result == -LinuxNative.EINTR || result == -LinuxNative.EAGAIN || result == -LinuxNative.EBUSY;
+    }
+
+
+    private static final class CloseTask {
+        private final int fd;
+        private final IoUringOperation[] operations;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private CloseTask(int fd, IoUringOperation[] operations) {
+            this.fd = fd;
+            this.operations = operations;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.IllegalChannelGroupException;
+import java.nio.channels.spi.AsynchronousChannelProvider;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Provides asynchronous server socket channels, and the channels for the
+ * connections they accept, that perform I/O using io_uring. Only channel
+ * groups created with {@link #openChannelGroup(Executor, int, String)} are
+ * supported. Client socket channels are not supported.
+ */
+public final class IoUringChannelProvider extends AsynchronousChannelProvider {
+
+    private static final StringManager sm = StringManager.getManager(IoUringChannelProvider.class);
+
+    private static final IoUringChannelProvider INSTANCE = new IoUringChannelProvider();
+
+    private static final int DOMAIN;
+
+    static {
+        int domain = LinuxNative.AF_INET;
+        if (!Boolean.getBoolean("java.net.preferIPv4Stack")) {
+            try {
+                int fd = LinuxNative.socket(LinuxNative.AF_INET6);
+                LinuxNative.close(fd);
+                domain = LinuxNative.AF_INET6;
+            } catch (IOException | RuntimeException e) {
+                // IPv6 not available
+            }
+        }
+        DOMAIN = domain;
+    }
+
+
+    public static IoUringChannelProvider getInstance() {
+        return INSTANCE;
+    }
+
+
+    /**
+     * @return {@code true} if io_uring is available on the current platform
+     */
+    public static boolean isAvailable() {
+        try {
+            return IoUring.isAvailable();
+        } catch (Throwable t) {
+            // Typically an Error because native access is not available
+            return false;
+        }
+    }
+
+
+    /**
+     * @return The reason io_uring is unavailable or {@code null} if it is
+     *             available
+     */
+    public static String getUnavailableReason() {
+        try {
+            return IoUring.getUnavailableReason();
+        } catch (Throwable t) {
+            return t.toString();
+        }
+    }
+
+
+    static int getDomain() {
+        return DOMAIN;
+    }
+
+
+    private IoUringChannelProvider() {
+    }
+
+
+    /**
+     * Create a new channel group backed by a new io_uring instance.
+     *
+     * @param executor The executor used to execute completion handlers. The
+     *                     executor is not shutdown when the group terminates.
+     * @param entries  The number of submission queue entries for the ring
+     * @param name     The name of the thread that will own the ring
+     *
+     * @return The new channel group
+     *
+     * @throws IOException if the ring cannot be created
+     */
+    public AsynchronousChannelGroup openChannelGroup(Executor executor, int entries, String name)
+            throws IOException {
+        return new IoUringChannelGroup(this, executor, entries, name);
+    }
+
+
+    @Override
+    public AsynchronousChannelGroup openAsynchronousChannelGroup(int nThreads, ThreadFactory threadFactory)
+            throws IOException {
+        throw new UnsupportedOperationException(sm.getString("channelProvider.groupRequired"));
+    }
+
+
+    @Override
+    public AsynchronousChannelGroup openAsynchronousChannelGroup(ExecutorService executor, int initialSize)
+            throws IOException {
+        throw new UnsupportedOperationException(sm.getString("channelProvider.groupRequired"));
+    }
+
+
+    @Override
+    public AsynchronousServerSocketChannel openAsynchronousServerSocketChannel(AsynchronousChannelGroup group)
+            throws IOException {
+        if (!(group instanceof IoUringChannelGroup)) {
+            throw new IllegalChannelGroupException();
+        }
+        return new IoUringServerSocketChannel((IoUringChannelGroup) group);
+    }
+
+
+    @Override
+    public AsynchronousSocketChannel openAsynchronousSocketChannel(AsynchronousChannelGroup group)
+            throws IOException {
+        throw new UnsupportedOperationException(sm.getString("channelProvider.noClient"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.net.Nio2Endpoint;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * NIO2 endpoint that performs socket I/O using io_uring on Linux. All reads,
+ * writes and accepts for the endpoint's sockets are submitted to a single ring
+ * and the completions are processed by the endpoint's executor in the same way
+ * as for NIO2. If io_uring is not available, a warning is logged and the
+ * endpoint behaves exactly as the NIO2 endpoint.
+ */
+public class IoUringEndpoint extends Nio2Endpoint {
+
+    private static final Log log = LogFactory.getLog(IoUringEndpoint.class);
+    private static final StringManager sm = StringManager.getManager(IoUringEndpoint.class);
+
+
+    /**
+     * @return {@code true} if io_uring is available and the endpoint will use
+     *             it rather than falling back to NIO2
+     */
+    public static boolean isSupported() {
+        return IoUringChannelProvider.isAvailable();
+    }
+
+
+    // ----------------------------------------------------------------- Fields
+
+    /**
+     * The channel group when it was created with an external executor and
+     * therefore will not be shutdown by the NIO2 endpoint.
+     */
+    private volatile AsynchronousChannelGroup externalExecutorGroup = null;
+
+
+    // ------------------------------------------------------------- Properties
+
+    /**
+     * Number of submission queue entries requested for the ring.
+     */
+    private int ioUringEntries = 1024;
+    public void setIoUringEntries(int ioUringEntries) { this.ioUringEntries = ioUringEntries; }
+    public int getIoUringEntries() { return ioUringEntries; }
+
+
+    // ------------------------------------------------------ Protected Methods
+
+    @Override
+    protected AsynchronousChannelGroup createChannelGroup() throws IOException {
+        if (!isSupported()) {
+            log.warn(sm.getString("endpoint.fallback", getName(), IoUringChannelProvider.getUnavailableReason()));
+            return super.createChannelGroup();
+        }
+        AsynchronousChannelGroup group = IoUringChannelProvider.getInstance().openChannelGroup(getExecutor(),
+                getIoUringEntries(), getName() + "-IoUring");
+        if (!internalExecutor) {
+            externalExecutorGroup = group;
+        }
+        return group;
+    }
+
+
+    @Override
+    public void shutdownExecutor() {
+        super.shutdownExecutor();
+        AsynchronousChannelGroup group = externalExecutorGroup;
+        externalExecutorGroup = null;
+        if (group != null) {
+            try {
+                group.shutdownNow();
+            } catch (IOException e) {
+                log.warn(sm.getString("endpoint.groupShutdownFail", getName()), e);
+            }
+        }
+    }
+
+
+    @Override
+    protected Log getLog() {
+        return log;
+    }
+}
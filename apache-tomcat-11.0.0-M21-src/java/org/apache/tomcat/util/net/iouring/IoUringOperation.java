@@ -0,0 +1,132 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An I/O operation submitted to the ring of an {@link IoUringChannelGroup}.
+ * {@link #prepare(MemorySegment, long)} and {@link #complete(int)} are always
+ * called by the thread that owns the ring. Any native memory used by the
+ * operation must be referenced by the operation so that it remains valid until
+ * the operation completes.
+ */
+abstract class IoUringOperation {
+
+    private final long timeoutNanos;
+
+    /*
+     * Only accessed by the ring thread.
+     */
+    long userData;
+
+
+    IoUringOperation(long timeoutNanos) {
+        this.timeoutNanos = timeoutNanos;
+    }
+
+
+    /**
+     * @return The timeout for the operation in nanoseconds or zero for no
+     *             timeout
+     */
+    long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+
+    /**
+     * @return {@code true} if the channel the operation is for is still open.
+     *             Operations for closed channels are failed rather than
+     *             submitted.
+     */
+    abstract boolean isChannelOpen();
+
+
+    /**
+     * Initialise the submission queue entry for this operation.
+     *
+     * @param sqe      The zeroed entry
+     * @param userData The user data to associate with the entry
+     */
+    abstract void prepare(MemorySegment sqe, long userData);
+
+
+    /**
+     * Process the completion of this operation.
+     *
+     * @param res The result from the completion queue entry
+     */
+    abstract void complete(int res);
+
+
+    /**
+     * Fail this operation without it having been submitted to the kernel.
+     *
+     * @param t The cause of the failure
+     */
+    abstract void fail(Throwable t);
+
+
+    /**
+     * Holds the result notification target for an asynchronous operation which
+     * is either a {@link CompletionHandler} or a {@link CompletableFuture}.
+     *
+     * @param <V> The result type
+     * @param <A> The attachment type
+     */
+    static final class Callback<V,A> {
+
+        private final CompletionHandler<V,? super A> handler;
+        private final A attachment;
+        private final CompletableFuture<V> future;
+
+        Callback(CompletionHandler<V,? super A> handler, A attachment) {
+            this.handler = handler;
+            this.attachment = attachment;
+            this.future = null;
+        }
+
+        Callback(CompletableFuture<V> future) {
+            this.handler = null;
+            this.attachment = null;
+            this.future = future;
+        }
+
+        boolean isFuture() {
+            return future != null;
+        }
+
+        void completed(V result) {
+            if (future == null) {
+                handler.completed(result, attachment);
+            } else {
+                future.complete(result);
+            }
+        }
+
+        void failed(Throwable t) {
+            if (future == null) {
+                handler.failed(t, attachment);
+            } else {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AcceptPendingException;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NotYetBoundException;
+import java.nio.channels.UnsupportedAddressTypeException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Listening socket that accepts connections using io_uring.
+ */
+final class IoUringServerSocketChannel extends AsynchronousServerSocketChannel {
+
+    private static final StringManager sm = StringManager.getManager(IoUringServerSocketChannel.class);
+
+    private static final Set<SocketOption<?>> SUPPORTED_OPTIONS = Set.of(StandardSocketOptions.SO_RCVBUF,
+            StandardSocketOptions.SO_REUSEADDR, StandardSocketOptions.SO_REUSEPORT);
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 2;
+
+    private final IoUringChannelGroup group;
+    private final int domain;
+    private final int fd;
+    private final Object stateLock = new Object();
+    private final AtomicBoolean acceptPending = new AtomicBoolean(false);
+
+    private volatile boolean open = true;
+    private volatile InetSocketAddress localAddress;
+    private volatile AcceptOperation<?> pendingAccept;
+
+
+    IoUringServerSocketChannel(IoUringChannelGroup group) throws IOException {
+        super(group.provider());
+        this.group = group;
+        this.domain = IoUringChannelProvider.getDomain();
+        this.fd = LinuxNative.socket(domain);
+        try {
+            if (domain == LinuxNative.AF_INET6) {
+                // Dual stack
+                LinuxNative.setIntOption(fd, LinuxNative.IPPROTO_IPV6, LinuxNative.IPV6_V6ONLY, 0);
+            }
+            // Consistent with the JDK
+            LinuxNative.setIntOption(fd, LinuxNative.SOL_SOCKET, LinuxNative.SO_REUSEADDR, 1);
+            group.register(this);
+        } catch (IOException | RuntimeException e) {
+            LinuxNative.close(fd);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public AsynchronousServerSocketChannel bind(SocketAddress local, int backlog) throws IOException {
+        InetSocketAddress address;
+        if (local == null) {
+            address = new InetSocketAddress(0);
+        } else if (local instanceof InetSocketAddress) {
+            address = (InetSocketAddress) local;
+        } else {
+            throw new UnsupportedAddressTypeException();
+        }
+        synchronized (stateLock) {
+            ensureOpen();
+            if (localAddress != null) {
+                throw new AlreadyBoundException();
+            }
+            LinuxNative.bind(fd, domain, address);
+            LinuxNative.listen(fd, backlog < 1 ? 50 : backlog);
+            localAddress = LinuxNative.getsockname(fd);
+        }
+        return this;
+    }
+
+
+    @Override
+    public <T> AsynchronousServerSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        checkOption(name);
+        ensureOpen();
+        LinuxNative.setOption(fd, name, value);
+        return this;
+    }
+
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        checkOption(name);
+        ensureOpen();
+        return LinuxNative.getOption(fd, name);
+    }
+
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return SUPPORTED_OPTIONS;
+    }
+
+
+    @Override
+    public <A> void accept(A attachment, CompletionHandler<AsynchronousSocketChannel,? super A> handler) {
+        if (handler == null) {
+            throw new NullPointerException();
+        }
+        accept(new IoUringOperation.Callback<>(handler, attachment));
+    }
+
+
+    @Override
+    public Future<AsynchronousSocketChannel> accept() {
+        CompletableFuture<AsynchronousSocketChannel> future = new CompletableFuture<>();
+        accept(new IoUringOperation.Callback<>(future));
+        return future;
+    }
+
+
+    private <A> void accept(IoUringOperation.Callback<AsynchronousSocketChannel,A> callback) {
+        if (!open) {
+            callback.failed(new ClosedChannelException());
+            return;
+        }
+        if (localAddress == null) {
+            throw new NotYetBoundException();
+        }
+        if (!acceptPending.compareAndSet(false, true)) {
+            throw new AcceptPendingException();
+        }
+        AcceptOperation<A> operation = new AcceptOperation<>(callback);
+        pendingAccept = operation;
+        group.submit(operation);
+    }
+
+
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        ensureOpen();
+        return localAddress;
+    }
+
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        synchronized (stateLock) {
+            if (!open) {
+                return;
+            }
+            open = false;
+        }
+        if (localAddress != null) {
+            // Triggers the completion of any pending accept
+            try {
+                LinuxNative.shutdown(fd, LinuxNative.SHUT_RDWR);
+            } catch (IOException ignore) {
+                // Not listening
+            }
+        }
+        CountDownLatch closed = group.close(this, fd, pendingAccept);
+        if (!group.isRingThread()) {
+            try {
+                closed.await(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+
+    private static void checkOption(SocketOption<?> name) {
+        if (!SUPPORTED_OPTIONS.contains(name)) {
+            throw new UnsupportedOperationException(sm.getString("linuxNative.unsupportedOption", name.name()));
+        }
+    }
+
+
+    private final class AcceptOperation<A> extends IoUringOperation {
+
+        private final IoUringOperation.Callback<AsynchronousSocketChannel,A> callback;
+        private final MemorySegment sockaddr;
+
+        private AcceptOperation(IoUringOperation.Callback<AsynchronousSocketChannel,A> callback) {
+            super(0);
+            this.callback = callback;
+            // sockaddr followed by its length
+            sockaddr = Arena.ofAuto().allocate(LinuxNative.SOCKADDR_SIZE + 8, 8);
+        }
+
+        @Override
+        boolean isChannelOpen() {
+            return open;
+        }
+
+        @Override
+        void prepare(MemorySegment sqe, long userData) {
+            MemorySegment length = sockaddr.asSlice(LinuxNative.SOCKADDR_SIZE, 4);
+            length.set(JAVA_INT, 0, LinuxNative.SOCKADDR_SIZE);
+            IoUring.prepare(sqe, IoUring.IORING_OP_ACCEPT, fd, sockaddr.address(), 0, length.address(), userData);
+            IoUring.setOpFlags(sqe, LinuxNative.SOCK_CLOEXEC);
+        }
+
+        @Override
+        void complete(int res) {
+            if (res < 0) {
+                if (open) {
+                    fail(LinuxNative.newException("accept", -res));
+                } else {
+                    fail(new AsynchronousCloseException());
+                }
+                return;
+            }
+            if (!open) {
+                LinuxNative.close(res);
+                fail(new AsynchronousCloseException());
+                return;
+            }
+            IoUringSocketChannel channel;
+            try {
+                channel = new IoUringSocketChannel(group, res, LinuxNative.readSockAddr(sockaddr));
+            } catch (IOException | RuntimeException e) {
+                LinuxNative.close(res);
+                fail(e);
+                return;
+            }
+            pendingAccept = null;
+            acceptPending.set(false);
+            if (callback.isFuture()) {
+                callback.completed(channel);
+            } else {
+                group.execute(() -> callback.completed(channel));
+            }
+        }
+
+        @Override
+        void fail(Throwable t) {
+            pendingAccept = null;
+            acceptPending.set(false);
+            if (callback.isFuture()) {
+                callback.failed(t);
+            } else {
+                group.execute(() -> callback.failed(t));
+            }
+        }
+    }
+}
@@ -0,0 +1,604 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AlreadyBoundException;
+import java.nio.channels.AlreadyConnectedException;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.WritePendingException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Connected socket that reads and writes using io_uring. Instances are only
+ * created by accepting connections with an {@link IoUringServerSocketChannel}.
+ * <p>
+ * Reads from and writes to a single direct buffer are performed directly
+ * between the socket and the buffer. Other buffers are copied via a native
+ * buffer owned by the channel. Writes are attempted immediately by the calling
+ * thread and are only submitted to the ring if the socket is not writable.
+ */
+final class IoUringSocketChannel extends AsynchronousSocketChannel {
+
+    private static final StringManager sm = StringManager.getManager(IoUringSocketChannel.class);
+
+    private static final Set<SocketOption<?>> SUPPORTED_OPTIONS = Set.of(StandardSocketOptions.SO_RCVBUF,
+            StandardSocketOptions.SO_SNDBUF, StandardSocketOptions.SO_KEEPALIVE, StandardSocketOptions.SO_REUSEADDR,
+            StandardSocketOptions.SO_LINGER, StandardSocketOptions.TCP_NODELAY);
+
+    /*
+     * The maximum number of bytes transferred by a single read or write of
+     * buffers that are not direct or of multiple buffers.
+     */
+    private static final int MAX_COPY_SIZE = 64 * 1024;
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 2;
+
+    private final IoUringChannelGroup group;
+    private final int fd;
+    private final InetSocketAddress remoteAddress;
+    private final Object stateLock = new Object();
+    private final AtomicBoolean readPending = new AtomicBoolean(false);
+    private final AtomicBoolean writePending = new AtomicBoolean(false);
+
+    private volatile boolean open = true;
+    private volatile boolean inputShutdown = false;
+    private volatile boolean outputShutdown = false;
+    private volatile IoUringOperation pendingRead;
+    private volatile IoUringOperation pendingWrite;
+
+    // Only accessed by the thread that has the read or write pending
+    private MemorySegment readCopyBuffer;
+    private MemorySegment writeCopyBuffer;
+
+
+    IoUringSocketChannel(IoUringChannelGroup group, int fd, InetSocketAddress remoteAddress) {
+        super(group.provider());
+        this.group = group;
+        this.fd = fd;
+        this.remoteAddress = remoteAddress;
+        group.register(this);
+    }
+
+
+    @Override
+    public AsynchronousSocketChannel bind(SocketAddress local) throws IOException {
+        ensureOpen();
+        throw new AlreadyBoundException();
+    }
+
+
+    @Override
+    public <T> AsynchronousSocketChannel setOption(SocketOption<T> name, T value) throws IOException {
+        checkOption(name);
+        ensureOpen();
+        LinuxNative.setOption(fd, name, value);
+        return this;
+    }
+
+
+    @Override
+    public <T> T getOption(SocketOption<T> name) throws IOException {
+        checkOption(name);
+        ensureOpen();
+        return LinuxNative.getOption(fd, name);
+    }
+
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return SUPPORTED_OPTIONS;
+    }
+
+
+    @Override
+    public AsynchronousSocketChannel shutdownInput() throws IOException {
+        synchronized (stateLock) {
+            ensureOpen();
+            if (!inputShutdown) {
+                LinuxNative.shutdown(fd, LinuxNative.SHUT_RD);
+                inputShutdown = true;
+            }
+        }
+        return this;
+    }
+
+
+    @Override
+    public AsynchronousSocketChannel shutdownOutput() throws IOException {
+        synchronized (stateLock) {
+            ensureOpen();
+            if (!outputShutdown) {
+                LinuxNative.shutdown(fd, LinuxNative.SHUT_WR);
+                outputShutdown = true;
+            }
+        }
+        return this;
+    }
+
+
+    @Override
+    public SocketAddress getRemoteAddress() throws IOException {
+        ensureOpen();
+        return remoteAddress;
+    }
+
+
+    @Override
+    public SocketAddress getLocalAddress() throws IOException {
+        ensureOpen();
+        return LinuxNative.getsockname(fd);
+    }
+
+
+    @Override
+    public <A> void connect(SocketAddress remote, A attachment, CompletionHandler<Void,? super A> handler) {
+        throw new AlreadyConnectedException();
+    }
+
+
+    @Override
+    public Future<Void> connect(SocketAddress remote) {
+        throw new AlreadyConnectedException();
+    }
+
+
+    // -------------------------------------------------------------------- Read
+
+    @Override
+    public <A> void read(ByteBuffer dst, long timeout, TimeUnit unit, A attachment,
+            CompletionHandler<Integer,? super A> handler) {
+        if (handler == null) {
+            throw new NullPointerException();
+        }
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException(sm.getString("socketChannel.readOnly"));
+        }
+        read(new ByteBuffer[] { dst }, 0, 1, toNanos(timeout, unit), new IoUringOperation.Callback<>(handler, attachment),
+                false);
+    }
+
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException(sm.getString("socketChannel.readOnly"));
+        }
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        read(new ByteBuffer[] { dst }, 0, 1, 0, new IoUringOperation.Callback<>(future), false);
+        return future;
+    }
+
+
+    @Override
+    public <A> void read(ByteBuffer[] dsts, int offset, int length, long timeout, TimeUnit unit, A attachment,
+            CompletionHandler<Long,? super A> handler) {
+        if (handler == null) {
+            throw new NullPointerException();
+        }
+        if (offset < 0 || length < 0 || offset > dsts.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int i = offset; i < offset + length; i++) {
+            if (dsts[i].isReadOnly()) {
+                throw new IllegalArgumentException(sm.getString("socketChannel.readOnly"));
+            }
+        }
+        read(dsts, offset, length, toNanos(timeout, unit), new IoUringOperation.Callback<>(handler, attachment), true);
+    }
+
+
+    private <V extends Number,A> void read(ByteBuffer[] dsts, int offset, int length, long timeoutNanos,
+            IoUringOperation.Callback<V,A> callback, boolean scattering) {
+        if (!open) {
+            callback.failed(new ClosedChannelException());
+            return;
+        }
+        if (!readPending.compareAndSet(false, true)) {
+            throw new ReadPendingException();
+        }
+        ReadOperation<V,A> operation = new ReadOperation<>(dsts, offset, length, timeoutNanos, callback, scattering);
+        if (inputShutdown) {
+            operation.done(-1);
+            return;
+        }
+        if (operation.requested == 0) {
+            operation.done(0);
+            return;
+        }
+        pendingRead = operation;
+        group.submit(operation);
+    }
+
+
+    // ------------------------------------------------------------------- Write
+
+    @Override
+    public <A> void write(ByteBuffer src, long timeout, TimeUnit unit, A attachment,
+            CompletionHandler<Integer,? super A> handler) {
+        if (handler == null) {
+            throw new NullPointerException();
+        }
+        write(new ByteBuffer[] { src }, 0, 1, toNanos(timeout, unit), new IoUringOperation.Callback<>(handler, attachment),
+                false);
+    }
+
+
+    @Override
+    public Future<Integer> write(ByteBuffer src) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        write(new ByteBuffer[] { src }, 0, 1, 0, new IoUringOperation.Callback<>(future), false);
+        return future;
+    }
+
+
+    @Override
+    public <A> void write(ByteBuffer[] srcs, int offset, int length, long timeout, TimeUnit unit, A attachment,
+            CompletionHandler<Long,? super A> handler) {
+        if (handler == null) {
+            throw new NullPointerException();
+        }
+        if (offset < 0 || length < 0 || offset > srcs.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        write(srcs, offset, length, toNanos(timeout, unit), new IoUringOperation.Callback<>(handler, attachment), true);
+    }
+
+
+    private <V extends Number,A> void write(ByteBuffer[] srcs, int offset, int length, long timeoutNanos,
+            IoUringOperation.Callback<V,A> callback, boolean gathering) {
+        if (!open) {
+            callback.failed(new ClosedChannelException());
+            return;
+        }
+        if (!writePending.compareAndSet(false, true)) {
+            throw new WritePendingException();
+        }
+        WriteOperation<V,A> operation = new WriteOperation<>(srcs, offset, length, timeoutNanos, callback, gathering);
+        if (outputShutdown) {
+            operation.fail(new ClosedChannelException());
+            return;
+        }
+        if (operation.requested == 0) {
+            operation.done(0);
+            return;
+        }
+        /*
+         * Like the JDK's implementation, try to write immediately and only
+         * use the ring if the socket is not writable. This saves a hand-off to
+         * the ring thread for most writes and ensures data written just before
+         * the channel is closed is not lost.
+         */
+        int sent;
+        synchronized (stateLock) {
+            if (!open) {
+                operation.fail(new AsynchronousCloseException());
+                return;
+            }
+            // Holding the lock prevents the file descriptor being closed
+            sent = LinuxNative.sendNonBlocking(fd, operation.segment, operation.requested);
+        }
+        if (sent >= 0) {
+            operation.done(operation.transferred(sent));
+        } else if (sent == -LinuxNative.EAGAIN || sent == -LinuxNative.EINTR) {
+            pendingWrite = operation;
+            group.submit(operation);
+        } else {
+            operation.fail(LinuxNative.newException(operation.getOperationName(), -sent));
+        }
+    }
+
+
+    // ----------------------------------------------------------------- Closing
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        synchronized (stateLock) {
+            if (!open) {
+                return;
+            }
+            open = false;
+        }
+        CountDownLatch closed = group.close(this, fd, pendingRead, pendingWrite);
+        if (!group.isRingThread()) {
+            try {
+                closed.await(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+
+    private static void checkOption(SocketOption<?> name) {
+        if (!SUPPORTED_OPTIONS.contains(name)) {
+            throw new UnsupportedOperationException(sm.getString("linuxNative.unsupportedOption", name.name()));
+        }
+    }
+
+
+    /*
+     * A timeout of zero or less, or one too large to represent in nanoseconds,
+     * means no timeout.
+     */
+    private static long toNanos(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            return 0;
+        }
+        long nanos = unit.toNanos(timeout);
+        if (nanos == Long.MAX_VALUE) {
+            return 0;
+        }
+        return nanos;
+    }
+
+
+    private static int remaining(ByteBuffer[] buffers, int offset, int length) {
+        long remaining = 0;
+        for (int i = offset; i < offset + length; i++) {
+            remaining += buffers[i].remaining();
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+
+    private static MemorySegment copyBuffer(MemorySegment current, int required) {
+        if (current == null || current.byteSize() < required) {
+            // The channel holds the only reference so the memory is released
+            // once the channel and any operation using it are unreachable
+            return Arena.ofAuto().allocate(required, 8);
+        }
+        return current;
+    }
+
+
+    // -------------------------------------------------------------- Operations
+
+    private abstract class TransferOperation<V extends Number,A> extends IoUringOperation {
+
+        protected final ByteBuffer[] buffers;
+        protected final int offset;
+        protected final int length;
+        protected final IoUringOperation.Callback<V,A> callback;
+        protected final boolean multiple;
+        protected final int requested;
+
+        /*
+         * For a single direct buffer, the buffer is used directly and this is
+         * a view of the remaining bytes. Otherwise, the copy buffer.
+         */
+        protected MemorySegment segment;
+        protected boolean copy;
+
+        TransferOperation(ByteBuffer[] buffers, int offset, int length, long timeoutNanos,
+                IoUringOperation.Callback<V,A> callback, boolean multiple) {
+            super(timeoutNanos);
+            this.buffers = buffers;
+            this.offset = offset;
+            this.length = length;
+            this.callback = callback;
+            this.multiple = multiple;
+            if (length == 1 && buffers[offset].isDirect()) {
+                requested = buffers[offset].remaining();
+                segment = MemorySegment.ofBuffer(buffers[offset]);
+                copy = false;
+            } else {
+                requested = Math.min(remaining(buffers, offset, length), MAX_COPY_SIZE);
+                copy = true;
+            }
+        }
+
+        @Override
+        boolean isChannelOpen() {
+            return open;
+        }
+
+        @Override
+        void complete(int res) {
+            if (res < 0) {
+                if (!open) {
+                    fail(new AsynchronousCloseException());
+                } else if (res == -LinuxNative.ECANCELED && getTimeoutNanos() > 0) {
+                    fail(new InterruptedByTimeoutException());
+                } else {
+                    fail(LinuxNative.newException(getOperationName(), -res));
+                }
+                return;
+            }
+            done(transferred(res));
+        }
+
+        /*
+         * Update the buffers following a successful transfer.
+         */
+        abstract int transferred(int res);
+
+        abstract String getOperationName();
+
+        abstract void clearPending();
+
+        @SuppressWarnings("unchecked")
+        void done(int result) {
+            clearPending();
+            V value;
+            if (multiple) {
+                value = (V) Long.valueOf(result);
+            } else {
+                value = (V) Integer.valueOf(result);
+            }
+            if (callback.isFuture()) {
+                callback.completed(value);
+            } else {
+                group.execute(() -> callback.completed(value));
+            }
+        }
+
+        @Override
+        void fail(Throwable t) {
+            clearPending();
+            if (callback.isFuture()) {
+                callback.failed(t);
+            } else {
+                group.execute(() -> callback.failed(t));
+            }
+        }
+    }
+
+
+    private final class ReadOperation<V extends Number,A> extends TransferOperation<V,A> {
+
+        ReadOperation(ByteBuffer[] buffers, int offset, int length, long timeoutNanos,
+                IoUringOperation.Callback<V,A> callback, boolean multiple) {
+            super(buffers, offset, length, timeoutNanos, callback, multiple);
+            if (copy && requested > 0) {
+                readCopyBuffer = copyBuffer(readCopyBuffer, requested);
+                segment = readCopyBuffer;
+            }
+        }
+
+        @Override
+        void prepare(MemorySegment sqe, long userData) {
+            IoUring.prepare(sqe, IoUring.IORING_OP_RECV, fd, segment.address(), requested, 0, userData);
+        }
+
+        @Override
+        int transferred(int res) {
+            if (res == 0) {
+                // End of stream
+                return -1;
+            }
+            if (copy) {
+                int copied = 0;
+                for (int i = offset; i < offset + length && copied < res; i++) {
+                    ByteBuffer buffer = buffers[i];
+                    int count = Math.min(buffer.remaining(), res - copied);
+                    if (buffer.hasArray()) {
+                        MemorySegment.copy(segment, JAVA_BYTE, copied, buffer.array(),
+                                buffer.arrayOffset() + buffer.position(), count);
+                    } else {
+                        MemorySegment.ofBuffer(buffer).copyFrom(segment.asSlice(copied, count));
+                    }
+                    buffer.position(buffer.position() + count);
+                    copied += count;
+                }
+            } else {
+                ByteBuffer buffer = buffers[offset];
+                buffer.position(buffer.position() + res);
+            }
+            return res;
+        }
+
+        @Override
+        String getOperationName() {
+            return "recv";
+        }
+
+        @Override
+        void clearPending() {
+            pendingRead = null;
+            readPending.set(false);
+        }
+    }
+
+
+    private final class WriteOperation<V extends Number,A> extends TransferOperation<V,A> {
+
+        WriteOperation(ByteBuffer[] buffers, int offset, int length, long timeoutNanos,
+                IoUringOperation.Callback<V,A> callback, boolean multiple) {
+            super(buffers, offset, length, timeoutNanos, callback, multiple);
+            if (copy && requested > 0) {
+                writeCopyBuffer = copyBuffer(writeCopyBuffer, requested);
+                segment = writeCopyBuffer;
+                int copied = 0;
+                for (int i = offset; i < offset + length && copied < requested; i++) {
+                    ByteBuffer buffer = buffers[i];
+                    int count = Math.min(buffer.remaining(), requested - copied);
+                    if (buffer.hasArray()) {
+                        MemorySegment.copy(buffer.array(), buffer.arrayOffset() + buffer.position(), segment,
+                                JAVA_BYTE, copied, count);
+                    } else {
+                        segment.asSlice(copied, count).copyFrom(MemorySegment.ofBuffer(buffer).asSlice(0, count));
+                    }
+                    copied += count;
+                }
+            }
+        }
+
+        @Override
+        void prepare(MemorySegment sqe, long userData) {
+            IoUring.prepare(sqe, IoUring.IORING_OP_SEND, fd, segment.address(), requested, 0, userData);
+            IoUring.setOpFlags(sqe, LinuxNative.MSG_NOSIGNAL);
+        }
+
+        @Override
+        int transferred(int res) {
+            int remaining = res;
+            for (int i = offset; i < offset + length && remaining > 0; i++) {
+                ByteBuffer buffer = buffers[i];
+                int count = Math.min(buffer.remaining(), remaining);
+                buffer.position(buffer.position() + count);
+                remaining -= count;
+            }
+            return res;
+        }
+
+        @Override
+        String getOperationName() {
+            return "send";
+        }
+
+        @Override
+        void clearPending() {
+            pendingWrite = null;
+            writePending.set(false);
+        }
+    }
+}
@@ -0,0 +1,678 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net.iouring;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.invoke.MethodHandle;
+import java.net.BindException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * The small subset of the Linux system call interface required by the
+ * io_uring channel implementation, accessed via the FFM API. The constants are
+ * the values used by the x86_64 and aarch64 architectures which are the only
+ * architectures for which io_uring support is enabled.
+ */
+final class LinuxNative {
+
+    private static final StringManager sm = StringManager.getManager(LinuxNative.class);
+
+    static final int AF_INET = 2;
+    static final int AF_INET6 = 10;
+    static final int SOCK_STREAM = 1;
+    static final int SOCK_CLOEXEC = 02000000;
+    static final int EFD_CLOEXEC = 02000000;
+
+    static final int SOL_SOCKET = 1;
+    static final int SO_REUSEADDR = 2;
+    static final int SO_SNDBUF = 7;
+    static final int SO_RCVBUF = 8;
+    static final int SO_KEEPALIVE = 9;
+    static final int SO_LINGER = 13;
+    static final int SO_REUSEPORT = 15;
+    static final int IPPROTO_TCP = 6;
+    static final int TCP_NODELAY = 1;
+    static final int IPPROTO_IPV6 = 41;
+    static final int IPV6_V6ONLY = 26;
+
+    static final int SHUT_RD = 0;
+    static final int SHUT_WR = 1;
+    static final int SHUT_RDWR = 2;
+
+    static final int MSG_DONTWAIT = 0x40;
+    static final int MSG_NOSIGNAL = 0x4000;
+
+    static final int PROT_READ = 0x1;
+    static final int PROT_WRITE = 0x2;
+    static final int MAP_SHARED = 0x1;
+    static final int MAP_POPULATE = 0x8000;
+
+    static final int EINTR = 4;
+    static final int EAGAIN = 11;
+    static final int EBUSY = 16;
+    static final int EINVAL = 22;
+    static final int ETIME = 62;
+    static final int ECONNABORTED = 103;
+    static final int ECANCELED = 125;
+
+    /*
+     * Large enough for both sockaddr_in and sockaddr_in6
+     */
+    static final int SOCKADDR_SIZE = 128;
+
+    private static final long SYS_IO_URING_SETUP = 425;
+    private static final long SYS_IO_URING_ENTER = 426;
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final StructLayout CAPTURE_STATE_LAYOUT = Linker.Option.captureStateLayout();
+    private static final long ERRNO_OFFSET =
+            CAPTURE_STATE_LAYOUT.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+    private static final Linker.Option CAPTURE_ERRNO = Linker.Option.captureCallState("errno");
+
+    private static final MethodHandle SYSCALL2 = downcall("syscall",
+            FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG),
+            CAPTURE_ERRNO, Linker.Option.firstVariadicArg(1));
+    private static final MethodHandle SYSCALL6 = downcall("syscall",
+            FunctionDescriptor.of(JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG, JAVA_LONG,
+                    JAVA_LONG),
+            CAPTURE_ERRNO, Linker.Option.firstVariadicArg(1));
+    private static final MethodHandle MMAP = downcall("mmap",
+            FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_LONG, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_LONG),
+            CAPTURE_ERRNO);
+    private static final MethodHandle MUNMAP = downcall("munmap",
+            FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG));
+    private static final MethodHandle EVENTFD = downcall("eventfd",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT), CAPTURE_ERRNO);
+    private static final MethodHandle WRITE = downcall("write",
+            FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG));
+    private static final MethodHandle CLOSE = downcall("close",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+    private static final MethodHandle SOCKET = downcall("socket",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT), CAPTURE_ERRNO);
+    private static final MethodHandle BIND = downcall("bind",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), CAPTURE_ERRNO);
+    private static final MethodHandle LISTEN = downcall("listen",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT), CAPTURE_ERRNO);
+    private static final MethodHandle SEND = downcall("send",
+            FunctionDescriptor.of(JAVA_LONG, JAVA_INT, ADDRESS, JAVA_LONG, JAVA_INT), CAPTURE_ERRNO);
+    private static final MethodHandle SHUTDOWN = downcall("shutdown",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT), CAPTURE_ERRNO);
+    private static final MethodHandle GETSOCKNAME = downcall("getsockname",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, ADDRESS), CAPTURE_ERRNO);
+    private static final MethodHandle SETSOCKOPT = downcall("setsockopt",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), CAPTURE_ERRNO);
+    private static final MethodHandle GETSOCKOPT = downcall("getsockopt",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS), CAPTURE_ERRNO);
+
+    /*
+     * The value written to an eventfd to wake up a thread blocked reading it.
+     * Only ever read by the kernel so it is safe to share between threads.
+     */
+    private static final MemorySegment EVENTFD_INCREMENT = Arena.global().allocate(JAVA_LONG);
+    static {
+        EVENTFD_INCREMENT.set(JAVA_LONG, 0, 1L);
+    }
+
+
+    private LinuxNative() {
+        // Utility class
+    }
+
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+        MemorySegment symbol = LINKER.defaultLookup().find(name).orElseThrow(
+                () -> new UnsatisfiedLinkError(sm.getString("linuxNative.noSymbol", name)));
+        return LINKER.downcallHandle(symbol, descriptor, options);
+    }
+
+
+    static MemorySegment allocateCaptureState(Arena arena) {
+        return arena.allocate(CAPTURE_STATE_LAYOUT);
+    }
+
+
+    static int errno(MemorySegment captureState) {
+        return captureState.get(JAVA_INT, ERRNO_OFFSET);
+    }
+
+
+    static IOException newException(String operation, int errno) {
+        String message = sm.getString("linuxNative.error", operation, errorDescription(errno),
+                Integer.toString(errno));
+        switch (errno) {
+            case 98:
+            case 99:
+                return new BindException(message);
+            default:
+                return new SocketException(message);
+        }
+    }
+
+
+    /*
+     * strerror() is avoided as the FFM API for reading native strings differs
+     * between Java versions. These are the errors that are likely to be seen
+     * while processing network connections.
+     */
+    private static String errorDescription(int errno) {
+        switch (errno) {
+            case 1: return "Operation not permitted";
+            case 9: return "Bad file descriptor";
+            case EAGAIN: return "Resource temporarily unavailable";
+            case 12: return "Cannot allocate memory";
+            case 13: return "Permission denied";
+            case EINVAL: return "Invalid argument";
+            case 24: return "Too many open files";
+            case 32: return "Broken pipe";
+            case 38: return "Function not implemented";
+            case 98: return "Address already in use";
+            case 99: return "Cannot assign requested address";
+            case ECONNABORTED: return "Software caused connection abort";
+            case 104: return "Connection reset by peer";
+            case 107: return "Transport endpoint is not connected";
+            case 110: return "Connection timed out";
+            case ECANCELED: return "Operation canceled";
+            default: return "Unknown error";
+        }
+    }
+
+
+    // ---------------------------------------------------------------- io_uring
+
+    /**
+     * Calls io_uring_setup.
+     *
+     * @param entries The requested number of submission queue entries
+     * @param params  The io_uring_params structure
+     *
+     * @return The io_uring file descriptor
+     *
+     * @throws IOException if the system call fails
+     */
+    static int ioUringSetup(int entries, MemorySegment params) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            long result = (long) SYSCALL2.invokeExact(state, SYS_IO_URING_SETUP, (long) entries, params.address());
+            if (result < 0) {
+                throw newException("io_uring_setup", errno(state));
+            }
+            return (int) result;
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    /**
+     * Calls io_uring_enter.
+     *
+     * @param fd           The io_uring file descriptor
+     * @param toSubmit     The number of submission queue entries to submit
+     * @param minComplete  The number of completions to wait for
+     * @param flags        The io_uring_enter flags
+     * @param captureState The segment to capture errno in
+     *
+     * @return The number of entries submitted or minus errno on failure
+     */
+    static int ioUringEnter(int fd, int toSubmit, int minComplete, int flags, MemorySegment captureState) {
+        try {
+            long result = (long) SYSCALL6.invokeExact(captureState, SYS_IO_URING_ENTER, (long) fd, (long) toSubmit,
+                    (long) minComplete, (long) flags, 0L, 0L);
+            if (result < 0) {
+                return -errno(captureState);
+            }
+            return (int) result;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+
+    static MemorySegment mmap(long length, int fd, long offset) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            MemorySegment result = (MemorySegment) MMAP.invokeExact(state, MemorySegment.NULL, length,
+                    PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, fd, offset);
+            if (result.address() == -1L) {
+                throw newException("mmap", errno(state));
+            }
+            return result.reinterpret(length);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    static void munmap(MemorySegment segment) {
+        try {
+            @SuppressWarnings("unused")
+            int result = (int) MUNMAP.invokeExact(segment, segment.byteSize());
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+
+    // ----------------------------------------------------------------- eventfd
+
+    static int eventfd() throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            int result = (int) EVENTFD.invokeExact(state, 0, EFD_CLOEXEC);
+            if (result < 0) {
+                throw newException("eventfd", errno(state));
+            }
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    static void eventfdSignal(int fd) {
+        try {
+            @SuppressWarnings("unused")
+            long result = (long) WRITE.invokeExact(fd, EVENTFD_INCREMENT, 8L);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+
+    static void close(int fd) {
+        try {
+            @SuppressWarnings("unused")
+            int result = (int) CLOSE.invokeExact(fd);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+
+    // ----------------------------------------------------------------- Sockets
+
+    static int socket(int domain) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            int result = (int) SOCKET.invokeExact(state, domain, SOCK_STREAM | SOCK_CLOEXEC, 0);
+            if (result < 0) {
+                throw newException("socket", errno(state));
+            }
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    static void bind(int fd, int domain, InetSocketAddress address) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            MemorySegment sockaddr = arena.allocate(SOCKADDR_SIZE, 8);
+            int length = writeSockAddr(sockaddr, domain, address);
+            int result = (int) BIND.invokeExact(state, fd, sockaddr, length);
+            if (result < 0) {
+                throw newException("bind", errno(state));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    static void listen(int fd, int backlog) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            int result = (int) LISTEN.invokeExact(state, fd, backlog);
+            if (result < 0) {
+                throw newException("listen", errno(state));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    /**
+     * Send without blocking and without raising SIGPIPE.
+     *
+     * @param fd     The socket
+     * @param buffer The data to send
+     * @param length The number of bytes to send
+     *
+     * @return The number of bytes sent or minus errno on failure
+     */
+    static int sendNonBlocking(int fd, MemorySegment buffer, int length) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            long result = (long) SEND.invokeExact(state, fd, buffer, (long) length, MSG_DONTWAIT | MSG_NOSIGNAL);
+            if (result < 0) {
+                return -errno(state);
+            }
+            return (int) result;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+
+    static void shutdown(int fd, int how) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            int result = (int) SHUTDOWN.invokeExact(state, fd, how);
+            if (result < 0) {
+                throw newException("shutdown", errno(state));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    static InetSocketAddress getsockname(int fd) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            MemorySegment sockaddr = arena.allocate(SOCKADDR_SIZE, 8);
+            MemorySegment length = arena.allocate(JAVA_INT);
+            length.set(JAVA_INT, 0, SOCKADDR_SIZE);
+            int result = (int) GETSOCKNAME.invokeExact(state, fd, sockaddr, length);
+            if (result < 0) {
+                throw newException("getsockname", errno(state));
+            }
+            return readSockAddr(sockaddr);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    private static void setsockopt(int fd, int level, int name, MemorySegment value) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            int result = (int) SETSOCKOPT.invokeExact(state, fd, level, name, value, (int) value.byteSize());
+            if (result < 0) {
+                throw newException("setsockopt", errno(state));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    private static void getsockopt(int fd, int level, int name, MemorySegment value) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = allocateCaptureState(arena);
+            MemorySegment length = arena.allocate(JAVA_INT);
+            length.set(JAVA_INT, 0, (int) value.byteSize());
+            int result = (int) GETSOCKOPT.invokeExact(state, fd, level, name, value, length);
+            if (result < 0) {
+                throw newException("getsockopt", errno(state));
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IOException(t);
+        }
+    }
+
+
+    static void setIntOption(int fd, int level, int name, int value) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment segment = arena.allocate(JAVA_INT);
+            segment.set(JAVA_INT, 0, value);
+            setsockopt(fd, level, name, segment);
+        }
+    }
+
+
+    static int getIntOption(int fd, int level, int name) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment segment = arena.allocate(JAVA_INT);
+            getsockopt(fd, level, name, segment);
+            return segment.get(JAVA_INT, 0);
+        }
+    }
+
+
+    /**
+     * Sets one of the standard socket options supported by the io_uring
+     * channels.
+     *
+     * @param <T>   The type of the option value
+     * @param fd    The socket file descriptor
+     * @param name  The option
+     * @param value The new value
+     *
+     * @throws IOException if the option could not be set
+     */
+    static <T> void setOption(int fd, SocketOption<T> name, T value) throws IOException {
+        if (value == null) {
+            throw new IllegalArgumentException(sm.getString("linuxNative.nullOptionValue", name.name()));
+        }
+        if (name == StandardSocketOptions.SO_LINGER) {
+            int linger = ((Integer) value).intValue();
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment segment = arena.allocate(8, 4);
+                segment.set(JAVA_INT, 0, linger < 0 ? 0 : 1);
+                segment.set(JAVA_INT, 4, linger < 0 ? 0 : linger);
+                setsockopt(fd, SOL_SOCKET, SO_LINGER, segment);
+            }
+            return;
+        }
+        int[] levelAndName = levelAndName(name);
+        int intValue;
+        if (value instanceof Boolean) {
+            intValue = ((Boolean) value).booleanValue() ? 1 : 0;
+        } else {
+            intValue = ((Integer) value).intValue();
+        }
+        setIntOption(fd, levelAndName[0], levelAndName[1], intValue);
+    }
+
+
+    /**
+     * Obtains the value of one of the standard socket options supported by the
+     * io_uring channels.
+     *
+     * @param <T>  The type of the option value
+     * @param fd   The socket file descriptor
+     * @param name The option
+     *
+     * @return The current value
+     *
+     * @throws IOException if the option could not be read
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T getOption(int fd, SocketOption<T> name) throws IOException {
+        if (name == StandardSocketOptions.SO_LINGER) {
+            try (Arena arena = Arena.ofConfined()) {
+                MemorySegment segment = arena.allocate(8, 4);
+                getsockopt(fd, SOL_SOCKET, SO_LINGER, segment);
+                if (segment.get(JAVA_INT, 0) == 0) {
+                    return (T) Integer.valueOf(-1);
+                }
+                return (T) Integer.valueOf(segment.get(JAVA_INT, 4));
+            }
+        }
+        int[] levelAndName = levelAndName(name);
+        int value = getIntOption(fd, levelAndName[0], levelAndName[1]);
+        if (name.type() == Boolean.class) {
+            return (T) Boolean.valueOf(value != 0);
+        }
+        return (T) Integer.valueOf(value);
+    }
+
+
+    private static int[] levelAndName(SocketOption<?> name) {
+        if (name == StandardSocketOptions.SO_RCVBUF) {
+            return new int[] { SOL_SOCKET, SO_RCVBUF };
+        } else if (name == StandardSocketOptions.SO_SNDBUF) {
+            return new int[] { SOL_SOCKET, SO_SNDBUF };
+        } else if (name == StandardSocketOptions.SO_KEEPALIVE) {
+            return new int[] { SOL_SOCKET, SO_KEEPALIVE };
+        } else if (name == StandardSocketOptions.SO_REUSEADDR) {
+            return new int[] { SOL_SOCKET, SO_REUSEADDR };
+        } else if (name == StandardSocketOptions.SO_REUSEPORT) {
+            return new int[] { SOL_SOCKET, SO_REUSEPORT };
+        } else if (name == StandardSocketOptions.TCP_NODELAY) {
+            return new int[] { IPPROTO_TCP, TCP_NODELAY };
+        }
+        throw new UnsupportedOperationException(sm.getString("linuxNative.unsupportedOption", name.name()));
+    }
+
+
+    // --------------------------------------------------------------- sockaddr
+
+    /**
+     * Writes the given address to a sockaddr_in or sockaddr_in6 structure as
+     * appropriate for the socket domain.
+     *
+     * @param segment The segment to write to which must be at least
+     *                    {@link #SOCKADDR_SIZE} bytes
+     * @param domain  The socket domain
+     * @param address The address to write
+     *
+     * @return The length of the structure
+     *
+     * @throws IOException if the address can not be used with the domain
+     */
+    static int writeSockAddr(MemorySegment segment, int domain, InetSocketAddress address) throws IOException {
+        segment.asSlice(0, SOCKADDR_SIZE).fill((byte) 0);
+        InetAddress inetAddress = address.getAddress();
+        int port = address.getPort();
+        if (domain == AF_INET) {
+            if (inetAddress instanceof Inet6Address) {
+                throw new SocketException(sm.getString("linuxNative.ipv6NotAvailable", address));
+            }
+            segment.set(JAVA_SHORT, 0, (short) AF_INET);
+            writePort(segment, port);
+            if (inetAddress != null) {
+                MemorySegment.copy(inetAddress.getAddress(), 0, segment, JAVA_BYTE, 4, 4);
+            }
+            return 16;
+        } else {
+            segment.set(JAVA_SHORT, 0, (short) AF_INET6);
+            writePort(segment, port);
+            if (inetAddress instanceof Inet4Address) {
+                // IPv4-mapped IPv6 address
+                segment.set(JAVA_BYTE, 18, (byte) 0xff);
+                segment.set(JAVA_BYTE, 19, (byte) 0xff);
+                if (!inetAddress.isAnyLocalAddress()) {
+                    MemorySegment.copy(inetAddress.getAddress(), 0, segment, JAVA_BYTE, 20, 4);
+                } else {
+                    // Wildcard address so use :: to accept IPv4 and IPv6
+                    segment.set(JAVA_BYTE, 18, (byte) 0);
+                    segment.set(JAVA_BYTE, 19, (byte) 0);
+                }
+            } else if (inetAddress instanceof Inet6Address) {
+                MemorySegment.copy(inetAddress.getAddress(), 0, segment, JAVA_BYTE, 8, 16);
+                segment.set(JAVA_INT, 24, ((Inet6Address) inetAddress).getScopeId());
+            }
+            return 28;
+        }
+    }
+
+
+    private static void writePort(MemorySegment segment, int port) {
+        segment.set(JAVA_BYTE, 2, (byte) (port >> 8));
+        segment.set(JAVA_BYTE, 3, (byte) port);
+    }
+
+
+    /**
+     * Reads a sockaddr_in or sockaddr_in6 structure.
+     *
+     * @param segment The segment containing the structure
+     *
+     * @return The address. IPv4-mapped IPv6 addresses are returned as IPv4
+     *             addresses.
+     *
+     * @throws IOException if the address family is not supported
+     */
+    static InetSocketAddress readSockAddr(MemorySegment segment) throws IOException {
+        int family = segment.get(JAVA_SHORT, 0);
+        int port = ((segment.get(JAVA_BYTE, 2) & 0xff) << 8) | (segment.get(JAVA_BYTE, 3) & 0xff);
+        try {
+            if (family == AF_INET) {
+                byte[] address = new byte[4];
+                MemorySegment.copy(segment, JAVA_BYTE, 4, address, 0, 4);
+                return new InetSocketAddress(InetAddress.getByAddress(address), port);
+            } else if (family == AF_INET6) {
+                byte[] address = new byte[16];
+                MemorySegment.copy(segment, JAVA_BYTE, 8, address, 0, 16);
+                int scopeId = segment.get(JAVA_INT, 24);
+                InetAddress inetAddress = InetAddress.getByAddress(address);
+                if (scopeId != 0 && inetAddress instanceof Inet6Address) {
+                    inetAddress = Inet6Address.getByAddress(null, address, scopeId);
+                }
+                return new InetSocketAddress(inetAddress, port);
+            }
+        } catch (UnknownHostException e) {
+            throw new SocketException(e.getMessage());
+        }
+        throw new SocketException(sm.getString("linuxNative.unknownFamily", Integer.toString(family)));
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+/**
+ * A task that may be discarded, rather than run, if it has waited in a {@link TaskQueue} for too long.
+ */
+public interface DroppableTask extends Runnable {
+
+    /**
+     * Set the time the task was added to the queue.
+     *
+     * @param queuedTime The value of {@link System#nanoTime()} when the task was queued
+     */
+    void setQueuedTime(long queuedTime);
+
+    /**
+     * @return the value of {@link System#nanoTime()} when the task was queued
+     */
+    long getQueuedTime();
+
+    /**
+     * Called instead of {@link #run()} when the task has waited in the queue for too long. The task should release any
+     * resources it holds.
+     *
+     * @return {@code true} if the task was dropped, {@code false} if the task could not be dropped and must be run
+     */
+    boolean drop();
+}
@@ -20,6 +20,8 @@ import java.util.Collection;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.apache.tomcat.util.res.StringManager;
 
@@ -29,14 +31,34 @@ import org.apache.tomcat.util.res.StringManager;
  * executor. If you use a normal queue, the executor will spawn threads when
  * there are idle threads and you won't be able to force items onto the queue
  * itself.
+ * <p>
+ * Optionally, tasks that implement {@link DroppableTask} may be dropped rather than run if they have waited in the
+ * queue for longer than {@link #getMaxQueueTime()}. When the queue has not been empty for at least
+ * {@link #getTargetQueueInterval()}, the queue is considered to be overloaded rather than handling a short burst and
+ * tasks are dropped once they have waited for longer than {@link #getTargetQueueTime()} (in the manner of CoDel). The
+ * time tasks spend in the queue is recorded in a histogram.
  */
 public class TaskQueue extends LinkedBlockingQueue<Runnable> {
 
     private static final long serialVersionUID = 1L;
     protected static final StringManager sm = StringManager.getManager(TaskQueue.class);
 
+    /**
+     * The upper bounds, in milliseconds, of the buckets of the queue time histogram. There is an additional bucket for
+     * longer queue times.
+     */
+    private static final long[] QUEUE_TIME_BUCKETS =
+            { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
     private transient volatile ThreadPoolExecutor parent = null;
 
+    private volatile long maxQueueTime = -1;
+    private volatile long targetQueueTime = TimeUnit.MILLISECONDS.toNanos(5);
+    private volatile long targetQueueInterval = TimeUnit.MILLISECONDS.toNanos(100);
+    private volatile long lastEmptyTime = System.nanoTime();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLongArray queueTimeHistogram = new AtomicLongArray(QUEUE_TIME_BUCKETS.length + 1);
+
     public TaskQueue() {
         super();
     }
@@ -54,6 +76,86 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
     }
 
 
+    /**
+     * @return the maximum time in milliseconds a {@link DroppableTask} may wait in the queue before it is dropped. A
+     *             negative value means tasks are never dropped.
+     */
+    public long getMaxQueueTime() {
+        return maxQueueTime < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(maxQueueTime);
+    }
+
+
+    /**
+     * Set the maximum time a {@link DroppableTask} may wait in the queue before it is dropped. Tasks that were queued
+     * while dropping was disabled are never dropped.
+     *
+     * @param maxQueueTime The time in milliseconds. A negative value means tasks are never dropped.
+     */
+    public void setMaxQueueTime(long maxQueueTime) {
+        this.maxQueueTime = maxQueueTime < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(maxQueueTime);
+    }
+
+
+    /**
+     * @return the time in milliseconds a {@link DroppableTask} may wait in the queue before it is dropped when the
+     *             queue has not been empty for at least {@link #getTargetQueueInterval()}
+     */
+    public long getTargetQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(targetQueueTime);
+    }
+
+
+    public void setTargetQueueTime(long targetQueueTime) {
+        this.targetQueueTime = TimeUnit.MILLISECONDS.toNanos(targetQueueTime);
+    }
+
+
+    /**
+     * @return the time in milliseconds the queue must have been continuously non-empty before the shorter
+     *             {@link #getTargetQueueTime()} is used to drop tasks
+     */
+    public long getTargetQueueInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(targetQueueInterval);
+    }
+
+
+    public void setTargetQueueInterval(long targetQueueInterval) {
+        this.targetQueueInterval = TimeUnit.MILLISECONDS.toNanos(targetQueueInterval);
+    }
+
+
+    /**
+     * @return the number of tasks that have been dropped because they waited in the queue for too long
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+
+    /**
+     * @return the upper bounds, in milliseconds, of the buckets of the queue time histogram. The histogram has one
+     *             more bucket than the number of bounds returned.
+     */
+    public long[] getQueueTimeBuckets() {
+        return QUEUE_TIME_BUCKETS.clone();
+    }
+
+
+    /**
+     * The number of tasks that waited in the queue for each range of times. Queue times are only recorded for
+     * {@link DroppableTask}s when {@link #getMaxQueueTime()} is set.
+     *
+     * @return the counts for each bucket of the histogram
+     */
+    public long[] getQueueTimeHistogram() {
+        long[] result = new long[queueTimeHistogram.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = queueTimeHistogram.get(i);
+        }
+        return result;
+    }
+
+
     /**
      * Used to add a task to the queue if the task has been rejected by the Executor.
      *
@@ -66,12 +168,14 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
         if (parent == null || parent.isShutdown()) {
             throw new RejectedExecutionException(sm.getString("taskQueue.notRunning"));
         }
+        queued(o);
         return super.offer(o); //forces the item onto the queue, to be used if the task is rejected
     }
 
 
     @Override
     public boolean offer(Runnable o) {
+        queued(o);
       //we can't do any checks
         if (parent==null) {
             return super.offer(o);
@@ -96,7 +200,11 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
     @Override
     public Runnable poll(long timeout, TimeUnit unit)
             throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
         Runnable runnable = super.poll(timeout, unit);
+        while (runnable != null && dropIfExpired(runnable)) {
+            runnable = super.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
         if (runnable == null && parent != null) {
             // the poll timed out, it gives an opportunity to stop the current
             // thread if needed to avoid memory leaks.
@@ -114,6 +222,66 @@ public class TaskQueue extends LinkedBlockingQueue<Runnable> {
             // does not occur with take()
             // but the ThreadPoolExecutor implementation allows this
         }
-        return super.take();
+        Runnable runnable = super.take();
+        while (dropIfExpired(runnable)) {
+            runnable = super.take();
+        }
+        return runnable;
+    }
+
+
+    private void queued(Runnable o) {
+        if (maxQueueTime >= 0 && o instanceof DroppableTask) {
+            long now = System.nanoTime();
+            if (isEmpty()) {
+                lastEmptyTime = now;
+            }
+            ((DroppableTask) o).setQueuedTime(now);
+        }
+    }
+
+
+    /*
+     * Records how long the task waited in the queue and, if the task waited for too long and can be dropped, drops it.
+     * Returns true if the task was dropped and must not be returned to the caller.
+     */
+    private boolean dropIfExpired(Runnable runnable) {
+        long maxQueueTime = this.maxQueueTime;
+        if (maxQueueTime < 0 || !(runnable instanceof DroppableTask)) {
+            return false;
+        }
+        DroppableTask task = (DroppableTask) runnable;
+        long queuedTime = task.getQueuedTime();
+        if (queuedTime == 0) {
+            // Queued while dropping was disabled
+            return false;
+        }
+        long now = System.nanoTime();
+        long queueTime = now - queuedTime;
+        recordQueueTime(queueTime);
+
+        long limit = maxQueueTime;
+        if (now - lastEmptyTime > targetQueueInterval) {
+            // The queue is not draining so it is overloaded rather than absorbing a burst
+            limit = Math.min(limit, targetQueueTime);
+        }
+        if (isEmpty()) {
+            lastEmptyTime = now;
+        }
+        if (queueTime <= limit || !task.drop()) {
+            return false;
+        }
+        droppedCount.incrementAndGet();
+        return true;
+    }
+
+
+    private void recordQueueTime(long queueTime) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(queueTime);
+        int bucket = 0;
+        while (bucket < QUEUE_TIME_BUCKETS.length && millis > QUEUE_TIME_BUCKETS[bucket]) {
+            bucket++;
+        }
+        queueTimeHistogram.incrementAndGet(bucket);
     }
 }
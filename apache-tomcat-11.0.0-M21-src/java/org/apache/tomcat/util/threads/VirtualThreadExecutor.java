@@ -1,46 +1,80 @@
 /*
- *  Licensed to the Apache Software Foundation (ASF) under one or more
- *  contributor license agreements.  See the NOTICE file distributed with
- *  this work for additional information regarding copyright ownership.
- *  The ASF licenses this file to You under the Apache License, Version 2.0
- *  (the "License"); you may not use this file except in compliance with
- *  the License.  You may obtain a copy of the License at
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
  *
  *      http://www.apache.org/licenses/LICENSE-2.0
  *
- *  Unless required by applicable law or agreed to in writing, software
- *  distributed under the License is distributed on an "AS IS" BASIS,
- *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *  See the License for the specific language governing permissions and
- *  limitations under the License.
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
  */
 package org.apache.tomcat.util.threads;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.tomcat.util.compat.JreCompat;
 import org.apache.tomcat.util.res.StringManager;
 
 /**
  * An executor that uses a new virtual thread for each task.
+ * <p>
+ * The number of tasks that may run concurrently may be limited with {@link #setMaxThreads(int)}. Virtual threads are
+ * still created for tasks submitted while the limit is reached but those threads wait for a running task to complete
+ * before they run their task. Such tasks are reported as queued.
  */
-public class VirtualThreadExecutor extends AbstractExecutorService {
+public class VirtualThreadExecutor extends AbstractExecutorService implements ResizableExecutor {
 
     private static final StringManager sm = StringManager.getManager(VirtualThreadExecutor.class);
 
-    private CountDownLatch shutdown = new CountDownLatch(1);
+    private volatile boolean shutdown = false;
+    private final CountDownLatch terminated = new CountDownLatch(1);
 
     private final JreCompat jreCompat = JreCompat.getInstance();
 
     private Object threadBuilder;
 
+    private final ResizableSemaphore permits = new ResizableSemaphore();
+    private int maxThreads = -1;
+
+    /*
+     * The number of threads that have been started and have not yet completed. Includes threads waiting for a permit.
+     */
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final Set<Thread> activeThreads = ConcurrentHashMap.newKeySet();
+    private final Map<Thread,Runnable> queuedTasks = new ConcurrentHashMap<>();
+    private final AtomicInteger largestActiveCount = new AtomicInteger();
+    private final AtomicLong completedTaskCount = new AtomicLong();
+
     public VirtualThreadExecutor(String namePrefix) {
+        this(namePrefix, -1);
+    }
+
+    /**
+     * Create an executor that limits the number of tasks that run concurrently.
+     *
+     * @param namePrefix The name prefix for the virtual threads
+     * @param maxThreads The maximum number of tasks that may run concurrently. Zero or less means no limit.
+     */
+    public VirtualThreadExecutor(String namePrefix, int maxThreads) {
         threadBuilder = jreCompat.createVirtualThreadBuilder(namePrefix);
+        setMaxThreads(maxThreads);
     }
 
     @Override
@@ -49,50 +83,198 @@ public class VirtualThreadExecutor extends AbstractExecutorService {
             throw new RejectedExecutionException(
                     sm.getString("virtualThreadExecutor.taskRejected", command.toString(), this.toString()));
         }
-        jreCompat.threadBuilderStart(threadBuilder, command);
+        threadCount.incrementAndGet();
+        if (isShutdown()) {
+            // Raced with shutdown
+            threadCompleted();
+            throw new RejectedExecutionException(
+                    sm.getString("virtualThreadExecutor.taskRejected", command.toString(), this.toString()));
+        }
+        try {
+            jreCompat.threadBuilderStart(threadBuilder, () -> runTask(command));
+        } catch (RuntimeException | Error e) {
+            threadCompleted();
+            throw e;
+        }
+    }
+
+    private void runTask(Runnable command) {
+        Thread thread = Thread.currentThread();
+        try {
+            if (!permits.tryAcquire()) {
+                queuedTasks.put(thread, command);
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    // Normally shutdownNow(), which will have removed the task
+                    queuedTasks.remove(thread);
+                    return;
+                }
+                if (queuedTasks.remove(thread) == null) {
+                    // shutdownNow() was called after the permit was acquired
+                    permits.release();
+                    return;
+                }
+            }
+            activeThreads.add(thread);
+            int active = activeThreads.size();
+            largestActiveCount.accumulateAndGet(active, Math::max);
+            try {
+                command.run();
+            } finally {
+                activeThreads.remove(thread);
+                permits.release();
+                completedTaskCount.incrementAndGet();
+            }
+        } finally {
+            threadCompleted();
+        }
     }
 
+    private void threadCompleted() {
+        if (threadCount.decrementAndGet() == 0 && isShutdown()) {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Set the maximum number of tasks that may run concurrently. If the new value is lower than the number of running
+     * tasks, no new tasks will start until enough running tasks have completed.
+     *
+     * @param maxThreads The maximum number of concurrent tasks. Zero or less means no limit.
+     */
+    public synchronized void setMaxThreads(int maxThreads) {
+        int oldLimit = this.maxThreads > 0 ? this.maxThreads : Integer.MAX_VALUE;
+        int newLimit = maxThreads > 0 ? maxThreads : Integer.MAX_VALUE;
+        if (newLimit > oldLimit) {
+            permits.release(newLimit - oldLimit);
+        } else if (newLimit < oldLimit) {
+            permits.reducePermits(oldLimit - newLimit);
+        }
+        this.maxThreads = maxThreads > 0 ? maxThreads : -1;
+    }
+
+    /**
+     * @return the maximum number of tasks that may run concurrently or -1 if there is no limit
+     */
     @Override
-    public void shutdown() {
-        shutdown.countDown();
+    public synchronized int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * @return the number of tasks currently running
+     */
+    @Override
+    public int getActiveCount() {
+        return activeThreads.size();
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * The VirtualThreadExecutor does not track in-progress tasks so calling this method is equivalent to calling
-     * {@link #shutdown()}.
+     * For this executor, this is the number of virtual threads that exist, including those waiting for a running task
+     * to complete.
      */
     @Override
-    public List<Runnable> shutdownNow() {
-        shutdown();
-        return Collections.emptyList();
+    public int getPoolSize() {
+        return threadCount.get();
     }
 
-    @Override
-    public boolean isShutdown() {
-        return shutdown.getCount() == 0;
+    /**
+     * @return the largest number of tasks that have run concurrently
+     */
+    public int getLargestPoolSize() {
+        return largestActiveCount.get();
+    }
+
+    /**
+     * @return the number of tasks waiting for a running task to complete before they can start
+     */
+    public int getQueueSize() {
+        return queuedTasks.size();
+    }
+
+    /**
+     * @return the number of tasks that have completed
+     */
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * The VirtualThreadExecutor does not track in-progress tasks so calling this method is equivalent to calling
-     * {@link #isShutdown()}.
+     * Virtual threads are not pooled so this sets the maximum number of concurrent tasks to the given maximum pool size.
      */
     @Override
-    public boolean isTerminated() {
-        return isShutdown();
+    public boolean resizePool(int corePoolSize, int maximumPoolSize) {
+        setMaxThreads(maximumPoolSize);
+        return true;
+    }
+
+    @Override
+    public boolean resizeQueue(int capacity) {
+        return false;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        if (threadCount.get() == 0) {
+            terminated.countDown();
+        }
     }
 
     /**
      * {@inheritDoc}
      * <p>
-     * The VirtualThreadExecutor does not track in-progress tasks so calling this method is effectively waiting for
-     * {@link #shutdown()} to be called.
+     * Running tasks are interrupted. Tasks waiting for a running task to complete are not started and are returned.
      */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> result = new ArrayList<>();
+        for (Thread thread : queuedTasks.keySet()) {
+            Runnable task = queuedTasks.remove(thread);
+            if (task != null) {
+                result.add(task);
+                thread.interrupt();
+            }
+        }
+        for (Thread thread : activeThreads) {
+            thread.interrupt();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
     @Override
     public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
-        return shutdown.await(timeout, unit);
+        return terminated.await(timeout, unit);
+    }
+
+
+    private static class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore() {
+            super(Integer.MAX_VALUE);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
     }
 }
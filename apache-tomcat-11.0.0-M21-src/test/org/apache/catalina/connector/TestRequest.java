@@ -17,6 +17,7 @@
 package org.apache.catalina.connector;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -28,24 +29,30 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
 
+import jakarta.servlet.MultipartConfigElement;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import org.apache.catalina.Context;
+import org.apache.catalina.Globals;
+import org.apache.catalina.Wrapper;
 import org.apache.catalina.authenticator.BasicAuthenticator;
 import org.apache.catalina.startup.SimpleHttpClient;
 import org.apache.catalina.startup.TesterMapRealm;
@@ -663,6 +670,90 @@ public class TestRequest extends TomcatBaseTest {
         }
     }
 
+    @Test
+    public void testPartIterator() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        File appDir = getTemporaryDirectory();
+        Context root = tomcat.addContext("", appDir.getAbsolutePath());
+        Wrapper w = Tomcat.addServlet(root, "PartIterator", new PartIteratorServlet(appDir));
+        w.setMultipartConfigElement(new MultipartConfigElement(appDir.getAbsolutePath()));
+        root.addServletMappingDecoded("/", "PartIterator");
+        tomcat.start();
+
+        HttpURLConnection conn = getConnection("http://localhost:" + getPort() + "/");
+        String boundary = "-----" + System.currentTimeMillis();
+        conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+        try (OutputStreamWriter osw = new OutputStreamWriter(conn.getOutputStream(), StandardCharsets.UTF_8);
+                PrintWriter writer = new PrintWriter(osw, true)) {
+            writer.append("--" + boundary).append("\r\n");
+            writer.append("Content-Disposition: form-data; name=\"field\"\r\n");
+            writer.append("\r\n");
+            writer.append("value").append("\r\n");
+            writer.append("--" + boundary).append("\r\n");
+            writer.append("Content-Disposition: form-data; name=\"file\"; filename=\"test.txt\"\r\n");
+            writer.append("Content-Type: text/plain\r\n");
+            writer.append("\r\n");
+            writer.append("0123456789").append("\r\n");
+            writer.append("--" + boundary + "--").append("\r\n");
+        }
+
+        Assert.assertEquals(HttpServletResponse.SC_OK, conn.getResponseCode());
+        List<String> response = new ArrayList<>();
+        try (InputStreamReader isr = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8);
+                BufferedReader reader = new BufferedReader(isr)) {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                response.add(line);
+            }
+        }
+        conn.disconnect();
+
+        Assert.assertEquals(Arrays.asList("field=value", "file=test.txt:10:0123456789", "getParts: ISE"), response);
+    }
+
+    private static class PartIteratorServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File location;
+
+        PartIteratorServlet(File location) {
+            this.location = location;
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+                throws ServletException, IOException {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            PrintWriter pw = resp.getWriter();
+
+            @SuppressWarnings("unchecked")
+            Iterator<Part> parts = (Iterator<Part>) req.getAttribute(Globals.PART_ITERATOR_ATTR);
+            while (parts.hasNext()) {
+                Part part = parts.next();
+                if (part.getSubmittedFileName() == null) {
+                    try (InputStream is = part.getInputStream()) {
+                        pw.println(part.getName() + "=" + new String(is.readAllBytes(), StandardCharsets.UTF_8));
+                    }
+                } else {
+                    part.write("upload.txt");
+                    // The relative name is resolved against the multipart config location
+                    File file = new File(location, "upload.txt");
+                    pw.println(part.getName() + "=" + part.getSubmittedFileName() + ":" + part.getSize() + ":" +
+                            new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+                }
+            }
+
+            try {
+                req.getParts();
+                pw.println("getParts: OK");
+            } catch (IllegalStateException ise) {
+                pw.println("getParts: ISE");
+            }
+        }
+    }
+
     @Test
     public void testBug56501a() throws Exception {
         doBug56501("/path", "/path", "/path");
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.tomcat.util.compat.JreCompat;
+
+public class TestStandardVirtualThreadExecutor {
+
+    @Test
+    public void testStatistics() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        StandardVirtualThreadExecutor executor = new StandardVirtualThreadExecutor();
+        executor.setName("test");
+        executor.setMaxThreads(1);
+        executor.start();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch completed = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                executor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                    completed.countDown();
+                });
+            }
+            int count = 0;
+            while (executor.getQueueSize() != 1 && count < 500) {
+                Thread.sleep(10);
+                count++;
+            }
+            Assert.assertEquals(1, executor.getActiveCount());
+            Assert.assertEquals(1, executor.getQueueSize());
+            Assert.assertEquals(2, executor.getPoolSize());
+
+            release.countDown();
+            Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+            count = 0;
+            while (executor.getCompletedTaskCount() != 2 && count < 500) {
+                Thread.sleep(10);
+                count++;
+            }
+            Assert.assertEquals(2, executor.getCompletedTaskCount());
+            Assert.assertEquals(1, executor.getLargestPoolSize());
+        } finally {
+            executor.stop();
+        }
+    }
+
+
+    @Test
+    public void testPinnedLocations() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        StandardVirtualThreadExecutor executor = new StandardVirtualThreadExecutor();
+        executor.setName("test");
+        executor.setPinnedThreshold(10);
+        executor.start();
+        try {
+            CountDownLatch completed = new CountDownLatch(1);
+            executor.execute(() -> {
+                pin();
+                completed.countDown();
+            });
+            Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+
+            // JFR events are delivered asynchronously
+            int count = 0;
+            while (executor.getPinnedEventCount() == 0 && count < 100) {
+                Thread.sleep(100);
+                count++;
+            }
+            Assert.assertTrue(executor.getPinnedEventCount() > 0);
+            String[] locations = executor.getPinnedLocations();
+            Assert.assertEquals(1, locations.length);
+            Assert.assertTrue(locations[0], locations[0].contains(TestStandardVirtualThreadExecutor.class.getName()));
+
+            executor.resetPinnedStatistics();
+            Assert.assertEquals(0, executor.getPinnedEventCount());
+        } finally {
+            executor.stop();
+        }
+    }
+
+
+    private static synchronized void pin() {
+        try {
+            // Sleeping while holding a monitor pins the virtual thread
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            // Ignore
+        }
+    }
+
+
+    @Test
+    public void testRecorderLocationLimit() {
+        VirtualThreadPinningRecorder recorder = new VirtualThreadPinningRecorder();
+        for (int i = 0; i < VirtualThreadPinningRecorder.MAX_LOCATIONS + 10; i++) {
+            recorder.record("location" + i, 1_000_000);
+        }
+        recorder.record("location0", 1_000_000);
+        String[] locations = recorder.getLocations();
+        Assert.assertEquals(VirtualThreadPinningRecorder.MAX_LOCATIONS + 1, locations.length);
+        Assert.assertEquals("10 events, 10 ms: " + VirtualThreadPinningRecorder.OTHER_LOCATION, locations[0]);
+        Assert.assertEquals("2 events, 2 ms: location0", locations[1]);
+        Assert.assertEquals(VirtualThreadPinningRecorder.MAX_LOCATIONS + 11, recorder.getEventCount());
+    }
+}
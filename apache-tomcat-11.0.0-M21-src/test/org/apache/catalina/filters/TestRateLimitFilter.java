@@ -32,6 +32,7 @@ import org.apache.catalina.filters.TestRemoteIpFilter.MockFilterChain;
 import org.apache.catalina.filters.TestRemoteIpFilter.MockHttpServletRequest;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.catalina.util.SlidingWindowCounter;
 import org.apache.tomcat.unittest.TesterResponse;
 import org.apache.tomcat.util.descriptor.web.FilterDef;
 import org.apache.tomcat.util.descriptor.web.FilterMap;
@@ -87,6 +88,49 @@ public class TestRateLimitFilter extends TomcatBaseTest {
         Assert.assertEquals(429, tc4.results[allowedRequests]); // subsequent requests dropped
     }
 
+    @Test
+    public void testSlidingWindowCounter() throws Exception {
+
+        int bucketRequests = 40;
+        int bucketDuration = 4;
+
+        FilterDef filterDef = new FilterDef();
+        filterDef.addInitParameter(RateLimitFilter.PARAM_BUCKET_REQUESTS, String.valueOf(bucketRequests));
+        filterDef.addInitParameter(RateLimitFilter.PARAM_BUCKET_DURATION, String.valueOf(bucketDuration));
+        filterDef.addInitParameter(RateLimitFilter.PARAM_COUNTER_CLASS_NAME, SlidingWindowCounter.class.getName());
+
+        Tomcat tomcat = getTomcatInstance();
+        Context root = tomcat.addContext("", TEMP_DIR);
+        tomcat.start();
+
+        MockFilterChain filterChain = new MockFilterChain();
+        RateLimitFilter rateLimitFilter = testRateLimitFilter(filterDef, root);
+        Assert.assertTrue(rateLimitFilter.bucketCounter instanceof SlidingWindowCounter);
+
+        int allowedRequests = rateLimitFilter.getActualRequests();
+
+        Thread.sleep(rateLimitFilter.bucketCounter.getMillisUntilNextBucket());
+
+        for (int i = 0; i < allowedRequests + 1; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setRemoteAddr("10.20.20.5");
+            TesterResponse response = new TesterResponseWithStatus();
+            response.setRequest(request);
+            rateLimitFilter.doFilter(request, response, filterChain);
+            Assert.assertEquals(i < allowedRequests ? 200 : 429, response.getStatus());
+        }
+
+        // Other clients are not affected
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.20.20.10");
+        TesterResponse response = new TesterResponseWithStatus();
+        response.setRequest(request);
+        rateLimitFilter.doFilter(request, response, filterChain);
+        Assert.assertEquals(200, response.getStatus());
+
+        rateLimitFilter.destroy();
+    }
+
     private RateLimitFilter testRateLimitFilter(FilterDef filterDef, Context root) throws ServletException {
 
         RateLimitFilter rateLimitFilter = new RateLimitFilter();
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.filters;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import org.apache.catalina.util.RateLimitCounter;
+import org.apache.catalina.util.SlidingWindowCounter;
+import org.apache.catalina.util.TimeBucketCounter;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * Simulates the counters used by the RateLimitFilter being hit by requests from a large number of distinct IP
+ * addresses, as would be seen during a distributed attack, and reports the time per request and the heap retained by
+ * the counter.
+ */
+public class TesterRateLimitFilterPerformance {
+
+    private static final int THREADS = 4;
+    private static final int ADDRESSES = 2_000_000;
+    private static final int ITERATIONS = 4;
+
+
+    @Test
+    public void testTimeBucketCounter() throws Exception {
+        doTest(TimeBucketCounter::new);
+    }
+
+
+    @Test
+    public void testSlidingWindowCounter() throws Exception {
+        doTest(SlidingWindowCounter::new);
+    }
+
+
+    private void doTest(Supplier<RateLimitCounter> supplier) throws Exception {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        long heapBefore = usedHeap();
+        RateLimitCounter counter = supplier.get();
+        // Long enough for all the requests to be in the same time window so nothing is cleaned up
+        counter.init(3600, executor);
+
+        // Warm-up
+        runThreads(counter);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runThreads(counter);
+        }
+        long duration = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+
+        System.out.println(counter.getClass().getSimpleName() + ": " +
+                duration / ((long) ITERATIONS * ADDRESSES * THREADS) + "ns per request, " +
+                (heapAfter - heapBefore) / 1024 + "kB retained for " + ADDRESSES + " addresses");
+
+        counter.destroy();
+        executor.shutdownNow();
+    }
+
+
+    private void runThreads(RateLimitCounter counter) throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            int offset = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < ADDRESSES; j++) {
+                    int address = (j + offset * (ADDRESSES / THREADS)) % ADDRESSES;
+                    counter.increment("10." + ((address >> 16) & 0xFF) + "." + ((address >> 8) & 0xFF) + "." +
+                            (address & 0xFF));
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.descriptor.web.ContextResource;
+
+public class TestMetricsServlet extends TomcatBaseTest {
+
+    @Test
+    public void testMetrics() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        tomcat.enableNaming();
+
+        ContextResource resource = new ContextResource();
+        resource.setName("jdbc/test");
+        resource.setType("javax.sql.DataSource");
+        resource.setProperty("factory", "org.apache.tomcat.dbcp.dbcp2.BasicDataSourceFactory");
+        resource.setProperty("maxTotal", "5");
+        tomcat.getServer().getGlobalNamingResources().addResource(resource);
+
+        Context root = tomcat.addContext("", new File("test/webapp").getAbsolutePath());
+        root.setPrivileged(true);
+        Tomcat.addServlet(root, "metrics", MetricsServlet.class.getName());
+        root.addServletMappingDecoded("/metrics", "metrics");
+
+        Context app = tomcat.addContext("/app", null);
+        Tomcat.addServlet(app, "session", new SessionServlet());
+        app.addServletMappingDecoded("/", "session");
+
+        tomcat.start();
+
+        int rc = getUrl("http://localhost:" + getPort() + "/app/", new ByteChunk(), null);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+
+        ByteChunk out = new ByteChunk();
+        Map<String,List<String>> resHead = new HashMap<>();
+        rc = getUrl("http://localhost:" + getPort() + "/metrics", out, resHead);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        String contentType = resHead.get("Content-Type").get(0);
+        Assert.assertTrue(contentType, contentType.startsWith("application/openmetrics-text;"));
+
+        String metrics = out.toString();
+        Assert.assertTrue(metrics, metrics.endsWith("# EOF\n"));
+
+        Assert.assertTrue(metrics, metrics.contains("# TYPE tomcat_connector_requests counter\n"));
+        Assert.assertTrue(metrics, find(metrics,
+                "tomcat_connector_requests_total\\{service=\"Tomcat\",connector=\"http-nio-[^\"]+\"\\} [1-9][0-9]*"));
+        Assert.assertTrue(metrics, metrics.contains("# UNIT tomcat_connector_processing_seconds seconds\n"));
+        Assert.assertTrue(metrics, find(metrics,
+                "tomcat_threadpool_max_threads\\{service=\"Tomcat\",pool=\"http-nio-[^\"]+\"\\} 200"));
+        Assert.assertTrue(metrics, metrics.contains(
+                "tomcat_session_active_sessions{service=\"Tomcat\",host=\"localhost\",context=\"/app\"} 1\n"));
+        Assert.assertTrue(metrics, metrics.contains(
+                "tomcat_session_created_sessions_total{service=\"Tomcat\",host=\"localhost\",context=\"/app\"} 1\n"));
+        Assert.assertTrue(metrics, find(metrics,
+                "tomcat_cache_lookups_total\\{service=\"Tomcat\",host=\"localhost\",context=\"/\"\\} [0-9]+"));
+        Assert.assertTrue(metrics,
+                metrics.contains("tomcat_jdbc_max_connections{scope=\"global\",name=\"jdbc/test\"} 5\n"));
+    }
+
+
+    @Test
+    public void testLabelEscaping() {
+        Assert.assertEquals("a=\"x\",b=\"\\\\\\\"\\n\"", MetricsServlet.label("a=\"x\"", "b", "\\\"\n"));
+    }
+
+
+    private static boolean find(String metrics, String regex) {
+        return Pattern.compile("^" + regex + "$", Pattern.MULTILINE).matcher(metrics).find();
+    }
+
+
+    private static class SessionServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            req.getSession();
+            resp.getWriter().print("OK");
+        }
+    }
+}
@@ -16,19 +16,27 @@
  */
 package org.apache.catalina.servlets;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
+import jakarta.servlet.ServletContext;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.junit.Assert;
@@ -680,4 +688,170 @@ public class TestDefaultServlet extends TomcatBaseTest {
         Assert.assertEquals(0, out.getLength());
         Assert.assertNull(resHeaders.get("Content-Length"));
     }
+
+
+    /*
+     * Verify generation of compressed variants of resources that do not have
+     * a precompressed version.
+     */
+    @Test
+    public void testGeneratePrecompressed() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        File appDir = new File(getTemporaryDirectory(), "generate-precompressed");
+        Assert.assertTrue(appDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        File file = new File(appDir, "data.txt");
+        byte[] original = createPrecompressedData(1);
+        Files.write(file.toPath(), original);
+        // Too small to compress
+        Files.write(new File(appDir, "small.txt").toPath(), "Small".getBytes(StandardCharsets.ISO_8859_1));
+
+        Context ctxt = tomcat.addContext("", appDir.getAbsolutePath());
+        Wrapper defaultServlet = Tomcat.addServlet(ctxt, "default", DefaultServlet.class.getName());
+        defaultServlet.addInitParameter("precompressed", "gzip=.gz");
+        defaultServlet.addInitParameter("generatePrecompressed", "true");
+        // Ensure the generated variant is large enough to use sendfile
+        defaultServlet.addInitParameter("sendfileSize", "1");
+
+        ctxt.addServletMappingDecoded("/", "default");
+        ctxt.addMimeMapping("txt", "text/plain");
+
+        tomcat.start();
+        ctxt.getResources().setCachingAllowed(false);
+
+        String path = "http://localhost:" + getPort() + "/data.txt";
+
+        // Served uncompressed until the variant has been generated
+        Assert.assertArrayEquals(original, getPrecompressed(path));
+        // The web application is not modified
+        Assert.assertFalse(new File(appDir, "data.txt.gz").exists());
+
+        // Modify the resource. The generated variant is now stale.
+        original = createPrecompressedData(2);
+        Files.write(file.toPath(), original);
+        Assert.assertTrue(file.setLastModified(file.lastModified() + 10000));
+        Assert.assertArrayEquals(original, getPrecompressed(path));
+
+        Map<String,List<String>> resHeaders = new HashMap<>();
+        ByteChunk out = new ByteChunk();
+        int rc = getUrl("http://localhost:" + getPort() + "/small.txt", out, gzipRequestHeaders(), resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertNull(resHeaders.get("Content-Encoding"));
+    }
+
+
+    /*
+     * Verify that a resource that compression does not make smaller is served
+     * uncompressed and that only an empty variant is retained for it.
+     */
+    @Test
+    public void testGeneratePrecompressedNotSmaller() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        File appDir = new File(getTemporaryDirectory(), "generate-precompressed-not-smaller");
+        Assert.assertTrue(appDir.mkdirs());
+        addDeleteOnTearDown(appDir);
+
+        // Random data does not compress
+        byte[] original = new byte[16 * 1024];
+        new Random(1).nextBytes(original);
+        Files.write(new File(appDir, "random.txt").toPath(), original);
+
+        Context ctxt = tomcat.addContext("", appDir.getAbsolutePath());
+        Wrapper defaultServlet = Tomcat.addServlet(ctxt, "default", DefaultServlet.class.getName());
+        defaultServlet.addInitParameter("precompressed", "gzip=.gz");
+        defaultServlet.addInitParameter("generatePrecompressed", "true");
+
+        ctxt.addServletMappingDecoded("/", "default");
+        ctxt.addMimeMapping("txt", "text/plain");
+
+        tomcat.start();
+
+        File tempDir = (File) ctxt.getServletContext().getAttribute(ServletContext.TEMPDIR);
+        File variant = new File(tempDir, "precompressed/random.txt.gz");
+
+        String path = "http://localhost:" + getPort() + "/random.txt";
+        int count = 0;
+        while (count < 100) {
+            Map<String,List<String>> resHeaders = new HashMap<>();
+            ByteChunk out = new ByteChunk();
+            int rc = getUrl(path, out, gzipRequestHeaders(), resHeaders);
+            Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+            Assert.assertNull(resHeaders.get("Content-Encoding"));
+            Assert.assertArrayEquals(original, Arrays.copyOfRange(out.getBuffer(), out.getStart(), out.getEnd()));
+            if (variant.isFile()) {
+                break;
+            }
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.assertTrue(variant.isFile());
+        Assert.assertEquals(0, variant.length());
+
+        // The empty variant is not served
+        Map<String,List<String>> resHeaders = new HashMap<>();
+        ByteChunk out = new ByteChunk();
+        int rc = getUrl(path, out, gzipRequestHeaders(), resHeaders);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertNull(resHeaders.get("Content-Encoding"));
+        Assert.assertEquals(original.length, out.getLength());
+    }
+
+
+    private static byte[] createPrecompressedData(int seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 64 * 1024) {
+            sb.append(random.nextInt(1000000));
+            sb.append(' ');
+        }
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+
+    private static Map<String,List<String>> gzipRequestHeaders() {
+        Map<String,List<String>> reqHeaders = new HashMap<>();
+        reqHeaders.put("Accept-Encoding", Collections.singletonList("gzip"));
+        return reqHeaders;
+    }
+
+
+    /*
+     * Requests the given path until the response is compressed, checking that
+     * every response is an identical copy of the resource.
+     */
+    private static byte[] getPrecompressed(String path) throws Exception {
+        byte[] uncompressed = null;
+        int count = 0;
+        while (count < 100) {
+            Map<String,List<String>> resHeaders = new HashMap<>();
+            ByteChunk out = new ByteChunk();
+            int rc = getUrl(path, out, gzipRequestHeaders(), resHeaders);
+            Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+            Assert.assertEquals(Long.parseLong(resHeaders.get("Content-Length").get(0)), out.getLength());
+            byte[] body = Arrays.copyOfRange(out.getBuffer(), out.getStart(), out.getEnd());
+            if (resHeaders.get("Content-Encoding") != null) {
+                Assert.assertEquals("gzip", resHeaders.get("Content-Encoding").get(0));
+                try (GZIPInputStream gzis = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    byte[] result = gzis.readAllBytes();
+                    if (uncompressed != null) {
+                        Assert.assertArrayEquals(uncompressed, result);
+                    }
+                    Assert.assertTrue(body.length < result.length);
+                    return result;
+                }
+            }
+            if (uncompressed == null) {
+                uncompressed = body;
+            } else {
+                Assert.assertArrayEquals(uncompressed, body);
+            }
+            Thread.sleep(100);
+            count++;
+        }
+        Assert.fail();
+        return null;
+    }
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBuckets() {
+        // Every value falls in a bucket with an upper bound no lower than the value and no more than 12.5% above it
+        long previousBound = -1;
+        for (int i = 0; i < 1000; i++) {
+            long bound = LatencyHistogram.upperBound(i);
+            if (bound < 0 || bound >= (1L << 40)) {
+                break;
+            }
+            Assert.assertEquals(i, LatencyHistogram.index(bound));
+            Assert.assertEquals(i, LatencyHistogram.index(previousBound + 1));
+            Assert.assertTrue(bound <= (previousBound + 1) + (previousBound + 1) / 8);
+            previousBound = bound;
+        }
+    }
+
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(10000, histogram.getCount());
+        Assert.assertEquals(10000, histogram.getMax());
+        Assert.assertEquals(5000, histogram.getMean());
+        assertWithinError(5000, histogram.getValueAtPercentile(50));
+        assertWithinError(9000, histogram.getValueAtPercentile(90));
+        assertWithinError(9990, histogram.getValueAtPercentile(99.9));
+        Assert.assertEquals(10000, histogram.getValueAtPercentile(100));
+    }
+
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMean());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            h1.record(10);
+        }
+        h2.record(Long.MAX_VALUE);
+        h1.add(h2);
+        Assert.assertEquals(100, h1.getCount());
+        Assert.assertEquals(10, h1.getValueAtPercentile(99));
+        Assert.assertEquals(Long.MAX_VALUE, h1.getMax());
+        // Very large values are counted in the last bucket
+        Assert.assertTrue(h1.getValueAtPercentile(100) >= (1L << 39));
+    }
+
+
+    private static void assertWithinError(long expected, long actual) {
+        Assert.assertTrue(Long.toString(actual), actual >= expected && actual <= expected + expected / 8);
+    }
+}
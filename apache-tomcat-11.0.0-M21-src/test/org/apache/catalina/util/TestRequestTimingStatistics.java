@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardWrapper;
+import org.apache.catalina.filters.FilterBase;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.catalina.valves.AbstractAccessLogValve;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+public class TestRequestTimingStatistics extends TomcatBaseTest {
+
+    private static final long SLEEP = 10;
+    private static final long SLEEP_MAX = 5000;
+
+
+    @Test
+    public void testEnabled() throws Exception {
+        TesterAccessLogValve valve = doTest(true);
+
+        String entry = valve.getEntry();
+        String[] parts = entry.split(" ");
+        Assert.assertEquals(entry, 3, parts.length);
+        // total, filters
+        Assert.assertTrue(entry, Long.parseLong(parts[0]) >= Long.parseLong(parts[1]));
+        Assert.assertEquals("???", parts[2]);
+
+        StandardContext ctx = (StandardContext) getTomcatInstance().getHost().findChildren()[0];
+        StandardWrapper wrapper = (StandardWrapper) ctx.findChild("hello");
+        String[] timings = waitForTimings(wrapper);
+        Assert.assertTrue(Arrays.toString(timings), containsStage(timings, "total", 1));
+        Assert.assertTrue(Arrays.toString(timings), containsStage(timings, "filters", 1));
+        Assert.assertTrue(Arrays.toString(timings), containsStage(timings, "firstByte", 1));
+        Assert.assertTrue(Arrays.toString(ctx.getRequestTimings()),
+                containsStage(ctx.getRequestTimings(), "total", 1));
+    }
+
+
+    @Test
+    public void testDisabled() throws Exception {
+        TesterAccessLogValve valve = doTest(false);
+
+        Assert.assertEquals("- - ???", valve.getEntry());
+
+        StandardContext ctx = (StandardContext) getTomcatInstance().getHost().findChildren()[0];
+        StandardWrapper wrapper = (StandardWrapper) ctx.findChild("hello");
+        Assert.assertEquals(0, wrapper.getRequestTimings().length);
+        Assert.assertEquals(0, ctx.getRequestTimings().length);
+    }
+
+
+    private TesterAccessLogValve doTest(boolean enabled) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("recordRequestTimings", Boolean.toString(enabled)));
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "hello", new TomcatBaseTest.HelloWorldServlet());
+        ctx.addServletMappingDecoded("/", "hello");
+
+        FilterDef filterDef = new FilterDef();
+        filterDef.setFilterName("pass");
+        filterDef.setFilter(new PassFilter());
+        ctx.addFilterDef(filterDef);
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName("pass");
+        filterMap.addURLPatternDecoded("/*");
+        ctx.addFilterMap(filterMap);
+
+        TesterAccessLogValve valve = new TesterAccessLogValve();
+        valve.setPattern("%{total}L %{filters}L %{unknown}L");
+        tomcat.getHost().getPipeline().addValve(valve);
+
+        tomcat.start();
+
+        int rc = getUrl("http://localhost:" + getPort() + "/", new ByteChunk(), null);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+
+        return valve;
+    }
+
+
+    private static String[] waitForTimings(StandardWrapper wrapper) throws InterruptedException {
+        // The timings are recorded after the response has been sent to the client
+        long sleep = 0;
+        String[] timings = wrapper.getRequestTimings();
+        while (timings.length == 0 && sleep < SLEEP_MAX) {
+            Thread.sleep(SLEEP);
+            sleep += SLEEP;
+            timings = wrapper.getRequestTimings();
+        }
+        return timings;
+    }
+
+
+    private static boolean containsStage(String[] timings, String stage, int count) {
+        for (String timing : timings) {
+            if (timing.startsWith(stage + ": count=" + count + ",")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    public static class PassFilter extends FilterBase {
+
+        private static final Log log = LogFactory.getLog(PassFilter.class);
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        protected Log getLogger() {
+            return log;
+        }
+    }
+
+
+    private static class TesterAccessLogValve extends AbstractAccessLogValve {
+
+        private final CharArrayWriter writer = new CharArrayWriter();
+
+        @Override
+        protected synchronized void log(CharArrayWriter message) {
+            writer.append(message.toString());
+        }
+
+        String getEntry() throws InterruptedException {
+            // Requests can return in the client before log() has been called
+            long sleep = 0;
+            while (sleep < SLEEP_MAX) {
+                synchronized (this) {
+                    if (writer.size() > 0) {
+                        return writer.toString();
+                    }
+                }
+                Thread.sleep(SLEEP);
+                sleep += SLEEP;
+            }
+            return null;
+        }
+    }
+}
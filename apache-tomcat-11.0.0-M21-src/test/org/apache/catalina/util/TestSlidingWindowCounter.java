@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSlidingWindowCounter {
+
+    static final double DELTA = 0.001;
+
+    @Test
+    public void testInit() {
+        SlidingWindowCounter swc = new SlidingWindowCounter();
+        swc.init(60, null);
+        Assert.assertEquals(65_536, swc.getActualDuration());
+        Assert.assertEquals(1.092, swc.getRatio(), DELTA);
+        Assert.assertEquals(SlidingWindowCounter.DEFAULT_WIDTH, swc.getWidth());
+        Assert.assertEquals(SlidingWindowCounter.DEFAULT_DEPTH, swc.getDepth());
+    }
+
+    @Test
+    public void testWidthRoundedUp() {
+        SlidingWindowCounter swc = new SlidingWindowCounter(1000, 3);
+        Assert.assertEquals(1024, swc.getWidth());
+        Assert.assertEquals(3, swc.getDepth());
+    }
+
+    @Test
+    public void testCount() {
+        SlidingWindowCounter swc = new SlidingWindowCounter();
+        // Long enough that the test will not cross a window boundary
+        swc.init(3600, null);
+        for (int i = 1; i <= 100; i++) {
+            Assert.assertEquals(i, swc.increment("10.0.0.1"));
+        }
+        Assert.assertEquals(1, swc.increment("10.0.0.2"));
+        Assert.assertEquals(1, swc.increment("::1"));
+    }
+
+    @Test
+    public void testBoundedError() {
+        SlidingWindowCounter swc = new SlidingWindowCounter(1024, 4);
+        swc.init(3600, null);
+        int total = 100_000;
+        for (int i = 0; i < total; i++) {
+            swc.increment("10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF));
+        }
+        // Overestimate is e / width of the total with high probability
+        int bound = (int) Math.ceil(Math.E * total / swc.getWidth());
+        int count = swc.increment("192.168.0.1");
+        Assert.assertTrue(Integer.toString(count), count >= 1 && count <= 1 + bound);
+    }
+
+    @Test
+    public void testSlidingWindow() throws InterruptedException {
+        SlidingWindowCounter swc = new SlidingWindowCounter();
+        swc.init(2, null);
+
+        Thread.sleep(swc.getMillisUntilNextBucket());
+        for (int i = 0; i < 100; i++) {
+            swc.increment("10.0.0.1");
+        }
+
+        // Early in the next window most of the previous window is still counted
+        Thread.sleep(swc.getMillisUntilNextBucket());
+        int count = swc.increment("10.0.0.1");
+        Assert.assertTrue(Integer.toString(count), count > 75 && count <= 101);
+
+        // Two windows later nothing is counted
+        Thread.sleep(swc.getMillisUntilNextBucket() + swc.getActualDuration());
+        Assert.assertEquals(1, swc.increment("10.0.0.1"));
+    }
+}
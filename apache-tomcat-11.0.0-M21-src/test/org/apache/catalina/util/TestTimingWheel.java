@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTimingWheel {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(10);
+
+
+    @Test
+    public void testExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 8);
+        long now = System.nanoTime();
+        wheel.scheduleAt("a", now + 3 * TICK);
+        wheel.scheduleAt("b", now + 5 * TICK);
+        wheel.scheduleAt("c", now + 5 * TICK);
+        Assert.assertEquals(3, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        Assert.assertEquals(0, wheel.expire(now + TICK, expired::add));
+        // Never expires early
+        Assert.assertEquals(0, wheel.expire(now + 2 * TICK, expired::add));
+        Assert.assertEquals(1, wheel.expire(now + 4 * TICK + 1, expired::add));
+        Assert.assertEquals(List.of("a"), expired);
+
+        Assert.assertEquals(2, wheel.expire(now + 6 * TICK + 1, expired::add));
+        Assert.assertEquals(3, expired.size());
+        Assert.assertEquals(0, wheel.size());
+    }
+
+
+    @Test
+    public void testCancel() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 8);
+        long now = System.nanoTime();
+        TimingWheel.Timeout<String> a = wheel.scheduleAt("a", now + 2 * TICK);
+        TimingWheel.Timeout<String> b = wheel.scheduleAt("b", now + 2 * TICK);
+        TimingWheel.Timeout<String> c = wheel.scheduleAt("c", now + 2 * TICK);
+
+        Assert.assertTrue(b.cancel());
+        Assert.assertFalse(b.cancel());
+        Assert.assertEquals(2, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        Assert.assertEquals(2, wheel.expire(now + 4 * TICK, expired::add));
+        Assert.assertTrue(expired.contains("a"));
+        Assert.assertTrue(expired.contains("c"));
+
+        // Already expired
+        Assert.assertFalse(a.cancel());
+        Assert.assertFalse(c.cancel());
+        Assert.assertEquals(0, wheel.size());
+    }
+
+
+    @Test
+    public void testMultipleRevolutions() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 4);
+        long now = System.nanoTime();
+        // Shares a bucket with several earlier ticks
+        wheel.scheduleAt("a", now + 14 * TICK);
+
+        List<String> expired = new ArrayList<>();
+        for (int i = 1; i < 15; i++) {
+            Assert.assertEquals(0, wheel.expire(now + i * TICK, expired::add));
+        }
+        Assert.assertEquals(1, wheel.expire(now + 15 * TICK, expired::add));
+    }
+
+
+    @Test
+    public void testExpireAfterLongPause() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 4);
+        long now = System.nanoTime();
+        for (int i = 1; i <= 20; i++) {
+            wheel.scheduleAt(Integer.valueOf(i), now + i * TICK);
+        }
+        List<Integer> expired = new ArrayList<>();
+        Assert.assertEquals(20, wheel.expire(now + 100 * TICK, expired::add));
+        Assert.assertEquals(20, expired.size());
+    }
+
+
+    @Test
+    public void testScheduleAfterExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, TimeUnit.MILLISECONDS, 4);
+        long now = System.nanoTime();
+        wheel.expire(now + 10 * TICK, s -> Assert.fail());
+
+        // A deadline that has already passed expires on the next tick rather than a revolution later
+        wheel.scheduleAt("a", now + 5 * TICK);
+        List<String> expired = new ArrayList<>();
+        Assert.assertEquals(1, wheel.expire(now + 11 * TICK, expired::add));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestAccessLogValveAsync extends TomcatBaseTest {
+
+    @Test
+    public void testAsyncLogging() throws Exception {
+        TesterAccessLogValve valve = createValve("async_block", "block", 16);
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "hello", new HelloWorldServlet());
+        ctx.addServletMappingDecoded("/", "hello");
+
+        tomcat.start();
+
+        for (int i = 0; i < 3; i++) {
+            int rc = getUrl("http://localhost:" + getPort() + "/test" + i, new ByteChunk(), null);
+            Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        }
+        // The response may be received before the request is logged
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (valve.logged.get() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Stopping the valve writes any queued entries
+        tomcat.stop();
+
+        List<String> lines = readLog("async_block");
+        Assert.assertEquals(lines.toString(), 3, lines.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("GET /test" + i + " HTTP/1.1", lines.get(i));
+        }
+        Assert.assertEquals(0, valve.getAsyncLogDroppedCount());
+    }
+
+
+    @Test
+    public void testOverflowCount() throws Exception {
+        AccessLogValve valve = createValve("async_count", "count", 2);
+        Tomcat tomcat = getTomcatInstance();
+        tomcat.start();
+
+        // Holding the valve's lock prevents the background thread from writing so the queue fills
+        synchronized (valve) {
+            for (int i = 0; i < 5; i++) {
+                CharArrayWriter message = new CharArrayWriter();
+                message.write("entry" + i);
+                valve.log(message);
+            }
+            Assert.assertEquals(2, valve.getAsyncLogQueueDepth());
+            Assert.assertEquals(3, valve.getAsyncLogDroppedCount());
+        }
+
+        tomcat.stop();
+
+        List<String> lines = readLog("async_count");
+        Assert.assertEquals(List.of("entry0", "entry1"), lines);
+        Assert.assertEquals(0, valve.getAsyncLogQueueDepth());
+    }
+
+
+    @Test
+    public void testStopWithQueuedEntries() throws Exception {
+        AccessLogValve valve = createValve("async_stop", "block", 16);
+        Tomcat tomcat = getTomcatInstance();
+        tomcat.start();
+
+        // Stop the valve while the entries are still queued. Lifecycle stop() holds the same lock.
+        long start;
+        synchronized (valve) {
+            for (int i = 0; i < 3; i++) {
+                CharArrayWriter message = new CharArrayWriter();
+                message.write("entry" + i);
+                valve.log(message);
+            }
+            Assert.assertEquals(3, valve.getAsyncLogQueueDepth());
+            start = System.nanoTime();
+            valve.stop();
+        }
+        // Stopping must not wait for the writer thread to time out
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        List<String> lines = readLog("async_stop");
+        Assert.assertEquals(List.of("entry0", "entry1", "entry2"), lines);
+        Assert.assertEquals(0, valve.getAsyncLogDroppedCount());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidOverflowPolicy() {
+        new AccessLogValve().setAsyncLogOverflowPolicy("wait");
+    }
+
+
+    private TesterAccessLogValve createValve(String prefix, String overflowPolicy, int queueSize) {
+        TesterAccessLogValve valve = new TesterAccessLogValve();
+        valve.setDirectory(getTemporaryDirectory().getAbsolutePath());
+        valve.setPrefix(prefix);
+        valve.setSuffix(".txt");
+        valve.setRotatable(false);
+        valve.setPattern("%r");
+        valve.setAsyncLogging(true);
+        valve.setAsyncLogOverflowPolicy(overflowPolicy);
+        valve.setAsyncLogQueueSize(queueSize);
+        getTomcatInstance().getHost().getPipeline().addValve(valve);
+        return valve;
+    }
+
+
+    private List<String> readLog(String prefix) throws Exception {
+        File log = new File(getTemporaryDirectory(), prefix + ".txt");
+        return Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+    }
+
+
+    private static class TesterAccessLogValve extends AccessLogValve {
+
+        private final AtomicInteger logged = new AtomicInteger();
+
+        @Override
+        public void log(CharArrayWriter message) {
+            super.log(message);
+            logged.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestAdaptiveConcurrencyLimitValve extends TomcatBaseTest {
+
+    @Test
+    public void testAdditiveIncrease() {
+        AdaptiveConcurrencyLimitValve.Limiter limiter =
+                new AdaptiveConcurrencyLimitValve.Limiter(2, 1, 3, 2.0, 0.5, 2);
+
+        Assert.assertTrue(limiter.acquire(0, 0));
+        Assert.assertTrue(limiter.acquire(0, 0));
+        Assert.assertFalse(limiter.acquire(0, 0));
+
+        limiter.release(1000, false);
+        limiter.release(1000, false);
+        Assert.assertEquals(3, limiter.getLimit());
+
+        // Limited by the maximum
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(limiter.acquire(0, 0));
+            limiter.release(1000, false);
+        }
+        Assert.assertEquals(3, limiter.getLimit());
+        Assert.assertEquals(13, limiter.getRequestCount());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+    }
+
+
+    @Test
+    public void testMultiplicativeDecreaseOnFailure() {
+        AdaptiveConcurrencyLimitValve.Limiter limiter =
+                new AdaptiveConcurrencyLimitValve.Limiter(10, 1, 20, 2.0, 0.5, 2);
+
+        Assert.assertTrue(limiter.acquire(0, 0));
+        Assert.assertTrue(limiter.acquire(0, 0));
+        Assert.assertTrue(limiter.acquire(0, 0));
+
+        limiter.release(TimeUnit.SECONDS.toNanos(10), true);
+        // No change until the end of the window
+        Assert.assertEquals(10, limiter.getLimit());
+        limiter.release(TimeUnit.SECONDS.toNanos(10), true);
+        Assert.assertEquals(5, limiter.getLimit());
+
+        limiter.release(TimeUnit.SECONDS.toNanos(10), true);
+        Assert.assertEquals(5, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+
+    @Test
+    public void testMultiplicativeDecreaseOnLatency() {
+        AdaptiveConcurrencyLimitValve.Limiter limiter =
+                new AdaptiveConcurrencyLimitValve.Limiter(10, 4, 20, 2.0, 0.3, 10);
+
+        // Sets the long term latency
+        doRequests(limiter, 10, 1000);
+        Assert.assertEquals(10, limiter.getLimit());
+
+        // A single slow request does not reduce the limit
+        doRequests(limiter, 9, 1000);
+        doRequests(limiter, 1, 50000);
+        Assert.assertEquals(10, limiter.getLimit());
+
+        // Many slow requests reduce the limit once per window
+        doRequests(limiter, 9, 5000);
+        Assert.assertEquals(10, limiter.getLimit());
+        doRequests(limiter, 1, 5000);
+        // Limited by the minimum
+        Assert.assertEquals(4, limiter.getLimit());
+    }
+
+
+    private static void doRequests(AdaptiveConcurrencyLimitValve.Limiter limiter, int count, long latency) {
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue(limiter.acquire(0, 0));
+            limiter.release(latency, false);
+        }
+    }
+
+
+    @Test
+    public void testQueue() throws Exception {
+        AdaptiveConcurrencyLimitValve.Limiter limiter =
+                new AdaptiveConcurrencyLimitValve.Limiter(1, 1, 1, 2.0, 0.9, 50);
+
+        Assert.assertTrue(limiter.acquire(1, 0));
+        // Queue is full
+        Assert.assertFalse(limiter.acquire(0, TimeUnit.SECONDS.toNanos(10)));
+        // Times out in the queue
+        Assert.assertFalse(limiter.acquire(1, TimeUnit.MILLISECONDS.toNanos(10)));
+        Assert.assertEquals(0, limiter.getQueueDepth());
+
+        boolean[] acquired = new boolean[1];
+        Thread t = new Thread(() -> acquired[0] = limiter.acquire(1, TimeUnit.SECONDS.toNanos(10)));
+        t.start();
+        while (limiter.getQueueDepth() == 0) {
+            Thread.sleep(10);
+        }
+        limiter.release(1000, false);
+        t.join();
+
+        Assert.assertTrue(acquired[0]);
+        Assert.assertEquals(1, limiter.getInFlight());
+        Assert.assertEquals(2, limiter.getRejectedCount());
+    }
+
+
+    @Test
+    public void testRejection() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addContext("", new File(System.getProperty("java.io.tmpdir")).getAbsolutePath());
+        BlockingServlet servlet = new BlockingServlet();
+        Tomcat.addServlet(ctx, "blocking", servlet);
+        ctx.addServletMappingDecoded("/", "blocking");
+
+        AdaptiveConcurrencyLimitValve valve = new AdaptiveConcurrencyLimitValve();
+        valve.setInitialLimit(1);
+        valve.setMaxLimit(1);
+        valve.setRetryAfter(5);
+        ctx.getPipeline().addValve(valve);
+
+        tomcat.start();
+
+        ByteChunk firstBody = new ByteChunk();
+        int[] firstRc = new int[1];
+        Thread first = new Thread(() -> {
+            try {
+                firstRc[0] = getUrl("http://localhost:" + getPort() + "/", firstBody, null);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        });
+        first.start();
+        Assert.assertTrue(servlet.entered.await(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(1, valve.getInFlight());
+
+        Map<String,List<String>> resHead = new HashMap<>();
+        int rc = getUrl("http://localhost:" + getPort() + "/", new ByteChunk(), resHead);
+        Assert.assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, rc);
+        Assert.assertEquals("5", resHead.get("Retry-After").get(0));
+
+        servlet.release.countDown();
+        first.join(10000);
+        Assert.assertEquals(HttpServletResponse.SC_OK, firstRc[0]);
+
+        Assert.assertEquals(2, valve.getRequestCount());
+        Assert.assertEquals(1, valve.getRejectedCount());
+        Assert.assertEquals(0.5, valve.getRejectionRate(), 0.001);
+        Assert.assertEquals(1, valve.getLimit(""));
+        Assert.assertEquals(-1, valve.getLimit("/missing"));
+    }
+
+
+    @Test
+    public void testRemovedOnContextStop() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = tomcat.addContext("", new File(System.getProperty("java.io.tmpdir")).getAbsolutePath());
+        BlockingServlet servlet = new BlockingServlet();
+        servlet.release.countDown();
+        Tomcat.addServlet(ctx, "blocking", servlet);
+        ctx.addServletMappingDecoded("/", "blocking");
+
+        AdaptiveConcurrencyLimitValve valve = new AdaptiveConcurrencyLimitValve();
+        tomcat.getHost().getPipeline().addValve(valve);
+
+        tomcat.start();
+
+        int rc = getUrl("http://localhost:" + getPort() + "/", new ByteChunk(), null);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertEquals(20, valve.getLimit(""));
+
+        ctx.stop();
+        Assert.assertEquals(-1, valve.getLimit(""));
+    }
+
+
+    private static class BlockingServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            resp.getWriter().print("OK");
+        }
+    }
+}
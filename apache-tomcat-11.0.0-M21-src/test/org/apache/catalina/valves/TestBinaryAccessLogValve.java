@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestBinaryAccessLogValve extends TomcatBaseTest {
+
+    @Test
+    public void testCombinedFormat() throws Exception {
+        doTest("binary_default", 16384);
+    }
+
+
+    @Test
+    public void testFullDictionary() throws Exception {
+        doTest("binary_full", 1);
+    }
+
+
+    private void doTest(String prefix, int maxDictionarySize) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "hello", new HelloWorldServlet());
+        ctx.addServletMappingDecoded("/hello", "hello");
+
+        File dir = getTemporaryDirectory();
+
+        // Text log using the combined pattern for comparison
+        AccessLogValve text = new AccessLogValve();
+        text.setDirectory(dir.getAbsolutePath());
+        text.setPrefix(prefix + "_text");
+        text.setSuffix(".txt");
+        text.setRotatable(false);
+        text.setPattern("combined");
+        tomcat.getHost().getPipeline().addValve(text);
+
+        BinaryAccessLogValve binary = new BinaryAccessLogValve();
+        binary.setDirectory(dir.getAbsolutePath());
+        binary.setPrefix(prefix);
+        binary.setRotatable(false);
+        binary.setMaxDictionarySize(maxDictionarySize);
+        tomcat.getHost().getPipeline().addValve(binary);
+
+        tomcat.start();
+
+        Map<String,List<String>> reqHead = new HashMap<>();
+        reqHead.put("Referer", List.of("http://example.org/\"quoted\""));
+        reqHead.put("User-Agent", List.of("TesterAgent/1.0"));
+        String base = "http://localhost:" + getPort();
+        getUrl(base + "/hello", new ByteChunk(), reqHead, null);
+        getUrl(base + "/hello?a=b&c=d", new ByteChunk(), reqHead, null);
+        getUrl(base + "/missing", new ByteChunk(), null);
+        getUrl(base + "/hello", new ByteChunk(), null);
+
+        tomcat.stop();
+
+        List<String> expected = Files.readAllLines(new File(dir, prefix + "_text.txt").toPath(),
+                StandardCharsets.UTF_8);
+        Assert.assertEquals(4, expected.size());
+
+        List<String> actual = new ArrayList<>();
+        List<BinaryAccessLogReader.Entry> entries = new ArrayList<>();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("[dd/MMM/yyyy:HH:mm:ss Z]", Locale.US);
+        File log = new File(dir, prefix + ".bin");
+        try (InputStream is = new FileInputStream(log); BinaryAccessLogReader reader = new BinaryAccessLogReader(is)) {
+            BinaryAccessLogReader.Entry entry;
+            while ((entry = reader.read()) != null) {
+                entries.add(entry);
+                actual.add(entry.toCombinedFormat(dateFormat));
+            }
+        }
+
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals("a=b&c=d", entries.get(1).getQuery());
+        Assert.assertEquals(404, entries.get(2).getStatus());
+        Assert.assertTrue(entries.get(0).getProcessingTime() > 0);
+
+        // The binary log should be smaller than the text log
+        Assert.assertTrue(log.length() < new File(dir, prefix + "_text.txt").length());
+    }
+}
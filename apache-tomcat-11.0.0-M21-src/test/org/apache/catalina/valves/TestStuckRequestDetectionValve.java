@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.valves;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+public class TestStuckRequestDetectionValve extends TomcatBaseTest {
+
+    private StandardContext context;
+    private Tomcat tomcat;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        tomcat = getTomcatInstance();
+        File docBase = new File(System.getProperty("java.io.tmpdir"));
+        context = (StandardContext) tomcat.addContext("", docBase.getAbsolutePath());
+    }
+
+
+    @Test
+    public void testDetection() throws Exception {
+        StickingServlet stickingServlet = new StickingServlet(3000, 1);
+        Tomcat.addServlet(context, "sticking", stickingServlet);
+        context.addServletMappingDecoded("/sticking", "sticking");
+
+        StuckRequestDetectionValve valve = new StuckRequestDetectionValve();
+        valve.setThreshold(500);
+        valve.setStackSampleCount(5);
+        valve.setStackSampleInterval(50);
+        context.addValve(valve);
+        tomcat.start();
+
+        ByteChunk result = new ByteChunk();
+        Thread client = startClient("/sticking?a=b", result);
+        try {
+            Assert.assertTrue(stickingServlet.entered.await(10, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            Assert.assertEquals(0, valve.getStuckRequestCount());
+
+            // Sub-second threshold
+            Thread.sleep(1000);
+            Assert.assertEquals(1, valve.getStuckRequestCount());
+            Assert.assertArrayEquals(new String[] { "/sticking?a=b" }, valve.getStuckRequestUris());
+            Assert.assertEquals(1, valve.getStuckThreadNames().length);
+        } finally {
+            client.join(20000);
+            Assert.assertFalse(client.isAlive());
+        }
+        Assert.assertTrue(result.toString().startsWith("OK"));
+        Assert.assertEquals(0, valve.getStuckRequestCount());
+        Assert.assertEquals(0, valve.getStuckRequestUris().length);
+    }
+
+
+    @Test
+    public void testAsync() throws Exception {
+        AsyncServlet asyncServlet = new AsyncServlet();
+        Wrapper wrapper = Tomcat.addServlet(context, "async", asyncServlet);
+        wrapper.setAsyncSupported(true);
+        context.addServletMappingDecoded("/async", "async");
+
+        StuckRequestDetectionValve valve = new StuckRequestDetectionValve();
+        valve.setThreshold(500);
+        context.addValve(valve);
+        tomcat.start();
+
+        ByteChunk result = new ByteChunk();
+        Thread client = startClient("/async", result);
+        try {
+            Assert.assertTrue(asyncServlet.started.await(10, TimeUnit.SECONDS));
+
+            // The container thread has returned but the request is still in progress
+            Thread.sleep(1500);
+            Assert.assertEquals(1, valve.getStuckRequestCount());
+            Assert.assertEquals(0, valve.getStuckThreadNames().length);
+
+            asyncServlet.asyncContext.getResponse().getWriter().print("OK");
+            asyncServlet.asyncContext.complete();
+        } finally {
+            client.join(20000);
+            Assert.assertFalse(client.isAlive());
+        }
+        Assert.assertTrue(result.toString().startsWith("OK"));
+        Assert.assertEquals(0, valve.getStuckRequestCount());
+    }
+
+
+    @Test
+    public void testThresholds() throws Exception {
+        StickingServlet stickingServlet = new StickingServlet(20000, 3);
+        Tomcat.addServlet(context, "sticking", stickingServlet);
+        context.addServletMappingDecoded("/*", "sticking");
+
+        StuckRequestDetectionValve valve = new StuckRequestDetectionValve();
+        valve.setThreshold(60000);
+        valve.setThresholds("*.jsp=0, /slow/*=300");
+        context.addValve(valve);
+        tomcat.start();
+
+        ByteChunk fast = new ByteChunk();
+        Thread fastClient = startClient("/slow/index.jsp", fast);
+        ByteChunk slow = new ByteChunk();
+        Thread slowClient = startClient("/slow", slow);
+        ByteChunk other = new ByteChunk();
+        Thread otherClient = startClient("/other", other);
+        try {
+            Assert.assertTrue(stickingServlet.entered.await(10, TimeUnit.SECONDS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (valve.getStuckRequestUris().length == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            Assert.assertArrayEquals(new String[] { "/slow" }, valve.getStuckRequestUris());
+        } finally {
+            stickingServlet.release.countDown();
+            fastClient.join(20000);
+            slowClient.join(20000);
+            otherClient.join(20000);
+        }
+        Assert.assertEquals(0, valve.getStuckRequestCount());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThresholds() {
+        new StuckRequestDetectionValve().setThresholds("/api*=100");
+    }
+
+
+    private Thread startClient(String path, ByteChunk result) {
+        Thread client = new Thread(() -> {
+            try {
+                getUrl("http://localhost:" + getPort() + path, result, null);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        });
+        client.start();
+        return client;
+    }
+
+
+    private static class StickingServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long delay;
+        private final CountDownLatch entered;
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        StickingServlet(long delay, int requests) {
+            this.delay = delay;
+            entered = new CountDownLatch(requests);
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            entered.countDown();
+            try {
+                release.await(delay, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().println("OK");
+        }
+    }
+
+
+    private static class AsyncServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile AsyncContext asyncContext;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            asyncContext = req.startAsync();
+            asyncContext.setTimeout(0);
+            started.countDown();
+        }
+    }
+}
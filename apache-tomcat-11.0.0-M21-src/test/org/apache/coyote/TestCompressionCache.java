@@ -0,0 +1,136 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompressionCache {
+
+    @Test
+    public void testHitAndMiss() {
+        CompressionCache cache = createCache(10 * 1024);
+
+        Assert.assertNull(cache.get("a"));
+        cache.put("a", new byte[100], 1000);
+        Assert.assertEquals(100, cache.get("a").length);
+        Assert.assertEquals(100, cache.get("a").length);
+
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2.0 / 3, cache.getHitRatio(), 0.0001);
+        Assert.assertEquals(2000, cache.getBytesSaved());
+
+        cache.resetCounters();
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(0, cache.getMissCount());
+        Assert.assertEquals(0, cache.getHitRatio(), 0);
+        Assert.assertEquals(0, cache.getBytesSaved());
+        Assert.assertEquals(1, cache.getEntryCount());
+    }
+
+
+    @Test
+    public void testLruEviction() {
+        CompressionCache cache = createCache(3 * 1024);
+
+        cache.put("a", new byte[800], 1000);
+        cache.put("b", new byte[800], 1000);
+        cache.put("c", new byte[800], 1000);
+        Assert.assertEquals(3, cache.getEntryCount());
+
+        // Access a so b becomes the least recently used entry
+        Assert.assertNotNull(cache.get("a"));
+        cache.put("d", new byte[800], 1000);
+
+        Assert.assertEquals(3, cache.getEntryCount());
+        Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertNotNull(cache.get("d"));
+    }
+
+
+    @Test
+    public void testReplace() {
+        CompressionCache cache = createCache(10 * 1024);
+
+        cache.put("a", new byte[800], 1000);
+        long size = cache.getSize();
+        cache.put("a", new byte[400], 1000);
+
+        Assert.assertEquals(1, cache.getEntryCount());
+        Assert.assertEquals(size - 400, cache.getSize());
+        Assert.assertEquals(400, cache.get("a").length);
+    }
+
+
+    @Test
+    public void testEntryTooLarge() {
+        CompressionCache cache = createCache(1024);
+
+        cache.put("a", new byte[100], 1000);
+        cache.put("b", new byte[2048], 4096);
+
+        Assert.assertEquals(1, cache.getEntryCount());
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+    }
+
+
+    @Test
+    public void testReduceMaxSize() {
+        CompressionCache cache = createCache(10 * 1024);
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(Integer.toString(i), new byte[1000], 2000);
+        }
+        Assert.assertEquals(5, cache.getEntryCount());
+
+        cache.setMaxSize(2500);
+        Assert.assertEquals(2, cache.getEntryCount());
+        Assert.assertNotNull(cache.get("3"));
+        Assert.assertNotNull(cache.get("4"));
+
+        cache.setMaxSize(0);
+        Assert.assertFalse(cache.isEnabled());
+        Assert.assertEquals(0, cache.getEntryCount());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+
+    @Test
+    public void testClear() {
+        CompressionCache cache = createCache(10 * 1024);
+
+        cache.put("a", new byte[100], 1000);
+        cache.clear();
+
+        Assert.assertEquals(0, cache.getEntryCount());
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertNull(cache.get("a"));
+    }
+
+
+    private static CompressionCache createCache(long maxSize) {
+        CompressionCache cache = new CompressionCache();
+        cache.setMaxSize(maxSize);
+        Assert.assertTrue(cache.isEnabled());
+        return cache;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+@RunWith(Parameterized.class)
+public class TestCompressionConfigEncodings {
+
+    private static final String BAR = TesterBarEncoder.class.getName();
+    private static final String FOO = TesterFooEncoder.class.getName();
+    private static final String UNAVAILABLE = TesterUnavailableEncoder.class.getName();
+
+    @Parameterized.Parameters(name = "{index}: encodings[{0}], accept-encoding[{1}], expected[{2}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+
+        // Server preference order is used for equal weights
+        parameterSets.add(new Object[] { FOO + ",gzip", new String[] { "gzip, foo" }, "foo" });
+        parameterSets.add(new Object[] { "gzip," + FOO, new String[] { "gzip, foo" }, "gzip" });
+        parameterSets.add(new Object[] { FOO + "," + BAR + ",gzip", new String[] { "gzip", "bar", "foo" }, "foo" });
+
+        // Weights take precedence over server preference order
+        parameterSets.add(new Object[] { FOO + ",gzip", new String[] { "gzip, foo;q=0.5" }, "gzip" });
+        parameterSets.add(new Object[] { FOO + ",gzip", new String[] { "gzip;q=0.4", "foo;q=0.5" }, "foo" });
+        parameterSets.add(new Object[] { FOO + "," + BAR, new String[] { "foo;q=0.1, bar;q=0.2" }, "bar" });
+
+        // Encodings with a weight of zero are not acceptable
+        parameterSets.add(new Object[] { FOO + ",gzip", new String[] { "gzip, foo;q=0" }, "gzip" });
+        parameterSets.add(new Object[] { FOO, new String[] { "foo;q=0" }, null });
+
+        // Only encodings supported by both client and server are used
+        parameterSets.add(new Object[] { FOO, new String[] { "gzip" }, null });
+        parameterSets.add(new Object[] { "gzip", new String[] { "foo" }, null });
+        parameterSets.add(new Object[] { FOO + ",gzip", new String[] { "*" }, null });
+        parameterSets.add(new Object[] { "gzip, " + FOO, new String[] { "FOO" }, "foo" });
+
+        // Unavailable encodings are ignored and gzip is used if nothing is available
+        parameterSets.add(new Object[] { UNAVAILABLE + "," + FOO, new String[] { "gzip, foo, unavailable" }, "foo" });
+        parameterSets.add(new Object[] { UNAVAILABLE, new String[] { "gzip, unavailable" }, "gzip" });
+        parameterSets.add(new Object[] { "org.apache.coyote.DoesNotExist", new String[] { "gzip" }, "gzip" });
+
+        // Content codings without an encoder are ignored rather than loaded as classes
+        parameterSets.add(new Object[] { "deflate," + FOO, new String[] { "deflate, foo" }, "foo" });
+        parameterSets.add(new Object[] { "deflate", new String[] { "gzip, deflate" }, "gzip" });
+
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public String encodings;
+    @Parameter(1)
+    public String[] headers;
+    @Parameter(2)
+    public String expected;
+
+    @Test
+    public void testNegotiation() throws Exception {
+
+        CompressionConfig compressionConfig = new CompressionConfig();
+        // Skip length and MIME type checks
+        compressionConfig.setCompression("force");
+        compressionConfig.setCompressionEncodings(encodings);
+
+        Request request = new Request();
+        Response response = new Response();
+
+        for (String header : headers) {
+            request.getMimeHeaders().addValue("accept-encoding").setString(header);
+        }
+
+        CompressionEncoder encoder = compressionConfig.getCompressionEncoder(request, response);
+
+        if (expected == null) {
+            Assert.assertNull(encoder);
+            Assert.assertNull(response.getMimeHeaders().getHeader("Content-Encoding"));
+        } else {
+            Assert.assertNotNull(encoder);
+            Assert.assertEquals(expected, encoder.getEncoding());
+            Assert.assertEquals(expected, response.getMimeHeaders().getHeader("Content-Encoding"));
+        }
+    }
+
+
+    public static class TesterFooEncoder implements CompressionEncoder {
+
+        @Override
+        public String getEncoding() {
+            return "foo";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public OutputStream createOutputStream(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, true);
+        }
+    }
+
+
+    public static class TesterBarEncoder extends TesterFooEncoder {
+
+        @Override
+        public String getEncoding() {
+            return "bar";
+        }
+    }
+
+
+    public static class TesterUnavailableEncoder extends TesterFooEncoder {
+
+        @Override
+        public String getEncoding() {
+            return "unavailable";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return false;
+        }
+    }
+}
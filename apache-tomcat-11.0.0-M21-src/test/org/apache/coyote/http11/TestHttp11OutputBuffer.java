@@ -17,6 +17,7 @@
 package org.apache.coyote.http11;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,7 +34,10 @@ import org.apache.catalina.Context;
 import org.apache.catalina.startup.ExpectationClient;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.coyote.Response;
 import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.apache.tomcat.util.http.FastHttpDateFormat;
 
 public class TestHttp11OutputBuffer extends TomcatBaseTest {
 
@@ -86,6 +90,53 @@ public class TestHttp11OutputBuffer extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testEncodedHeaderCache() {
+        Response response = new Response();
+        Http11OutputBuffer uncached = new Http11OutputBuffer(response, 8192);
+        EncodedHeaderCache cache = new EncodedHeaderCache();
+        Http11OutputBuffer cached = new Http11OutputBuffer(response, 8192, cache);
+
+        String date = FastHttpDateFormat.getCurrentDate();
+        String[][] headers = { { "Server", "Apache-Coyote/1.1" }, { "Content-Type", "text/plain;charset=UTF-8" },
+                { "Vary", "accept-encoding" }, { "Date", "Thu, 01 Jan 1970 00:00:00 GMT" }, { "Date", date },
+                { "Set-Cookie", "a=b" }, { "Content-Language", "en\u0001" }, { "Content-Type", "text/\u00A0html" } };
+
+        // The second pass writes the cached header lines
+        for (int i = 0; i < 2; i++) {
+            for (String[] header : headers) {
+                sendHeader(uncached, header[0], header[1]);
+                sendHeader(cached, header[0], header[1]);
+            }
+        }
+
+        Assert.assertEquals(getHeaders(uncached), getHeaders(cached));
+
+        Assert.assertNotNull(cache.get("Server", "Apache-Coyote/1.1"));
+        Assert.assertNotNull(cache.get("Content-Type", "text/\u00A0html"));
+        Assert.assertNotNull(cache.get("Date", date));
+        // Only the current value of the Date header is cached
+        Assert.assertNull(cache.get("Date", "Thu, 01 Jan 1970 00:00:00 GMT"));
+        // Headers with values that are usually unique to a response are not cached
+        Assert.assertNull(cache.get("Set-Cookie", "a=b"));
+    }
+
+
+    private static void sendHeader(Http11OutputBuffer outputBuffer, String name, String value) {
+        MessageBytes nameMB = MessageBytes.newInstance();
+        nameMB.setString(name);
+        MessageBytes valueMB = MessageBytes.newInstance();
+        valueMB.setString(value);
+        outputBuffer.sendHeader(nameMB, valueMB);
+    }
+
+
+    private static String getHeaders(Http11OutputBuffer outputBuffer) {
+        return new String(outputBuffer.headerBuffer.array(), 0, outputBuffer.headerBuffer.position(),
+                StandardCharsets.ISO_8859_1);
+    }
+
+
     private void doTestHTTPHeaderValue(String customHeaderValue, boolean valid) throws Exception {
         Tomcat tomcat = getTomcatInstance();
 
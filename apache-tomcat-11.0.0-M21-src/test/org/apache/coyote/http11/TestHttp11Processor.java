@@ -17,6 +17,7 @@
 package org.apache.coyote.http11;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -32,10 +33,17 @@ import java.net.SocketAddress;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import jakarta.servlet.AsyncContext;
 import jakarta.servlet.DispatcherType;
@@ -57,11 +65,14 @@ import org.apache.catalina.startup.SimpleHttpClient;
 import org.apache.catalina.startup.TesterServlet;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.TestCompressionConfigEncodings;
 import org.apache.tomcat.util.buf.B2CConverter;
 import org.apache.tomcat.util.buf.ByteChunk;
 import org.apache.tomcat.util.descriptor.web.SecurityCollection;
 import org.apache.tomcat.util.descriptor.web.SecurityConstraint;
 import org.apache.tomcat.util.http.parser.TokenList;
+import org.apache.tomcat.util.modeler.Registry;
 
 public class TestHttp11Processor extends TomcatBaseTest {
 
@@ -359,6 +370,198 @@ public class TestHttp11Processor extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testPipeliningBatched() throws Exception {
+        // The first response is held back while the second request is processed
+        Assert.assertFalse(doTestPipeliningFlush(60000, 0));
+    }
+
+
+    @Test
+    public void testPipeliningNotBatched() throws Exception {
+        Assert.assertTrue(doTestPipeliningFlush(0, 0));
+    }
+
+
+    @Test
+    public void testPipeliningFlushDelay() throws Exception {
+        // The limit passes while the slow request is processed
+        Assert.assertTrue(doTestPipeliningFlush(100, 500));
+    }
+
+
+    @Test
+    public void testPipeliningFlushDelayNextRequestSlow() throws Exception {
+        // The earlier responses are written once the limit has passed even
+        // though the request being processed has not completed
+        Assert.assertTrue(doTestPipeliningFlush(100, 0));
+    }
+
+
+    /*
+     * Sends "GET /foo", "GET /slow" and "GET /wait" in a single write.
+     * Returns true if the client received the first response while the last
+     * request was being processed.
+     */
+    private boolean doTestPipeliningFlush(int maxPipelinedFlushDelay, long slowDelay) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("maxPipelinedFlushDelay",
+                Integer.toString(maxPipelinedFlushDelay)));
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+        Tomcat.addServlet(ctx, "SlowServlet", new PipeliningServlet(slowDelay, null));
+        ctx.addServletMappingDecoded("/slow", "SlowServlet");
+        CountDownLatch firstReceived = new CountDownLatch(1);
+        PipeliningServlet waitServlet = new PipeliningServlet(2000, firstReceived);
+        Tomcat.addServlet(ctx, "WaitServlet", waitServlet);
+        ctx.addServletMappingDecoded("/wait", "WaitServlet");
+
+        tomcat.start();
+
+        StringBuilder request = new StringBuilder();
+        for (String path : new String[] { "/foo", "/slow", "/wait" }) {
+            request.append("GET " + path + " HTTP/1.1" + SimpleHttpClient.CRLF + "Host: any" +
+                    SimpleHttpClient.CRLF + SimpleHttpClient.CRLF);
+        }
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] { request.toString() });
+        client.setUseContentLength(true);
+        client.connect();
+        client.sendRequest();
+
+        for (int i = 0; i < 3; i++) {
+            client.readResponse(true);
+            Assert.assertTrue(client.getResponseLine(), client.isResponse200());
+            Assert.assertEquals("OK", client.getResponseBody());
+            firstReceived.countDown();
+        }
+        return waitServlet.released;
+    }
+
+
+    @Test
+    public void testPipeliningBatchedResponses() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("maxPipelinedFlushDelay", "60000"));
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+        Tomcat.addServlet(ctx, "EchoBodyServlet", new EchoBodyServlet());
+        ctx.addServletMappingDecoded("/echo", "EchoBodyServlet");
+
+        tomcat.start();
+
+        // Send all the requests in a single write so the later requests have
+        // been received by the time the earlier responses are complete
+        int count = 20;
+        StringBuilder request = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i % 5 == 4) {
+                request.append("POST /echo HTTP/1.1" + SimpleHttpClient.CRLF + "Host: any" + SimpleHttpClient.CRLF +
+                        "Content-Length: 2" + SimpleHttpClient.CRLF + SimpleHttpClient.CRLF + "OK");
+            } else {
+                request.append("GET /foo HTTP/1.1" + SimpleHttpClient.CRLF + "Host: any" + SimpleHttpClient.CRLF +
+                        SimpleHttpClient.CRLF);
+            }
+        }
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] { request.toString() });
+        client.setUseContentLength(true);
+        client.connect();
+        client.sendRequest();
+
+        for (int i = 0; i < count; i++) {
+            client.readResponse(true);
+            Assert.assertTrue(client.getResponseLine(), client.isResponse200());
+            Assert.assertEquals("OK", client.getResponseBody());
+        }
+    }
+
+
+    /*
+     * A response held back because the next request had already been received
+     * must be written before blocking to read the body of the next request.
+     */
+    @Test
+    public void testPipeliningDeferredFlushBeforeBodyRead() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Assert.assertTrue(tomcat.getConnector().setProperty("maxPipelinedFlushDelay", "60000"));
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "TesterServlet", new TesterServlet());
+        ctx.addServletMappingDecoded("/foo", "TesterServlet");
+        Tomcat.addServlet(ctx, "EchoBodyServlet", new EchoBodyServlet());
+        ctx.addServletMappingDecoded("/echo", "EchoBodyServlet");
+
+        tomcat.start();
+
+        String request = "GET /foo HTTP/1.1" + SimpleHttpClient.CRLF + "Host: any" + SimpleHttpClient.CRLF +
+                SimpleHttpClient.CRLF + "POST /echo HTTP/1.1" + SimpleHttpClient.CRLF + "Host: any" +
+                SimpleHttpClient.CRLF + "Content-Length: 2" + SimpleHttpClient.CRLF + SimpleHttpClient.CRLF;
+
+        final Client client = new Client(tomcat.getConnector().getLocalPort());
+        client.setRequest(new String[] { request });
+        client.setUseContentLength(true);
+        // Fail rather than wait for the server to time out the read
+        client.connect(10000, 5000);
+        client.sendRequest();
+
+        // The body of the second request is only sent once the first response
+        // has been received
+        client.readResponse(true);
+        Assert.assertTrue(client.getResponseLine(), client.isResponse200());
+        Assert.assertEquals("OK", client.getResponseBody());
+
+        client.setRequest(new String[] { "OK" });
+        client.sendRequest();
+
+        client.readResponse(true);
+        Assert.assertTrue(client.getResponseLine(), client.isResponse200());
+        Assert.assertEquals("OK", client.getResponseBody());
+    }
+
+
+    private static class PipeliningServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long delay;
+        private final CountDownLatch latch;
+        private volatile boolean released = false;
+
+        PipeliningServlet(long delay, CountDownLatch latch) {
+            this.delay = delay;
+            this.latch = latch;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            try {
+                if (latch == null) {
+                    Thread.sleep(delay);
+                } else {
+                    released = latch.await(delay, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().print("OK");
+        }
+    }
+
+
     @Test
     public void testChunking11NoContentLength() throws Exception {
         Tomcat tomcat = getTomcatInstance();
@@ -1903,6 +2106,179 @@ public class TestHttp11Processor extends TomcatBaseTest {
     }
 
 
+    @Test
+    public void testCompressionEncodings() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "compression", new CompressibleServlet());
+        ctx.addServletMappingDecoded("/", "compression");
+
+        // The test encoder uses gzip for the "foo" content coding
+        Connector connector = tomcat.getConnector();
+        Assert.assertTrue(connector.setProperty("compression", "on"));
+        Assert.assertTrue(connector.setProperty("compressionEncodings",
+                TestCompressionConfigEncodings.TesterFooEncoder.class.getName() + ",gzip"));
+
+        tomcat.start();
+
+        // Alternate encodings so the filters are re-used
+        String[] acceptEncodings = new String[] { "gzip, foo", "gzip, foo;q=0.5", "foo", "identity", "foo" };
+        String[] expectedEncodings = new String[] { "foo", "gzip", "foo", null, "foo" };
+
+        for (int i = 0; i < acceptEncodings.length; i++) {
+            Map<String,List<String>> reqHead = new HashMap<>();
+            reqHead.put("Accept-Encoding", List.of(acceptEncodings[i]));
+            Map<String,List<String>> resHead = new HashMap<>();
+            ByteChunk out = new ByteChunk();
+            int rc = getUrl("http://localhost:" + getPort() + "/", out, reqHead, resHead);
+            Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+
+            List<String> contentEncoding = resHead.get("Content-Encoding");
+            byte[] body = Arrays.copyOfRange(out.getBuffer(), out.getStart(), out.getEnd());
+            if (expectedEncodings[i] == null) {
+                Assert.assertNull(contentEncoding);
+            } else {
+                Assert.assertEquals(List.of(expectedEncodings[i]), contentEncoding);
+                try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = is.readAllBytes();
+                }
+            }
+            Assert.assertEquals(CompressibleServlet.BODY, new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+
+    @Test
+    public void testCompressionCache() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "compression", new CompressibleServlet());
+        ctx.addServletMappingDecoded("/", "compression");
+        Tomcat.addServlet(ctx, "etag", new CountingETagServlet());
+        ctx.addServletMappingDecoded("/etag", "etag");
+
+        Connector connector = tomcat.getConnector();
+        Assert.assertTrue(connector.setProperty("compression", "on"));
+        Assert.assertTrue(connector.setProperty("compressionCacheSize", "1048576"));
+        Assert.assertTrue(connector.setProperty("compressionCacheWithoutETag", "true"));
+
+        tomcat.start();
+
+        CompressionCache cache = ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).getCompressionCache();
+        Assert.assertNotNull(cache);
+
+        // Responses are cached using a hash of the body
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(CompressibleServlet.BODY, getCompressed("/"));
+        }
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2, cache.getHitCount());
+
+        // A response with an unchanged weak ETag contains the body the application wrote
+        Assert.assertEquals("1 " + CompressibleServlet.BODY, getCompressed("/etag"));
+        Assert.assertEquals("2 " + CompressibleServlet.BODY, getCompressed("/etag"));
+        Assert.assertEquals(3, cache.getMissCount());
+        Assert.assertEquals(2, cache.getHitCount());
+
+        MBeanServer mbeanServer = Registry.getRegistry(null, null).getMBeanServer();
+        Set<ObjectName> names = mbeanServer.queryNames(new ObjectName("*:type=CompressionCache,*"), null);
+        Assert.assertEquals(1, names.size());
+        ObjectName name = names.iterator().next();
+        Assert.assertEquals(Long.valueOf(2), mbeanServer.getAttribute(name, "hitCount"));
+        Assert.assertEquals(Double.valueOf(0.4), mbeanServer.getAttribute(name, "hitRatio"));
+
+        tomcat.stop();
+        tomcat.destroy();
+        Assert.assertEquals(0, mbeanServer.queryNames(new ObjectName("*:type=CompressionCache,*"), null).size());
+    }
+
+
+    @Test
+    public void testCompressionCacheWithoutETag() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        // No file system docBase required
+        Context ctx = getProgrammaticRootContext();
+
+        Tomcat.addServlet(ctx, "compression", new CompressibleServlet());
+        ctx.addServletMappingDecoded("/", "compression");
+        Tomcat.addServlet(ctx, "etag", new CountingETagServlet());
+        ctx.addServletMappingDecoded("/etag", "etag");
+
+        Connector connector = tomcat.getConnector();
+        Assert.assertTrue(connector.setProperty("compression", "on"));
+        Assert.assertTrue(connector.setProperty("compressionCacheSize", "1048576"));
+
+        tomcat.start();
+
+        CompressionCache cache = ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).getCompressionCache();
+
+        // By default, responses without an ETag are neither buffered nor cached
+        Assert.assertEquals(CompressibleServlet.BODY, getCompressed("/"));
+        Assert.assertEquals(CompressibleServlet.BODY, getCompressed("/"));
+        Assert.assertEquals(0, cache.getMissCount());
+        Assert.assertEquals(0, cache.getHitCount());
+
+        Assert.assertEquals("1 " + CompressibleServlet.BODY, getCompressed("/etag"));
+        Assert.assertEquals("2 " + CompressibleServlet.BODY, getCompressed("/etag"));
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+
+    private String getCompressed(String path) throws Exception {
+        Map<String,List<String>> reqHead = new HashMap<>();
+        reqHead.put("Accept-Encoding", List.of("gzip"));
+        Map<String,List<String>> resHead = new HashMap<>();
+        ByteChunk out = new ByteChunk();
+        int rc = getUrl("http://localhost:" + getPort() + path, out, reqHead, resHead);
+        Assert.assertEquals(HttpServletResponse.SC_OK, rc);
+        Assert.assertEquals(List.of("gzip"), resHead.get("Content-Encoding"));
+
+        byte[] body = Arrays.copyOfRange(out.getBuffer(), out.getStart(), out.getEnd());
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+
+    private static class CountingETagServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private int count = 0;
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setHeader("ETag", "W/\"1\"");
+            resp.getWriter().print(++count + " " + CompressibleServlet.BODY);
+        }
+    }
+
+
+    private static class CompressibleServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String BODY = "Compress me please! ".repeat(1024);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            resp.getWriter().print(BODY);
+        }
+    }
+
+
     private static class TestPostNoReadServlet extends HttpServlet {
 
         private static final long serialVersionUID = 1L;
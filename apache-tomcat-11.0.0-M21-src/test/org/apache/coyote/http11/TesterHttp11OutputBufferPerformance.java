@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http11;
+
+import org.junit.Test;
+
+import org.apache.coyote.Response;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.apache.tomcat.util.http.FastHttpDateFormat;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * Writes the response headers of a typical hello world servlet with and without the encoded header cache.
+ */
+public class TesterHttp11OutputBufferPerformance {
+
+    private static final int ITERATIONS = 5_000_000;
+
+
+    @Test
+    public void testSendHeader() {
+        Response response = new Response();
+        Http11OutputBuffer uncached = new Http11OutputBuffer(response, 8192);
+        Http11OutputBuffer cached = new Http11OutputBuffer(response, 8192, new EncodedHeaderCache());
+
+        for (int i = 0; i < 3; i++) {
+            long uncachedTime = doTest(uncached);
+            long cachedTime = doTest(cached);
+            System.out.println("Uncached: " + uncachedTime / 1_000_000 + "ms, cached: " + cachedTime / 1_000_000 +
+                    "ms");
+        }
+    }
+
+
+    private long doTest(Http11OutputBuffer outputBuffer) {
+        MessageBytes[] names = new MessageBytes[4];
+        MessageBytes[] values = new MessageBytes[4];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = MessageBytes.newInstance();
+            values[i] = MessageBytes.newInstance();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            // Set the headers for each response as Http11Processor.prepareResponse() does
+            names[0].setString("Server");
+            values[0].setString("Apache-Tomcat");
+            names[1].setString("Content-Type");
+            values[1].setString("text/plain;charset=UTF-8");
+            names[2].setString("Content-Length");
+            values[2].setLong(12);
+            names[3].setString("Date");
+            values[3].setString(FastHttpDateFormat.getCurrentDate());
+
+            outputBuffer.sendStatus();
+            for (int j = 0; j < names.length; j++) {
+                outputBuffer.sendHeader(names[j], values[j]);
+            }
+            outputBuffer.endHeaders();
+            outputBuffer.resetHeaderBuffer();
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.Request;
+import org.apache.coyote.Response;
+
+public class TestCompressionCacheOutputFilter {
+
+    private static final byte[] BODY = "Compress me please! ".repeat(512).getBytes(StandardCharsets.ISO_8859_1);
+
+    private CompressionCache cache;
+    private CompressionCacheOutputFilter filter;
+
+
+    @Before
+    public void setup() {
+        cache = new CompressionCache();
+        cache.setMaxSize(1024 * 1024);
+        cache.setCacheWithoutETag(true);
+        filter = new CompressionCacheOutputFilter(cache);
+    }
+
+
+    @Test
+    public void testContentHash() throws Exception {
+        byte[] first = write("/a", null, BODY, false);
+        Assert.assertArrayEquals(BODY, decompress(first));
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getEntryCount());
+
+        // Same body from a different URI
+        byte[] second = write("/b", null, BODY, false);
+        Assert.assertArrayEquals(first, second);
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(BODY.length, cache.getBytesSaved());
+
+        // Different body
+        byte[] other = "Something else".getBytes(StandardCharsets.ISO_8859_1);
+        Assert.assertArrayEquals(other, decompress(write("/a", null, other, false)));
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(2, cache.getEntryCount());
+    }
+
+
+    @Test
+    public void testETag() throws Exception {
+        byte[] first = write("/a", "W/\"1\"", BODY, false);
+        Assert.assertArrayEquals(BODY, decompress(first));
+        Assert.assertEquals(1, cache.getMissCount());
+
+        // A weak ETag does not guarantee the same body so the body written by the application is always used
+        byte[] other = "Something else".getBytes(StandardCharsets.ISO_8859_1);
+        Assert.assertArrayEquals(other, decompress(write("/a", "W/\"1\"", other, false)));
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+
+        // The cached body is used if the body is the same
+        Assert.assertArrayEquals(first, write("/a", "W/\"1\"", BODY, false));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(2, cache.getEntryCount());
+    }
+
+
+    @Test
+    public void testWithoutETagNotCached() throws Exception {
+        cache.setCacheWithoutETag(false);
+
+        Assert.assertArrayEquals(BODY, decompress(write("/a", null, BODY, false)));
+        Assert.assertArrayEquals(BODY, decompress(write("/a", null, BODY, false)));
+        Assert.assertEquals(0, cache.getMissCount());
+        Assert.assertEquals(0, cache.getEntryCount());
+
+        // Responses with an ETag are still cached
+        byte[] first = write("/a", "W/\"1\"", BODY, false);
+        Assert.assertArrayEquals(first, write("/a", "W/\"1\"", BODY, false));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+
+    @Test
+    public void testETagFlush() throws Exception {
+        Assert.assertArrayEquals(BODY, decompress(write("/a", "W/\"1\"", BODY, true)));
+        Assert.assertArrayEquals(BODY, decompress(write("/a", "W/\"1\"", BODY, true)));
+        Assert.assertEquals(0, cache.getEntryCount());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+
+    @Test
+    public void testContentHashFlush() throws Exception {
+        Assert.assertArrayEquals(BODY, decompress(write("/a", null, BODY, true)));
+        Assert.assertEquals(0, cache.getEntryCount());
+    }
+
+
+    @Test
+    public void testTooLarge() throws Exception {
+        cache.setMaxEntrySize(BODY.length - 1);
+
+        Assert.assertArrayEquals(BODY, decompress(write("/a", null, BODY, false)));
+        Assert.assertArrayEquals(BODY, decompress(write("/a", "W/\"1\"", BODY, false)));
+        Assert.assertEquals(0, cache.getEntryCount());
+    }
+
+
+    @Test
+    public void testEndTwice() throws Exception {
+        byte[] first = write("/a", "W/\"1\"", BODY, false);
+
+        Response res = createResponse("/a", "W/\"1\"");
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+        filter.setCompressionFilter(new GzipOutputFilter(), "gzip");
+        tob.addFilter(filter);
+        tob.addActiveFilter(filter);
+        tob.doWrite(ByteBuffer.wrap(BODY));
+
+        // HTTP/2 may end the response more than once
+        filter.end();
+        filter.end();
+        Assert.assertArrayEquals(first, tob.toByteArray());
+    }
+
+
+    @Test
+    public void testNotOk() throws Exception {
+        Response res = createResponse("/a", null);
+        res.setStatus(404);
+        Assert.assertArrayEquals(BODY, decompress(write(res, BODY, false)));
+        Assert.assertEquals(0, cache.getEntryCount());
+        Assert.assertEquals(0, cache.getMissCount());
+    }
+
+
+    private byte[] write(String uri, String eTag, byte[] body, boolean flush) throws Exception {
+        return write(createResponse(uri, eTag), body, flush);
+    }
+
+
+    private byte[] write(Response res, byte[] body, boolean flush) throws Exception {
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+
+        filter.setCompressionFilter(new GzipOutputFilter(), "gzip");
+        tob.addFilter(filter);
+        tob.addActiveFilter(filter);
+
+        int half = body.length / 2;
+        tob.doWrite(ByteBuffer.wrap(body, 0, half));
+        if (flush) {
+            tob.flush();
+        }
+        tob.doWrite(ByteBuffer.wrap(body, half, body.length - half));
+        tob.end();
+        byte[] result = tob.toByteArray();
+
+        filter.recycle();
+        return result;
+    }
+
+
+    private static Response createResponse(String uri, String eTag) {
+        Request req = new Request();
+        Response res = new Response();
+        req.setResponse(res);
+        req.method().setString("GET");
+        req.serverName().setString("localhost");
+        req.requestURI().setString(uri);
+        if (eTag != null) {
+            res.getMimeHeaders().setValue("ETag").setString(eTag);
+        }
+        return res;
+    }
+
+
+    private static byte[] decompress(byte[] compressed) throws Exception {
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return is.readAllBytes();
+        }
+    }
+}
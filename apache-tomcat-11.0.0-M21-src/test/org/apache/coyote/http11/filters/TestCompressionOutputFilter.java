@@ -0,0 +1,63 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.coyote.Response;
+import org.apache.coyote.TestCompressionConfigEncodings.TesterFooEncoder;
+import org.apache.coyote.http11.OutputFilter;
+
+public class TestCompressionOutputFilter {
+
+    @Test
+    public void testCreate() {
+        Assert.assertTrue(CompressionOutputFilter.create(new GzipCompressionEncoder()) instanceof GzipOutputFilter);
+        Assert.assertTrue(CompressionOutputFilter.create(new TesterFooEncoder()) instanceof CompressionOutputFilter);
+    }
+
+
+    @Test
+    public void testStreamEncoder() throws Exception {
+        byte[] data = "Hello there tomcat developers".getBytes(StandardCharsets.ISO_8859_1);
+
+        Response res = new Response();
+        OutputFilter filter = CompressionOutputFilter.create(new TesterFooEncoder());
+
+        for (int i = 0; i < 2; i++) {
+            TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+            res.setOutputBuffer(tob);
+            tob.addFilter(filter);
+            tob.addActiveFilter(filter);
+            tob.doWrite(ByteBuffer.wrap(data));
+            tob.end();
+            // Ending more than once must not add any data
+            filter.end();
+
+            try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(tob.toByteArray()))) {
+                Assert.assertArrayEquals(data, gis.readAllBytes());
+            }
+            filter.recycle();
+        }
+    }
+}
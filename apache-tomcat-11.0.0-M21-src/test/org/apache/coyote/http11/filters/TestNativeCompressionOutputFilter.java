@@ -0,0 +1,208 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http11.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+import org.apache.coyote.CompressionConfig;
+import org.apache.coyote.CompressionEncoder;
+import org.apache.coyote.Response;
+import org.apache.coyote.http11.OutputFilter;
+
+/**
+ * Tests for the output filters that use native compression libraries. These
+ * are skipped if the library or the FFM API is not available.
+ */
+@RunWith(Parameterized.class)
+public class TestNativeCompressionOutputFilter {
+
+    @Parameterized.Parameters(name = "{index}: encoding[{0}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+        parameterSets.add(new Object[] { "zstd" });
+        parameterSets.add(new Object[] { "br" });
+        return parameterSets;
+    }
+
+    @Parameter(0)
+    public String encoding;
+
+
+    @Test
+    public void testCompression() throws Exception {
+        byte[] data = createData(256 * 1024);
+
+        TesterOutputBuffer tob = createOutputBuffer();
+        // Mix of large and small writes
+        tob.doWrite(ByteBuffer.wrap(data, 0, 100));
+        tob.doWrite(ByteBuffer.wrap(data, 100, data.length - 200));
+        tob.doWrite(ByteBuffer.wrap(data, data.length - 100, 100));
+        tob.end();
+
+        byte[] compressed = tob.toByteArray();
+        Assert.assertTrue(compressed.length > 0);
+        Assert.assertTrue(compressed.length < data.length / 10);
+        if ("zstd".equals(encoding)) {
+            // Frame magic number
+            Assert.assertEquals((byte) 0x28, compressed[0]);
+            Assert.assertEquals((byte) 0xB5, compressed[1]);
+            Assert.assertEquals((byte) 0x2F, compressed[2]);
+            Assert.assertEquals((byte) 0xFD, compressed[3]);
+        }
+    }
+
+
+    @Test
+    public void testFlush() throws Exception {
+        byte[] data = createData(1024);
+
+        TesterOutputBuffer tob = createOutputBuffer();
+        tob.doWrite(ByteBuffer.wrap(data));
+        tob.flush();
+
+        // All of the data written should be available after a flush
+        int flushed = tob.toByteArray().length;
+        Assert.assertTrue(flushed > 0);
+
+        tob.end();
+        Assert.assertTrue(tob.toByteArray().length >= flushed);
+    }
+
+
+    @Test
+    public void testEmpty() throws Exception {
+        TesterOutputBuffer tob = createOutputBuffer();
+        tob.end();
+
+        // An empty response must still be a valid compressed stream
+        Assert.assertTrue(tob.toByteArray().length > 0);
+    }
+
+
+    @Test
+    public void testEndTwice() throws Exception {
+        byte[] data = createData(1024);
+
+        Response res = new Response();
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+        OutputFilter filter = CompressionOutputFilter.create(getEncoder());
+        tob.addFilter(filter);
+        tob.addActiveFilter(filter);
+
+        tob.doWrite(ByteBuffer.wrap(data));
+        filter.end();
+        int length = tob.toByteArray().length;
+
+        // HTTP/2 may end the response more than once
+        filter.end();
+        Assert.assertEquals(length, tob.toByteArray().length);
+    }
+
+
+    @Test
+    public void testRecycle() throws Exception {
+        byte[] data = createData(8 * 1024);
+
+        Response res = new Response();
+        OutputFilter filter = CompressionOutputFilter.create(getEncoder());
+
+        byte[] first = null;
+        for (int i = 0; i < 3; i++) {
+            TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+            res.setOutputBuffer(tob);
+            tob.addFilter(filter);
+            tob.addActiveFilter(filter);
+            tob.doWrite(ByteBuffer.wrap(data));
+            tob.end();
+            byte[] compressed = tob.toByteArray();
+            if (first == null) {
+                first = compressed;
+            } else {
+                // A recycled filter must start a new stream
+                Assert.assertArrayEquals(first, compressed);
+            }
+            filter.recycle();
+        }
+    }
+
+
+    @Test
+    public void testOutputStream() throws Exception {
+        byte[] data = createData(64 * 1024);
+
+        TesterOutputBuffer tob = createOutputBuffer();
+        tob.doWrite(ByteBuffer.wrap(data));
+        tob.end();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = getEncoder().createOutputStream(baos)) {
+            os.write(data);
+        }
+
+        // The stream uses the same native settings as the filter
+        Assert.assertArrayEquals(tob.toByteArray(), baos.toByteArray());
+    }
+
+
+    private CompressionEncoder getEncoder() {
+        CompressionConfig compressionConfig = new CompressionConfig();
+        compressionConfig.setCompressionEncodings(encoding);
+        CompressionEncoder encoder = compressionConfig.getCompressionEncoders()[0];
+        // Falls back to gzip if the encoding is not available
+        Assume.assumeTrue(encoding.equals(encoder.getEncoding()));
+        return encoder;
+    }
+
+
+    private TesterOutputBuffer createOutputBuffer() {
+        Response res = new Response();
+        TesterOutputBuffer tob = new TesterOutputBuffer(res, 8 * 1024);
+        res.setOutputBuffer(tob);
+
+        OutputFilter filter = CompressionOutputFilter.create(getEncoder());
+        tob.addFilter(filter);
+        tob.addActiveFilter(filter);
+        return tob;
+    }
+
+
+    private static byte[] createData(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("{\"id\":");
+            sb.append(i++);
+            sb.append(",\"name\":\"Apache Tomcat\",\"enabled\":true},");
+        }
+        sb.setLength(size);
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
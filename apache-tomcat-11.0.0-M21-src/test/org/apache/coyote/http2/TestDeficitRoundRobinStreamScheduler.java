@@ -0,0 +1,142 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDeficitRoundRobinStreamScheduler {
+
+    @Test
+    public void testEqualUrgency() {
+        TesterBlockedStream s1 = new TesterBlockedStream(1, 3, false, 100000);
+        TesterBlockedStream s3 = new TesterBlockedStream(3, 3, false, 100000);
+
+        new DeficitRoundRobinStreamScheduler().allocate(List.of(s3, s1), 10240);
+
+        Assert.assertEquals(5120, s1.allocated);
+        Assert.assertEquals(5120, s3.allocated);
+    }
+
+
+    @Test
+    public void testUrgencyWeighting() {
+        TesterBlockedStream s1 = new TesterBlockedStream(1, 7, false, 100000);
+        TesterBlockedStream s3 = new TesterBlockedStream(3, 0, true, 100000);
+
+        StreamScheduler scheduler = new DeficitRoundRobinStreamScheduler();
+        scheduler.allocate(List.of(s1, s3), 9216);
+        scheduler.allocate(List.of(s1, s3), 9216);
+
+        Assert.assertEquals(2048, s1.allocated);
+        Assert.assertEquals(16384, s3.allocated);
+    }
+
+
+    @Test
+    public void testContinueTurn() {
+        TesterBlockedStream s1 = new TesterBlockedStream(1, 3, false, 100000);
+        TesterBlockedStream s3 = new TesterBlockedStream(3, 3, false, 100000);
+        List<TesterBlockedStream> streams = List.of(s1, s3);
+
+        StreamScheduler scheduler = new DeficitRoundRobinStreamScheduler();
+
+        // Allocation runs out during the turn of stream 1
+        scheduler.allocate(streams, 1024);
+        Assert.assertEquals(1024, s1.allocated);
+        Assert.assertEquals(0, s3.allocated);
+
+        // Stream 1 completes its turn, stream 3 starts its turn
+        scheduler.allocate(streams, 8192);
+        Assert.assertEquals(5120, s1.allocated);
+        Assert.assertEquals(4096, s3.allocated);
+
+        // Stream 3 completes its turn, stream 1 starts a new turn
+        scheduler.allocate(streams, 2048);
+        Assert.assertEquals(6144, s1.allocated);
+        Assert.assertEquals(5120, s3.allocated);
+    }
+
+
+    @Test
+    public void testSmallStreamNotStarved() {
+        TesterBlockedStream large = new TesterBlockedStream(1, 3, false, 1024 * 1024);
+        TesterBlockedStream small = new TesterBlockedStream(3, 3, false, 2000);
+        List<TesterBlockedStream> streams = new ArrayList<>(List.of(large, small));
+
+        StreamScheduler scheduler = new DeficitRoundRobinStreamScheduler();
+        scheduler.allocate(streams, 4096);
+        scheduler.allocate(streams, 4096);
+
+        Assert.assertEquals(0, small.getAllocationRequested());
+        Assert.assertEquals(2000, small.allocated);
+        Assert.assertEquals(8192 - 2000, large.allocated);
+
+        // The small stream is no longer blocked
+        streams.remove(small);
+        scheduler.allocate(streams, 4096);
+        Assert.assertEquals(8192 - 2000 + 4096, large.allocated);
+    }
+
+
+    private static class TesterBlockedStream implements StreamScheduler.BlockedStream {
+
+        private final int streamId;
+        private final int urgency;
+        private final boolean incremental;
+        private int requested;
+        private int allocated;
+
+        TesterBlockedStream(int streamId, int urgency, boolean incremental, int requested) {
+            this.streamId = streamId;
+            this.urgency = urgency;
+            this.incremental = incremental;
+            this.requested = requested;
+        }
+
+        @Override
+        public int getStreamId() {
+            return streamId;
+        }
+
+        @Override
+        public int getUrgency() {
+            return urgency;
+        }
+
+        @Override
+        public boolean getIncremental() {
+            return incremental;
+        }
+
+        @Override
+        public int getAllocationRequested() {
+            return requested;
+        }
+
+        @Override
+        public int allocate(int allocation) {
+            int allocatedThisTime = Math.min(allocation, requested);
+            requested -= allocatedThisTime;
+            allocated += allocatedThisTime;
+            return allocation - allocatedThisTime;
+        }
+    }
+}
@@ -17,6 +17,9 @@
 package org.apache.coyote.http2;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -132,6 +135,198 @@ public class TestHpack {
     }
 
 
+    @Test
+    public void testHuffmanLongCodeAtEnd() throws Exception {
+        // The code for '{' is 14 set bits followed by a clear bit
+        doTestHeaderValueRoundTrip("x-test", "aaaa{");
+        doTestHeaderValueRoundTrip("x-test", "{{{{{{{{");
+    }
+
+
+    @Test
+    public void testEmitHeaderBytes() throws Exception {
+        MimeHeaders headers = new MimeHeaders();
+        // Literal header that is never indexed
+        headers.setValue("content-length").setString("1234567");
+        // Literal header that is added to the table
+        headers.setValue("x-test").setString("value");
+        ByteBuffer output = ByteBuffer.allocate(512);
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.encode(headers, output);
+        output.flip();
+
+        MimeHeaders headers2 = new MimeHeaders();
+        List<String> byteHeaders = new ArrayList<>();
+        HpackDecoder decoder = new HpackDecoder();
+        decoder.setHeaderEmitter(new HeadersListener(headers2) {
+            @Override
+            public void emitHeader(String name, byte[] value, int offset, int length) throws HpackException {
+                byteHeaders.add(name);
+                super.emitHeader(name, value, offset, length);
+            }
+        });
+        decoder.decode(output);
+
+        Assert.assertEquals("1234567", headers2.getHeader("content-length"));
+        Assert.assertEquals("value", headers2.getHeader("x-test"));
+        Assert.assertEquals(1, byteHeaders.size());
+        Assert.assertEquals("content-length", byteHeaders.get(0));
+    }
+
+
+    @Test
+    public void testEncoderEviction() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder();
+        String padding = "x".repeat(100);
+
+        // Each entry is about 150 bytes so the 4096 byte table holds about 27 of them
+        for (int i = 0; i < 100; i++) {
+            MimeHeaders headers = new MimeHeaders();
+            headers.addValue("x-header-" + i).setString(padding + i);
+            // Refer to entries that are still in the table and entries that have been evicted
+            headers.addValue("x-header-" + (i / 2)).setString(padding + (i / 2));
+            headers.addValue("x-header-" + (i / 10)).setString(padding + (i / 10));
+            doEncoderRoundTrip(encoder, decoder, headers);
+            Assert.assertTrue(decoder.getCurrentMemorySize() <= Hpack.DEFAULT_TABLE_SIZE);
+        }
+
+        // The most recent entry is still in the table
+        MimeHeaders headers = new MimeHeaders();
+        headers.addValue("x-header-99").setString(padding + 99);
+        Assert.assertEquals(1, doEncoderRoundTrip(encoder, decoder, headers));
+
+        // The oldest entry has been evicted
+        headers = new MimeHeaders();
+        headers.addValue("x-header-0").setString(padding + 0);
+        Assert.assertTrue(doEncoderRoundTrip(encoder, decoder, headers) > 1);
+    }
+
+
+    @Test
+    public void testEncoderManySmallEntries() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder();
+
+        // More entries than the initial capacity of the encoder's table
+        MimeHeaders headers = new MimeHeaders();
+        for (int i = 0; i < 80; i++) {
+            headers.addValue("x" + i).setString("v" + i);
+        }
+        doEncoderRoundTrip(encoder, decoder, headers);
+        Assert.assertEquals(80, decoder.getFilledTableSlots());
+
+        // Every header is now indexed. The 15 entries with an index of 127 or more need a second byte.
+        Assert.assertEquals(80 + 15, doEncoderRoundTrip(encoder, decoder, headers));
+    }
+
+
+    @Test
+    public void testEncoderTableResize() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder();
+
+        MimeHeaders headers = new MimeHeaders();
+        for (int i = 0; i < 10; i++) {
+            headers.addValue("x-header-" + i).setString("value-" + i);
+        }
+        doEncoderRoundTrip(encoder, decoder, headers);
+        Assert.assertEquals(10, decoder.getFilledTableSlots());
+
+        // Shrink the table so only some of the entries fit
+        encoder.setMaxTableSize(128);
+        doEncoderRoundTrip(encoder, decoder, headers);
+        Assert.assertEquals(128, decoder.getMaxMemorySizeSoft());
+        Assert.assertTrue(decoder.getCurrentMemorySize() <= 128);
+
+        // Nothing can be added to an empty table
+        encoder.setMaxTableSize(0);
+        doEncoderRoundTrip(encoder, decoder, headers);
+        Assert.assertEquals(0, decoder.getFilledTableSlots());
+        doEncoderRoundTrip(encoder, decoder, headers);
+        Assert.assertEquals(0, decoder.getFilledTableSlots());
+
+        // A reduction followed by an increase before the next header block sends both sizes
+        encoder.setMaxTableSize(64);
+        encoder.setMaxTableSize(Hpack.DEFAULT_TABLE_SIZE);
+        doEncoderRoundTrip(encoder, decoder, headers);
+        Assert.assertEquals(Hpack.DEFAULT_TABLE_SIZE, decoder.getMaxMemorySizeSoft());
+        Assert.assertEquals(10, decoder.getFilledTableSlots());
+        Assert.assertEquals(10, doEncoderRoundTrip(encoder, decoder, headers));
+    }
+
+
+    @Test
+    public void testEncoderDuplicateNames() throws Exception {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder();
+
+        MimeHeaders headers = new MimeHeaders();
+        headers.addValue("x-dup").setString("a");
+        headers.addValue("x-dup").setString("b");
+        headers.addValue("X-Dup").setString("a");
+        // Names that are also in the static table
+        headers.addValue("cache-control").setString("no-cache");
+        headers.addValue("cache-control").setString("no-store");
+        headers.addValue("x-dup").setString("c");
+        doEncoderRoundTrip(encoder, decoder, headers);
+
+        // Every name / value pair is now indexed
+        Assert.assertEquals(headers.size(), doEncoderRoundTrip(encoder, decoder, headers));
+
+        // A new value for a name in the dynamic table
+        headers = new MimeHeaders();
+        headers.addValue("x-dup").setString("d");
+        headers.addValue("x-dup").setString("b");
+        doEncoderRoundTrip(encoder, decoder, headers);
+    }
+
+
+    /*
+     * Encodes the headers, decodes them with the given decoder and checks that the decoded headers are the same as the
+     * encoded headers. Returns the size of the encoded header block.
+     */
+    private static int doEncoderRoundTrip(HpackEncoder encoder, HpackDecoder decoder, MimeHeaders headers)
+            throws HpackException {
+        ByteBuffer output = ByteBuffer.allocate(16 * 1024);
+        Assert.assertEquals(HpackEncoder.State.COMPLETE, encoder.encode(headers, output));
+        output.flip();
+        int size = output.remaining();
+
+        List<String> decoded = new ArrayList<>();
+        decoder.setHeaderEmitter(new HeadersListener(null) {
+            @Override
+            public void emitHeader(String name, String value) {
+                decoded.add(name + ": " + value);
+            }
+        });
+        decoder.decode(output);
+        Assert.assertEquals(0, output.remaining());
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < headers.size(); i++) {
+            expected.add(headers.getName(i).toString().toLowerCase(Locale.ENGLISH) + ": " + headers.getValue(i));
+        }
+        Assert.assertEquals(expected, decoded);
+        return size;
+    }
+
+
+    private void doTestHeaderValueRoundTrip(String headerName, String headerValue) throws HpackException {
+        MimeHeaders headers = new MimeHeaders();
+        headers.setValue(headerName).setString(headerValue);
+        ByteBuffer output = ByteBuffer.allocate(512);
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.encode(headers, output);
+        output.flip();
+        MimeHeaders headers2 = new MimeHeaders();
+        HpackDecoder decoder = new HpackDecoder();
+        decoder.setHeaderEmitter(new HeadersListener(headers2));
+        decoder.decode(output);
+        Assert.assertEquals(headerValue, headers2.getHeader(headerName));
+    }
+
+
     private void doTestHeaderValueBug60451(String filename) throws HpackException {
         String headerName = "Content-Disposition";
         String headerValue = "attachment;filename=\"" + filename + "\"";
@@ -179,4 +179,74 @@ public class TestRfc9218 extends Http2TestBase {
 
         // Test doesn't read the read of the body for streams 19 and 21.
     }
+
+
+    @Test
+    public void testDeficitRoundRobin() throws Exception {
+        enableHttp2();
+        http2Protocol.setStreamSchedulerClassName(DeficitRoundRobinStreamScheduler.class.getName());
+        configureAndStartWebApplication();
+        openClientConnection(false);
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        // Default connection window size is 64k - 1. Initial request will have used 8k (56k -1). Increase it to 57k.
+        sendWindowUpdate(0, 1 + 1024);
+
+        // Consume 56k of the connection window
+        for (int i = 3; i < 17; i += 2) {
+            sendSimpleGetRequest(i);
+            readSimpleGetResponse();
+        }
+        output.clearTrace();
+
+        // At this point the connection window should be 1k
+
+        // Process a request on stream 17. This should consume the connection window.
+        sendSimpleGetRequest(17);
+        // 17-headers, 17-1k-body
+        parser.readFrame();
+        parser.readFrame();
+        output.clearTrace();
+
+        // Send additional requests. Connection window is empty so only headers will be returned.
+        sendSimpleGetRequest(19);
+        sendSimpleGetRequest(21);
+
+        // 19-headers, 21-headers
+        parser.readFrame();
+        parser.readFrame();
+        output.clearTrace();
+
+        // At this point 17, 19 and 21 are all blocked because the connection window is zero.
+        // 17 - 7k body left
+        // 19 - 8k body left
+        // 21 - 8k body left
+
+        /*
+         * The headers are written before the streams request an allocation from the connection window. Give the
+         * streams time to be added to the backlog else the whole backlog may be cleared without using the scheduler.
+         */
+        Thread.sleep(500);
+
+        /*
+         * Add 16k to the connection window. With the default scheduler 17 and 19 would be fully allocated and 21 would
+         * receive 1k. Each stream should receive a 5k quantum and the remaining 1k should be used to start the next
+         * round with stream 17.
+         */
+        sendWindowUpdate(0, 1024 * 16);
+        parser.readFrame();
+        parser.readFrame();
+        parser.readFrame();
+
+        String trace = output.getTrace();
+        Assert.assertTrue(trace, trace.contains("17-Body-6144\n"));
+        trace = trace.replace("17-Body-6144\n", "");
+        Assert.assertTrue(trace, trace.contains("19-Body-5120\n"));
+        trace = trace.replace("19-Body-5120\n", "");
+        Assert.assertTrue(trace, trace.contains("21-Body-5120\n"));
+        trace = trace.replace("21-Body-5120\n", "");
+        Assert.assertEquals(0, trace.length());
+    }
 }
@@ -18,6 +18,8 @@ package org.apache.coyote.http2;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
@@ -114,6 +116,69 @@ public class TestStream extends Http2TestBase {
     }
 
 
+    @Test
+    public void testByteHeaderValues() throws Exception {
+
+        enableHttp2();
+        http2Protocol.setUseByteHeaderValues(true);
+
+        Tomcat tomcat = getTomcatInstance();
+
+        Context ctxt = getProgrammaticRootContext();
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "headers", new EchoHeaders());
+        ctxt.addServletMappingDecoded("/headers", "headers");
+
+        tomcat.start();
+
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        output.setTraceBody(true);
+
+        List<Header> headers = new ArrayList<>(6);
+        headers.add(new Header(":method", "GET"));
+        headers.add(new Header(":scheme", "http"));
+        headers.add(new Header(":path", "/headers"));
+        headers.add(new Header(":authority", "localhost:" + getPort()));
+        // The HPACK encoder never indexes date so it is sent as a literal and received as bytes
+        headers.add(new Header("date", "Fri, 16 Oct 2026 10:00:00 GMT"));
+        headers.add(new Header("x-test", "value"));
+
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(256);
+        buildGetRequest(frameHeader, headersPayload, null, headers, 3);
+        writeFrame(frameHeader, headersPayload);
+
+        // Headers
+        parser.readFrame();
+        // Body
+        parser.readFrame();
+
+        String trace = output.getTrace();
+        Assert.assertTrue(trace, trace.contains("3-Body-Fri, 16 Oct 2026 10:00:00 GMT|value\n"));
+    }
+
+
+    private static final class EchoHeaders extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                throws ServletException, IOException {
+
+            response.setContentType("text/plain");
+            response.setCharacterEncoding("UTF-8");
+
+            response.getWriter().write(request.getHeader("date") + "|" + request.getHeader("x-test"));
+        }
+    }
+
+
     private static final class PathParam extends HttpServlet {
 
         private static final long serialVersionUID = 1L;
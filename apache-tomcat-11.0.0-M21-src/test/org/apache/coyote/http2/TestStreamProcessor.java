@@ -31,12 +31,15 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.CompressionCache;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
 import org.apache.tomcat.util.compat.JrePlatform;
 import org.apache.tomcat.util.http.FastHttpDateFormat;
 
@@ -541,6 +544,113 @@ public class TestStreamProcessor extends Http2TestBase {
     }
 
 
+    @Test
+    public void testCompressionNegotiated() throws Exception {
+        enableHttp2();
+
+        Tomcat tomcat = getTomcatInstance();
+
+        Context ctxt = getProgrammaticRootContext();
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "compression", new CompressionServlet());
+        ctxt.addServletMappingDecoded("/compression", "compression");
+
+        // Enable compression, preferring zstd
+        Connector connector = tomcat.getConnector();
+        Assert.assertTrue(connector.setProperty("compression", "on"));
+        Assert.assertTrue(connector.setProperty("compressionEncodings", "zstd,gzip"));
+
+        // Requires the native zstd library
+        AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) connector.getProtocolHandler();
+        Assume.assumeTrue("zstd".equals(protocol.getCompressionEncoders()[0].getEncoding()));
+
+        tomcat.start();
+
+        enableHttp2();
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+
+        byte[] frameHeader = new byte[9];
+        ByteBuffer headersPayload = ByteBuffer.allocate(128);
+
+        List<Header> headers = new ArrayList<>(3);
+        headers.add(new Header(":method", "GET"));
+        headers.add(new Header(":scheme", "http"));
+        headers.add(new Header(":path", "/compression"));
+        headers.add(new Header(":authority", "localhost:" + getPort()));
+        headers.add(new Header("accept-encoding", "gzip, zstd"));
+
+        buildGetRequest(frameHeader, headersPayload, null, headers, 3);
+
+        writeFrame(frameHeader, headersPayload);
+
+        readSimpleGetResponse();
+
+        String trace = output.getTrace();
+        Assert.assertTrue(trace, trace.contains("3-Header-[content-encoding]-[zstd]\n"));
+        Assert.assertTrue(trace, trace.endsWith("3-EndOfStream\n"));
+    }
+
+
+    @Test
+    public void testCompressionCache() throws Exception {
+        enableHttp2();
+
+        Tomcat tomcat = getTomcatInstance();
+
+        Context ctxt = getProgrammaticRootContext();
+        Tomcat.addServlet(ctxt, "simple", new SimpleServlet());
+        ctxt.addServletMappingDecoded("/simple", "simple");
+        Tomcat.addServlet(ctxt, "compression", new CompressionServlet());
+        ctxt.addServletMappingDecoded("/compression", "compression");
+
+        Connector connector = tomcat.getConnector();
+        Assert.assertTrue(connector.setProperty("compression", "on"));
+        Assert.assertTrue(connector.setProperty("compressionCacheSize", "1048576"));
+        Assert.assertTrue(connector.setProperty("compressionCacheWithoutETag", "true"));
+
+        tomcat.start();
+
+        enableHttp2();
+        openClientConnection();
+        doHttpUpgrade();
+        sendClientPreface();
+        validateHttp2InitialResponse();
+
+        CompressionCache cache = ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).getCompressionCache();
+
+        for (int streamId = 3; streamId < 8; streamId += 2) {
+            byte[] frameHeader = new byte[9];
+            ByteBuffer headersPayload = ByteBuffer.allocate(128);
+
+            List<Header> headers = new ArrayList<>(3);
+            headers.add(new Header(":method", "GET"));
+            headers.add(new Header(":scheme", "http"));
+            headers.add(new Header(":path", "/compression"));
+            headers.add(new Header(":authority", "localhost:" + getPort()));
+            headers.add(new Header("accept-encoding", "gzip"));
+
+            buildGetRequest(frameHeader, headersPayload, null, headers, streamId);
+
+            writeFrame(frameHeader, headersPayload);
+
+            readSimpleGetResponse();
+
+            String trace = output.getTrace();
+            Assert.assertTrue(trace, trace.contains(streamId + "-Header-[content-encoding]-[gzip]\n"));
+            Assert.assertTrue(trace, trace.endsWith(streamId + "-EndOfStream\n"));
+            output.clearTrace();
+        }
+
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+
     private static class CompressionServlet extends HttpServlet {
 
         private static final long serialVersionUID = 1L;
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import org.apache.tomcat.util.http.MimeHeaders;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * Decodes a sequence of small, gRPC style, request header blocks with a single decoder, as a connection would, and
+ * reports the time and the number of bytes allocated per header block. The blocks are decoded once with a recipient
+ * that accepts Strings and once with a recipient that accepts byte values.
+ */
+public class TesterHpackDecoderPerformance {
+
+    private static final int BLOCKS = 200000;
+    private static final int LOOPS = 5;
+
+
+    @Test
+    public void testDecodeStrings() throws Exception {
+        doTest(new StringEmitter(), "Strings");
+    }
+
+
+    @Test
+    public void testDecodeBytes() throws Exception {
+        doTest(new ByteEmitter(), "Bytes");
+    }
+
+
+    @Test
+    public void testHuffmanDecode() throws Exception {
+        String value = "application/grpc+proto; charset=utf-8, deadline-exceeded";
+        ByteBuffer encoded = ByteBuffer.allocate(128);
+        HPackHuffman.encode(encoded, value, false);
+        encoded.flip();
+        int length = encoded.remaining() - 1;
+        byte[] target = new byte[HPackHuffman.getMaxDecodedLength(length)];
+
+        for (int i = 0; i < LOOPS + 1; i++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < BLOCKS * 10; j++) {
+                encoded.position(1);
+                HPackHuffman.decode(encoded, length, target, 0);
+            }
+            long duration = System.nanoTime() - start;
+            if (i > 0) {
+                System.out.println("Huffman decode: " + (duration / (BLOCKS * 10)) + "ns/string");
+            }
+        }
+    }
+
+
+    private void doTest(HpackDecoder.HeaderEmitter emitter, String label) throws Exception {
+        ByteBuffer[] blocks = createBlocks(1024);
+
+        // Warm up
+        decode(blocks, emitter);
+
+        for (int i = 0; i < LOOPS; i++) {
+            long allocatedStart = getAllocatedBytes();
+            long start = System.nanoTime();
+            decode(blocks, emitter);
+            long duration = System.nanoTime() - start;
+            long allocated = getAllocatedBytes() - allocatedStart;
+            System.out.println(label + ": " + (duration / BLOCKS) + "ns/block, " + (allocated / BLOCKS) +
+                    " bytes allocated/block");
+        }
+    }
+
+
+    private void decode(ByteBuffer[] blocks, HpackDecoder.HeaderEmitter emitter) throws Exception {
+        // The blocks depend on the dynamic table state created by encoding them in order
+        HpackDecoder decoder = null;
+        for (int i = 0; i < BLOCKS; i++) {
+            if (i % blocks.length == 0) {
+                decoder = new HpackDecoder();
+            }
+            ByteBuffer block = blocks[i % blocks.length];
+            block.rewind();
+            decoder.setHeaderEmitter(emitter);
+            decoder.decode(block);
+        }
+    }
+
+
+    private static ByteBuffer[] createBlocks(int count) {
+        HpackEncoder encoder = new HpackEncoder();
+        ByteBuffer[] result = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            MimeHeaders headers = new MimeHeaders();
+            headers.addValue(":method").setString("POST");
+            headers.addValue(":scheme").setString("https");
+            headers.addValue(":path").setString("/example.Service/Method" + (i % 8));
+            headers.addValue(":authority").setString("backend.example.com");
+            headers.addValue("content-type").setString("application/grpc");
+            headers.addValue("te").setString("trailers");
+            headers.addValue("grpc-timeout").setString((100 + i % 900) + "m");
+            headers.addValue("content-length").setString(Integer.toString(100 + i * 7));
+            headers.addValue("date").setString("Fri, 16 Oct 2026 10:" + (10 + i % 50) + ":00 GMT");
+            ByteBuffer block = ByteBuffer.allocate(1024);
+            encoder.encode(headers, block);
+            block.flip();
+            result[i] = block;
+        }
+        return result;
+    }
+
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+
+    private static class StringEmitter implements HpackDecoder.HeaderEmitter {
+
+        @Override
+        public void emitHeader(String name, String value) {
+            // NO-OP
+        }
+
+        @Override
+        public void setHeaderException(StreamException streamException) {
+            // NO-OP
+        }
+
+        @Override
+        public void validateHeaders() throws StreamException {
+            // NO-OP
+        }
+    }
+
+
+    private static class ByteEmitter extends StringEmitter {
+
+        @Override
+        public void emitHeader(String name, byte[] value, int offset, int length) {
+            // NO-OP
+        }
+    }
+}
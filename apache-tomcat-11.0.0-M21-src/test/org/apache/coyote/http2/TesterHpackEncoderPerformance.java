@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote.http2;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.util.http.MimeHeaders;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * Encodes a sequence of typical response header blocks with a single encoder, as a connection would, and reports the
+ * time and the number of bytes allocated per header block. Run it before and after a change to the encoder to compare
+ * the two implementations.
+ */
+public class TesterHpackEncoderPerformance {
+
+    private static final int BLOCKS = 200000;
+    private static final int LOOPS = 5;
+
+
+    @Test
+    public void testEncode() {
+        MimeHeaders[] blocks = createBlocks(1024);
+        ByteBuffer target = ByteBuffer.allocate(16 * 1024);
+
+        // Warm up
+        doTest(blocks, target, BLOCKS);
+
+        for (int i = 0; i < LOOPS; i++) {
+            long allocatedStart = getAllocatedBytes();
+            long start = System.nanoTime();
+            long encodedBytes = doTest(blocks, target, BLOCKS);
+            long duration = System.nanoTime() - start;
+            long allocated = getAllocatedBytes() - allocatedStart;
+            System.out.println("Encode: " + (duration / BLOCKS) + "ns/block, " + (allocated / BLOCKS) +
+                    " bytes allocated/block, " + (encodedBytes / BLOCKS) + " bytes encoded/block");
+        }
+    }
+
+
+    private long doTest(MimeHeaders[] blocks, ByteBuffer target, int count) {
+        HpackEncoder encoder = new HpackEncoder();
+        long encodedBytes = 0;
+        for (int i = 0; i < count; i++) {
+            target.clear();
+            Assert.assertEquals(HpackEncoder.State.COMPLETE, encoder.encode(blocks[i % blocks.length], target));
+            encodedBytes += target.position();
+        }
+        return encodedBytes;
+    }
+
+
+    private static MimeHeaders[] createBlocks(int count) {
+        MimeHeaders[] result = new MimeHeaders[count];
+        for (int i = 0; i < count; i++) {
+            MimeHeaders headers = new MimeHeaders();
+            headers.addValue(":status").setString(i % 10 == 0 ? "304" : "200");
+            headers.addValue("Content-Type").setString(i % 3 == 0 ? "application/json" : "text/html;charset=UTF-8");
+            headers.addValue("Content-Length").setString(Integer.toString(1000 + i * 7));
+            headers.addValue("Date").setString("Fri, 16 Oct 2026 10:" + (10 + i % 50) + ":00 GMT");
+            headers.addValue("Cache-Control").setString("private, max-age=0");
+            headers.addValue("Vary").setString("accept-encoding");
+            headers.addValue("ETag").setString("W/\"" + (i % 64) + "-1700000000000\"");
+            headers.addValue("X-Request-Id").setString(Integer.toHexString(0x10000000 + i * 7919));
+            headers.addValue("Strict-Transport-Security").setString("max-age=31536000; includeSubDomains");
+            result[i] = headers;
+        }
+        return result;
+    }
+
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -19,11 +19,16 @@ package org.apache.tomcat.util.http;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.apache.tomcat.util.buf.MessageBytes;
+
 public class TestParameters {
 
     private static final Parameter SIMPLE =
@@ -252,6 +257,112 @@ public class TestParameters {
 
     }
 
+    @Test
+    public void testLazyDecoding() {
+        Parameter[] parameters = new Parameter[] { SIMPLE, SIMPLE_MULTIPLE, NO_VALUE, EMPTY_VALUE, EMPTY, UTF8 };
+        byte[] data = join(parameters).getBytes(StandardCharsets.UTF_8);
+        // Parsing decodes the data in place
+        Parameters eager = eagerParameters(data.clone());
+
+        Parameters p = new Parameters();
+        p.setCharset(StandardCharsets.UTF_8);
+        p.setLazyDecoding(true);
+        p.processParameters(data, 0, data.length);
+        Assert.assertEquals(eager.size(), p.size());
+
+        // Look-ups before the names are requested use the index
+        Assert.assertEquals("bar1", p.getParameter("foo1"));
+        Assert.assertArrayEquals(SIMPLE_MULTIPLE.getValues(), p.getParameterValues("foo2"));
+        Assert.assertEquals("", p.getParameter("foo3"));
+        Assert.assertEquals("", p.getParameter("foo4"));
+        Assert.assertArrayEquals(UTF8.getValues(), p.getParameterValues(UTF8.getName()));
+        Assert.assertNull(p.getParameter("foo5"));
+        Assert.assertNull(p.getParameterValues("foo5"));
+
+        Assert.assertEquals(Collections.list(eager.getParameterNames()),
+                Collections.list(p.getParameterNames()));
+        validateParameters(parameters, p);
+    }
+
+    @Test
+    public void testLazyDecodingEncodedNames() {
+        byte[] data = "a%62c=1&abc=2&a+b=3&xyz=%E2%82%AC".getBytes(StandardCharsets.ISO_8859_1);
+
+        Parameters p = new Parameters();
+        p.setCharset(StandardCharsets.UTF_8);
+        p.setLazyDecoding(true);
+        p.processParameters(data, 0, data.length);
+
+        Assert.assertArrayEquals(new String[] { "1", "2" }, p.getParameterValues("abc"));
+        Assert.assertEquals("3", p.getParameter("a b"));
+        Assert.assertEquals("\u20ac", p.getParameter("xyz"));
+    }
+
+    @Test
+    public void testLazyDecodingOrder() {
+        byte[] query = "b=1&a=2".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = "a=3&c=%E9".getBytes(StandardCharsets.ISO_8859_1);
+
+        Parameters p = new Parameters();
+        p.setLazyDecoding(true);
+        MessageBytes queryMB = MessageBytes.newInstance();
+        queryMB.setBytes(query, 0, query.length);
+        p.processParameters(queryMB, StandardCharsets.UTF_8);
+        Assert.assertArrayEquals(new String[] { "2" }, p.getParameterValues("a"));
+
+        // Parameters added later are found by subsequent look-ups
+        p.setCharset(StandardCharsets.ISO_8859_1);
+        p.processParameters(body, 0, body.length);
+        Assert.assertArrayEquals(new String[] { "2", "3" }, p.getParameterValues("a"));
+        Assert.assertEquals("\u00e9", p.getParameter("c"));
+
+        p.addParameter("a", "4");
+        Assert.assertArrayEquals(new String[] { "2", "3", "4" }, p.getParameterValues("a"));
+
+        List<String> names = Collections.list(p.getParameterNames());
+        Assert.assertEquals(List.of("b", "a", "c"), names);
+
+        p.recycle();
+        Assert.assertEquals(0, p.size());
+        Assert.assertNull(p.getParameter("a"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLazyDecodingLimit() {
+        byte[] data = "a=1&b=2&c=3".getBytes(StandardCharsets.ISO_8859_1);
+
+        Parameters p = new Parameters();
+        p.setLazyDecoding(true);
+        p.setLimit(2);
+        p.processParameters(data, 0, data.length);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLazyDecodingInvalidValue() {
+        // Invalid UTF-8 in a value that is never requested is still rejected
+        byte[] data = "a=1&b=%FF".getBytes(StandardCharsets.ISO_8859_1);
+
+        Parameters p = new Parameters();
+        p.setCharset(StandardCharsets.UTF_8);
+        p.setLazyDecoding(true);
+        p.processParameters(data, 0, data.length);
+    }
+
+    private static Parameters eagerParameters(byte[] data) {
+        Parameters p = new Parameters();
+        p.setCharset(StandardCharsets.UTF_8);
+        p.processParameters(data, 0, data.length);
+        return p;
+    }
+
+    private static String join(Parameter... parameters) {
+        List<String> parts = new ArrayList<>();
+        for (Parameter parameter : parameters) {
+            parts.add(parameter.toString());
+        }
+        return String.join("&", parts);
+    }
+
     private void validateParameters(Parameter[] parameters, Parameters p) {
         Enumeration<String> names = p.getParameterNames();
 
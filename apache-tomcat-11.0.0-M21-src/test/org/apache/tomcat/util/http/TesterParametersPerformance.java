@@ -77,6 +77,53 @@ public class TesterParametersPerformance {
         return result;
     }
 
+    @Test
+    public void testLazyDecoding() {
+        LogManager.getLogManager().getLogger("").setLevel(Level.OFF);
+
+        // A large form of which only a few fields are read
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) {
+                form.append('&');
+            }
+            form.append("field").append(i).append("=value+of+field+").append(i).append("%21");
+        }
+        byte[] input = form.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        int loops = 5;
+        int iterations = 2000;
+
+        // Warm up
+        doTestLazyDecoding(input, false, iterations);
+        doTestLazyDecoding(input, true, iterations);
+
+        for (int i = 0; i < loops; i++) {
+            System.out.println("Eager: " + doTestLazyDecoding(input, false, iterations) + "ns");
+            System.out.println("Lazy : " + doTestLazyDecoding(input, true, iterations) + "ns");
+        }
+    }
+
+    private long doTestLazyDecoding(byte[] input, boolean lazy, int iterations) {
+        // Parsing decodes the data in place so each iteration parses a fresh copy
+        byte[] data = new byte[input.length];
+        Parameters p = new Parameters();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            System.arraycopy(input, 0, data, 0, input.length);
+            p.recycle();
+            p.setCharset(StandardCharsets.UTF_8);
+            p.setLimit(10000);
+            p.setLazyDecoding(lazy);
+            p.processParameters(data, 0, data.length);
+            Assert.assertEquals("value of field 1!", p.getParameter("field1"));
+            Assert.assertEquals("value of field 1000!", p.getParameter("field1000"));
+            Assert.assertEquals("value of field 1999!", p.getParameter("field1999"));
+        }
+        return System.nanoTime() - start;
+    }
+
     @Test
     public void testCreateString() throws UnsupportedEncodingException {
         B2CConverter.getCharset("ISO-8859-1");
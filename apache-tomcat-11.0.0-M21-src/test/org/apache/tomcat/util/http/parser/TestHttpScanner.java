@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderDataSource;
+import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderParseStatus;
+
+public class TestHttpScanner {
+
+    private static final byte[] ALPHABET =
+            "aAzZ09-_:; \t\r\n\r\n/?=&%.~\"(){}\u007f\u0000\u0080ÿ".getBytes(StandardCharsets.ISO_8859_1);
+
+
+    @Test
+    public void testHasControl() {
+        for (int i = 0; i < 256; i++) {
+            for (int j = 0; j < 8; j++) {
+                long word = 0x4141414141414141L & ~(0xFFL << (8 * j)) | ((long) i << (8 * j));
+                Assert.assertEquals(Integer.toString(i), HttpParser.isControl((byte) i), HttpScanner.hasControl(word));
+            }
+        }
+    }
+
+
+    @Test
+    public void testLastNonSpace() {
+        Assert.assertEquals(-1, HttpScanner.lastNonSpace(0x2020202020202020L));
+        Assert.assertEquals(7, HttpScanner.lastNonSpace(0x4120202020202020L));
+        Assert.assertEquals(0, HttpScanner.lastNonSpace(0x2020202020202041L));
+        Assert.assertEquals(3, HttpScanner.lastNonSpace(0x20202020FF202041L));
+    }
+
+
+    @Test
+    public void testSkipHeaderName() {
+        byte[] buf = "Content-Type-XYZ_a: text/html".getBytes(StandardCharsets.ISO_8859_1);
+        Assert.assertEquals(16, HttpScanner.skipHeaderName(buf, 0, buf.length));
+        Assert.assertEquals("content-type-xyz_a: text/html", new String(buf, StandardCharsets.ISO_8859_1));
+        // Not a complete group of eight bytes
+        Assert.assertEquals(1, HttpScanner.skipHeaderName(buf, 1, 8));
+
+        for (int i = 0; i < 256; i++) {
+            byte[] single = "ABCDEFGH".getBytes(StandardCharsets.ISO_8859_1);
+            single[5] = (byte) i;
+            boolean valid = i >= 'A' && i <= 'Z' || i >= 'a' && i <= 'z' || i >= '0' && i <= '9' || i == '-' ||
+                    i == '_';
+            Assert.assertEquals(Integer.toString(i), valid ? 8 : 0, HttpScanner.skipHeaderName(single, 0, 8));
+        }
+    }
+
+
+    @Test
+    public void testSkipRequestTarget() {
+        HttpParser httpParser = new HttpParser(null, null);
+        for (int i = 0; i < 256; i++) {
+            byte[] single = "/abc/def".getBytes(StandardCharsets.ISO_8859_1);
+            single[3] = (byte) i;
+            int skipped = HttpScanner.skipRequestTarget(single, 0, 8);
+            if (skipped == 8) {
+                // Must be valid in both the path and the query string
+                Assert.assertFalse(Integer.toString(i), httpParser.isNotRequestTargetRelaxed((byte) i));
+                Assert.assertTrue(Integer.toString(i), httpParser.isQueryRelaxed((byte) i));
+                Assert.assertNotEquals('?', i);
+            } else {
+                Assert.assertEquals(0, skipped);
+            }
+        }
+    }
+
+
+    @Test
+    public void testHeaderParserEquivalence() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            byte[] input = randomHeaders(random);
+            int chunk = 1 + random.nextInt(48);
+            Assert.assertEquals(new String(input, StandardCharsets.ISO_8859_1), parse(input, chunk, false),
+                    parse(input, chunk, true));
+        }
+    }
+
+
+    private static byte[] randomHeaders(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int headers = random.nextInt(5);
+        for (int i = 0; i < headers; i++) {
+            sb.append(randomText(random, "X-Request-Id-Header_Name", 30));
+            sb.append(':');
+            sb.append(randomText(random, " some value  with spaces and obs-text é ", 80));
+            if (random.nextInt(10) == 0) {
+                sb.append("\r\n ");
+                sb.append(randomText(random, "continuation ", 20));
+            }
+            sb.append(random.nextInt(10) == 0 ? "\n" : "\r\n");
+        }
+        sb.append("\r\n");
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+
+    private static String randomText(Random random, String base, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(maxLength);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(40) == 0) {
+                sb.append((char) (ALPHABET[random.nextInt(ALPHABET.length)] & 0xFF));
+            } else {
+                sb.append(base.charAt(random.nextInt(base.length())));
+            }
+        }
+        return sb.toString();
+    }
+
+
+    private static String parse(byte[] input, int chunk, boolean bulkScan) {
+        ChunkedSource source = new ChunkedSource(input, chunk);
+        MimeHeaders headers = new MimeHeaders();
+        HttpHeaderParser parser = new HttpHeaderParser(source, headers, true, bulkScan);
+        StringBuilder result = new StringBuilder();
+        try {
+            HeaderParseStatus status;
+            do {
+                status = parser.parseHeader();
+            } while (status == HeaderParseStatus.HAVE_MORE_HEADERS);
+            result.append(status);
+        } catch (Exception e) {
+            result.append(e.getMessage());
+        }
+        for (int i = 0; i < headers.size(); i++) {
+            result.append('\n').append(headers.getName(i)).append(": ").append(headers.getValue(i));
+        }
+        result.append("\nposition: ").append(source.buffer.position());
+        return result.toString();
+    }
+
+
+    private static class ChunkedSource implements HeaderDataSource {
+
+        private final ByteBuffer buffer;
+        private final int chunk;
+
+        ChunkedSource(byte[] input, int chunk) {
+            this.buffer = ByteBuffer.wrap(input.clone());
+            this.chunk = chunk;
+            buffer.limit(0);
+        }
+
+        @Override
+        public boolean fillHeaderBuffer() {
+            if (buffer.limit() == buffer.capacity()) {
+                return false;
+            }
+            buffer.limit(Math.min(buffer.capacity(), buffer.limit() + chunk));
+            return true;
+        }
+
+        @Override
+        public ByteBuffer getHeaderByteBuffer() {
+            return buffer;
+        }
+    }
+}
@@ -16,10 +16,16 @@
  */
 package org.apache.tomcat.util.http.parser;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 
 import org.junit.Test;
 
+import org.apache.tomcat.util.http.MimeHeaders;
+import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderDataSource;
+import org.apache.tomcat.util.http.parser.HttpHeaderParser.HeaderParseStatus;
+
 public class TesterParserPerformance {
 
     @Test
@@ -86,6 +92,68 @@ public class TesterParserPerformance {
     }
 
 
+    @Test
+    public void testHeaderParserBulkScan() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Host: www.example.org\r\n");
+        sb.append("User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:125.0) Gecko/20100101 Firefox/125.0\r\n");
+        sb.append("Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n");
+        sb.append("Accept-Language: en-GB,en;q=0.5\r\n");
+        sb.append("traceparent: 00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01\r\n");
+        sb.append("tracestate: congo=t61rcWkgMzE,rojo=00f067aa0ba902b7\r\n");
+        sb.append("Cookie: ");
+        for (int i = 0; i < 40; i++) {
+            sb.append("cookie").append(i).append("=0123456789abcdefghijklmnopqrstuvwxyz; ");
+        }
+        sb.append("last=value\r\n\r\n");
+        byte[] headers = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        int count = 100000;
+        int loops = 5;
+
+        // Warm up
+        doHeaderParserTest(headers, false, count);
+        doHeaderParserTest(headers, true, count);
+
+        for (int i = 0; i < loops; i++) {
+            System.out.println("Byte at a time: " + doHeaderParserTest(headers, false, count) + "ns");
+            System.out.println("Bulk scan     : " + doHeaderParserTest(headers, true, count) + "ns");
+        }
+    }
+
+
+    private long doHeaderParserTest(byte[] headers, boolean bulkScan, int iterations) throws Exception {
+        // Parsing modifies the buffer so each iteration parses a fresh copy
+        byte[] buf = new byte[headers.length];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+        HeaderDataSource source = new HeaderDataSource() {
+            @Override
+            public boolean fillHeaderBuffer() {
+                return false;
+            }
+
+            @Override
+            public ByteBuffer getHeaderByteBuffer() {
+                return byteBuffer;
+            }
+        };
+        MimeHeaders mimeHeaders = new MimeHeaders();
+        HttpHeaderParser parser = new HttpHeaderParser(source, mimeHeaders, false, bulkScan);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            System.arraycopy(headers, 0, buf, 0, headers.length);
+            byteBuffer.clear();
+            mimeHeaders.recycle();
+            parser.recycle();
+            while (parser.parseHeader() == HeaderParseStatus.HAVE_MORE_HEADERS) {
+                // Parse all the headers
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+
     private interface Lookup {
         boolean doLookup(int i);
     }
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.net.TestNioEndpointPollers.OkServlet;
+
+/*
+ * The io_uring classes require Java 22 so they are accessed by name. These tests only run when the io_uring protocol
+ * is the protocol under test, i.e. for the test-iouring target.
+ */
+public class TestIoUringEndpoint extends TomcatBaseTest {
+
+    private static final String PROTOCOL = "org.apache.coyote.http11.Http11IoUringProtocol";
+    private static final String ENDPOINT = "org.apache.tomcat.util.net.iouring.IoUringEndpoint";
+
+    private static final int CONNECTION_COUNT = 16;
+    private static final int LARGE_BODY_SIZE = 4 * 1024 * 1024;
+
+
+    @Test
+    public void testRingThread() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        assumeIoUringProtocol(connector);
+        Assert.assertTrue(connector.setProperty("ioUringEntries", "256"));
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "ok", new OkServlet());
+        ctx.addServletMappingDecoded("/", "ok");
+
+        tomcat.start();
+
+        Assert.assertEquals("256", connector.getProperty("ioUringEntries").toString());
+
+        // If io_uring is not available the connector falls back to NIO2
+        boolean ringThread = false;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().endsWith("-IoUring")) {
+                ringThread = true;
+            }
+        }
+        Assert.assertEquals(Boolean.valueOf(isSupported()), Boolean.valueOf(ringThread));
+
+        ByteChunk bc = getUrl("http://localhost:" + getPort() + "/");
+        Assert.assertEquals("OK", bc.toString());
+    }
+
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        assumeIoUringProtocol(connector);
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "ok", new OkServlet());
+        ctx.addServletMappingDecoded("/", "ok");
+
+        tomcat.start();
+
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONNECTION_COUNT; i++) {
+                Socket socket = new Socket("localhost", getPort());
+                sockets.add(socket);
+                for (int j = 0; j < 3; j++) {
+                    Assert.assertEquals("OK", TestNioEndpointPollers.doRequest(socket));
+                }
+            }
+            // Interleave requests across the open connections
+            for (int j = 0; j < 3; j++) {
+                for (Socket socket : sockets) {
+                    Assert.assertEquals("OK", TestNioEndpointPollers.doRequest(socket));
+                }
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+
+    @Test
+    public void testLargeBodies() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        assumeIoUringProtocol(connector);
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "echo", new EchoServlet());
+        ctx.addServletMappingDecoded("/", "echo");
+
+        tomcat.start();
+
+        // Larger than the socket buffers so reads and writes complete partially
+        byte[] body = new byte[LARGE_BODY_SIZE];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        ByteChunk out = new ByteChunk();
+        int rc = postUrl(body, "http://localhost:" + getPort() + "/", out, null);
+        Assert.assertEquals(200, rc);
+        Assert.assertEquals(body.length, out.getLength());
+        Assert.assertArrayEquals(body, Arrays.copyOfRange(out.getBytes(), out.getStart(), out.getEnd()));
+    }
+
+
+    @Test
+    public void testStopWithOpenConnections() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        assumeIoUringProtocol(connector);
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "ok", new OkServlet());
+        ctx.addServletMappingDecoded("/", "ok");
+
+        tomcat.start();
+
+        // Idle keep-alive connections will have a read pending
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < CONNECTION_COUNT; i++) {
+            Socket socket = new Socket("localhost", getPort());
+            sockets.add(socket);
+            Assert.assertEquals("OK", TestNioEndpointPollers.doRequest(socket));
+        }
+
+        tomcat.stop();
+
+        AtomicInteger closed = new AtomicInteger();
+        for (Socket socket : sockets) {
+            socket.setSoTimeout(5000);
+            try (InputStream is = socket.getInputStream()) {
+                if (is.read() == -1) {
+                    closed.incrementAndGet();
+                }
+            } catch (IOException ioe) {
+                // Reset by the server is also closed
+                closed.incrementAndGet();
+            }
+        }
+        Assert.assertEquals(CONNECTION_COUNT, closed.get());
+    }
+
+
+    private static void assumeIoUringProtocol(Connector connector) {
+        Assume.assumeTrue(connector.getProtocolHandler() != null &&
+                PROTOCOL.equals(connector.getProtocolHandler().getClass().getName()));
+    }
+
+
+    private static boolean isSupported() {
+        try {
+            return ((Boolean) Class.forName(ENDPOINT).getMethod("isSupported").invoke(null)).booleanValue();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+
+
+    private static final class EchoServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("application/octet-stream");
+            InputStream is = req.getInputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                resp.getOutputStream().write(buffer, 0, read);
+            }
+        }
+    }
+}
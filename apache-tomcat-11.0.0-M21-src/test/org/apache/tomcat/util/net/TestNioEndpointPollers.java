@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.http11.Http11NioProtocol;
+
+public class TestNioEndpointPollers extends TomcatBaseTest {
+
+    private static final int POLLER_COUNT = 4;
+    private static final int CONNECTION_COUNT = 16;
+
+
+    @Test
+    public void testMultiplePollers() throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        Assume.assumeTrue(connector.getProtocolHandler() instanceof Http11NioProtocol);
+        Assert.assertTrue(connector.setProperty("pollerCount", Integer.toString(POLLER_COUNT)));
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "ok", new OkServlet());
+        ctx.addServletMappingDecoded("/", "ok");
+
+        tomcat.start();
+
+        Http11NioProtocol protocol = (Http11NioProtocol) connector.getProtocolHandler();
+        Assert.assertEquals(POLLER_COUNT, protocol.getPollerCount());
+
+        Set<String> pollerThreadNames = new HashSet<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().contains("-Poller-")) {
+                pollerThreadNames.add(t.getName());
+            }
+        }
+        Assert.assertEquals(POLLER_COUNT, pollerThreadNames.size());
+
+        // Keep-alive connections should be distributed evenly across all the pollers
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONNECTION_COUNT; i++) {
+                Socket socket = new Socket("localhost", getPort());
+                sockets.add(socket);
+                for (int j = 0; j < 3; j++) {
+                    Assert.assertEquals("OK", doRequest(socket));
+                }
+            }
+
+            // Check which poller each of the open connections is registered with
+            Method getEndpoint = AbstractProtocol.class.getDeclaredMethod("getEndpoint");
+            getEndpoint.setAccessible(true);
+            AbstractEndpoint<?,?> endpoint = (AbstractEndpoint<?,?>) getEndpoint.invoke(protocol);
+            Map<NioEndpoint.Poller,Integer> connectionsPerPoller = new HashMap<>();
+            int connectionCount = 0;
+            for (SocketWrapperBase<?> wrapper : endpoint.getConnections()) {
+                NioEndpoint.Poller poller = ((NioEndpoint.NioSocketWrapper) wrapper).getPoller();
+                connectionsPerPoller.merge(poller, Integer.valueOf(1), Integer::sum);
+                connectionCount++;
+            }
+            Assert.assertEquals(CONNECTION_COUNT, connectionCount);
+            Assert.assertEquals(POLLER_COUNT, connectionsPerPoller.size());
+            for (Integer count : connectionsPerPoller.values()) {
+                Assert.assertEquals(CONNECTION_COUNT / POLLER_COUNT, count.intValue());
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPollerCount() {
+        new NioEndpoint().setPollerCount(0);
+    }
+
+
+    static String doRequest(Socket socket) throws IOException {
+        OutputStream os = socket.getOutputStream();
+        os.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        os.flush();
+
+        InputStream is = socket.getInputStream();
+        // Read the headers
+        StringBuilder headers = new StringBuilder();
+        int b;
+        while ((b = is.read()) != -1) {
+            headers.append((char) b);
+            if (headers.length() > 3 && headers.lastIndexOf("\r\n\r\n") == headers.length() - 4) {
+                break;
+            }
+        }
+        if (!headers.toString().startsWith("HTTP/1.1 200")) {
+            throw new IOException(headers.toString());
+        }
+        // Read the fixed length body
+        byte[] body = new byte[OkServlet.BODY.length];
+        int read = 0;
+        while (read < body.length) {
+            int n = is.read(body, read, body.length - read);
+            if (n < 0) {
+                throw new IOException();
+            }
+            read += n;
+        }
+        return new String(body, StandardCharsets.ISO_8859_1);
+    }
+
+
+    static final class OkServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        static final byte[] BODY = "OK".getBytes(StandardCharsets.ISO_8859_1);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setContentType("text/plain");
+            resp.setContentLength(BODY.length);
+            resp.getOutputStream().write(BODY);
+        }
+    }
+}
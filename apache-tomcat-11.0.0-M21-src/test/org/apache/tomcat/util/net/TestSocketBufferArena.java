@@ -0,0 +1,223 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+
+@RunWith(Parameterized.class)
+public class TestSocketBufferArena {
+
+    @Parameterized.Parameters(name = "{index}: direct[{0}]")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameterSets = new ArrayList<>();
+
+        for (Boolean direct : new Boolean[] { Boolean.FALSE, Boolean.TRUE }) {
+            parameterSets.add(new Object[] { direct });
+        }
+
+        return parameterSets;
+    }
+
+
+    @Parameter(0)
+    public boolean direct;
+
+
+    @Test
+    public void testSizeClasses() {
+        SocketBufferArena arena = new SocketBufferArena(direct, 4 * SocketBufferArena.SLAB_SIZE);
+
+        Assert.assertEquals(SocketBufferArena.MIN_BUFFER_SIZE, arena.borrow(1).capacity());
+        Assert.assertEquals(SocketBufferArena.MIN_BUFFER_SIZE, arena.borrow(SocketBufferArena.MIN_BUFFER_SIZE).capacity());
+        Assert.assertEquals(8192, arena.borrow(8192).capacity());
+        Assert.assertEquals(32768, arena.borrow(16709).capacity());
+        Assert.assertEquals(SocketBufferArena.MAX_BUFFER_SIZE, arena.borrow(SocketBufferArena.MAX_BUFFER_SIZE).capacity());
+        Assert.assertEquals(direct, arena.borrow(8192).isDirect());
+
+        // One slab per size class used
+        Assert.assertEquals(4 * SocketBufferArena.SLAB_SIZE, arena.getAllocated());
+        Assert.assertEquals(0, arena.getBorrowFailures());
+
+        Assert.assertNull(arena.borrow(SocketBufferArena.MAX_BUFFER_SIZE + 1));
+        Assert.assertEquals(1, arena.getBorrowFailures());
+    }
+
+
+    @Test
+    public void testBorrowAndRelease() {
+        SocketBufferArena arena = new SocketBufferArena(direct, SocketBufferArena.SLAB_SIZE);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        ByteBuffer buffer;
+        while ((buffer = arena.borrow(8192)) != null) {
+            buffers.add(buffer);
+        }
+        Assert.assertEquals(SocketBufferArena.SLAB_SIZE / 8192, buffers.size());
+        Assert.assertEquals(SocketBufferArena.SLAB_SIZE, arena.getAllocated());
+        Assert.assertEquals(SocketBufferArena.SLAB_SIZE, arena.getBorrowed());
+        Assert.assertEquals(1, arena.getBorrowFailures());
+
+        // Buffers must not overlap
+        for (int i = 0; i < buffers.size(); i++) {
+            buffers.get(i).putInt(0, i);
+        }
+        for (int i = 0; i < buffers.size(); i++) {
+            Assert.assertEquals(i, buffers.get(i).getInt(0));
+        }
+
+        for (ByteBuffer b : buffers) {
+            b.position(100);
+            arena.release(b);
+        }
+        Assert.assertEquals(0, arena.getBorrowed());
+        Assert.assertEquals(SocketBufferArena.SLAB_SIZE, arena.getBorrowedHighWaterMark());
+
+        // Released buffers are re-used and are cleared
+        buffer = arena.borrow(8192);
+        Assert.assertNotNull(buffer);
+        Assert.assertEquals(0, buffer.position());
+        Assert.assertEquals(8192, buffer.limit());
+        Assert.assertEquals(SocketBufferArena.SLAB_SIZE, arena.getAllocated());
+
+        // A different size class needs a new slab but the arena is full
+        Assert.assertNull(arena.borrow(4096));
+        Assert.assertEquals(2, arena.getBorrowFailures());
+    }
+
+
+    @Test
+    public void testShortLivedThreads() throws Exception {
+        SocketBufferArena arena = new SocketBufferArena(direct, SocketBufferArena.SLAB_SIZE);
+        int buffersPerSlab = SocketBufferArena.SLAB_SIZE / 8192;
+
+        // Buffers released by threads that then terminate must be available
+        // to other threads
+        for (int i = 0; i < 2 * buffersPerSlab; i++) {
+            Thread t = new Thread(() -> {
+                ByteBuffer buffer = arena.borrow(8192);
+                Assert.assertNotNull(buffer);
+                arena.release(buffer);
+            });
+            t.start();
+            t.join();
+        }
+
+        Assert.assertEquals(SocketBufferArena.SLAB_SIZE, arena.getAllocated());
+        Assert.assertEquals(0, arena.getBorrowed());
+        Assert.assertEquals(0, arena.getBorrowFailures());
+
+        // All the buffers in the slab are still available
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < buffersPerSlab; i++) {
+            buffers.add(arena.borrow(8192));
+        }
+        Assert.assertFalse(buffers.contains(null));
+        Assert.assertEquals(0, arena.getBorrowFailures());
+    }
+
+
+    @Test
+    public void testHandlerLazyBorrow() {
+        SocketBufferArena arena = new SocketBufferArena(direct, SocketBufferArena.SLAB_SIZE);
+        SocketBufferHandler sbh = new SocketBufferHandler(8192, 8192, direct, arena);
+
+        Assert.assertTrue(sbh.isReadBufferEmpty());
+        Assert.assertTrue(sbh.isWriteBufferEmpty());
+        Assert.assertTrue(sbh.isWriteBufferWritable());
+        Assert.assertEquals(0, arena.getBorrowed());
+
+        sbh.configureReadBufferForWrite();
+        sbh.getReadBuffer().put(getBytes("ABCD"));
+        Assert.assertEquals(8192, arena.getBorrowed());
+
+        // Data in the read buffer
+        Assert.assertFalse(sbh.releaseIfEmpty());
+        Assert.assertEquals(8192, arena.getBorrowed());
+
+        sbh.configureReadBufferForRead();
+        sbh.getReadBuffer().position(4);
+        Assert.assertTrue(sbh.releaseIfEmpty());
+        Assert.assertEquals(0, arena.getBorrowed());
+
+        // Buffers are borrowed again on next use
+        sbh.configureWriteBufferForWrite();
+        sbh.getWriteBuffer().put(getBytes("WXYZ"));
+        Assert.assertEquals(8192, arena.getBorrowed());
+        Assert.assertFalse(sbh.releaseIfEmpty());
+
+        sbh.release();
+        Assert.assertEquals(0, arena.getBorrowed());
+        Assert.assertTrue(sbh.isWriteBufferEmpty());
+    }
+
+
+    @Test
+    public void testHandlerExpand() {
+        SocketBufferArena arena = new SocketBufferArena(direct, 4 * SocketBufferArena.SLAB_SIZE);
+        SocketBufferHandler sbh = new SocketBufferHandler(8192, 8192, direct, arena);
+
+        sbh.configureReadBufferForWrite();
+        sbh.getReadBuffer().put(getBytes("ABCD"));
+
+        sbh.expand(16709);
+        Assert.assertEquals(32768, sbh.getReadBuffer().capacity());
+        Assert.assertEquals(32768, arena.getBorrowed());
+
+        sbh.configureReadBufferForRead();
+        byte[] data = new byte[4];
+        sbh.getReadBuffer().get(data);
+        Assert.assertEquals("ABCD", new String(data, StandardCharsets.UTF_8));
+
+        Assert.assertTrue(sbh.releaseIfEmpty());
+        Assert.assertEquals(0, arena.getBorrowed());
+
+        // The expanded size is retained after a release
+        Assert.assertEquals(32768, sbh.getWriteBuffer().capacity());
+        sbh.free();
+        Assert.assertEquals(0, arena.getBorrowed());
+    }
+
+
+    @Test
+    public void testHandlerFallback() {
+        // Arena too small to allocate a single slab
+        SocketBufferArena arena = new SocketBufferArena(direct, 0);
+        SocketBufferHandler sbh = new SocketBufferHandler(8, 8, direct, arena);
+
+        Assert.assertEquals(8, sbh.getReadBuffer().capacity());
+        Assert.assertEquals(direct, sbh.getReadBuffer().isDirect());
+        Assert.assertEquals(1, arena.getBorrowFailures());
+
+        Assert.assertTrue(sbh.releaseIfEmpty());
+        Assert.assertEquals(0, arena.getBorrowed());
+    }
+
+
+    private static byte[] getBytes(String input) {
+        return input.getBytes(StandardCharsets.UTF_8);
+    }
+}
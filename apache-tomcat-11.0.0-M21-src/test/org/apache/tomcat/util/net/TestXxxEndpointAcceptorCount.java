@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.net.TestNioEndpointPollers.OkServlet;
+
+/**
+ * Tests for endpoints configured with multiple server sockets using
+ * SO_REUSEPORT. The testing framework will ensure that each implementation is
+ * tested.
+ */
+public class TestXxxEndpointAcceptorCount extends TomcatBaseTest {
+
+    private static final int ACCEPTOR_COUNT = 4;
+
+
+    @Test
+    public void testMultipleAcceptors() throws Exception {
+        Tomcat tomcat = configureTomcat(true);
+        tomcat.start();
+
+        doRequests();
+
+        // Pause and resume must unlock / restart all the acceptors
+        Connector connector = tomcat.getConnector();
+        connector.pause();
+        connector.resume();
+
+        doRequests();
+    }
+
+
+    @Test
+    public void testStartStopBindOnStart() throws Exception {
+        Tomcat tomcat = configureTomcat(false);
+        tomcat.start();
+        int port = getPort();
+
+        doRequests();
+
+        tomcat.getConnector().stop();
+        // All the server sockets should have been closed
+        try (ServerSocket s = new ServerSocket(port, 100, InetAddress.getByName("localhost"))) {
+            // This should not throw an Exception
+        }
+
+        tomcat.getConnector().start();
+
+        doRequests();
+    }
+
+
+    private Tomcat configureTomcat(boolean bindOnInit) throws Exception {
+        try (ServerSocket s = new ServerSocket()) {
+            Assume.assumeTrue(s.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT));
+        }
+
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        Assert.assertTrue(connector.setProperty("acceptorCount", Integer.toString(ACCEPTOR_COUNT)));
+        Assert.assertTrue(connector.setProperty("bindOnInit", Boolean.toString(bindOnInit)));
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "ok", new OkServlet());
+        ctx.addServletMappingDecoded("/", "ok");
+
+        return tomcat;
+    }
+
+
+    private void doRequests() throws Exception {
+        // Use enough connections that each server socket should receive some
+        for (int i = 0; i < ACCEPTOR_COUNT * 8; i++) {
+            try (Socket socket = new Socket("localhost", getPort())) {
+                Assert.assertEquals("OK", TestNioEndpointPollers.doRequest(socket));
+            }
+        }
+    }
+}
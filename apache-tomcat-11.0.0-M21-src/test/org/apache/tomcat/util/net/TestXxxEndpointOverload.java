@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.http11.Http11Nio2Protocol;
+import org.apache.tomcat.util.buf.ByteChunk;
+
+/**
+ * Tests for shedding load when the executor queue delay is too high. The testing framework will ensure that each
+ * implementation is tested.
+ */
+public class TestXxxEndpointOverload extends TomcatBaseTest {
+
+    private static final int REQUESTS = 6;
+
+
+    @Test
+    public void testReject() throws Exception {
+        BlockingServlet servlet = configureTomcat("reject");
+        AbstractProtocol<?> protocol = (AbstractProtocol<?>) getTomcatInstance().getConnector().getProtocolHandler();
+
+        List<Integer> statuses = doRequests(servlet, 0);
+
+        int rejected = 0;
+        for (Integer status : statuses) {
+            if (status.intValue() == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                rejected++;
+            } else {
+                Assert.assertEquals(HttpServletResponse.SC_OK, status.intValue());
+            }
+        }
+        // The requests queued behind the blocked request waited too long
+        Assert.assertTrue(rejected > 0);
+        Assert.assertEquals(rejected, protocol.getOverloadRejectedCount());
+        Assert.assertEquals(0, protocol.getOverloadPausedCount());
+
+        // Once the queue has drained requests are accepted again
+        Thread.sleep(1500);
+        Assert.assertEquals(HttpServletResponse.SC_OK, getUrl("http://localhost:" + getPort() + "/", new ByteChunk(),
+                null));
+    }
+
+
+    @Test
+    public void testPause() throws Exception {
+        BlockingServlet servlet = configureTomcat("pause");
+        AbstractProtocol<?> protocol = (AbstractProtocol<?>) getTomcatInstance().getConnector().getProtocolHandler();
+
+        // The later connections are made while the endpoint is overloaded
+        List<Integer> statuses = doRequests(servlet, 2);
+
+        for (Integer status : statuses) {
+            Assert.assertEquals(HttpServletResponse.SC_OK, status.intValue());
+        }
+        Assert.assertTrue(protocol.getOverloadPausedCount() > 0);
+        Assert.assertEquals(0, protocol.getOverloadRejectedCount());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAction() throws Exception {
+        new NioEndpoint().setOverloadAction("drop");
+    }
+
+
+    private BlockingServlet configureTomcat(String overloadAction) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        // NIO2 processes new connections on the thread that accepted them so they never wait in the executor queue
+        Assume.assumeFalse(connector.getProtocolHandler() instanceof Http11Nio2Protocol);
+        Assert.assertTrue(connector.setProperty("maxThreads", "2"));
+        Assert.assertTrue(connector.setProperty("overloadQueueDelay", "100"));
+        Assert.assertTrue(connector.setProperty("overloadAction", overloadAction));
+
+        Context ctx = getProgrammaticRootContext();
+        BlockingServlet servlet = new BlockingServlet();
+        Tomcat.addServlet(ctx, "blocking", servlet);
+        ctx.addServletMappingDecoded("/", "blocking");
+
+        tomcat.start();
+        return servlet;
+    }
+
+
+    /*
+     * Block both of the threads then make requests that have to wait in the queue. Optionally make further requests
+     * after the queue delay has exceeded the limit.
+     */
+    private List<Integer> doRequests(BlockingServlet servlet, int lateRequests) throws Exception {
+        List<Thread> clients = new ArrayList<>();
+        List<Integer> statuses = new ArrayList<>();
+        clients.add(startClient(statuses));
+        clients.add(startClient(statuses));
+        Assert.assertTrue(servlet.entered.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < REQUESTS; i++) {
+            clients.add(startClient(statuses));
+        }
+        Thread.sleep(300);
+        for (int i = 0; i < lateRequests; i++) {
+            clients.add(startClient(statuses));
+        }
+        Thread.sleep(300);
+        servlet.release.countDown();
+
+        for (Thread client : clients) {
+            client.join(20000);
+            Assert.assertFalse(client.isAlive());
+        }
+        Assert.assertEquals(clients.size(), statuses.size());
+        return statuses;
+    }
+
+
+    private Thread startClient(List<Integer> statuses) {
+        Thread client = new Thread(() -> {
+            int rc;
+            try {
+                rc = getUrl("http://localhost:" + getPort() + "/", new ByteChunk(), null);
+            } catch (IOException ioe) {
+                rc = -1;
+            }
+            synchronized (statuses) {
+                statuses.add(Integer.valueOf(rc));
+            }
+        });
+        client.start();
+        return client;
+    }
+
+
+    private static class BlockingServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        private final CountDownLatch entered = new CountDownLatch(2);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            resp.setContentType("text/plain");
+            resp.getWriter().print("OK");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.tomcat.util.net.TestNioEndpointPollers.OkServlet;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * Compares the request throughput of the NIO, NIO2 and io_uring connectors. Each client thread holds a single
+ * keep-alive connection and issues requests as fast as possible. The io_uring connector requires Java 22 and Linux;
+ * if io_uring is not available it falls back to NIO2 and the results for the two will be the same.
+ */
+public class TesterIoUringEndpointPerformance extends TomcatBaseTest {
+
+    private static final int CLIENT_THREADS = 64;
+    private static final long DURATION_MILLIS = 10000;
+
+
+    @Test
+    public void testNio() throws Exception {
+        doTest("org.apache.coyote.http11.Http11NioProtocol");
+    }
+
+
+    @Test
+    public void testNio2() throws Exception {
+        doTest("org.apache.coyote.http11.Http11Nio2Protocol");
+    }
+
+
+    @Test
+    public void testIoUring() throws Exception {
+        doTest("org.apache.coyote.http11.Http11IoUringProtocol");
+    }
+
+
+    private void doTest(String protocol) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+
+        Connector connector = new Connector(protocol);
+        // The protocol handler will be null if the protocol is not available
+        Assume.assumeNotNull(connector.getProtocolHandler());
+        Assert.assertTrue(connector.setProperty("address", InetAddress.getByName("localhost").getHostAddress()));
+        connector.setPort(0);
+        connector.setThrowOnFailure(true);
+        Assert.assertTrue(connector.setProperty("maxKeepAliveRequests", "-1"));
+        Assert.assertTrue(connector.setProperty("maxThreads", Integer.toString(CLIENT_THREADS * 2)));
+        tomcat.getService().addConnector(connector);
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "ok", new OkServlet());
+        ctx.addServletMappingDecoded("/", "ok");
+
+        tomcat.start();
+
+        int port = connector.getLocalPort();
+        AtomicLong requestCount = new AtomicLong();
+        long end = System.currentTimeMillis() + DURATION_MILLIS;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            Thread t = new Thread(() -> {
+                try (Socket socket = new Socket("localhost", port)) {
+                    socket.setTcpNoDelay(true);
+                    while (System.currentTimeMillis() < end) {
+                        TestNioEndpointPollers.doRequest(socket);
+                        requestCount.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long duration = System.nanoTime() - start;
+
+        System.out.println("Protocol [" + protocol + "], requests [" + requestCount.get() +
+                "], requests per second [" + (requestCount.get() * 1000000000L / duration) + "]");
+    }
+}
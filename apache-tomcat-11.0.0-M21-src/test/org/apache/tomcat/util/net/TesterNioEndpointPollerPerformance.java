@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.startup.TomcatBaseTest;
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.apache.tomcat.util.net.TestNioEndpointPollers.OkServlet;
+
+/*
+ * This is an absolute performance test. There is no benefit it running it as part of a standard test run so it is
+ * excluded due to the name starting Tester...
+ *
+ * Each client thread holds a single keep-alive connection and issues requests as fast as possible. The number of
+ * completed requests per second for each poller count is reported so the scaling of the poller event throughput can
+ * be compared. Meaningful results require a machine with a reasonable number of cores.
+ */
+public class TesterNioEndpointPollerPerformance extends TomcatBaseTest {
+
+    private static final int CLIENT_THREADS = 64;
+    private static final long DURATION_MILLIS = 10000;
+
+
+    @Test
+    public void testPollerCount01() throws Exception {
+        doTest(1);
+    }
+
+
+    @Test
+    public void testPollerCount02() throws Exception {
+        doTest(2);
+    }
+
+
+    @Test
+    public void testPollerCount04() throws Exception {
+        doTest(4);
+    }
+
+
+    @Test
+    public void testPollerCount08() throws Exception {
+        doTest(8);
+    }
+
+
+    private void doTest(int pollerCount) throws Exception {
+        Tomcat tomcat = getTomcatInstance();
+        Connector connector = tomcat.getConnector();
+        Assume.assumeTrue(connector.getProtocolHandler() instanceof Http11NioProtocol);
+        Assert.assertTrue(connector.setProperty("pollerCount", Integer.toString(pollerCount)));
+        Assert.assertTrue(connector.setProperty("maxKeepAliveRequests", "-1"));
+        Assert.assertTrue(connector.setProperty("maxThreads", Integer.toString(CLIENT_THREADS * 2)));
+
+        Context ctx = getProgrammaticRootContext();
+        Tomcat.addServlet(ctx, "ok", new OkServlet());
+        ctx.addServletMappingDecoded("/", "ok");
+
+        tomcat.start();
+
+        AtomicLong requestCount = new AtomicLong();
+        long end = System.currentTimeMillis() + DURATION_MILLIS;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            Thread t = new Thread(() -> {
+                try (Socket socket = new Socket("localhost", getPort())) {
+                    socket.setTcpNoDelay(true);
+                    while (System.currentTimeMillis() < end) {
+                        TestNioEndpointPollers.doRequest(socket);
+                        requestCount.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long duration = System.nanoTime() - start;
+
+        System.out.println("Poller count [" + pollerCount + "], requests [" + requestCount.get() +
+                "], requests per second [" + (requestCount.get() * 1000000000L / duration) + "]");
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTaskQueue {
+
+    @Test
+    public void testDisabled() throws Exception {
+        TaskQueue queue = new TaskQueue();
+        TesterTask task = new TesterTask(true);
+        queue.offer(task);
+        Thread.sleep(20);
+
+        Assert.assertSame(task, queue.poll(0, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(task.dropped);
+        Assert.assertEquals(0, task.getQueuedTime());
+        Assert.assertEquals(0, sum(queue.getQueueTimeHistogram()));
+    }
+
+
+    @Test
+    public void testDrop() throws Exception {
+        TaskQueue queue = new TaskQueue();
+        queue.setMaxQueueTime(10);
+        // Don't switch to the target queue time during the test
+        queue.setTargetQueueInterval(60000);
+
+        TesterTask old = new TesterTask(true);
+        TesterTask notDroppable = new TesterTask(false);
+        Runnable plain = () -> {};
+        queue.offer(old);
+        queue.offer(notDroppable);
+        queue.offer(plain);
+        Thread.sleep(50);
+        TesterTask recent = new TesterTask(true);
+        queue.offer(recent);
+
+        Assert.assertSame(notDroppable, queue.take());
+        Assert.assertTrue(old.dropped);
+        Assert.assertSame(plain, queue.take());
+        Assert.assertSame(recent, queue.poll(0, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(recent.dropped);
+        Assert.assertEquals(1, queue.getDroppedCount());
+
+        long[] histogram = queue.getQueueTimeHistogram();
+        Assert.assertEquals(queue.getQueueTimeBuckets().length + 1, histogram.length);
+        Assert.assertEquals(3, sum(histogram));
+        // The recent task is in the first bucket
+        Assert.assertTrue(histogram[0] >= 1);
+    }
+
+
+    @Test
+    public void testDropAll() throws Exception {
+        TaskQueue queue = new TaskQueue();
+        queue.setMaxQueueTime(0);
+        TesterTask task = new TesterTask(true);
+        queue.offer(task);
+        Thread.sleep(5);
+
+        Assert.assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(task.dropped);
+        Assert.assertEquals(1, queue.getDroppedCount());
+    }
+
+
+    @Test
+    public void testTakeWaitsAfterDrop() throws Exception {
+        TaskQueue queue = new TaskQueue();
+        queue.setMaxQueueTime(0);
+        TesterTask task = new TesterTask(true);
+        queue.offer(task);
+        Thread.sleep(5);
+
+        TesterTask notDroppable = new TesterTask(false);
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            queue.offer(notDroppable);
+        });
+        t.start();
+
+        // take() must block for the next task rather than return null
+        Assert.assertSame(notDroppable, queue.take());
+        Assert.assertTrue(task.dropped);
+        Assert.assertEquals(1, queue.getDroppedCount());
+        t.join();
+    }
+
+
+    @Test
+    public void testEnabledWhileQueued() throws Exception {
+        TaskQueue queue = new TaskQueue();
+        TesterTask task = new TesterTask(true);
+        queue.offer(task);
+        queue.setMaxQueueTime(0);
+        Thread.sleep(5);
+
+        // Tasks queued while dropping was disabled are not dropped
+        Assert.assertSame(task, queue.poll(0, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(task.dropped);
+    }
+
+
+    @Test
+    public void testTargetQueueTime() throws Exception {
+        TaskQueue queue = new TaskQueue();
+        queue.setMaxQueueTime(60000);
+        queue.setTargetQueueTime(10);
+        queue.setTargetQueueInterval(20);
+
+        TesterTask first = new TesterTask(true);
+        TesterTask second = new TesterTask(true);
+        TesterTask third = new TesterTask(true);
+        queue.offer(first);
+        queue.offer(second);
+        queue.offer(third);
+        Thread.sleep(50);
+
+        // The queue has not been empty for longer than the target interval
+        Assert.assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(first.dropped);
+        Assert.assertTrue(second.dropped);
+        Assert.assertTrue(third.dropped);
+
+        // The queue was empty when this task was added so it is processed
+        TesterTask fourth = new TesterTask(true);
+        queue.offer(fourth);
+        Thread.sleep(15);
+        Assert.assertSame(fourth, queue.poll(0, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(3, queue.getDroppedCount());
+    }
+
+
+    private static long sum(long[] values) {
+        long result = 0;
+        for (long value : values) {
+            result += value;
+        }
+        return result;
+    }
+
+
+    private static class TesterTask implements DroppableTask {
+
+        private final boolean droppable;
+        private long queuedTime;
+        private volatile boolean dropped;
+
+        TesterTask(boolean droppable) {
+            this.droppable = droppable;
+        }
+
+        @Override
+        public void run() {
+            // NO-OP
+        }
+
+        @Override
+        public void setQueuedTime(long queuedTime) {
+            this.queuedTime = queuedTime;
+        }
+
+        @Override
+        public long getQueuedTime() {
+            return queuedTime;
+        }
+
+        @Override
+        public boolean drop() {
+            dropped = droppable;
+            return droppable;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.apache.tomcat.util.compat.JreCompat;
+
+public class TestVirtualThreadExecutor {
+
+    @Test
+    public void testMaxThreads() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("test-", 2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+                running.decrementAndGet();
+            });
+        }
+
+        waitFor(() -> executor.getActiveCount() == 2 && executor.getQueueSize() == 3);
+        Assert.assertEquals(5, executor.getPoolSize());
+        Assert.assertEquals(2, executor.getLargestPoolSize());
+        Assert.assertEquals(0, executor.getCompletedTaskCount());
+
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(2, maxRunning.get());
+        Assert.assertEquals(5, executor.getCompletedTaskCount());
+        Assert.assertEquals(0, executor.getActiveCount());
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(0, executor.getPoolSize());
+    }
+
+
+    @Test
+    public void testResize() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("test-", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            });
+        }
+        waitFor(() -> executor.getActiveCount() == 1 && executor.getQueueSize() == 2);
+
+        Assert.assertTrue(executor.resizePool(0, 3));
+        Assert.assertEquals(3, executor.getMaxThreads());
+        waitFor(() -> executor.getActiveCount() == 3);
+
+        executor.setMaxThreads(-1);
+        Assert.assertEquals(-1, executor.getMaxThreads());
+
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+
+    @Test
+    public void testShutdownNow() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("test-", 1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        Runnable queued = () -> Assert.fail();
+        executor.execute(queued);
+        waitFor(() -> executor.getQueueSize() == 1);
+
+        List<Runnable> notRun = executor.shutdownNow();
+        Assert.assertEquals(1, notRun.size());
+        Assert.assertSame(queued, notRun.get(0));
+        Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(1, executor.getCompletedTaskCount());
+    }
+
+
+    @Test
+    public void testTerminatedWhenIdle() throws Exception {
+        Assume.assumeTrue(JreCompat.isJre21Available());
+
+        VirtualThreadExecutor executor = new VirtualThreadExecutor("test-");
+        Assert.assertEquals(-1, executor.getMaxThreads());
+        Assert.assertFalse(executor.isTerminated());
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        int count = 0;
+        while (!condition.getAsBoolean() && count < 500) {
+            Thread.sleep(10);
+            count++;
+        }
+        Assert.assertTrue(condition.getAsBoolean());
+    }
+}